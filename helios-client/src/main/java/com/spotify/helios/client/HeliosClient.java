@@ -39,6 +39,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 import com.spotify.helios.common.HeliosException;
 import com.spotify.helios.common.Json;
@@ -53,6 +54,10 @@ import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
 import com.spotify.helios.common.descriptors.RolloutOptions;
+import com.spotify.helios.common.protocol.BulkDeployRequest;
+import com.spotify.helios.common.protocol.BulkDeployResponse;
+import com.spotify.helios.common.protocol.BulkUndeployRequest;
+import com.spotify.helios.common.protocol.BulkUndeployResponse;
 import com.spotify.helios.common.protocol.CreateDeploymentGroupResponse;
 import com.spotify.helios.common.protocol.CreateJobResponse;
 import com.spotify.helios.common.protocol.DeploymentGroupStatusResponse;
@@ -64,6 +69,7 @@ import com.spotify.helios.common.protocol.RemoveDeploymentGroupResponse;
 import com.spotify.helios.common.protocol.RollingUpdateRequest;
 import com.spotify.helios.common.protocol.RollingUpdateResponse;
 import com.spotify.helios.common.protocol.SetGoalResponse;
+import com.spotify.helios.common.protocol.StatusView;
 import com.spotify.helios.common.protocol.TaskStatusEvents;
 import com.spotify.helios.common.protocol.VersionResponse;
 
@@ -433,6 +439,19 @@ public class HeliosClient implements AutoCloseable {
                      ConvertResponseToPojo.create(JobDeployResponse.class, deserializeReturnCodes));
   }
 
+  /**
+   * Deploys a job to several hosts in one request, see {@link BulkDeployResponse}. The response is
+   * null if the master does not support this, in which case the job has not been deployed.
+   */
+  public ListenableFuture<BulkDeployResponse> deploy(final Deployment job,
+                                                     final List<String> hosts,
+                                                     final String token) {
+    return nullIfUnsupported(request(uri(path("/jobs/%s/deployments", job.getJobId()),
+                                         ImmutableMap.of("token", token)),
+                                     "POST", new BulkDeployRequest(job, hosts)),
+                             BulkDeployResponse.class);
+  }
+
   public ListenableFuture<SetGoalResponse> setGoal(final Deployment job, final String host) {
     return setGoal(job, host, "");
   }
@@ -516,6 +535,49 @@ public class HeliosClient implements AutoCloseable {
                                                                   HTTP_FORBIDDEN)));
   }
 
+  /**
+   * Undeploys a job from several hosts in one request, see {@link BulkUndeployResponse}. The
+   * response is null if the master does not support this, in which case the job has not been
+   * undeployed.
+   */
+  public ListenableFuture<BulkUndeployResponse> undeploy(final JobId jobId,
+                                                         final List<String> hosts,
+                                                         final String token) {
+    return nullIfUnsupported(request(uri(path("/jobs/%s/undeployments", jobId),
+                                         ImmutableMap.of("token", token)),
+                                     "POST", new BulkUndeployRequest(hosts)),
+                             BulkUndeployResponse.class);
+  }
+
+  /**
+   * Converts the response to a request for an endpoint that older masters do not have. Those
+   * masters answer with a 404 or 405 that carries no status of ours, which is turned into null.
+   */
+  private static <T> ListenableFuture<T> nullIfUnsupported(final ListenableFuture<Response> req,
+                                                           final Class<T> clazz) {
+    final ConvertResponseToPojo<T> converter = ConvertResponseToPojo.create(
+        clazz, ImmutableSet.of(HTTP_OK, HTTP_NOT_FOUND, HTTP_BAD_REQUEST, HTTP_FORBIDDEN));
+    return transform(req, new AsyncFunction<Response, T>() {
+      @Override
+      public ListenableFuture<T> apply(@NotNull final Response reply) throws Exception {
+        if (reply.status == HTTP_BAD_METHOD ||
+            (reply.status == HTTP_NOT_FOUND && !hasStatus(reply.payload))) {
+          return immediateFuture(null);
+        }
+        return converter.apply(reply);
+      }
+    });
+  }
+
+  private static boolean hasStatus(final byte[] payload) {
+    try {
+      final JsonNode node = Json.readTree(payload);
+      return node != null && node.has("status");
+    } catch (IOException e) {
+      return false;
+    }
+  }
+
   public ListenableFuture<HostDeregisterResponse> deregisterHost(final String host) {
     return transform(request(uri(path("/hosts/%s", host)), "DELETE"),
                      ConvertResponseToPojo.create(HostDeregisterResponse.class,
@@ -583,15 +645,31 @@ public class HeliosClient implements AutoCloseable {
   }
 
   public ListenableFuture<JobStatus> jobStatus(final JobId jobId) {
-    return get(uri(path("/jobs/%s/status", jobId)), JobStatus.class);
+    return jobStatus(jobId, StatusView.FULL);
+  }
+
+  public ListenableFuture<JobStatus> jobStatus(final JobId jobId, final StatusView view) {
+    return get(uri(path("/jobs/%s/status", jobId), viewQuery(view)), JobStatus.class);
   }
 
   public ListenableFuture<Map<JobId, JobStatus>> jobStatuses(final Set<JobId> jobs) {
+    return jobStatuses(jobs, StatusView.FULL);
+  }
+
+  public ListenableFuture<Map<JobId, JobStatus>> jobStatuses(final Set<JobId> jobs,
+                                                             final StatusView view) {
     final ConvertResponseToPojo<Map<JobId, JobStatus>> converter = ConvertResponseToPojo.create(
         TypeFactory.defaultInstance().constructMapType(Map.class, JobId.class, JobStatus.class),
         ImmutableSet.of(HTTP_OK));
     
-    return transform(request(uri("/jobs/statuses"), "POST", jobs), converter);
+    return transform(request(uri("/jobs/statuses", viewQuery(view)), "POST", jobs), converter);
+  }
+
+  private static Map<String, String> viewQuery(final StatusView view) {
+    // Leave out the default so that requests look the same to masters that have no views
+    return view == StatusView.FULL
+           ? Collections.<String, String>emptyMap()
+           : ImmutableMap.of(StatusView.PARAM, view.toParam());
   }
 
   public ListenableFuture<DeploymentGroup> deploymentGroup(final String name) {
@@ -24,6 +24,7 @@ package com.spotify.helios.common;
 import com.google.common.base.Throwables;
 
 import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -38,6 +39,7 @@ import com.fasterxml.jackson.databind.type.TypeFactory;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.reflect.Type;
 import java.util.Map;
 
@@ -329,6 +331,14 @@ public class Json {
     return OBJECT_MAPPER.writer();
   }
 
+  /**
+   * Create a generator that writes json to {@code out}, serializing objects the same way as
+   * {@link #asBytes(Object)}.
+   */
+  public static JsonGenerator newGenerator(final OutputStream out) throws IOException {
+    return OBJECT_MAPPER.getFactory().createGenerator(out);
+  }
+
   public static byte[] sha1digest(final Object o) throws IOException {
     final String json = NORMALIZING_OBJECT_WRITER.writeValueAsString(o);
     final Map<String, Object> map = OBJECT_MAPPER.readValue(json, MAP_TYPE);
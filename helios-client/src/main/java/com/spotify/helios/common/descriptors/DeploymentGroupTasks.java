@@ -26,6 +26,8 @@ import com.google.common.base.Objects;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import org.jetbrains.annotations.Nullable;
+
 import java.util.Collections;
 import java.util.List;
 
@@ -37,27 +39,36 @@ public class DeploymentGroupTasks extends Descriptor {
   private final List<RolloutTask> rolloutTasks;
   private final int taskIndex;
   private final DeploymentGroup deploymentGroup;
+  private final String planId;
+  private final int planChunks;
 
   private DeploymentGroupTasks(
       @JsonProperty("rolloutTasks") final List<RolloutTask> rolloutTasks,
       @JsonProperty("taskIndex") final int taskIndex,
-      @JsonProperty("deploymentGroup") final DeploymentGroup deploymentGroup) {
+      @JsonProperty("deploymentGroup") final DeploymentGroup deploymentGroup,
+      @JsonProperty("planId") final String planId,
+      @JsonProperty("planChunks") final int planChunks) {
     this.rolloutTasks = checkNotNull(rolloutTasks, "rolloutTasks");
     this.taskIndex = taskIndex;
     this.deploymentGroup = deploymentGroup;
+    this.planId = planId;
+    this.planChunks = planChunks;
   }
 
   public Builder toBuilder() {
     return newBuilder()
         .setRolloutTasks(rolloutTasks)
         .setTaskIndex(taskIndex)
-        .setDeploymentGroup(deploymentGroup);
+        .setDeploymentGroup(deploymentGroup)
+        .setPlan(planId, planChunks);
   }
 
   private DeploymentGroupTasks(final Builder builder) {
     this.rolloutTasks = checkNotNull(builder.rolloutTasks, "rolloutTasks");
     this.taskIndex = builder.taskIndex;
     this.deploymentGroup = checkNotNull(builder.deploymentGroup, "deploymentGroup");
+    this.planId = builder.planId;
+    this.planChunks = builder.planChunks;
   }
 
   public List<RolloutTask> getRolloutTasks() {
@@ -72,6 +83,22 @@ public class DeploymentGroupTasks extends Descriptor {
     return deploymentGroup;
   }
 
+  /**
+   * Returns the id of the rollout plan the rollout tasks are stored in, or null if the rollout
+   * tasks are stored inline.
+   */
+  @Nullable
+  public String getPlanId() {
+    return planId;
+  }
+
+  /**
+   * Returns the number of chunks the rollout plan is stored in.
+   */
+  public int getPlanChunks() {
+    return planChunks;
+  }
+
   public static Builder newBuilder() {
     return new Builder();
   }
@@ -90,6 +117,12 @@ public class DeploymentGroupTasks extends Descriptor {
     if (taskIndex != that.taskIndex) {
       return false;
     }
+    if (planChunks != that.planChunks) {
+      return false;
+    }
+    if (planId != null ? !planId.equals(that.planId) : that.planId != null) {
+      return false;
+    }
     if (deploymentGroup != null ? !deploymentGroup.equals(that.deploymentGroup)
                                 : that.deploymentGroup != null) {
       return false;
@@ -107,6 +140,8 @@ public class DeploymentGroupTasks extends Descriptor {
     int result = rolloutTasks != null ? rolloutTasks.hashCode() : 0;
     result = 31 * result + taskIndex;
     result = 31 * result + (deploymentGroup != null ? deploymentGroup.hashCode() : 0);
+    result = 31 * result + (planId != null ? planId.hashCode() : 0);
+    result = 31 * result + planChunks;
     return result;
   }
 
@@ -116,6 +151,8 @@ public class DeploymentGroupTasks extends Descriptor {
         .add("rolloutTasks", rolloutTasks)
         .add("taskIndex", taskIndex)
         .add("deploymentGroup", deploymentGroup)
+        .add("planId", planId)
+        .add("planChunks", planChunks)
         .toString();
   }
 
@@ -123,6 +160,8 @@ public class DeploymentGroupTasks extends Descriptor {
     private List<RolloutTask> rolloutTasks = Collections.emptyList();
     private int taskIndex;
     private DeploymentGroup deploymentGroup;
+    private String planId;
+    private int planChunks;
 
     public Builder setRolloutTasks(List<RolloutTask> rolloutTasks) {
       this.rolloutTasks = rolloutTasks;
@@ -139,6 +178,12 @@ public class DeploymentGroupTasks extends Descriptor {
       return this;
     }
 
+    public Builder setPlan(final String planId, final int planChunks) {
+      this.planId = planId;
+      this.planChunks = planChunks;
+      return this;
+    }
+
     public DeploymentGroupTasks build() {
       return new DeploymentGroupTasks(this);
     }
@@ -57,6 +57,7 @@ import static com.spotify.helios.common.descriptors.Job.EMPTY_TOKEN;
  *     "parallelism": 2,
  *     "timeout": 1000,
  *     "overlap": true,
+ *     "prePull": true,
  *     "token": "insecure-access-token"
  *   }
  * }
@@ -73,17 +74,25 @@ public class RolloutOptions {
   private final boolean migrate;
   private final boolean overlap;
   private final String token;
+  private final boolean prePull;
+
+  public RolloutOptions(final long timeout, final int parallelism, final boolean migrate,
+                        final boolean overlap, @Nullable final String token) {
+    this(timeout, parallelism, migrate, overlap, token, false);
+  }
 
   public RolloutOptions(@JsonProperty("timeout") final long timeout,
                         @JsonProperty("parallelism") final int parallelism,
                         @JsonProperty("migrate") final boolean migrate,
                         @JsonProperty("overlap") boolean overlap,
-                        @JsonProperty("token") @Nullable String token) {
+                        @JsonProperty("token") @Nullable String token,
+                        @JsonProperty("prePull") boolean prePull) {
     this.timeout = timeout;
     this.parallelism = parallelism;
     this.migrate = migrate;
     this.overlap = overlap;
     this.token = Optional.fromNullable(token).or(EMPTY_TOKEN);
+    this.prePull = prePull;
   }
 
   public static Builder newBuilder() {
@@ -95,7 +104,8 @@ public class RolloutOptions {
         .setTimeout(timeout)
         .setParallelism(parallelism)
         .setMigrate(migrate)
-        .setToken(token);
+        .setToken(token)
+        .setPrePull(prePull);
   }
 
   public long getTimeout() {
@@ -118,6 +128,13 @@ public class RolloutOptions {
     return token;
   }
 
+  /**
+   * Whether agents are asked to pull the image of the new job ahead of it being deployed to them.
+   */
+  public boolean getPrePull() {
+    return prePull;
+  }
+
   @Override
   public boolean equals(final Object o) {
     if (this == o) {
@@ -144,6 +161,9 @@ public class RolloutOptions {
     if (token != null ? !token.equals(that.token) : that.token != null) {
       return false;
     }
+    if (prePull != that.prePull) {
+      return false;
+    }
 
     return true;
   }
@@ -155,6 +175,7 @@ public class RolloutOptions {
     result = 31 * result + (migrate ? 1 : 0);
     result = 31 * result + (overlap ? 1 : 0);
     result = 31 * result + (token != null ? token.hashCode() : 0);
+    result = 31 * result + (prePull ? 1 : 0);
     return result;
   }
 
@@ -166,6 +187,7 @@ public class RolloutOptions {
            ", migrate=" + migrate +
            ", overlap=" + overlap +
            ", token=" + token +
+           ", prePull=" + prePull +
            '}';
   }
 
@@ -176,6 +198,7 @@ public class RolloutOptions {
     private boolean migrate;
     private boolean overlap;
     private String token;
+    private boolean prePull;
 
     public Builder() {
       this.timeout = DEFAULT_TIMEOUT;
@@ -183,6 +206,7 @@ public class RolloutOptions {
       this.migrate = false;
       this.overlap = false;
       this.token = EMPTY_TOKEN;
+      this.prePull = false;
     }
 
 
@@ -211,8 +235,13 @@ public class RolloutOptions {
       return this;
     }
 
+    public Builder setPrePull(final boolean prePull) {
+      this.prePull = prePull;
+      return this;
+    }
+
     public RolloutOptions build() {
-      return new RolloutOptions(timeout, parallelism, migrate, overlap, token);
+      return new RolloutOptions(timeout, parallelism, migrate, overlap, token, prePull);
     }
   }
 }
@@ -32,6 +32,7 @@ import static com.google.common.base.Preconditions.checkNotNull;
 public class RolloutTask extends Descriptor {
 
   public enum Action {
+    PRE_PULL_IMAGE,
     UNDEPLOY_OLD_JOBS,
     DEPLOY_NEW_JOB,
     AWAIT_RUNNING,
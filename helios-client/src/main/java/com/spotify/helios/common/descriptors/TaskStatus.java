@@ -89,6 +89,8 @@ public class TaskStatus extends Descriptor {
   private final ThrottleState throttled;
   private final Map<String, PortMapping> ports;
   private final Map<String, String> env;
+  private final Long imagePullWaitMillis;
+  private final Long imagePullMillis;
 
   /**
    * @param job The job the task is running.
@@ -98,6 +100,8 @@ public class TaskStatus extends Descriptor {
    * @param throttled The throttle state of the task.
    * @param ports The ports actually assigned to the task.
    * @param env The environment passed to the container.
+   * @param imagePullWaitMillis Time the last image pull waited for other pulls on the agent.
+   * @param imagePullMillis Time the last image pull took, excluding the wait.
    */
   public TaskStatus(@JsonProperty("job") final Job job,
                     @Nullable @JsonProperty("goal") final Goal goal,
@@ -105,7 +109,9 @@ public class TaskStatus extends Descriptor {
                     @Nullable @JsonProperty("containerId") final String containerId,
                     @JsonProperty("throttled") final ThrottleState throttled,
                     @JsonProperty("ports") final Map<String, PortMapping> ports,
-                    @Nullable @JsonProperty("env") final Map<String, String> env) {
+                    @Nullable @JsonProperty("env") final Map<String, String> env,
+                    @Nullable @JsonProperty("imagePullWaitMillis") final Long imagePullWaitMillis,
+                    @Nullable @JsonProperty("imagePullMillis") final Long imagePullMillis) {
     this.job = checkNotNull(job, "job");
     this.goal = goal; // TODO (dano): add null check when all masters are upgraded
     this.state = checkNotNull(state, "state");
@@ -115,6 +121,8 @@ public class TaskStatus extends Descriptor {
     this.throttled = Optional.fromNullable(throttled).or(ThrottleState.NO);
     this.ports = Optional.fromNullable(ports).or(EMPTY_PORTS);
     this.env = Optional.fromNullable(env).or(Maps.<String, String>newHashMap());
+    this.imagePullWaitMillis = imagePullWaitMillis;
+    this.imagePullMillis = imagePullMillis;
   }
 
   public Builder asBuilder() {
@@ -125,7 +133,9 @@ public class TaskStatus extends Descriptor {
         .setContainerId(containerId)
         .setThrottled(throttled)
         .setPorts(ports)
-        .setEnv(env);
+        .setEnv(env)
+        .setImagePullWaitMillis(imagePullWaitMillis)
+        .setImagePullMillis(imagePullMillis);
   }
 
   private TaskStatus(final Builder builder) {
@@ -138,6 +148,8 @@ public class TaskStatus extends Descriptor {
     this.throttled = Optional.fromNullable(builder.throttled).or(ThrottleState.NO);
     this.ports = Optional.fromNullable(builder.ports).or(EMPTY_PORTS);
     this.env = Optional.fromNullable(builder.env).or(Maps.<String, String>newHashMap());
+    this.imagePullWaitMillis = builder.imagePullWaitMillis;
+    this.imagePullMillis = builder.imagePullMillis;
   }
 
   public ThrottleState getThrottled() {
@@ -169,6 +181,16 @@ public class TaskStatus extends Descriptor {
     return env;
   }
 
+  @Nullable
+  public Long getImagePullWaitMillis() {
+    return imagePullWaitMillis;
+  }
+
+  @Nullable
+  public Long getImagePullMillis() {
+    return imagePullMillis;
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
@@ -179,6 +201,8 @@ public class TaskStatus extends Descriptor {
         .add("throttled", throttled)
         .add("ports", ports)
         .add("env", env)
+        .add("imagePullWaitMillis", imagePullWaitMillis)
+        .add("imagePullMillis", imagePullMillis)
         .toString();
   }
 
@@ -214,6 +238,14 @@ public class TaskStatus extends Descriptor {
     if (throttled != that.throttled) {
       return false;
     }
+    if (imagePullWaitMillis != null ? !imagePullWaitMillis.equals(that.imagePullWaitMillis)
+                                    : that.imagePullWaitMillis != null) {
+      return false;
+    }
+    if (imagePullMillis != null ? !imagePullMillis.equals(that.imagePullMillis)
+                                : that.imagePullMillis != null) {
+      return false;
+    }
 
     return true;
   }
@@ -227,6 +259,8 @@ public class TaskStatus extends Descriptor {
     result = 31 * result + (throttled != null ? throttled.hashCode() : 0);
     result = 31 * result + (ports != null ? ports.hashCode() : 0);
     result = 31 * result + (env != null ? env.hashCode() : 0);
+    result = 31 * result + (imagePullWaitMillis != null ? imagePullWaitMillis.hashCode() : 0);
+    result = 31 * result + (imagePullMillis != null ? imagePullMillis.hashCode() : 0);
     return result;
   }
 
@@ -244,6 +278,8 @@ public class TaskStatus extends Descriptor {
     private Map<String, PortMapping> ports;
     private ThrottleState throttled;
     private Map<String, String> env;
+    private Long imagePullWaitMillis;
+    private Long imagePullMillis;
 
     public Builder setJob(final Job job) {
       this.job = job;
@@ -280,6 +316,16 @@ public class TaskStatus extends Descriptor {
       return this;
     }
 
+    public Builder setImagePullWaitMillis(final Long imagePullWaitMillis) {
+      this.imagePullWaitMillis = imagePullWaitMillis;
+      return this;
+    }
+
+    public Builder setImagePullMillis(final Long imagePullMillis) {
+      this.imagePullMillis = imagePullMillis;
+      return this;
+    }
+
     public TaskStatus build() {
       return new TaskStatus(this);
     }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.common.protocol;
+
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableMap;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.JobId;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * The outcome of undeploying a job from several hosts. The status is {@code OK} if the hosts were
+ * processed, in which case {@link #getHosts()} holds the outcome for each of them. Otherwise the
+ * job could not be undeployed from any host.
+ */
+public class BulkUndeployResponse {
+
+  private final JobUndeployResponse.Status status;
+  private final JobId job;
+  private final Map<String, JobUndeployResponse.Status> hosts;
+
+  public BulkUndeployResponse(@JsonProperty("status") final JobUndeployResponse.Status status,
+                              @JsonProperty("job") final JobId job,
+                              @JsonProperty("hosts")
+                              final Map<String, JobUndeployResponse.Status> hosts) {
+    this.status = status;
+    this.job = job;
+    this.hosts = hosts == null ? Collections.<String, JobUndeployResponse.Status>emptyMap()
+                               : ImmutableMap.copyOf(hosts);
+  }
+
+  public JobUndeployResponse.Status getStatus() {
+    return status;
+  }
+
+  public JobId getJob() {
+    return job;
+  }
+
+  public Map<String, JobUndeployResponse.Status> getHosts() {
+    return hosts;
+  }
+
+  /**
+   * Returns the outcome for one host, in the form of the response to undeploying from just that
+   * host.
+   */
+  public JobUndeployResponse getResponse(final String host) {
+    final JobUndeployResponse.Status hostStatus = hosts.get(host);
+    return new JobUndeployResponse(hostStatus == null ? status : hostStatus, host, job);
+  }
+
+  @Override
+  public String toString() {
+    return Objects.toStringHelper(getClass())
+        .add("status", status)
+        .add("job", job)
+        .add("hosts", hosts)
+        .toString();
+  }
+
+  public String toJsonString() {
+    return Json.asStringUnchecked(this);
+  }
+}
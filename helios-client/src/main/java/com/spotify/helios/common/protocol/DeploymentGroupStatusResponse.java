@@ -28,6 +28,7 @@ import com.spotify.helios.common.Json;
 import com.spotify.helios.common.descriptors.DeploymentGroup;
 import com.spotify.helios.common.descriptors.DeploymentGroupStatus;
 import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.PrePullState;
 import com.spotify.helios.common.descriptors.TaskStatus;
 
 import org.jetbrains.annotations.Nullable;
@@ -48,13 +49,21 @@ public class DeploymentGroupStatusResponse {
     private final String host;
     private final JobId jobId;
     private final TaskStatus.State state;
+    private final PrePullState prePullState;
+
+    public HostStatus(final String host, @Nullable final JobId jobId,
+                      @Nullable final TaskStatus.State state) {
+      this(host, jobId, state, null);
+    }
 
     public HostStatus(@JsonProperty("host") final String host,
                       @JsonProperty("jobId") @Nullable final JobId jobId,
-                      @JsonProperty("state") @Nullable final TaskStatus.State state) {
+                      @JsonProperty("state") @Nullable final TaskStatus.State state,
+                      @JsonProperty("prePullState") @Nullable final PrePullState prePullState) {
       this.host = host;
       this.jobId = jobId;
       this.state = state;
+      this.prePullState = prePullState;
     }
 
     public String getHost() {
@@ -69,6 +78,15 @@ public class DeploymentGroupStatusResponse {
       return state;
     }
 
+    /**
+     * The progress of pulling the image of the job being rolled out, if the host was asked to pull
+     * it ahead of the job being deployed to it.
+     */
+    @Nullable
+    public PrePullState getPrePullState() {
+      return prePullState;
+    }
+
     @Override
     public boolean equals(final Object o) {
       if (this == o) {
@@ -89,6 +107,9 @@ public class DeploymentGroupStatusResponse {
       if (state != that.state) {
         return false;
       }
+      if (prePullState != that.prePullState) {
+        return false;
+      }
 
       return true;
     }
@@ -98,6 +119,7 @@ public class DeploymentGroupStatusResponse {
       int result = host != null ? host.hashCode() : 0;
       result = 31 * result + (jobId != null ? jobId.hashCode() : 0);
       result = 31 * result + (state != null ? state.hashCode() : 0);
+      result = 31 * result + (prePullState != null ? prePullState.hashCode() : 0);
       return result;
     }
   }
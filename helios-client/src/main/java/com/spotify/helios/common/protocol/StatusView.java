@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.common.protocol;
+
+import java.util.Locale;
+
+/**
+ * How much of a host or job status the masters return, selected with the {@code view} query
+ * parameter of the status endpoints.
+ */
+public enum StatusView {
+
+  /**
+   * Everything. This is the default.
+   */
+  FULL,
+
+  /**
+   * No host environment, and task statuses without their container environment whose job only
+   * has its id set. This is enough to count and list tasks and their states.
+   */
+  SUMMARY,
+
+  /**
+   * Only whether a host is up and its labels. Not available for job statuses.
+   */
+  LABELS;
+
+  public static final String PARAM = "view";
+
+  /**
+   * @return The value of the {@code view} query parameter for this view.
+   */
+  public String toParam() {
+    return name().toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @param param The value of a {@code view} query parameter.
+   * @return The view.
+   * @throws IllegalArgumentException If there is no such view.
+   */
+  public static StatusView fromParam(final String param) {
+    return valueOf(param.toUpperCase(Locale.ROOT));
+  }
+}
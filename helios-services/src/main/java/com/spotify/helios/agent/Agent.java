@@ -29,11 +29,12 @@ import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
 
-import com.spotify.helios.common.descriptors.Goal;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.PortMapping;
 import com.spotify.helios.common.descriptors.Task;
 import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.servicescommon.HashTrieMap;
 import com.spotify.helios.servicescommon.PersistentAtomicReference;
 import com.spotify.helios.servicescommon.Reactor;
 import com.spotify.helios.servicescommon.ReactorFactory;
@@ -48,7 +49,6 @@ import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Predicates.in;
-import static com.google.common.base.Predicates.not;
 import static com.spotify.helios.common.descriptors.Goal.START;
 import static com.spotify.helios.common.descriptors.Goal.UNDEPLOY;
 import static com.spotify.helios.servicescommon.Reactor.Callback;
@@ -121,6 +121,7 @@ public class Agent extends AbstractIdleService {
       final Execution execution = entry.getValue();
       final Job job = execution.getJob();
       if (execution.getPorts() != null) {
+        portAllocator.reserve(execution.getPorts().values());
         createSupervisor(job, execution.getPorts());
       }
     }
@@ -212,7 +213,8 @@ public class Agent extends AbstractIdleService {
       log.debug("supervisors: {}", supervisors);
 
       // Create and update executions
-      final Map<JobId, Execution> newExecutions = Maps.newHashMap(executions.get());
+      final HashTrieMap<JobId, Execution> currentExecutions = HashTrieMap.copyOf(executions.get());
+      HashTrieMap<JobId, Execution> newExecutions = currentExecutions;
       for (Entry<JobId, Task> entry : tasks.entrySet()) {
         final JobId jobId = entry.getKey();
         final Task task = entry.getValue();
@@ -220,10 +222,11 @@ public class Agent extends AbstractIdleService {
         if (existing != null) {
           if (existing.getGoal() != task.getGoal()) {
             final Execution execution = existing.withGoal(task.getGoal());
-            newExecutions.put(jobId, execution);
+            newExecutions = newExecutions.plus(jobId, execution);
           }
         } else  {
-          newExecutions.put(jobId, Execution.of(task.getJob()).withGoal(task.getGoal()));
+          newExecutions = newExecutions.plus(jobId,
+                                             Execution.of(task.getJob()).withGoal(task.getGoal()));
         }
       }
 
@@ -232,41 +235,43 @@ public class Agent extends AbstractIdleService {
         final JobId jobId = entry.getKey();
         final Execution execution = entry.getValue();
 
-        if (!tasks.containsKey(jobId)) {
+        if (!tasks.containsKey(jobId) && execution.getGoal() != UNDEPLOY) {
           log.debug("Setting UNDEPLOY goal for removed job: {}", execution.getJob());
-          entry.setValue(execution.withGoal(Goal.UNDEPLOY));
+          newExecutions = newExecutions.plus(jobId, execution.withGoal(UNDEPLOY));
         }
       }
 
       // Allocate ports
       final Map<JobId, Execution> pending = ImmutableMap.copyOf(
           Maps.filterValues(newExecutions, PORT_ALLOCATION_PENDING));
+      final Map<JobId, Map<String, Integer>> allocations;
       if (!pending.isEmpty()) {
-        final ImmutableSet.Builder<Integer> usedPorts = ImmutableSet.builder();
-        final Map<JobId, Execution> allocated = Maps.filterValues(newExecutions, PORTS_ALLOCATED);
-        for (final Entry<JobId, Execution> entry : allocated.entrySet()) {
-          usedPorts.addAll(entry.getValue().getPorts().values());
+        final Map<JobId, Map<String, PortMapping>> requests = Maps.newHashMap();
+        for (final Entry<JobId, Execution> entry : pending.entrySet()) {
+          requests.put(entry.getKey(), entry.getValue().getJob().getPorts());
         }
-
+        allocations = portAllocator.allocate(requests);
         for (final Entry<JobId, Execution> entry : pending.entrySet()) {
           final JobId jobId = entry.getKey();
           final Execution execution = entry.getValue();
-          final Job job = execution.getJob();
-          final Map<String, Integer> ports = portAllocator.allocate(job.getPorts(),
-                                                                    usedPorts.build());
+          final Map<String, Integer> ports = allocations.get(jobId);
           log.debug("Allocated ports for job {}: {}", jobId, ports);
           if (ports != null) {
-            newExecutions.put(jobId, execution.withPorts(ports));
-            usedPorts.addAll(ports.values());
+            newExecutions = newExecutions.plus(jobId, execution.withPorts(ports));
           } else {
-            log.warn("Unable to allocate ports for job: {}", job);
+            log.warn("Unable to allocate ports for job: {}", execution.getJob());
           }
         }
+      } else {
+        allocations = Collections.emptyMap();
       }
 
       // Persist executions
-      if (!newExecutions.equals(executions.get())) {
-        executions.setUnchecked(ImmutableMap.copyOf(newExecutions));
+      if (!newExecutions.equals(currentExecutions)) {
+        executions.setUnchecked(newExecutions);
+      }
+      for (final Map<String, Integer> ports : allocations.values()) {
+        portAllocator.reserve(ports.values());
       }
 
       // Remove stopped supervisors.
@@ -318,9 +323,12 @@ public class Agent extends AbstractIdleService {
 
       // Persist executions
       if (!reapedTasks.isEmpty()) {
-        final Map<JobId, Execution> survivors = Maps.filterKeys(executions.get(),
-                                                                not(in(reapedTasks)));
-        executions.setUnchecked(ImmutableMap.copyOf(survivors));
+        final Map<JobId, Execution> reaped = ImmutableMap.copyOf(
+            Maps.filterKeys(executions.get(), in(reapedTasks)));
+        executions.setUnchecked(HashTrieMap.copyOf(executions.get()).minusAll(reapedTasks));
+        for (final Execution execution : Maps.filterValues(reaped, PORTS_ALLOCATED).values()) {
+          portAllocator.release(execution.getPorts().values());
+        }
       }
     }
   }
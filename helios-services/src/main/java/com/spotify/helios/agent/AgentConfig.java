@@ -22,6 +22,7 @@
 package com.spotify.helios.agent;
 
 import com.spotify.helios.servicescommon.DockerHost;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
 
 import io.dropwizard.Configuration;
 
@@ -62,6 +63,12 @@ public class AgentConfig extends Configuration {
   private List<String> binds;
   private List<String> kafkaBrokers;
   private Map<String, String> labels;
+  private boolean sharedSupervisorThreads;
+  private ImagePullPolicy imagePullPolicy = ImagePullPolicy.IF_NEEDED;
+  private int maxConcurrentPulls = 2;
+  private long zooKeeperResyncMaxDelayMillis = ResyncThrottle.DEFAULT_MAX_DELAY_MILLIS;
+  private double zooKeeperResyncOperationsPerSecond = ResyncThrottle.DEFAULT_OPERATIONS_PER_SECOND;
+  private boolean normalizeTaskNodes;
 
   public boolean isInhibitMetrics() {
     return inhibitMetrics;
@@ -300,4 +307,59 @@ public class AgentConfig extends Configuration {
     this.labels = labels;
     return this;
   }
+
+  public boolean isSharedSupervisorThreads() {
+    return sharedSupervisorThreads;
+  }
+
+  public AgentConfig setSharedSupervisorThreads(boolean sharedSupervisorThreads) {
+    this.sharedSupervisorThreads = sharedSupervisorThreads;
+    return this;
+  }
+
+  public ImagePullPolicy getImagePullPolicy() {
+    return imagePullPolicy;
+  }
+
+  public AgentConfig setImagePullPolicy(ImagePullPolicy imagePullPolicy) {
+    this.imagePullPolicy = imagePullPolicy;
+    return this;
+  }
+
+  public int getMaxConcurrentPulls() {
+    return maxConcurrentPulls;
+  }
+
+  public AgentConfig setMaxConcurrentPulls(int maxConcurrentPulls) {
+    this.maxConcurrentPulls = maxConcurrentPulls;
+    return this;
+  }
+
+  public long getZooKeeperResyncMaxDelayMillis() {
+    return zooKeeperResyncMaxDelayMillis;
+  }
+
+  public AgentConfig setZooKeeperResyncMaxDelayMillis(long zooKeeperResyncMaxDelayMillis) {
+    this.zooKeeperResyncMaxDelayMillis = zooKeeperResyncMaxDelayMillis;
+    return this;
+  }
+
+  public double getZooKeeperResyncOperationsPerSecond() {
+    return zooKeeperResyncOperationsPerSecond;
+  }
+
+  public AgentConfig setZooKeeperResyncOperationsPerSecond(
+      double zooKeeperResyncOperationsPerSecond) {
+    this.zooKeeperResyncOperationsPerSecond = zooKeeperResyncOperationsPerSecond;
+    return this;
+  }
+
+  public boolean isNormalizeTaskNodes() {
+    return normalizeTaskNodes;
+  }
+
+  public AgentConfig setNormalizeTaskNodes(boolean normalizeTaskNodes) {
+    this.normalizeTaskNodes = normalizeTaskNodes;
+    return this;
+  }
 }
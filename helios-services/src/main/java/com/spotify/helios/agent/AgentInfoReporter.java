@@ -28,8 +28,6 @@ import com.spotify.helios.servicescommon.coordination.Paths;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperNodeUpdater;
 
 import java.lang.management.RuntimeMXBean;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
@@ -37,8 +35,12 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 /**
  * Report various Agent runtime information via ZK so it can be visible to clients of Helios.
+ *
+ * Only the uptime changes while the agent runs, and it follows from the start time, so it does not
+ * cause a write of its own. The reported uptime is refreshed on the node updater's keep-alive and
+ * can be up to {@link ZooKeeperNodeUpdater#DEFAULT_KEEP_ALIVE_MILLIS} behind.
  */
-public class AgentInfoReporter extends InterruptingScheduledService {
+public class AgentInfoReporter implements StatusReporter {
 
   public static final int DEFAULT_INTERVAL = 1;
   public static final TimeUnit DEFAUL_TIMEUNIT = MINUTES;
@@ -56,8 +58,8 @@ public class AgentInfoReporter extends InterruptingScheduledService {
   }
 
   @Override
-  protected void runOneIteration() {
-    final AgentInfo agentInfo = AgentInfo.newBuilder()
+  public void report() {
+    final AgentInfo.Builder agentInfo = AgentInfo.newBuilder()
         .setName(runtimeMXBean.getName())
         .setVmName(runtimeMXBean.getVmName())
         .setVmVendor(runtimeMXBean.getVmVendor())
@@ -66,18 +68,19 @@ public class AgentInfoReporter extends InterruptingScheduledService {
         .setSpecVendor(runtimeMXBean.getSpecVendor())
         .setSpecVersion(runtimeMXBean.getSpecVersion())
         .setInputArguments(runtimeMXBean.getInputArguments())
-        .setUptime(runtimeMXBean.getUptime())
         .setStartTime(runtimeMXBean.getStartTime())
-        .setVersion(Version.POM_VERSION)
-        .build();
+        .setVersion(Version.POM_VERSION);
+
+    // Leave the uptime out of the change detection
+    final byte[] key = agentInfo.build().toJsonBytes();
+    agentInfo.setUptime(runtimeMXBean.getUptime());
 
-    nodeUpdater.update(agentInfo.toJsonBytes());
+    nodeUpdater.update(agentInfo.build().toJsonBytes(), key);
   }
 
   @Override
-  protected ScheduledFuture<?> schedule(final Runnable runnable,
-                                        final ScheduledExecutorService executorService) {
-    return executorService.scheduleWithFixedDelay(runnable, 0, interval, timeUnit);
+  public long intervalMillis() {
+    return timeUnit.toMillis(interval);
   }
 
   public static Builder newBuilder() {
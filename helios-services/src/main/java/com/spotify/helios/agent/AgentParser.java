@@ -25,6 +25,7 @@ import com.google.common.base.Splitter;
 
 import com.spotify.helios.servicescommon.DockerHost;
 import com.spotify.helios.servicescommon.ServiceParser;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
 
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
@@ -41,6 +42,8 @@ import static com.google.common.io.BaseEncoding.base16;
 import static com.google.common.net.InetAddresses.isInetAddress;
 import static com.spotify.helios.agent.BindVolumeContainerDecorator.isValidBind;
 import static com.spotify.helios.cli.Utils.argToStringMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static net.sourceforge.argparse4j.impl.Arguments.append;
 import static net.sourceforge.argparse4j.impl.Arguments.storeTrue;
 
@@ -63,6 +66,11 @@ public class AgentParser extends ServiceParser {
   private Argument dnsArg;
   private Argument bindArg;
   private Argument labelsArg;
+  private Argument sharedSupervisorThreadsArg;
+  private Argument imagePullPolicyArg;
+  private Argument maxConcurrentPullsArg;
+  private Argument zkResyncMaxDelayArg;
+  private Argument zkResyncRateArg;
 
   public AgentParser(final String... args) throws ArgumentParserException {
     super("helios-agent", "Spotify Helios Agent", args);
@@ -123,7 +131,16 @@ public class AgentParser extends ServiceParser {
         .setHttpEndpoint(httpAddress)
         .setNoHttp(options.getBoolean(noHttpArg.getDest()))
         .setKafkaBrokers(getKafkaBrokers())
-        .setLabels(labels);
+        .setLabels(labels)
+        .setSharedSupervisorThreads(options.getBoolean(sharedSupervisorThreadsArg.getDest()))
+        .setImagePullPolicy(
+            ImagePullPolicy.parse(options.getString(imagePullPolicyArg.getDest())))
+        .setMaxConcurrentPulls(options.getInt(maxConcurrentPullsArg.getDest()))
+        .setZooKeeperResyncMaxDelayMillis(
+            SECONDS.toMillis(options.getLong(zkResyncMaxDelayArg.getDest())))
+        .setZooKeeperResyncOperationsPerSecond(
+            options.getDouble(zkResyncRateArg.getDest()))
+        .setNormalizeTaskNodes(getNormalizeTaskNodes());
 
     final String explicitId = options.getString(agentIdArg.getDest());
     if (explicitId != null) {
@@ -210,6 +227,35 @@ public class AgentParser extends ServiceParser {
         .setDefault(new ArrayList<String>())
         .nargs("+")
         .help("labels to apply to this agent. Labels need to be in the format key=value.");
+
+    sharedSupervisorThreadsArg = parser.addArgument("--shared-supervisor-threads")
+        .action(storeTrue())
+        .setDefault(false)
+        .help("Run job supervisors on a shared thread pool instead of a thread per job.");
+
+    imagePullPolicyArg = parser.addArgument("--image-pull-policy")
+        .choices("always", "never", "if-needed")
+        .setDefault("if-needed")
+        .help("When to pull job images before starting containers. if-needed pulls images that " +
+              "are missing, and images with mutable tags when a job is started but not when " +
+              "its container is restarted.");
+
+    maxConcurrentPullsArg = parser.addArgument("--max-concurrent-pulls")
+        .type(Integer.class)
+        .setDefault(2)
+        .help("Maximum number of images pulled at the same time. Jobs using an image that is " +
+              "already being pulled wait for that pull instead of starting another one.");
+
+    zkResyncMaxDelayArg = parser.addArgument("--zk-resync-max-delay")
+        .type(Long.class)
+        .setDefault(MILLISECONDS.toSeconds(ResyncThrottle.DEFAULT_MAX_DELAY_MILLIS))
+        .help("Maximum random delay in seconds before resyncing state with zookeeper after " +
+              "reconnecting.");
+
+    zkResyncRateArg = parser.addArgument("--zk-resync-rate")
+        .type(Double.class)
+        .setDefault(ResyncThrottle.DEFAULT_OPERATIONS_PER_SECOND)
+        .help("Maximum number of zookeeper reads and writes per second done to resync state.");
   }
 
   public AgentConfig getAgentConfig() {
@@ -23,6 +23,7 @@ package com.spotify.helios.agent;
 
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import com.google.common.io.Resources;
 import com.google.common.util.concurrent.AbstractIdleService;
@@ -34,6 +35,7 @@ import com.spotify.docker.client.DockerCertificates;
 import com.spotify.docker.client.DockerClient;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.serviceregistration.ServiceRegistrar;
+import com.spotify.helios.servicescommon.KafkaSender;
 import com.spotify.helios.servicescommon.ManagedStatsdReporter;
 import com.spotify.helios.servicescommon.PersistentAtomicReference;
 import com.spotify.helios.servicescommon.ReactorFactory;
@@ -41,10 +43,12 @@ import com.spotify.helios.servicescommon.RiemannFacade;
 import com.spotify.helios.servicescommon.RiemannHeartBeat;
 import com.spotify.helios.servicescommon.RiemannSupport;
 import com.spotify.helios.servicescommon.ServiceUtil;
+import com.spotify.helios.servicescommon.SharedReactorFactory;
 import com.spotify.helios.servicescommon.ZooKeeperRegistrar;
 import com.spotify.helios.servicescommon.coordination.CuratorClientFactoryImpl;
 import com.spotify.helios.servicescommon.coordination.DefaultZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperHealthChecker;
@@ -53,11 +57,14 @@ import com.spotify.helios.servicescommon.coordination.ZooKeeperNodeUpdaterFactor
 import com.spotify.helios.servicescommon.statistics.Metrics;
 import com.spotify.helios.servicescommon.statistics.MetricsImpl;
 import com.spotify.helios.servicescommon.statistics.NoopMetrics;
+import com.spotify.helios.servicescommon.statistics.ZooKeeperMetrics;
 import com.sun.management.OperatingSystemMXBean;
 
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
 import org.apache.curator.retry.ExponentialBackoffRetry;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
 import org.eclipse.jetty.server.Server;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -100,15 +107,14 @@ public class AgentService extends AbstractIdleService implements Managed {
 
   private final Server server;
   private final ZooKeeperClient zooKeeperClient;
-  private final HostInfoReporter hostInfoReporter;
-  private final AgentInfoReporter agentInfoReporter;
-  private final EnvironmentVariableReporter environmentVariableReporter;
-  private final LabelReporter labelReporter;
+  private final StatusReporterService statusReporterService;
   private final FileChannel stateLockFile;
   private final FileLock stateLock;
   private final ZooKeeperAgentModel model;
+  private final ImagePrePuller prePuller;
   private final Metrics metrics;
   private final ServiceRegistrar serviceRegistrar;
+  private final SharedReactorFactory sharedReactorFactory;
 
   private ZooKeeperRegistrar zkRegistrar;
 
@@ -178,7 +184,12 @@ public class AgentService extends AbstractIdleService implements Managed {
       environment.lifecycle().manage(riemannSupport);
     }
 
-    this.zooKeeperClient = setupZookeeperClient(config, id);
+    // Spread out resyncs of all agents after a zookeeper leader election
+    final ResyncThrottle resyncThrottle = new ResyncThrottle(
+        config.getZooKeeperResyncMaxDelayMillis(), config.getZooKeeperResyncOperationsPerSecond());
+
+    this.zooKeeperClient = setupZookeeperClient(config, id, metrics.getZooKeeperMetrics(),
+                                                resyncThrottle);
     final DockerHealthChecker dockerHealthChecker = new DockerHealthChecker(
         metrics.getSupervisorMetrics(), TimeUnit.SECONDS, 30, riemannFacade);
     environment.lifecycle().manage(dockerHealthChecker);
@@ -191,9 +202,12 @@ public class AgentService extends AbstractIdleService implements Managed {
         zooKeeperClient, modelReporter);
     final KafkaClientProvider kafkaClientProvider = new KafkaClientProvider(
         config.getKafkaBrokers());
+    final KafkaSender kafkaSender = new KafkaSender(
+        kafkaClientProvider.getProducer(new StringSerializer(), new ByteArraySerializer()),
+        metrics.getKafkaMetrics());
     try {
-      this.model = new ZooKeeperAgentModel(zkClientProvider, kafkaClientProvider,
-        config.getName(), stateDirectory);
+      this.model = new ZooKeeperAgentModel(zkClientProvider, kafkaSender,
+        config.getName(), stateDirectory, config.isNormalizeTaskNodes(), resyncThrottle);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -224,7 +238,7 @@ public class AgentService extends AbstractIdleService implements Managed {
     final DockerClient monitoredDockerClient = MonitoredDockerClient.wrap(riemannFacade,
                                                                           dockerClient);
 
-    this.hostInfoReporter = HostInfoReporter.newBuilder()
+    final HostInfoReporter hostInfoReporter = HostInfoReporter.newBuilder()
         .setNodeUpdaterFactory(nodeUpdaterFactory)
         .setOperatingSystemMXBean((OperatingSystemMXBean) getOperatingSystemMXBean())
         .setHost(config.getName())
@@ -232,19 +246,21 @@ public class AgentService extends AbstractIdleService implements Managed {
         .setDockerHost(config.getDockerHost())
         .build();
 
-    this.agentInfoReporter = AgentInfoReporter.newBuilder()
+    final AgentInfoReporter agentInfoReporter = AgentInfoReporter.newBuilder()
         .setNodeUpdaterFactory(nodeUpdaterFactory)
         .setRuntimeMXBean(getRuntimeMXBean())
         .setHost(config.getName())
         .build();
 
-    this.environmentVariableReporter = new EnvironmentVariableReporter(config.getName(),
-                                                                       config.getEnvVars(),
-                                                                       nodeUpdaterFactory);
+    final EnvironmentVariableReporter environmentVariableReporter =
+        new EnvironmentVariableReporter(config.getName(), config.getEnvVars(), nodeUpdaterFactory);
 
-    this.labelReporter = new LabelReporter(config.getName(), config.getLabels(),
+    final LabelReporter labelReporter = new LabelReporter(config.getName(), config.getLabels(),
         nodeUpdaterFactory);
 
+    this.statusReporterService = new StatusReporterService(ImmutableList.of(
+        hostInfoReporter, agentInfoReporter, environmentVariableReporter, labelReporter));
+
     final String namespace = "helios-" + id;
 
     final List<ContainerDecorator> decorators = Lists.newArrayList();
@@ -257,6 +273,20 @@ public class AgentService extends AbstractIdleService implements Managed {
       decorators.add(new BindVolumeContainerDecorator(config.getBinds()));
     }
 
+    this.sharedReactorFactory = config.isSharedSupervisorThreads()
+                                ? new SharedReactorFactory("supervisor")
+                                : null;
+
+    final LocalImageIndex imageIndex = new LocalImageIndex(monitoredDockerClient);
+    final ImagePullCoordinator imagePuller = new ImagePullCoordinator(
+        monitoredDockerClient, config.getMaxConcurrentPulls());
+    try {
+      this.prePuller = new ImagePrePuller(zkClientProvider, config.getName(), stateDirectory,
+                                          imagePuller, imageIndex, resyncThrottle);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+
     final SupervisorFactory supervisorFactory = new SupervisorFactory(
         model, monitoredDockerClient,
         config.getEnvVars(), serviceRegistrar,
@@ -266,7 +296,12 @@ public class AgentService extends AbstractIdleService implements Managed {
         metrics.getSupervisorMetrics(),
         namespace,
         config.getDomain(),
-        config.getDns());
+        config.getDns(),
+        sharedReactorFactory,
+        config.getImagePullPolicy(),
+        imageIndex,
+        imagePuller,
+        prePuller);
 
     final ReactorFactory reactorFactory = new ReactorFactory();
 
@@ -277,7 +312,8 @@ public class AgentService extends AbstractIdleService implements Managed {
     try {
       executions = PersistentAtomicReference.create(stateDirectory.resolve("executions.json"),
                                                     JOBID_EXECUTIONS_MAP,
-                                                    Suppliers.ofInstance(EMPTY_EXECUTIONS));
+                                                    Suppliers.ofInstance(EMPTY_EXECUTIONS),
+                                                    0, true);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -313,9 +349,14 @@ public class AgentService extends AbstractIdleService implements Managed {
    * Create a Zookeeper client and create the control and state nodes if needed.
    *
    * @param config The service configuration.
+   * @param id The agent id.
+   * @param zooKeeperMetrics Metrics for the zookeeper client.
+   * @param resyncThrottle Throttles resyncs after reconnecting.
    * @return A zookeeper client.
    */
-  private ZooKeeperClient setupZookeeperClient(final AgentConfig config, final String id) {
+  private ZooKeeperClient setupZookeeperClient(final AgentConfig config, final String id,
+                                               final ZooKeeperMetrics zooKeeperMetrics,
+                                               final ResyncThrottle resyncThrottle) {
     final RetryPolicy zooKeeperRetryPolicy = new ExponentialBackoffRetry(1000, 3);
     final CuratorFramework curator = new CuratorClientFactoryImpl().newClient(
         config.getZooKeeperConnectionString(),
@@ -325,7 +366,9 @@ public class AgentService extends AbstractIdleService implements Managed {
         config.getZooKeeperNamespace());
 
     final ZooKeeperClient client = new DefaultZooKeeperClient(curator,
-                                                              config.getZooKeeperClusterId());
+                                                              config.getZooKeeperClusterId(),
+                                                              zooKeeperMetrics,
+                                                              resyncThrottle);
     client.start();
 
     // Register the agent
@@ -340,11 +383,9 @@ public class AgentService extends AbstractIdleService implements Managed {
     logBanner();
     zkRegistrar.startAsync().awaitRunning();
     model.startAsync().awaitRunning();
+    prePuller.startAsync().awaitRunning();
     agent.startAsync().awaitRunning();
-    hostInfoReporter.startAsync();
-    agentInfoReporter.startAsync();
-    environmentVariableReporter.startAsync();
-    labelReporter.startAsync();
+    statusReporterService.startAsync();
     metrics.start();
     if (server != null) {
       try {
@@ -369,11 +410,12 @@ public class AgentService extends AbstractIdleService implements Managed {
     if (server != null) {
       server.stop();
     }
-    hostInfoReporter.stopAsync().awaitTerminated();
-    agentInfoReporter.stopAsync().awaitTerminated();
-    environmentVariableReporter.stopAsync().awaitTerminated();
-    labelReporter.stopAsync().awaitTerminated();
+    statusReporterService.stopAsync().awaitTerminated();
     agent.stopAsync().awaitTerminated();
+    prePuller.stopAsync().awaitTerminated();
+    if (sharedReactorFactory != null) {
+      sharedReactorFactory.close();
+    }
 
     if (serviceRegistrar != null) {
       serviceRegistrar.close();
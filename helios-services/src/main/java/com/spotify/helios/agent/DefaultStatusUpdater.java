@@ -37,6 +37,8 @@ public class DefaultStatusUpdater implements StatusUpdater {
   private ThrottleState throttleState = ThrottleState.NO;
   private AgentModel model;
   private TaskStatus.State state;
+  private Long imagePullWaitMillis;
+  private Long imagePullMillis;
 
   public DefaultStatusUpdater(final AgentModel model,
                               final TaskStatus.Builder builder) {
@@ -59,6 +61,12 @@ public class DefaultStatusUpdater implements StatusUpdater {
     this.goal = goal;
   }
 
+  @Override
+  public void setImagePullTimes(final long queueWaitMillis, final long pullMillis) {
+    this.imagePullWaitMillis = queueWaitMillis;
+    this.imagePullMillis = pullMillis;
+  }
+
   @Override
   public void update() throws InterruptedException {
     final TaskStatus status = builder
@@ -66,6 +74,8 @@ public class DefaultStatusUpdater implements StatusUpdater {
         .setState(state)
         .setContainerId(containerId)
         .setThrottled(throttleState)
+        .setImagePullWaitMillis(imagePullWaitMillis)
+        .setImagePullMillis(imagePullMillis)
         .build();
     model.setTaskStatus(status.getJob().getId(), status);
   }
@@ -27,40 +27,36 @@ import com.spotify.helios.servicescommon.coordination.Paths;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperNodeUpdater;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Puts the environment variables the Agent has been configured to set in all child containers
  * into ZK so they can be visible to the master and via the API.
  */
-public class EnvironmentVariableReporter extends InterruptingScheduledService {
+public class EnvironmentVariableReporter implements StatusReporter {
 
   private static final int RETRY_INTERVAL_MILLIS = 1000;
 
   private final Map<String, String> envVars;
   private final ZooKeeperNodeUpdater nodeUpdater;
 
+  private boolean reported;
+
   public EnvironmentVariableReporter(final String host, final Map<String, String> envVars,
                                      final NodeUpdaterFactory nodeUpdaterFactory) {
     this.envVars = envVars;
     this.nodeUpdater = nodeUpdaterFactory.create(Paths.statusHostEnvVars(host));
   }
 
-
   @Override
-  protected void runOneIteration() {
-    final boolean succesful = nodeUpdater.update(Json.asBytesUnchecked(envVars));
-    if (succesful) {
-      stopAsync();
+  public void report() {
+    // The environment variables are fixed for the lifetime of the agent, so write them only once
+    if (!reported) {
+      reported = nodeUpdater.update(Json.asBytesUnchecked(envVars));
     }
   }
 
   @Override
-  protected ScheduledFuture<?> schedule(final Runnable runnable,
-                                        final ScheduledExecutorService executorService) {
-    return executorService.scheduleWithFixedDelay(runnable, 0, RETRY_INTERVAL_MILLIS, MILLISECONDS);
+  public long intervalMillis() {
+    return RETRY_INTERVAL_MILLIS;
   }
 }
@@ -35,8 +35,8 @@ import com.sun.management.OperatingSystemMXBean;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Charsets.UTF_8;
@@ -46,12 +46,33 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 
 /**
  * Reports various bits of system information to ZK so it can be viewed via the the API.
+ *
+ * The load average and free memory change all the time, so they only cause a write when they
+ * moved by more than a threshold since they were last reported. They are refreshed regardless
+ * along with other changes and on the node updater's keep-alive, so the reported values can be up
+ * to {@link ZooKeeperNodeUpdater#DEFAULT_KEEP_ALIVE_MILLIS} old, though never off by more than the
+ * thresholds for longer than the report interval.
+ *
+ * System information is read through the {@link OperatingSystemMXBean}, which reads procfs on
+ * Linux, except for the hostname, which is read from procfs directly.
  */
-public class HostInfoReporter extends InterruptingScheduledService {
+public class HostInfoReporter implements StatusReporter {
 
   public static final int DEFAULT_INTERVAL = 1;
   public static final TimeUnit DEFAUL_TIMEUNIT = MINUTES;
 
+  private static final Path HOSTNAME_PATH = java.nio.file.Paths.get("/proc/sys/kernel/hostname");
+
+  /**
+   * How much the load average has to move to be reported.
+   */
+  private static final double LOAD_AVG_THRESHOLD = 0.5;
+
+  /**
+   * How much free memory and swap have to move to be reported, as a fraction of their total.
+   */
+  private static final double MEMORY_THRESHOLD = 0.05;
+
   private final OperatingSystemMXBean operatingSystemMXBean;
   private final ZooKeeperNodeUpdater nodeUpdater;
   private final int interval;
@@ -59,6 +80,14 @@ public class HostInfoReporter extends InterruptingScheduledService {
   private final DockerClient dockerClient;
   private final DockerHost dockerHost;
 
+  private String uname;
+  private String unameHostname;
+
+  // The load and free memory as last passed on to the node updater
+  private double reportedLoadAvg;
+  private long reportedMemoryFreeBytes;
+  private long reportedSwapFreeBytes;
+
   HostInfoReporter(final Builder builder) {
     this.operatingSystemMXBean = checkNotNull(builder.operatingSystemMXBean,
                                               "operatingSystemMXBean");
@@ -71,28 +100,53 @@ public class HostInfoReporter extends InterruptingScheduledService {
   }
 
   @Override
-  protected void runOneIteration() throws InterruptedException {
-    final String hostname = exec("uname -n").trim();
-    final String uname = exec("uname -a").trim();
+  public void report() throws InterruptedException {
+    final String hostname = hostname();
+    final String uname = uname(hostname);
 
-    final HostInfo hostInfo = HostInfo.newBuilder()
+    final HostInfo.Builder hostInfo = HostInfo.newBuilder()
         .setArchitecture(operatingSystemMXBean.getArch())
         .setCpus(Runtime.getRuntime().availableProcessors())
         .setHostname(hostname)
-        .setLoadAvg(operatingSystemMXBean.getSystemLoadAverage())
         .setOsName(operatingSystemMXBean.getName())
         .setOsVersion(operatingSystemMXBean.getVersion())
-        .setMemoryFreeBytes(operatingSystemMXBean.getFreePhysicalMemorySize())
         .setMemoryTotalBytes(operatingSystemMXBean.getTotalPhysicalMemorySize())
-        .setSwapFreeBytes(operatingSystemMXBean.getFreeSwapSpaceSize())
         .setSwapTotalBytes(operatingSystemMXBean.getTotalSwapSpaceSize())
         .setUname(uname)
         .setDockerVersion(dockerVersion())
         .setDockerHost(dockerHost())
-        .setDockerCertPath(dockerHost.dockerCertPath())
-        .build();
+        .setDockerCertPath(dockerHost.dockerCertPath());
+
+    // Load and free memory differ on every report, so the change detection only sees them once
+    // they moved by more than a threshold
+    final double loadAvg = operatingSystemMXBean.getSystemLoadAverage();
+    final long memoryFreeBytes = operatingSystemMXBean.getFreePhysicalMemorySize();
+    final long swapFreeBytes = operatingSystemMXBean.getFreeSwapSpaceSize();
+    if (Math.abs(loadAvg - reportedLoadAvg) > LOAD_AVG_THRESHOLD) {
+      reportedLoadAvg = loadAvg;
+    }
+    if (moved(memoryFreeBytes, reportedMemoryFreeBytes,
+              operatingSystemMXBean.getTotalPhysicalMemorySize())) {
+      reportedMemoryFreeBytes = memoryFreeBytes;
+    }
+    if (moved(swapFreeBytes, reportedSwapFreeBytes,
+              operatingSystemMXBean.getTotalSwapSpaceSize())) {
+      reportedSwapFreeBytes = swapFreeBytes;
+    }
+    final byte[] key = hostInfo.setLoadAvg(reportedLoadAvg)
+        .setMemoryFreeBytes(reportedMemoryFreeBytes)
+        .setSwapFreeBytes(reportedSwapFreeBytes)
+        .build().toJsonBytes();
 
-    nodeUpdater.update(hostInfo.toJsonBytes());
+    hostInfo.setLoadAvg(loadAvg)
+        .setMemoryFreeBytes(memoryFreeBytes)
+        .setSwapFreeBytes(swapFreeBytes);
+
+    nodeUpdater.update(hostInfo.build().toJsonBytes(), key);
+  }
+
+  private static boolean moved(final long bytes, final long reportedBytes, final long totalBytes) {
+    return Math.abs(bytes - reportedBytes) > totalBytes * MEMORY_THRESHOLD;
   }
 
   private DockerVersion dockerVersion() throws InterruptedException {
@@ -126,9 +180,31 @@ public class HostInfoReporter extends InterruptingScheduledService {
   }
 
   @Override
-  protected ScheduledFuture<?> schedule(final Runnable runnable,
-                                        final ScheduledExecutorService executorService) {
-    return executorService.scheduleWithFixedDelay(runnable, 0, interval, timeUnit);
+  public long intervalMillis() {
+    return timeUnit.toMillis(interval);
+  }
+
+  /**
+   * Read the hostname from procfs, avoiding forking a process on every report.
+   */
+  private String hostname() {
+    try {
+      return new String(Files.readAllBytes(HOSTNAME_PATH), UTF_8).trim();
+    } catch (IOException e) {
+      return exec("uname -n").trim();
+    }
+  }
+
+  /**
+   * The uname only changes with the hostname short of a reboot, so it is only recomputed when the
+   * hostname changes.
+   */
+  private String uname(final String hostname) {
+    if (uname == null || !hostname.equals(unameHostname)) {
+      uname = exec("uname -a").trim();
+      unameHostname = hostname;
+    }
+    return uname;
   }
 
   private String exec(final String command) {
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.BitSet;
+import java.util.List;
+
+import static com.google.common.base.Charsets.UTF_8;
+
+/**
+ * Reads the TCP ports in use on the host from the kernel socket tables in /proc/net/tcp and
+ * /proc/net/tcp6. A single read of the tables replaces binding a probe socket for every candidate
+ * port.
+ */
+public class HostPortUsage {
+
+  private static final Logger log = LoggerFactory.getLogger(HostPortUsage.class);
+
+  private static final List<Path> DEFAULT_TABLES = ImmutableList.of(
+      Paths.get("/proc/net/tcp"), Paths.get("/proc/net/tcp6"));
+
+  private static final Splitter FIELD_SPLITTER = Splitter.on(' ').omitEmptyStrings().trimResults();
+
+  /**
+   * Sockets in TIME_WAIT do not prevent a listening socket from binding to their port.
+   */
+  private static final String TIME_WAIT = "06";
+
+  private final List<Path> tables;
+
+  public HostPortUsage() {
+    this(DEFAULT_TABLES);
+  }
+
+  public HostPortUsage(final List<Path> tables) {
+    this.tables = ImmutableList.copyOf(tables);
+  }
+
+  /**
+   * Take a snapshot of the local TCP ports in use on the host.
+   *
+   * @return A bitmap of used ports, or null if none of the socket tables could be read, e.g. when
+   *         not running on Linux.
+   */
+  public BitSet snapshot() {
+    BitSet ports = null;
+    for (final Path table : tables) {
+      final List<String> lines;
+      try {
+        lines = Files.readAllLines(table, UTF_8);
+      } catch (IOException e) {
+        log.debug("Couldn't read socket table {}: {}", table, e.toString());
+        continue;
+      }
+      if (ports == null) {
+        ports = new BitSet(PortAllocator.MAX_PORT + 1);
+      }
+      parse(lines, ports);
+    }
+    return ports;
+  }
+
+  /**
+   * Parse the lines of a /proc/net/tcp style socket table, marking the local port of each socket
+   * as used.
+   */
+  static void parse(final List<String> lines, final BitSet ports) {
+    // The first line is a header
+    for (int i = 1; i < lines.size(); i++) {
+      final List<String> fields = FIELD_SPLITTER.splitToList(lines.get(i));
+      if (fields.size() < 4 || TIME_WAIT.equals(fields.get(3))) {
+        continue;
+      }
+      // Local address is formatted as <hex address>:<hex port>
+      final String localAddress = fields.get(1);
+      final int colon = localAddress.lastIndexOf(':');
+      if (colon < 0) {
+        continue;
+      }
+      try {
+        ports.set(Integer.parseInt(localAddress.substring(colon + 1), 16));
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+        log.debug("Ignoring malformed socket table line: {}", lines.get(i));
+      }
+    }
+  }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.spotify.docker.client.DockerException;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.PrePullState;
+import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.PersistentPathChildrenCache;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperUpdatingPersistentDirectory;
+
+import org.apache.curator.framework.state.ConnectionState;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.HOURS;
+
+/**
+ * Pulls the images of jobs ahead of rolling updates deploying them to this agent, so that
+ * starting the job later on does not have to wait for the pull. The master asks for a pull by
+ * creating a node holding the image under {@link Paths#configHostPrePulls(String)}, and the
+ * progress of each pull is reported under {@link Paths#statusHostPrePulls(String)} until the
+ * request is removed.
+ */
+public class ImagePrePuller extends AbstractIdleService {
+
+  private static final Logger log = LoggerFactory.getLogger(ImagePrePuller.class);
+
+  private static final String PREPULL_CONFIG_FILENAME = "prepull-config.json";
+  private static final String PREPULL_STATUS_FILENAME = "prepull-status.json";
+
+  private final ZooKeeperClientProvider provider;
+  private final String host;
+  private final PersistentPathChildrenCache<String> requests;
+  private final ZooKeeperUpdatingPersistentDirectory statuses;
+  private final ImagePullCoordinator puller;
+  private final LocalImageIndex imageIndex;
+  private final ExecutorService executor = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setNameFormat("image-pre-puller-%d").setDaemon(true).build());
+
+  private final Set<JobId> pulls = Sets.newConcurrentHashSet();
+  private final Cache<String, Boolean> pulled = CacheBuilder.newBuilder()
+      .expireAfterWrite(1, HOURS)
+      .build();
+
+  private volatile boolean statusPathEnsured;
+
+  public ImagePrePuller(final ZooKeeperClientProvider provider, final String host,
+                        final Path stateDirectory, final ImagePullCoordinator puller,
+                        @Nullable final LocalImageIndex imageIndex,
+                        final ResyncThrottle resyncThrottle)
+      throws IOException, InterruptedException {
+    this.provider = checkNotNull(provider, "provider");
+    this.host = checkNotNull(host, "host");
+    this.puller = checkNotNull(puller, "puller");
+    this.imageIndex = imageIndex;
+
+    final ZooKeeperClient client = provider.get("ImagePrePuller_ctor");
+    this.requests = client.pathChildrenCache(Paths.configHostPrePulls(host),
+                                             stateDirectory.resolve(PREPULL_CONFIG_FILENAME),
+                                             Json.type(String.class));
+    requests.addListener(new RequestsListener());
+    this.statuses = ZooKeeperUpdatingPersistentDirectory.create(
+        "agent-image-pre-pull-statuses", provider,
+        stateDirectory.resolve(PREPULL_STATUS_FILENAME), Paths.statusHostPrePulls(host),
+        resyncThrottle);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    statuses.startAsync().awaitRunning();
+    requests.startAsync().awaitRunning();
+    update();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    requests.stopAsync().awaitTerminated();
+    executor.shutdownNow();
+    statuses.stopAsync().awaitTerminated();
+  }
+
+  /**
+   * Returns true if {@code image} was recently pulled ahead of a rolling update, in which case
+   * starting a job using it does not need to pull it again.
+   */
+  public boolean isPulled(final String image) {
+    return pulled.getIfPresent(image) != null;
+  }
+
+  private synchronized void update() throws InterruptedException {
+    final Set<String> requested = Sets.newHashSet();
+    for (final Map.Entry<String, String> entry : requests.getNodes().entrySet()) {
+      final JobId jobId = JobId.fromString(ZKPaths.getNodeFromPath(entry.getKey()));
+      final String image = entry.getValue();
+      requested.add(jobId.toString());
+      if (!pulls.add(jobId)) {
+        continue;
+      }
+      if (getState(jobId) == PrePullState.PULLED) {
+        // Pulled before the agent was restarted
+        pulled.put(image, true);
+        continue;
+      }
+      executor.execute(new PrePull(jobId, image));
+    }
+
+    // Forget about requests that were removed, e.g. because the job has been deployed
+    for (final JobId jobId : Sets.newHashSet(pulls)) {
+      if (!requested.contains(jobId.toString())) {
+        pulls.remove(jobId);
+      }
+    }
+    for (final Map.Entry<String, byte[]> entry : Sets.newHashSet(statuses.entrySet())) {
+      if (!requested.contains(entry.getKey())) {
+        statuses.remove(entry.getKey());
+      }
+    }
+  }
+
+  @Nullable
+  private PrePullState getState(final JobId jobId) {
+    final byte[] data = statuses.get(jobId.toString());
+    if (data == null) {
+      return null;
+    }
+    try {
+      return Json.read(data, PrePullState.class);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private void setState(final JobId jobId, final PrePullState state) throws InterruptedException {
+    // The request may have been withdrawn while we were pulling
+    if (!pulls.contains(jobId)) {
+      return;
+    }
+    ensureStatusPath();
+    statuses.put(jobId.toString(), Json.asBytesUnchecked(state));
+  }
+
+  private void ensureStatusPath() {
+    // Agents registered before pre-pulling was introduced lack the parent node
+    if (statusPathEnsured) {
+      return;
+    }
+    try {
+      provider.get("ImagePrePuller_ensureStatusPath").ensurePath(Paths.statusHostPrePulls(host));
+      statusPathEnsured = true;
+    } catch (KeeperException e) {
+      log.warn("failed to create pre-pull status path for host {}", host, e);
+    }
+  }
+
+  private class PrePull implements Runnable {
+
+    private final JobId jobId;
+    private final String image;
+
+    private PrePull(final JobId jobId, final String image) {
+      this.jobId = jobId;
+      this.image = image;
+    }
+
+    @Override
+    public void run() {
+      try {
+        setState(jobId, PrePullState.PULLING);
+        PrePullState state;
+        try {
+          final ImagePullCoordinator.Result result = puller.pull(image);
+          if (imageIndex != null) {
+            imageIndex.added(image);
+          }
+          pulled.put(image, true);
+          log.info("pre-pulled image {} of job {}: {}", image, jobId, result);
+          state = PrePullState.PULLED;
+        } catch (DockerException e) {
+          log.warn("pre-pulling image {} of job {} failed", image, jobId, e);
+          state = PrePullState.FAILED;
+        }
+        setState(jobId, state);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  private class RequestsListener implements PersistentPathChildrenCache.Listener {
+
+    @Override
+    public void nodesChanged(final PersistentPathChildrenCache<?> cache) {
+      try {
+        update();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    @Override
+    public void connectionStateChanged(final ConnectionState state) {
+      // ignore
+    }
+  }
+}
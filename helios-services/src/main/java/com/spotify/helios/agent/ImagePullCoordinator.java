@@ -0,0 +1,191 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.base.Objects;
+import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.SettableFuture;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.DockerException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * Coordinates image pulls across all tasks on an agent. Concurrent pulls of the same image are
+ * collapsed into a single pull whose outcome is shared by all callers, and the number of pulls
+ * running against the docker daemon at any one time is capped.
+ */
+public class ImagePullCoordinator {
+
+  private static final Logger log = LoggerFactory.getLogger(ImagePullCoordinator.class);
+
+  private final DockerClient docker;
+  private final Semaphore permits;
+  private final ConcurrentMap<String, SettableFuture<Result>> inFlight = newConcurrentMap();
+
+  public ImagePullCoordinator(final DockerClient docker, final int maxConcurrentPulls) {
+    checkArgument(maxConcurrentPulls > 0, "maxConcurrentPulls must be positive");
+    this.docker = checkNotNull(docker, "docker");
+    this.permits = new Semaphore(maxConcurrentPulls, true);
+  }
+
+  /**
+   * Pulls {@code image}, or waits for an already running pull of the same image to finish. If the
+   * caller that started a shared pull is interrupted, the callers waiting for it try again and one
+   * of them starts a new pull.
+   *
+   * @param image The image to pull.
+   * @return How long this caller waited for a free slot or for another caller's pull to start, and
+   *         how long it spent pulling or waiting for the pull to finish.
+   * @throws DockerException If the pull failed, including pulls started by another caller.
+   * @throws InterruptedException If interrupted while waiting for or performing the pull.
+   */
+  public Result pull(final String image) throws DockerException, InterruptedException {
+    final long queued = System.nanoTime();
+    while (true) {
+      final SettableFuture<Result> future = SettableFuture.create();
+      final SettableFuture<Result> existing = inFlight.putIfAbsent(image, future);
+      if (existing == null) {
+        return lead(image, future, queued);
+      }
+      log.info("waiting for in-flight pull of image {}", image);
+      final Result result = await(image, existing, queued);
+      if (result != null) {
+        return result;
+      }
+      log.info("in-flight pull of image {} was interrupted, retrying", image);
+    }
+  }
+
+  private Result lead(final String image, final SettableFuture<Result> future, final long queued)
+      throws DockerException, InterruptedException {
+    try {
+      final Result result = doPull(image, queued);
+      future.set(result);
+      return result;
+    } catch (DockerException | InterruptedException | RuntimeException e) {
+      future.setException(e);
+      throw e;
+    } finally {
+      inFlight.remove(image, future);
+    }
+  }
+
+  private Result doPull(final String image, final long queued)
+      throws DockerException, InterruptedException {
+    permits.acquire();
+    try {
+      final long started = System.nanoTime();
+      docker.pull(image);
+      final long finished = System.nanoTime();
+      return new Result(started - queued, finished - started, false);
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Waits for a pull started by another caller. Returns null if that caller was interrupted, which
+   * does not mean this one should be.
+   */
+  private Result await(final String image, final SettableFuture<Result> future, final long queued)
+      throws DockerException, InterruptedException {
+    try {
+      final Result result = future.get();
+      // Only the part of the pull that overlapped with this caller's wait counts as pulling
+      final long elapsed = System.nanoTime() - queued;
+      final long pullNanos = Math.min(result.getPullNanos(), elapsed);
+      return new Result(elapsed - pullNanos, pullNanos, true);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof DockerException) {
+        throw (DockerException) cause;
+      }
+      if (cause instanceof InterruptedException) {
+        inFlight.remove(image, future);
+        return null;
+      }
+      throw Throwables.propagate(cause);
+    }
+  }
+
+  /**
+   * Number of distinct images currently being pulled or waiting to be pulled.
+   */
+  public int inFlight() {
+    return inFlight.size();
+  }
+
+  public static class Result {
+
+    private final long queueWaitNanos;
+    private final long pullNanos;
+    private final boolean shared;
+
+    public Result(final long queueWaitNanos, final long pullNanos, final boolean shared) {
+      this.queueWaitNanos = queueWaitNanos;
+      this.pullNanos = pullNanos;
+      this.shared = shared;
+    }
+
+    /**
+     * Time spent waiting for a free pull slot.
+     */
+    public long getQueueWaitNanos() {
+      return queueWaitNanos;
+    }
+
+    /**
+     * Time spent actually pulling the image.
+     */
+    public long getPullNanos() {
+      return pullNanos;
+    }
+
+    /**
+     * True if the result came from a pull started by another caller.
+     */
+    public boolean isShared() {
+      return shared;
+    }
+
+    @Override
+    public String toString() {
+      return Objects.toStringHelper(this)
+          .add("queueWaitMillis", NANOSECONDS.toMillis(queueWaitNanos))
+          .add("pullMillis", NANOSECONDS.toMillis(pullNanos))
+          .add("shared", shared)
+          .toString();
+    }
+  }
+}
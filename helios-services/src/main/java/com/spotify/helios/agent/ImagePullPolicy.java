@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+/**
+ * Decides whether the image of a job is pulled from the registry before starting its container.
+ */
+public enum ImagePullPolicy {
+
+  /**
+   * Pull the image before every container start.
+   */
+  ALWAYS,
+
+  /**
+   * Never pull images. They have to be present locally.
+   */
+  NEVER,
+
+  /**
+   * Pull the image if it is not present locally. Images referenced by a mutable tag are also pulled
+   * when the job is started, but not when its container is restarted. Images pinned by digest are
+   * immutable and never pulled once present.
+   */
+  IF_NEEDED;
+
+  /**
+   * @param image        The image reference.
+   * @param present      Whether the image is present locally.
+   * @param pulledBefore Whether the image was already pulled for an earlier start of the job.
+   * @return true if the image should be pulled.
+   */
+  public boolean shouldPull(final String image, final boolean present, final boolean pulledBefore) {
+    switch (this) {
+      case ALWAYS:
+        return true;
+      case NEVER:
+        return false;
+      default:
+        return !present || (!isDigest(image) && !pulledBefore);
+    }
+  }
+
+  /**
+   * Parses a policy as given on the command line, e.g. {@code if-needed}.
+   */
+  public static ImagePullPolicy parse(final String policy) {
+    return valueOf(policy.trim().toUpperCase().replace('-', '_'));
+  }
+
+  private static boolean isDigest(final String image) {
+    return image.contains("@");
+  }
+}
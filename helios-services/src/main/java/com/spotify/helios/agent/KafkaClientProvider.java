@@ -42,6 +42,8 @@ public class KafkaClientProvider {
 
   private static final String KAFKA_HELIOS_CLIENT_ID = "Helios";
   private static final String KAFKA_QUORUM_PARAMETER = "1";
+  private static final int KAFKA_LINGER_MS = 100;
+  private static final int KAFKA_BATCH_SIZE_BYTES = 64 * 1024;
 
   private final Optional<ImmutableMap<String, Object>> partialConfigs;
 
@@ -51,11 +53,14 @@ public class KafkaClientProvider {
       @Nullable
       @Override
       public ImmutableMap<String, Object> apply(List<String> input) {
-        return ImmutableMap.<String, Object>of(
-            "bootstrap.servers", Joiner.on(',').join(input),
-            "acks", KAFKA_QUORUM_PARAMETER,
-            "client.id", KAFKA_HELIOS_CLIENT_ID,
-            "metadata.fetch.timeout.ms", 5000);
+        return ImmutableMap.<String, Object>builder()
+            .put("bootstrap.servers", Joiner.on(',').join(input))
+            .put("acks", KAFKA_QUORUM_PARAMETER)
+            .put("client.id", KAFKA_HELIOS_CLIENT_ID)
+            .put("metadata.fetch.timeout.ms", 5000)
+            .put("linger.ms", KAFKA_LINGER_MS)
+            .put("batch.size", KAFKA_BATCH_SIZE_BYTES)
+            .build();
       }
     });
   }
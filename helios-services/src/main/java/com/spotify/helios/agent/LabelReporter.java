@@ -27,40 +27,39 @@ import com.spotify.helios.servicescommon.coordination.Paths;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperNodeUpdater;
 
 import java.util.Map;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.ScheduledFuture;
-
-import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * Puts the labels the agent has been assigned into ZK so they can be
  * visible to the master and via the API.
  */
-public class LabelReporter extends InterruptingScheduledService {
+public class LabelReporter implements StatusReporter {
 
+  /**
+   * How often to retry until the write succeeds. Nothing is written after that.
+   */
   private static final int RETRY_INTERVAL_MILLIS = 1000;
 
   private final Map<String, String> labels;
   private final ZooKeeperNodeUpdater nodeUpdater;
 
+  private boolean reported;
+
   public LabelReporter(final String host, final Map<String, String> labels,
                        final NodeUpdaterFactory nodeUpdaterFactory) {
     this.labels = labels;
     this.nodeUpdater = nodeUpdaterFactory.create(Paths.statusHostLabels(host));
   }
 
-
   @Override
-  protected void runOneIteration() {
-    final boolean succesful = nodeUpdater.update(Json.asBytesUnchecked(labels));
-    if (succesful) {
-      stopAsync();
+  public void report() {
+    // The labels are fixed for the lifetime of the agent, so they only need to be written once
+    if (!reported) {
+      reported = nodeUpdater.update(Json.asBytesUnchecked(labels));
     }
   }
 
   @Override
-  protected ScheduledFuture<?> schedule(final Runnable runnable,
-                                        final ScheduledExecutorService executorService) {
-    return executorService.scheduleWithFixedDelay(runnable, 0, RETRY_INTERVAL_MILLIS, MILLISECONDS);
+  public long intervalMillis() {
+    return RETRY_INTERVAL_MILLIS;
   }
 }
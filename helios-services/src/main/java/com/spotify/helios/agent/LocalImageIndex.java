@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Sets;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.DockerException;
+import com.spotify.docker.client.ImageNotFoundException;
+import com.spotify.docker.client.messages.Image;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+/**
+ * An index of the images present in the local docker daemon, used to avoid asking the registry for
+ * images we already have. The index is refreshed from {@link DockerClient#listImages} when it gets
+ * stale, and images missing from it are looked up with {@link DockerClient#inspectImage} before
+ * being reported as absent.
+ */
+public class LocalImageIndex {
+
+  private static final Logger log = LoggerFactory.getLogger(LocalImageIndex.class);
+
+  private static final long DEFAULT_REFRESH_INTERVAL_NANOS = MINUTES.toNanos(1);
+  private static final String NO_TAG = "<none>:<none>";
+
+  private final DockerClient docker;
+  private final long refreshIntervalNanos;
+
+  private volatile Set<String> images = Sets.newConcurrentHashSet();
+  private volatile long refreshed;
+  private volatile boolean listed;
+
+  public LocalImageIndex(final DockerClient docker) {
+    this(docker, DEFAULT_REFRESH_INTERVAL_NANOS);
+  }
+
+  @VisibleForTesting
+  LocalImageIndex(final DockerClient docker, final long refreshIntervalNanos) {
+    this.docker = checkNotNull(docker, "docker");
+    this.refreshIntervalNanos = refreshIntervalNanos;
+  }
+
+  /**
+   * Returns true if {@code image} is present locally.
+   */
+  public boolean contains(final String image) throws InterruptedException {
+    final String name = normalize(image);
+    refreshIfStale();
+    if (images.contains(name)) {
+      return true;
+    }
+    try {
+      docker.inspectImage(image);
+      images.add(name);
+      return true;
+    } catch (ImageNotFoundException e) {
+      return false;
+    } catch (DockerException e) {
+      log.warn("failed to inspect image {}", image, e);
+      return false;
+    }
+  }
+
+  /**
+   * Record that {@code image} was pulled.
+   */
+  public void added(final String image) {
+    images.add(normalize(image));
+  }
+
+  /**
+   * Record that {@code image} turned out not to be present locally.
+   */
+  public void removed(final String image) {
+    images.remove(normalize(image));
+  }
+
+  private void refreshIfStale() throws InterruptedException {
+    if (listed && System.nanoTime() - refreshed < refreshIntervalNanos) {
+      return;
+    }
+    synchronized (this) {
+      if (listed && System.nanoTime() - refreshed < refreshIntervalNanos) {
+        return;
+      }
+      final Set<String> images = Sets.newConcurrentHashSet();
+      try {
+        for (final Image image : docker.listImages()) {
+          if (image.repoTags() == null) {
+            continue;
+          }
+          for (final String tag : image.repoTags()) {
+            if (!NO_TAG.equals(tag)) {
+              images.add(tag);
+            }
+          }
+        }
+      } catch (DockerException e) {
+        // Keep the current images and fall back to inspecting images missing from them
+        log.warn("failed to list images", e);
+        this.refreshed = System.nanoTime();
+        this.listed = true;
+        return;
+      }
+      this.images = images;
+      this.refreshed = System.nanoTime();
+      this.listed = true;
+    }
+  }
+
+  /**
+   * Docker lists images by repository and tag, where an image referenced without a tag is
+   * implicitly tagged {@code latest}.
+   */
+  @VisibleForTesting
+  static String normalize(final String image) {
+    if (image.contains("@")) {
+      return image;
+    }
+    final int slash = image.lastIndexOf('/');
+    if (image.indexOf(':', slash + 1) == -1) {
+      return image + ":latest";
+    }
+    return image;
+  }
+}
@@ -21,22 +21,55 @@
 
 package com.spotify.helios.agent;
 
+import com.google.common.base.Throwables;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import com.spotify.docker.client.DefaultDockerClient;
 import com.spotify.docker.client.DockerCertificates;
 import com.spotify.docker.client.DockerException;
+import com.spotify.docker.client.messages.Container;
 import com.spotify.docker.client.messages.ContainerExit;
 import com.spotify.docker.client.messages.ContainerInfo;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.net.URI;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.collect.Maps.newConcurrentMap;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * A {@code DockerClient} that overrides {@link #waitContainer} to poll instead of block
  * indefinitely.  See the source code for details as to why this needs to exist.
+ *
+ * <p>Rather than having every waiting thread inspect its own container, a single monitor thread
+ * lists the running containers once per interval and only inspects the containers that have
+ * dropped out of that list. The cost of waiting is therefore one Docker API call per interval no
+ * matter how many containers are being waited on, which lets the interval be short enough to
+ * notice exits quickly. If listing fails, every waited-on container is inspected individually.
  */
 public class PollingDockerClient extends DefaultDockerClient {
 
-  private static final long WAIT_INSPECT_INTERVAL_MILLIS =
-      Long.getLong("HELIOS_WAIT_INSPECT_INTERVAL_MILLIS", 5000);
+  private static final Logger log = LoggerFactory.getLogger(PollingDockerClient.class);
+
+  // HELIOS_WAIT_INSPECT_INTERVAL_MILLIS is the name used before containers were monitored by a
+  // single thread, still honored so that existing deployments keep their configured interval.
+  private static final long WAIT_POLL_INTERVAL_MILLIS = Long.getLong(
+      "HELIOS_WAIT_POLL_INTERVAL_MILLIS",
+      Long.getLong("HELIOS_WAIT_INSPECT_INTERVAL_MILLIS", 1000));
+
+  private final ConcurrentMap<String, Waiter> waiters = newConcurrentMap();
+
+  private ScheduledExecutorService monitor;
 
   public PollingDockerClient(final String uri) {
     super(uri);
@@ -57,12 +90,118 @@ public class PollingDockerClient extends DefaultDockerClient {
     //             agent hang forever on waitContainer after the socket got into a weird half-open
     //             state where the kernel (netstat/lsof) would only show one end of the connection
     //             and restarting docker would not close the socket. ¯\_(ツ)_/¯
-    while (true) {
-      final ContainerInfo info = inspectContainer(containerId);
-      if (!info.state().running()) {
-        return new ContainerExit(info.state().exitCode());
+    final Waiter waiter = addWaiter(containerId);
+    ensureMonitorStarted();
+    try {
+      return waiter.exit.get();
+    } catch (ExecutionException e) {
+      Throwables.propagateIfInstanceOf(e.getCause(), DockerException.class);
+      throw Throwables.propagate(e.getCause());
+    } finally {
+      removeWaiter(containerId, waiter);
+    }
+  }
+
+  private Waiter addWaiter(final String containerId) {
+    synchronized (waiters) {
+      Waiter waiter = waiters.get(containerId);
+      if (waiter == null) {
+        waiter = new Waiter();
+        waiters.put(containerId, waiter);
+      }
+      waiter.threads++;
+      return waiter;
+    }
+  }
+
+  /**
+   * Stops monitoring the container once the last thread waiting for it is done, whether or not
+   * the container exited. Otherwise interrupted waits would leave the container in the map.
+   */
+  private void removeWaiter(final String containerId, final Waiter waiter) {
+    synchronized (waiters) {
+      waiter.threads--;
+      if (waiter.threads == 0) {
+        waiters.remove(containerId, waiter);
+      }
+    }
+  }
+
+  @Override
+  public void close() {
+    synchronized (waiters) {
+      if (monitor != null) {
+        monitor.shutdownNow();
       }
-      Thread.sleep(WAIT_INSPECT_INTERVAL_MILLIS);
     }
+    super.close();
+  }
+
+  private void ensureMonitorStarted() {
+    synchronized (waiters) {
+      if (monitor != null) {
+        return;
+      }
+      monitor = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setNameFormat("docker-container-monitor-%d")
+              .setDaemon(true).build());
+      monitor.scheduleWithFixedDelay(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            poll();
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            log.warn("container monitor poll failed", e);
+          }
+        }
+      }, 0, WAIT_POLL_INTERVAL_MILLIS, MILLISECONDS);
+    }
+  }
+
+  private void poll() throws InterruptedException {
+    if (waiters.isEmpty()) {
+      return;
+    }
+
+    Set<String> running;
+    try {
+      running = Sets.newHashSet();
+      for (final Container container : listContainers()) {
+        running.add(container.id());
+      }
+    } catch (DockerException e) {
+      log.warn("failed to list containers, inspecting {} containers individually",
+               waiters.size(), e);
+      running = null;
+    }
+
+    for (final Map.Entry<String, Waiter> entry : waiters.entrySet()) {
+      final String containerId = entry.getKey();
+      if (running != null && running.contains(containerId)) {
+        continue;
+      }
+      final Waiter waiter = entry.getValue();
+      final SettableFuture<ContainerExit> exit = waiter.exit;
+      try {
+        final ContainerInfo info = inspectContainer(containerId);
+        if (info.state().running()) {
+          continue;
+        }
+        exit.set(new ContainerExit(info.state().exitCode()));
+      } catch (DockerException e) {
+        exit.setException(e);
+      }
+      waiters.remove(containerId, waiter);
+    }
+  }
+
+  private static class Waiter {
+
+    private final SettableFuture<ContainerExit> exit = SettableFuture.create();
+
+    // Guarded by the waiters map
+    private int threads;
   }
 }
@@ -21,8 +21,9 @@
 
 package com.spotify.helios.agent;
 
+import com.google.common.base.Supplier;
+import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Sets;
 
 import com.spotify.helios.common.descriptors.PortMapping;
 
@@ -31,20 +32,32 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.ServerSocket;
+import java.util.BitSet;
 import java.util.Map;
 import java.util.Set;
 
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
 /**
- * A simple port allocator. Given a port range and a set of used ports it will linearly search
+ * A bitmap based port allocator. Given a port range and a set of used ports it will search
  * through the port range until it finds an available port and claim it.
  *
- * The index into the port range is kept between calls to {@link #allocate(Map, Set)}. Successive
+ * The allocator keeps a bitmap of reserved ports, which the caller keeps up to date incrementally
+ * using {@link #reserve(Iterable)} and {@link #release(Iterable)} as port allocations come and go.
+ * Availability on the host is checked against a single snapshot of the kernel socket tables per
+ * allocation round, falling back to binding a probe socket per port if the tables are unavailable.
+ * The snapshot is only taken once a dynamic port has to be chosen.
+ *
+ * The index into the port range is kept between calls to {@link #allocate(Map)}. Successive
  * allocations will not reuse an available port until the port range has been exhausted and the
  * index wraps around from the start of the port range.
  */
 public class PortAllocator {
 
-  private static final Logger log = LoggerFactory.getLogger(Agent.class);
+  private static final Logger log = LoggerFactory.getLogger(PortAllocator.class);
+
+  static final int MAX_PORT = 65535;
 
   /**
    * Index for port allocation. Reused between allocations so we do not immediately reuse ports.
@@ -53,11 +66,75 @@ public class PortAllocator {
 
   private final int start;
   private final int end;
+  private final HostPortUsage hostPortUsage;
+
+  /**
+   * Ports reserved by existing allocations.
+   */
+  private final BitSet reserved = new BitSet(MAX_PORT + 1);
 
   public PortAllocator(final int start, final int end) {
+    this(start, end, new HostPortUsage());
+  }
+
+  public PortAllocator(final int start, final int end, final HostPortUsage hostPortUsage) {
+    checkArgument(start >= 0 && start <= end && end <= MAX_PORT + 1,
+                  "invalid port range [%s, %s)", start, end);
     this.start = start;
     this.end = end;
     this.i = start;
+    this.hostPortUsage = checkNotNull(hostPortUsage, "hostPortUsage");
+  }
+
+  /**
+   * Mark ports as reserved, excluding them from subsequent allocations.
+   *
+   * @param ports The ports to reserve.
+   */
+  public synchronized void reserve(final Iterable<Integer> ports) {
+    for (final Integer port : ports) {
+      if (validPort(port)) {
+        reserved.set(port);
+      }
+    }
+  }
+
+  /**
+   * Release previously reserved ports, making them available for allocation again.
+   *
+   * @param ports The ports to release.
+   */
+  public synchronized void release(final Iterable<Integer> ports) {
+    for (final Integer port : ports) {
+      if (validPort(port)) {
+        reserved.clear(port);
+      }
+    }
+  }
+
+  /**
+   * Allocate ports for several sets of port mappings in one round. The round shares at most one
+   * snapshot of the ports in use on the host. Ports allocated earlier in the round are not handed
+   * out again, but are not reserved. The caller is expected to {@link #reserve(Iterable)} them once
+   * the allocations have been committed.
+   *
+   * @param requests Port mappings to allocate ports for, keyed by an identifier of the caller's
+   *                 choosing.
+   * @return The allocated ports for each request that could be satisfied. Requests that could not
+   *         be satisfied are left out.
+   */
+  public synchronized <K> Map<K, Map<String, Integer>> allocate(
+      final Map<K, Map<String, PortMapping>> requests) {
+    final ImmutableMap.Builder<K, Map<String, Integer>> allocations = ImmutableMap.builder();
+    final BitSet used = (BitSet) reserved.clone();
+    final Supplier<BitSet> host = hostSnapshot();
+    for (final Map.Entry<K, Map<String, PortMapping>> entry : requests.entrySet()) {
+      final Map<String, Integer> allocation = allocate0(entry.getValue(), used, host);
+      if (allocation != null) {
+        allocations.put(entry.getKey(), allocation);
+      }
+    }
+    return allocations.build();
   }
 
   /**
@@ -65,18 +142,49 @@ public class PortAllocator {
    *
    * @param ports A mutable map of port mappings for a container, both with statically configured
    *              external ports and dynamic unconfigured external ports.
-   * @param used  A mutable set of used ports. The ports allocated will not clash with these ports.
+   * @param used  A mutable set of used ports. The ports allocated will not clash with these ports
+   *              or with reserved ports.
    * @return The allocated ports.
    */
-  public Map<String, Integer> allocate(final Map<String, PortMapping> ports,
-                                       final Set<Integer> used) {
-    return allocate0(ports, Sets.newHashSet(used));
+  public synchronized Map<String, Integer> allocate(final Map<String, PortMapping> ports,
+                                                    final Set<Integer> used) {
+    final BitSet usedPorts = (BitSet) reserved.clone();
+    for (final Integer port : used) {
+      if (validPort(port)) {
+        usedPorts.set(port);
+      }
+    }
+    return allocate0(ports, usedPorts, hostSnapshot());
+  }
+
+  /**
+   * Returns a supplier taking a snapshot of the ports in use on the host when first asked for one.
+   * Reading the kernel socket tables is costly on busy hosts, so allocations of static ports only
+   * never do so.
+   */
+  private Supplier<BitSet> hostSnapshot() {
+    return Suppliers.memoize(new Supplier<BitSet>() {
+      @Override
+      public BitSet get() {
+        return hostPortUsage.snapshot();
+      }
+    });
   }
 
+  /**
+   * Allocate ports for a container, marking the allocated ports as used if successful.
+   *
+   * @param mappings The port mappings of the container.
+   * @param used     Ports that are already taken.
+   * @param hostPorts Supplies a snapshot of the ports in use on the host, or null to probe each
+   *                  candidate.
+   * @return The allocated ports or null if the allocation failed.
+   */
   private Map<String, Integer> allocate0(final Map<String, PortMapping> mappings,
-                                         final Set<Integer> used) {
+                                         final BitSet used, final Supplier<BitSet> hostPorts) {
 
     final ImmutableMap.Builder<String, Integer> allocation = ImmutableMap.builder();
+    final BitSet claimed = new BitSet();
 
     // Allocate static ports
     for (Map.Entry<String, PortMapping> entry : mappings.entrySet()) {
@@ -90,13 +198,17 @@ public class PortAllocator {
       }
 
       // Verify that this port is not in use
-      if (used.contains(externalPort)) {
+      if (!validPort(externalPort) || used.get(externalPort) || claimed.get(externalPort)) {
         return null;
       }
-      used.add(externalPort);
+      claimed.set(externalPort);
       allocation.put(name, externalPort);
     }
 
+    // Ports that dynamic ports cannot be allocated from, filled in for the first dynamic port
+    BitSet taken = null;
+    BitSet host = null;
+
     // Allocate dynamic ports
     for (Map.Entry<String, PortMapping> entry : mappings.entrySet()) {
       final String name = entry.getKey();
@@ -108,40 +220,66 @@ public class PortAllocator {
         continue;
       }
 
-      // Look for an available port, checking at most (end - start) ports.
-      Integer port = null;
-      for (int i = start; i < end; i++) {
-        final int candidate = next();
-        if (!used.contains(candidate) && portAvailable(candidate)) {
-          port = candidate;
-          break;
+      if (taken == null) {
+        taken = (BitSet) used.clone();
+        taken.or(claimed);
+        host = hostPorts.get();
+        if (host != null) {
+          taken.or(host);
         }
       }
-      if (port == null) {
+
+      final int port = nextAvailable(taken, host == null);
+      if (port < 0) {
         return null;
       }
-      used.add(port);
+      taken.set(port);
+      claimed.set(port);
       allocation.put(name, port);
     }
 
+    used.or(claimed);
     return allocation.build();
   }
 
   /**
-   * Get the next port number to try, continuing from the previous port allocation to avoid eagerly
-   * reusing ports. Wraps around when the end of the port range has been reached.
+   * Find the next available port, continuing from the previous port allocation to avoid eagerly
+   * reusing ports and wrapping around when the end of the port range has been reached. Checks
+   * each port in the range at most once.
    *
-   * @return The next port.
+   * @param taken Ports that are not available.
+   * @param probe Whether to also probe candidates by binding to them.
+   * @return The port, or -1 if no port in the range is available.
    */
-  private int next() {
-    if (i == end) {
-      i = start;
+  private int nextAvailable(final BitSet taken, final boolean probe) {
+    int remaining = end - start;
+    while (remaining > 0) {
+      if (i >= end) {
+        i = start;
+      }
+      final int candidate = taken.nextClearBit(i);
+      if (candidate >= end) {
+        // Skip to the start of the range, counting the ports we skipped over
+        remaining -= end - i;
+        i = end;
+        continue;
+      }
+      remaining -= candidate - i + 1;
+      i = candidate + 1;
+      if (!probe || portAvailable(candidate)) {
+        return candidate;
+      }
     }
-    return i++;
+    return -1;
+  }
+
+  private static boolean validPort(final Integer port) {
+    return port != null && port >= 0 && port <= MAX_PORT;
   }
 
   /**
-   * Check if the port is available on the host. This is racy but it's better than nothing.
+   * Check if the port is available on the host by binding to it. Only used when the kernel socket
+   * tables cannot be read. This is racy but it's better than nothing.
    * @param port Port number to check.
    * @return True if port is available. False otherwise.
    */
@@ -0,0 +1,39 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+/**
+ * Reports a piece of agent state to ZooKeeper. Reporters are run periodically by a shared
+ * {@link StatusReporterService}.
+ */
+public interface StatusReporter {
+
+  /**
+   * Report the current state.
+   */
+  void report() throws InterruptedException;
+
+  /**
+   * @return The time between reports in milliseconds.
+   */
+  long intervalMillis();
+}
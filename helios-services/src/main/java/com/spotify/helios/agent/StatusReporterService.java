@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.ImmutableList;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Runs a set of {@link StatusReporter}s on a single thread, each at its own interval.
+ */
+public class StatusReporterService extends InterruptingScheduledService {
+
+  private static final Logger log = LoggerFactory.getLogger(StatusReporterService.class);
+
+  private static final long TICK_MILLIS = 1000;
+
+  private final List<StatusReporter> reporters;
+  private final long[] nextReportMillis;
+  private final Clock clock;
+
+  public StatusReporterService(final List<? extends StatusReporter> reporters) {
+    this(reporters, new SystemClock());
+  }
+
+  public StatusReporterService(final List<? extends StatusReporter> reporters,
+                               final Clock clock) {
+    this.reporters = ImmutableList.copyOf(reporters);
+    this.nextReportMillis = new long[this.reporters.size()];
+    this.clock = checkNotNull(clock, "clock");
+  }
+
+  @Override
+  protected void runOneIteration() throws InterruptedException {
+    for (int i = 0; i < reporters.size(); i++) {
+      final long now = clock.now().getMillis();
+      if (now < nextReportMillis[i]) {
+        continue;
+      }
+      final StatusReporter reporter = reporters.get(i);
+      nextReportMillis[i] = now + reporter.intervalMillis();
+      try {
+        reporter.report();
+      } catch (RuntimeException e) {
+        if (e.getCause() instanceof InterruptedException) {
+          throw e;
+        }
+        // Do not let one failing reporter starve the others
+        log.warn("status reporter threw exception: {}", reporter.getClass().getSimpleName(), e);
+      }
+    }
+  }
+
+  @Override
+  protected ScheduledFuture<?> schedule(final Runnable runnable,
+                                        final ScheduledExecutorService executorService) {
+    return executorService.scheduleWithFixedDelay(runnable, 0, TICK_MILLIS, MILLISECONDS);
+  }
+}
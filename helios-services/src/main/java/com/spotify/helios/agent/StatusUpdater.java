@@ -38,5 +38,7 @@ public interface StatusUpdater {
 
   void setGoal(Goal goal);
 
+  void setImagePullTimes(long queueWaitMillis, long pullMillis);
+
   void update() throws InterruptedException;
 }
@@ -29,8 +29,8 @@ import com.spotify.docker.client.DockerException;
 import com.spotify.docker.client.messages.ContainerInfo;
 import com.spotify.helios.common.descriptors.Goal;
 import com.spotify.helios.common.descriptors.Job;
-import com.spotify.helios.servicescommon.DefaultReactor;
 import com.spotify.helios.servicescommon.Reactor;
+import com.spotify.helios.servicescommon.ReactorFactory;
 import com.spotify.helios.servicescommon.statistics.MetricsContext;
 import com.spotify.helios.servicescommon.statistics.SupervisorMetrics;
 
@@ -86,8 +86,8 @@ public class Supervisor {
     this.runnerFactory = checkNotNull(builder.runnerFactory, "runnerFactory");
     this.statusUpdater = checkNotNull(builder.statusUpdater, "statusUpdater");
     this.monitor = checkNotNull(builder.monitor, "monitor");
-    this.reactor = new DefaultReactor("supervisor-" + job.getId(), new Update(),
-                                      SECONDS.toMillis(30));
+    this.reactor = builder.reactorFactory.create("supervisor-" + job.getId(), new Update(),
+                                                 SECONDS.toMillis(30));
     this.reactor.startAsync();
     statusUpdater.setContainerId(containerId);
     this.sleeper = builder.sleeper;
@@ -217,6 +217,7 @@ public class Supervisor {
     private StatusUpdater statusUpdater;
     private TaskMonitor monitor;
     private Sleeper sleeper = new ThreadSleeper();
+    private ReactorFactory reactorFactory = new ReactorFactory();
 
 
     public Builder setJob(final Job job) {
@@ -269,6 +270,11 @@ public class Supervisor {
       return this;
     }
 
+    public Builder setReactorFactory(final ReactorFactory reactorFactory) {
+      this.reactorFactory = reactorFactory;
+      return this;
+    }
+
     public Supervisor build() {
       return new Supervisor(this);
     }
@@ -463,6 +469,21 @@ public class Supervisor {
       }
     }
 
+    @Override
+    public void pullTimes(final long queueWaitNanos, final long pullNanos) {
+      metrics.imagePullTimes(queueWaitNanos, pullNanos);
+    }
+
+    @Override
+    public void imageCacheHit() {
+      metrics.imageCacheHit();
+    }
+
+    @Override
+    public void imageCacheMiss() {
+      metrics.imageCacheMiss();
+    }
+
     @Override
     public void created(final String createdContainerId) {
       containerId = createdContainerId;
@@ -26,10 +26,15 @@ import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.serviceregistration.ServiceRegistrar;
 import com.spotify.helios.servicescommon.DockerHost;
+import com.spotify.helios.servicescommon.ReactorFactory;
+import com.spotify.helios.servicescommon.SharedReactorFactory;
 import com.spotify.helios.servicescommon.statistics.SupervisorMetrics;
 
+import javax.annotation.Nullable;
+
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -51,6 +56,12 @@ public class SupervisorFactory {
   private final SupervisorMetrics metrics;
   private final String defaultRegistrationDomain;
   private final List<String> dns;
+  private final ReactorFactory reactorFactory;
+  private final ScheduledExecutorService monitorScheduler;
+  private final ImagePullPolicy imagePullPolicy;
+  private final LocalImageIndex imageIndex;
+  private final ImagePullCoordinator imagePuller;
+  private final ImagePrePuller prePuller;
 
   public SupervisorFactory(final AgentModel model, final DockerClient dockerClient,
                            final Map<String, String> envVars,
@@ -61,7 +72,12 @@ public class SupervisorFactory {
                            final SupervisorMetrics supervisorMetrics,
                            final String namespace,
                            final String defaultRegistrationDomain,
-                           final List<String> dns) {
+                           final List<String> dns,
+                           @Nullable final SharedReactorFactory sharedReactorFactory,
+                           final ImagePullPolicy imagePullPolicy,
+                           @Nullable final LocalImageIndex imageIndex,
+                           @Nullable final ImagePullCoordinator imagePuller,
+                           @Nullable final ImagePrePuller prePuller) {
     this.dockerClient = dockerClient;
     this.namespace = namespace;
     this.model = checkNotNull(model, "model");
@@ -74,6 +90,17 @@ public class SupervisorFactory {
     this.defaultRegistrationDomain = checkNotNull(defaultRegistrationDomain,
                                                   "defaultRegistrationDomain");
     this.dns = checkNotNull(dns, "dns");
+    this.imagePullPolicy = checkNotNull(imagePullPolicy, "imagePullPolicy");
+    this.imageIndex = imageIndex;
+    this.imagePuller = imagePuller;
+    this.prePuller = prePuller;
+    if (sharedReactorFactory != null) {
+      this.reactorFactory = sharedReactorFactory;
+      this.monitorScheduler = sharedReactorFactory.scheduler();
+    } else {
+      this.reactorFactory = new ReactorFactory();
+      this.monitorScheduler = null;
+    }
   }
 
   /**
@@ -105,7 +132,8 @@ public class SupervisorFactory {
         .setPorts(taskConfig.ports());
     final StatusUpdater statusUpdater = new DefaultStatusUpdater(model, taskStatus);
     final FlapController flapController = FlapController.create();
-    final TaskMonitor taskMonitor = new TaskMonitor(job.getId(), flapController, statusUpdater);
+    final TaskMonitor taskMonitor = new TaskMonitor(job.getId(), flapController, statusUpdater,
+                                                    monitorScheduler);
 
     final HealthChecker healthChecker = HealthCheckerFactory.create(
         taskConfig, dockerClient, dockerHost);
@@ -115,6 +143,10 @@ public class SupervisorFactory {
         .dockerClient(dockerClient)
         .healthChecker(healthChecker)
         .listener(taskMonitor)
+        .imagePullPolicy(imagePullPolicy)
+        .imageIndex(imageIndex)
+        .imagePuller(imagePuller)
+        .prePuller(prePuller)
         .build();
 
     return Supervisor.newBuilder()
@@ -127,6 +159,7 @@ public class SupervisorFactory {
         .setRunnerFactory(runnerFactory)
         .setStatusUpdater(statusUpdater)
         .setMonitor(taskMonitor)
+        .setReactorFactory(reactorFactory)
         .build();
   }
 }
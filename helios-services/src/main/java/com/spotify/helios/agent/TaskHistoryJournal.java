@@ -0,0 +1,374 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.HashBasedTable;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.Table;
+import com.google.common.primitives.Longs;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.TaskStatusEvent;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardOpenOption.APPEND;
+import static java.nio.file.StandardOpenOption.CREATE_NEW;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * An append-only journal of the task status events that {@link TaskHistoryWriter} has not yet
+ * written to zookeeper.
+ *
+ * The journal is a directory of numbered segment files, each holding one json entry per line that
+ * either adds or removes an event. Entries are group-committed: concurrent callers queue their
+ * entries, and whoever gets to the file first writes and syncs all queued entries at once. A new
+ * segment is started once the current one gets large, and the journal is compacted into a single
+ * segment holding only the outstanding events once it holds many more entries than that.
+ *
+ * All segments are replayed in order on startup. Since adding and removing an event is idempotent,
+ * a torn last entry or a compaction that was interrupted before the old segments were deleted are
+ * both recovered from.
+ */
+public class TaskHistoryJournal {
+
+  private static final Logger log = LoggerFactory.getLogger(TaskHistoryJournal.class);
+
+  private static final String SEGMENT_PREFIX = "segment-";
+  private static final String SEGMENT_SUFFIX = ".log";
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static final long MAX_SEGMENT_SIZE = 1024 * 1024;
+  private static final int MIN_COMPACTION_ENTRIES = 1000;
+  private static final int COMPACTION_RATIO = 4;
+
+  private static final Comparator<TaskStatusEvent> TIMESTAMP_ORDER =
+      new Comparator<TaskStatusEvent>() {
+        @Override
+        public int compare(final TaskStatusEvent a, final TaskStatusEvent b) {
+          return Longs.compare(a.getTimestamp(), b.getTimestamp());
+        }
+      };
+
+  private final Path directory;
+  private final Queue<Entry> pending = new ConcurrentLinkedQueue<>();
+
+  // All of the below are guarded by the writeLock
+  private final Object writeLock = new Object();
+  private final Table<JobId, Long, TaskStatusEvent> events = HashBasedTable.create();
+  private long nextSegment;
+  private int entries;
+  private boolean dirty;
+  private FileChannel segment;
+  private long segmentSize;
+
+  public TaskHistoryJournal(final Path directory) throws IOException {
+    this.directory = directory.toAbsolutePath();
+    Files.createDirectories(this.directory);
+    recover();
+  }
+
+  /**
+   * Returns the events that have been added and not yet removed, eldest first.
+   */
+  public List<TaskStatusEvent> getEvents() {
+    synchronized (writeLock) {
+      return Ordering.from(TIMESTAMP_ORDER).sortedCopy(events.values());
+    }
+  }
+
+  /**
+   * Adds an event to the journal. Returns once it has been synced to disk.
+   */
+  public void add(final TaskStatusEvent event) throws IOException {
+    append(new Entry(Entry.Type.ADD, event.getStatus().getJob().getId(), event.getTimestamp(),
+                     event));
+  }
+
+  /**
+   * Removes an event from the journal. Returns once the removal has been synced to disk.
+   */
+  public void remove(final TaskStatusEvent event) throws IOException {
+    append(new Entry(Entry.Type.REMOVE, event.getStatus().getJob().getId(), event.getTimestamp(),
+                     null));
+  }
+
+  /**
+   * Compacts the journal if it holds many more entries than outstanding events, or if earlier
+   * writes failed and the segments on disk might be missing entries.
+   */
+  public void compactIfNeeded() throws IOException {
+    synchronized (writeLock) {
+      if (!dirty && entries < Math.max(MIN_COMPACTION_ENTRIES, COMPACTION_RATIO * events.size())) {
+        return;
+      }
+      compact();
+    }
+  }
+
+  public void close() {
+    synchronized (writeLock) {
+      closeSegment();
+    }
+  }
+
+  private void append(final Entry entry) throws IOException {
+    pending.add(entry);
+    synchronized (writeLock) {
+      commit();
+    }
+  }
+
+  private void commit() throws IOException {
+    // Another caller might already have committed our entry along with its own
+    final List<Entry> batch = drainPending();
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (final Entry entry : batch) {
+      bytes.write(Json.asBytesUnchecked(entry));
+      bytes.write('\n');
+    }
+
+    try {
+      if (segment == null || segmentSize >= MAX_SEGMENT_SIZE) {
+        closeSegment();
+        segment = FileChannel.open(segmentPath(nextSegment++), CREATE_NEW, WRITE, APPEND);
+        segmentSize = 0;
+      }
+      write(segment, bytes.toByteArray());
+      segmentSize += bytes.size();
+      entries += batch.size();
+    } catch (IOException e) {
+      // The entries are still applied in memory, compacting writes them out again
+      closeSegment();
+      dirty = true;
+      throw e;
+    }
+  }
+
+  private List<Entry> drainPending() {
+    final List<Entry> batch = Lists.newArrayList();
+    Entry entry;
+    while ((entry = pending.poll()) != null) {
+      apply(entry);
+      batch.add(entry);
+    }
+    return batch;
+  }
+
+  private void compact() throws IOException {
+    drainPending();
+    closeSegment();
+
+    final Path path = segmentPath(nextSegment++);
+    final Path temp = directory.resolve(path.getFileName() + TEMP_SUFFIX);
+    log.debug("compacting task history journal of {} events into {}", events.size(), path);
+
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    for (final TaskStatusEvent event : getEvents()) {
+      bytes.write(Json.asBytesUnchecked(new Entry(Entry.Type.ADD,
+                                                  event.getStatus().getJob().getId(),
+                                                  event.getTimestamp(), event)));
+      bytes.write('\n');
+    }
+    try (final FileChannel channel = FileChannel.open(temp, CREATE_NEW, WRITE)) {
+      write(channel, bytes.toByteArray());
+    }
+    Files.move(temp, path, ATOMIC_MOVE);
+
+    for (final long number : listSegments()) {
+      if (number < nextSegment - 1) {
+        Files.delete(segmentPath(number));
+      }
+    }
+
+    segment = FileChannel.open(path, WRITE, APPEND);
+    segmentSize = bytes.size();
+    entries = events.size();
+    dirty = false;
+  }
+
+  private void recover() throws IOException {
+    try (final DirectoryStream<Path> temps = Files.newDirectoryStream(directory,
+                                                                      "*" + TEMP_SUFFIX)) {
+      for (final Path temp : temps) {
+        Files.delete(temp);
+      }
+    }
+
+    for (final long number : listSegments()) {
+      replay(segmentPath(number));
+      nextSegment = number + 1;
+    }
+
+    if (!events.isEmpty()) {
+      log.info("recovered {} task history events from {}", events.size(), directory);
+    }
+  }
+
+  private void replay(final Path path) throws IOException {
+    final byte[] bytes = Files.readAllBytes(path);
+    int start = 0;
+    for (int i = 0; i < bytes.length; i++) {
+      if (bytes[i] != '\n') {
+        continue;
+      }
+      try {
+        apply(Json.read(Arrays.copyOfRange(bytes, start, i), Entry.class));
+        entries++;
+      } catch (IOException e) {
+        log.warn("skipping unreadable task history journal entry in {}", path, e);
+      }
+      start = i + 1;
+    }
+    if (start < bytes.length) {
+      // A write that was cut short by a crash
+      log.warn("ignoring incomplete task history journal entry at the end of {}", path);
+    }
+  }
+
+  private void apply(final Entry entry) {
+    switch (entry.getType()) {
+      case ADD:
+        events.put(entry.getJobId(), entry.getTimestamp(), entry.getEvent());
+        break;
+      case REMOVE:
+        events.remove(entry.getJobId(), entry.getTimestamp());
+        break;
+      default:
+        throw new IllegalStateException("unknown journal entry type: " + entry.getType());
+    }
+  }
+
+  private List<Long> listSegments() throws IOException {
+    final List<Long> numbers = Lists.newArrayList();
+    try (final DirectoryStream<Path> segments = Files.newDirectoryStream(
+        directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+      for (final Path segment : segments) {
+        final String name = segment.getFileName().toString();
+        try {
+          numbers.add(Long.valueOf(name.substring(SEGMENT_PREFIX.length(),
+                                                  name.length() - SEGMENT_SUFFIX.length())));
+        } catch (NumberFormatException e) {
+          log.warn("ignoring unexpected file in task history journal: {}", segment);
+        }
+      }
+    }
+    Collections.sort(numbers);
+    return numbers;
+  }
+
+  private Path segmentPath(final long number) {
+    return directory.resolve(String.format("%s%016d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+  }
+
+  private void closeSegment() {
+    if (segment == null) {
+      return;
+    }
+    try {
+      segment.close();
+    } catch (IOException e) {
+      log.warn("failed to close task history journal segment", e);
+    }
+    segment = null;
+  }
+
+  private static void write(final FileChannel channel, final byte[] bytes) throws IOException {
+    final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    while (buffer.hasRemaining()) {
+      channel.write(buffer);
+    }
+    channel.force(false);
+  }
+
+  @JsonIgnoreProperties(ignoreUnknown = true)
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  static class Entry {
+
+    enum Type {
+      ADD,
+      REMOVE
+    }
+
+    private final Type type;
+    private final JobId jobId;
+    private final long timestamp;
+    private final TaskStatusEvent event;
+
+    @JsonCreator
+    Entry(@JsonProperty("type") final Type type,
+          @JsonProperty("jobId") final JobId jobId,
+          @JsonProperty("timestamp") final long timestamp,
+          @JsonProperty("event") final TaskStatusEvent event) {
+      this.type = type;
+      this.jobId = jobId;
+      this.timestamp = timestamp;
+      this.event = event;
+    }
+
+    @JsonProperty
+    public Type getType() {
+      return type;
+    }
+
+    @JsonProperty
+    public JobId getJobId() {
+      return jobId;
+    }
+
+    @JsonProperty
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    @JsonProperty
+    public TaskStatusEvent getEvent() {
+      return event;
+    }
+  }
+}
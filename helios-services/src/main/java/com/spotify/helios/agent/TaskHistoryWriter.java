@@ -23,8 +23,6 @@ package com.spotify.helios.agent;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
-import com.google.common.base.Supplier;
-import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -32,11 +30,12 @@ import com.google.common.util.concurrent.AbstractIdleService;
 import com.google.common.util.concurrent.MoreExecutors;
 
 import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.helios.common.Json;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.common.descriptors.TaskStatusEvent;
-import com.spotify.helios.servicescommon.PersistentAtomicReference;
 import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.TaskNodes;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 
 import org.apache.zookeeper.KeeperException;
@@ -47,10 +46,12 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Deque;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
@@ -75,6 +76,9 @@ import static java.util.concurrent.TimeUnit.SECONDS;
  *    occurring, as the file may get large if ZK has been away for a long time.
  * 2. We limit each job to max 30 events in memory (and in ZK for that matter)
  * 3. Maximum of 600 total events, so as not to consume all available memory.
+ * 4. Events not yet in ZK are kept in a {@link TaskHistoryJournal} on disk, so that they survive
+ *    a restart. Adding an event appends a small entry to the journal rather than rewriting all
+ *    events, which adds up when a job is flapping or ZK has been away for a while.
  */
 public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
   private static final Logger log = LoggerFactory.getLogger(TaskHistoryWriter.class);
@@ -92,38 +96,86 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
   private final String hostname;
   private final AtomicInteger count;
   private final ZooKeeperClient client;
-  private final PersistentAtomicReference<ConcurrentMap<JobId, Deque<TaskStatusEvent>>>
-      backingStore;
+  private final TaskHistoryJournal journal;
+  private final boolean normalizeEvents;
 
   public TaskHistoryWriter(final String hostname, final ZooKeeperClient client,
                                final Path backingFile) throws IOException, InterruptedException {
+    this(hostname, client, backingFile, false);
+  }
+
+  /**
+   * @param normalizeEvents Whether to write events to zookeeper that only refer to their job by
+   *                        id. See {@link TaskNodes}.
+   */
+  public TaskHistoryWriter(final String hostname, final ZooKeeperClient client,
+                           final Path backingFile, final boolean normalizeEvents)
+      throws IOException, InterruptedException {
     this.hostname = hostname;
     this.client = client;
-    this.backingStore = PersistentAtomicReference.create(backingFile,
-        new TypeReference<ConcurrentMap<JobId, Deque<TaskStatusEvent>>>() {
-        },
-        new Supplier<ConcurrentMap<JobId, Deque<TaskStatusEvent>>>() {
-          @Override
-          public ConcurrentMap<JobId, Deque<TaskStatusEvent>> get() {
-            return Maps.newConcurrentMap();
-          }
-        });
-    this.items = backingStore.get();
-
-    // Clean out any errant null values.  Normally shouldn't have any, but we did have a few
-    // where it happened, and this will make sure we can get out of a bad state if we get into it.
-    final ImmutableSet<JobId> curKeys = ImmutableSet.copyOf(this.items.keySet());
-    for (JobId key : curKeys) {
-      if (this.items.get(key) == null) {
-        this.items.remove(key);
+    this.normalizeEvents = normalizeEvents;
+    this.journal = new TaskHistoryJournal(journalDirectory(backingFile));
+    this.items = Maps.newConcurrentMap();
+    this.count = new AtomicInteger();
+
+    migrateBackingFile(backingFile);
+
+    // Rebuild the queues from the journal, dropping anything beyond the limits
+    final List<TaskStatusEvent> dropped = Lists.newArrayList();
+    for (final TaskStatusEvent event : journal.getEvents()) {
+      final Deque<TaskStatusEvent> deque = getDeque(event.getStatus().getJob().getId());
+      if (deque.size() >= MAX_QUEUE_SIZE) {
+        dropped.add(deque.remove());
+        count.decrementAndGet();
       }
+      deque.add(event);
+      count.incrementAndGet();
+    }
+    while (count.get() > MAX_TOTAL_SIZE) {
+      final TaskStatusEvent event = getNext();
+      if (event != null) {
+        dropped.add(event);
+      }
+    }
+    for (final TaskStatusEvent event : dropped) {
+      journal.remove(event);
     }
+  }
+
+  /**
+   * The journal lives next to where the whole history map used to be stored as a single file.
+   */
+  private static Path journalDirectory(final Path backingFile) {
+    final String name = backingFile.getFileName().toString();
+    final String base = name.endsWith(".json") ? name.substring(0, name.length() - 5) : name;
+    return backingFile.resolveSibling(base + ".journal");
+  }
 
-    int itemCount = 0;
-    for (Deque<TaskStatusEvent> deque : items.values()) {
-      itemCount += deque.size();
+  /**
+   * Moves events from a backing file written by an older version into the journal.
+   */
+  private void migrateBackingFile(final Path backingFile) throws IOException {
+    if (!Files.exists(backingFile)) {
+      return;
+    }
+    final byte[] bytes = Files.readAllBytes(backingFile);
+    if (bytes.length > 0) {
+      final Map<JobId, List<TaskStatusEvent>> events = Json.read(
+          bytes, new TypeReference<Map<JobId, List<TaskStatusEvent>>>() {});
+      for (final List<TaskStatusEvent> jobEvents : events.values()) {
+        // Clean out any errant null values. Normally shouldn't have any, but we did have a few
+        // where it happened, and this will make sure we can get out of a bad state if we get into
+        // it.
+        if (jobEvents == null) {
+          continue;
+        }
+        for (final TaskStatusEvent event : jobEvents) {
+          journal.add(event);
+        }
+      }
     }
-    this.count = new AtomicInteger(itemCount);
+    Files.delete(backingFile);
+    log.info("moved task history from {} into journal", backingFile);
   }
 
   @Override
@@ -135,12 +187,29 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
   protected void shutDown() throws Exception {
     zkWriterExecutor.shutdownNow();
     zkWriterExecutor.awaitTermination(1, TimeUnit.MINUTES);
+    journal.close();
   }
 
   private void add(TaskStatusEvent item) throws InterruptedException {
+    final List<TaskStatusEvent> dropped = Lists.newArrayList();
+
     // If too many "globally", toss them
     while (count.get() >= MAX_TOTAL_SIZE) {
-      getNext();
+      final TaskStatusEvent event = getNext();
+      if (event != null) {
+        dropped.add(event);
+      }
+    }
+
+    // Journal the event before it is enqueued. Once it is in a deque it can be written to zk and
+    // its removal journaled at any time, and a removal journaled ahead of the addition would
+    // resurrect the event on replay.
+    try {
+      journal.add(item);
+    } catch (ClosedByInterruptException e) {
+      log.debug("Writing task status event to journal was interrupted");
+    } catch (IOException e) { // We are best effort after all...
+      log.warn("Failed to write task status event to journal", e);
     }
 
     final JobId key = item.getStatus().getJob().getId();
@@ -149,19 +218,25 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
     synchronized (deque) {
       // if too many in the particular deque, toss them
       while (deque.size() >= MAX_QUEUE_SIZE) {
-        deque.remove();
+        dropped.add(deque.remove());
         count.decrementAndGet();
       }
       deque.add(item);
       count.incrementAndGet();
     }
 
+    for (final TaskStatusEvent event : dropped) {
+      removeFromJournal(event);
+    }
+  }
+
+  private void removeFromJournal(final TaskStatusEvent event) {
     try {
-      backingStore.set(items);
+      journal.remove(event);
     } catch (ClosedByInterruptException e) {
-      log.debug("Writing task status event to backing store was interrupted");
-    } catch (IOException e) { // We are best effort after all...
-      log.warn("Failed to write task status event to backing store", e);
+      log.debug("Removing task status event from journal was interrupted");
+    } catch (IOException e) {
+      log.warn("Failed to remove task status event from journal", e);
     }
   }
 
@@ -244,6 +319,7 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
     synchronized (queue) {
       if (queue.size() >= MAX_QUEUE_SIZE) {
         // already full, just toss the event
+        removeFromJournal(event);
         return;
       }
       queue.push(event);
@@ -274,7 +350,7 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
     while (true) {
       final TaskStatusEvent item = getNext();
       if (item == null) {
-        return;
+        break;
       }
 
       final JobId jobId = item.getStatus().getJob().getId();
@@ -286,17 +362,20 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
                   item.getTimestamp());
 
         client.ensurePath(historyPath, true);
-        client.createAndSetData(historyPath, item.getStatus().toJsonBytes());
+        client.createAndSetData(historyPath,
+                                TaskNodes.toJsonBytes(item.getStatus(), normalizeEvents));
 
         // See if too many
         final List<String> events = client.getChildren(Paths.historyJobHostEvents(jobId, hostname));
         if (events.size() > MAX_NUMBER_STATUS_EVENTS_TO_RETAIN) {
           trimStatusEvents(events, jobId);
         }
+        removeFromJournal(item);
       } catch (NodeExistsException e) {
         // Ahh, the two generals problem...  We handle by doing nothing since the thing
         // we wanted in, is in.
         log.debug("item we wanted in is already there");
+        removeFromJournal(item);
       } catch (ConnectionLossException e) {
         log.warn("Connection lost while putting item into zookeeper, will retry");
         putBack(item);
@@ -307,6 +386,14 @@ public class TaskHistoryWriter extends AbstractIdleService implements Runnable {
         break;
       }
     }
+
+    try {
+      journal.compactIfNeeded();
+    } catch (ClosedByInterruptException e) {
+      log.debug("Compacting task history journal was interrupted");
+    } catch (IOException e) {
+      log.warn("Failed to compact task history journal", e);
+    }
   }
 
   private void trimStatusEvents(List<String> events, JobId jobId) {
@@ -32,6 +32,8 @@ import com.spotify.helios.common.descriptors.ThrottleState;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.annotation.Nullable;
+
 import java.io.Closeable;
 import java.util.Objects;
 import java.util.concurrent.ScheduledExecutorService;
@@ -50,6 +52,7 @@ import static com.spotify.helios.common.descriptors.ThrottleState.IMAGE_MISSING;
 import static com.spotify.helios.common.descriptors.ThrottleState.IMAGE_PULL_FAILED;
 import static com.spotify.helios.common.descriptors.ThrottleState.NO;
 import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
@@ -63,19 +66,37 @@ public class TaskMonitor implements TaskRunner.Listener, Closeable {
 
   private final JobId jobId;
   private final ScheduledExecutorService scheduler;
+  private final boolean sharedScheduler;
   private final FlapController flapController;
   private final StatusUpdater statusUpdater;
 
   private volatile ScheduledFuture<?> flapTimeout;
+  private volatile boolean closed;
 
   private ThrottleState imageFailure;
   private ThrottleState throttle = NO;
 
   public TaskMonitor(final JobId jobId, final FlapController flapController,
                      final StatusUpdater statusUpdater) {
+    this(jobId, flapController, statusUpdater, null);
+  }
+
+  /**
+   * @param scheduler A scheduler shared with other monitors to schedule flapping state checks on,
+   *                  or null to have the monitor create one of its own.
+   */
+  public TaskMonitor(final JobId jobId, final FlapController flapController,
+                     final StatusUpdater statusUpdater,
+                     @Nullable final ScheduledExecutorService scheduler) {
     this.jobId = jobId;
     this.flapController = flapController;
     this.statusUpdater = statusUpdater;
+    this.sharedScheduler = scheduler != null;
+
+    if (sharedScheduler) {
+      this.scheduler = scheduler;
+      return;
+    }
 
     final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
     // Let core threads time out to avoid unnecessarily keeping a flapping state check thread alive
@@ -95,13 +116,20 @@ public class TaskMonitor implements TaskRunner.Listener, Closeable {
 
   @Override
   public void close() {
-    scheduler.shutdownNow();
+    closed = true;
+    if (sharedScheduler) {
+      if (flapTimeout != null) {
+        flapTimeout.cancel(false);
+      }
+    } else {
+      scheduler.shutdownNow();
+    }
   }
 
   @Override
   protected void finalize() throws Throwable {
     super.finalize();
-    if (!scheduler.isShutdown()) {
+    if (!closed) {
       log.error("task monitor not properly closed: {}", jobId);
     }
   }
@@ -134,6 +162,20 @@ public class TaskMonitor implements TaskRunner.Listener, Closeable {
   public void pullFailed() {
   }
 
+  @Override
+  public void pullTimes(final long queueWaitNanos, final long pullNanos) {
+    statusUpdater.setImagePullTimes(NANOSECONDS.toMillis(queueWaitNanos),
+                                    NANOSECONDS.toMillis(pullNanos));
+  }
+
+  @Override
+  public void imageCacheHit() {
+  }
+
+  @Override
+  public void imageCacheMiss() {
+  }
+
   @Override
   public void creating() {
     updateState(CREATING);
@@ -219,7 +261,7 @@ public class TaskMonitor implements TaskRunner.Listener, Closeable {
     }
 
     // If we're flapping, schedule a future check to potentially reset the flapping state
-    if (flapping) {
+    if (flapping && !closed) {
       if (flapTimeout != null) {
         flapTimeout.cancel(false);
       }
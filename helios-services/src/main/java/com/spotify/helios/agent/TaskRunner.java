@@ -67,6 +67,10 @@ class TaskRunner extends InterruptingExecutionThreadService {
   private final Listener listener;
   private final ServiceRegistrar registrar;
   private final Optional<HealthChecker> healthChecker;
+  private final ImagePullPolicy imagePullPolicy;
+  private final LocalImageIndex imageIndex;
+  private final ImagePullCoordinator imagePuller;
+  private final boolean imagePulled;
   private Optional<ServiceRegistrationHandle> serviceRegistrationHandle;
   private Optional<String> containerId;
   private final String containerName;
@@ -81,6 +85,10 @@ class TaskRunner extends InterruptingExecutionThreadService {
     this.existingContainerId = builder.existingContainerId;
     this.registrar = checkNotNull(builder.registrar, "registrar");
     this.healthChecker = Optional.fromNullable(builder.healthChecker);
+    this.imagePullPolicy = checkNotNull(builder.imagePullPolicy, "imagePullPolicy");
+    this.imageIndex = builder.imageIndex;
+    this.imagePuller = builder.imagePuller;
+    this.imagePulled = builder.imagePulled;
     this.serviceRegistrationHandle = Optional.absent();
     this.containerId = Optional.absent();
   }
@@ -203,9 +211,32 @@ class TaskRunner extends InterruptingExecutionThreadService {
 
     // Ensure we have the image
     final String image = config.containerImage();
-    pullImage(image);
+    final boolean present = imageIndex != null && imageIndex.contains(image);
+    if (imageIndex != null) {
+      if (present) {
+        listener.imageCacheHit();
+      } else {
+        listener.imageCacheMiss();
+      }
+    }
+
+    if (imagePullPolicy.shouldPull(image, present, imagePulled)) {
+      pullImage(image);
+      return startContainer(image);
+    }
 
-    return startContainer(image);
+    log.info("not pulling image {}, it is present locally", image);
+    try {
+      return startContainer(image);
+    } catch (ImageNotFoundException e) {
+      // The image was removed since the index was refreshed
+      if (imagePullPolicy == ImagePullPolicy.NEVER) {
+        throw e;
+      }
+      imageIndex.removed(image);
+      pullImage(image);
+      return startContainer(image);
+    }
   }
 
   private String startContainer(final String image)
@@ -258,9 +289,18 @@ class TaskRunner extends InterruptingExecutionThreadService {
 
     // Attempt to pull.  Failure, while less than ideal, is ok.
     try {
-      docker.pull(image);
+      if (imagePuller != null) {
+        final ImagePullCoordinator.Result result = imagePuller.pull(image);
+        listener.pullTimes(result.getQueueWaitNanos(), result.getPullNanos());
+        log.info("Pulled image {} in {}s: {}", image, pullTime.elapsed(SECONDS), result);
+      } else {
+        docker.pull(image);
+        log.info("Pulled image {} in {}s", image, pullTime.elapsed(SECONDS));
+      }
+      if (imageIndex != null) {
+        imageIndex.added(image);
+      }
       listener.pulled();
-      log.info("Pulled image {} in {}s", image, pullTime.elapsed(SECONDS));
     } catch (DockerTimeoutException e) {
       log.warn("Pulling image {} failed with timeout after {}s", image,
                pullTime.elapsed(SECONDS), e);
@@ -295,6 +335,16 @@ class TaskRunner extends InterruptingExecutionThreadService {
 
     void pullFailed();
 
+    /**
+     * Called after a successful pull through an {@link ImagePullCoordinator} with the time spent
+     * waiting for a pull slot and the time spent actually pulling.
+     */
+    void pullTimes(long queueWaitNanos, long pullNanos);
+
+    void imageCacheHit();
+
+    void imageCacheMiss();
+
     void creating();
 
     void created(String containerId);
@@ -326,6 +376,10 @@ class TaskRunner extends InterruptingExecutionThreadService {
     private Listener listener;
     private HealthChecker healthChecker;
     public ServiceRegistrar registrar = new NopServiceRegistrar();
+    private ImagePullPolicy imagePullPolicy = ImagePullPolicy.ALWAYS;
+    private LocalImageIndex imageIndex;
+    private ImagePullCoordinator imagePuller;
+    private boolean imagePulled;
 
     public Builder delayMillis(final long delayMillis) {
       this.delayMillis = delayMillis;
@@ -362,6 +416,29 @@ class TaskRunner extends InterruptingExecutionThreadService {
       return this;
     }
 
+    public Builder imagePullPolicy(final ImagePullPolicy imagePullPolicy) {
+      this.imagePullPolicy = imagePullPolicy;
+      return this;
+    }
+
+    public Builder imageIndex(final LocalImageIndex imageIndex) {
+      this.imageIndex = imageIndex;
+      return this;
+    }
+
+    public Builder imagePuller(final ImagePullCoordinator imagePuller) {
+      this.imagePuller = imagePuller;
+      return this;
+    }
+
+    /**
+     * Whether the image was already pulled for an earlier start of this job.
+     */
+    public Builder imagePulled(final boolean imagePulled) {
+      this.imagePulled = imagePulled;
+      return this;
+    }
+
     public TaskRunner build() {
       return new TaskRunner(this);
     }
@@ -389,6 +466,21 @@ class TaskRunner extends InterruptingExecutionThreadService {
 
     }
 
+    @Override
+    public void pullTimes(final long queueWaitNanos, final long pullNanos) {
+
+    }
+
+    @Override
+    public void imageCacheHit() {
+
+    }
+
+    @Override
+    public void imageCacheMiss() {
+
+    }
+
     @Override
     public void creating() {
 
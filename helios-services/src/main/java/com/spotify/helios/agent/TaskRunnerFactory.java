@@ -43,6 +43,12 @@ public class TaskRunnerFactory {
   private final Optional<HealthChecker> healthChecker;
   private final ServiceRegistrar registrar;
   private final List<TaskRunner.Listener> listeners;
+  private final ImagePullPolicy imagePullPolicy;
+  private final LocalImageIndex imageIndex;
+  private final ImagePullCoordinator imagePuller;
+  private final ImagePrePuller prePuller;
+
+  private volatile boolean imagePulled;
 
   public TaskRunnerFactory(final Builder builder) {
     this.taskConfig = checkNotNull(builder.config, "config");
@@ -50,6 +56,10 @@ public class TaskRunnerFactory {
     this.docker = checkNotNull(builder.docker, "docker");
     this.listeners = checkNotNull(builder.listeners, "listeners");
     this.healthChecker = Optional.fromNullable(builder.healthChecker);
+    this.imagePullPolicy = checkNotNull(builder.imagePullPolicy, "imagePullPolicy");
+    this.imageIndex = builder.imageIndex;
+    this.imagePuller = builder.imagePuller;
+    this.prePuller = builder.prePuller;
   }
 
   public TaskRunner create(final long delay,
@@ -61,11 +71,20 @@ public class TaskRunnerFactory {
         .docker(docker)
         .healthChecker(healthChecker.orNull())
         .existingContainerId(containerId)
-        .listener(new BroadcastingListener(concat(this.listeners, asList(listener))))
+        .listener(new BroadcastingListener(
+            concat(this.listeners, asList(listener, new PullTracker()))))
         .registrar(registrar)
+        .imagePullPolicy(imagePullPolicy)
+        .imageIndex(imageIndex)
+        .imagePuller(imagePuller)
+        .imagePulled(imagePulled || isPrePulled())
         .build();
   }
 
+  private boolean isPrePulled() {
+    return prePuller != null && prePuller.isPulled(taskConfig.containerImage());
+  }
+
   public static Builder builder() {
     return new Builder();
   }
@@ -80,6 +99,10 @@ public class TaskRunnerFactory {
     private HealthChecker healthChecker;
     private ServiceRegistrar registrar;
     private List<TaskRunner.Listener> listeners = Lists.newArrayList();
+    private ImagePullPolicy imagePullPolicy = ImagePullPolicy.ALWAYS;
+    private LocalImageIndex imageIndex;
+    private ImagePullCoordinator imagePuller;
+    private ImagePrePuller prePuller;
 
     public Builder config(final TaskConfig config) {
       this.config = config;
@@ -106,6 +129,26 @@ public class TaskRunnerFactory {
       return this;
     }
 
+    public Builder imagePullPolicy(final ImagePullPolicy imagePullPolicy) {
+      this.imagePullPolicy = imagePullPolicy;
+      return this;
+    }
+
+    public Builder imageIndex(final LocalImageIndex imageIndex) {
+      this.imageIndex = imageIndex;
+      return this;
+    }
+
+    public Builder imagePuller(final ImagePullCoordinator imagePuller) {
+      this.imagePuller = imagePuller;
+      return this;
+    }
+
+    public Builder prePuller(final ImagePrePuller prePuller) {
+      this.prePuller = prePuller;
+      return this;
+    }
+
     public TaskRunnerFactory build() {
       return new TaskRunnerFactory(this);
     }
@@ -147,6 +190,27 @@ public class TaskRunnerFactory {
       }
     }
 
+    @Override
+    public void pullTimes(final long queueWaitNanos, final long pullNanos) {
+      for (TaskRunner.Listener l : listeners) {
+        l.pullTimes(queueWaitNanos, pullNanos);
+      }
+    }
+
+    @Override
+    public void imageCacheHit() {
+      for (TaskRunner.Listener l : listeners) {
+        l.imageCacheHit();
+      }
+    }
+
+    @Override
+    public void imageCacheMiss() {
+      for (TaskRunner.Listener l : listeners) {
+        l.imageCacheMiss();
+      }
+    }
+
     @Override
     public void creating() {
       for (TaskRunner.Listener l : listeners) {
@@ -196,4 +260,15 @@ public class TaskRunnerFactory {
       }
     }
   }
+
+  /**
+   * Remembers that the image was pulled, so that restarts of the container don't pull it again.
+   */
+  private class PullTracker extends TaskRunner.NopListener {
+
+    @Override
+    public void pulled() {
+      imagePulled = true;
+    }
+  }
 }
@@ -26,21 +26,23 @@ import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractIdleService;
 
 import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.Task;
 import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.common.descriptors.TaskStatusEvent;
 import com.spotify.helios.servicescommon.KafkaRecord;
 import com.spotify.helios.servicescommon.KafkaSender;
+import com.spotify.helios.servicescommon.coordination.JobDefinitionCache;
 import com.spotify.helios.servicescommon.coordination.Paths;
 import com.spotify.helios.servicescommon.coordination.PersistentPathChildrenCache;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
+import com.spotify.helios.servicescommon.coordination.TaskNodes;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperUpdatingPersistentDirectory;
 
 import org.apache.curator.framework.state.ConnectionState;
-import org.apache.kafka.common.serialization.ByteArraySerializer;
-import org.apache.kafka.common.serialization.StringSerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -50,7 +52,6 @@ import java.util.Map;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import static com.google.common.base.Preconditions.checkNotNull;
-import static com.spotify.helios.common.descriptors.Descriptor.parse;
 
 /**
  * The Helios Agent's view into ZooKeeper.
@@ -72,31 +73,67 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
   private final KafkaSender kafkaSender;
 
   private final String agent;
+  private final boolean normalizeTaskNodes;
   private final CopyOnWriteArrayList<AgentModel.Listener> listeners = new CopyOnWriteArrayList<>();
 
+  /**
+   * Resolves the jobs of the agent's own task statuses from its tasks, which is all the agent needs
+   * them for, so that reading them back never waits on zookeeper.
+   */
+  private final TaskNodes.JobResolver assignedJobs = new TaskNodes.JobResolver() {
+    @Override
+    public Job getJob(final JobId id) {
+      final Task task = tasks.getNodes().get(Paths.configHostJob(agent, id));
+      return task == null ? null : task.getJob();
+    }
+  };
+
   public ZooKeeperAgentModel(final ZooKeeperClientProvider provider,
-                             final KafkaClientProvider kafkaProvider, final String host,
+                             final KafkaSender kafkaSender, final String host,
                              final Path stateDirectory) throws IOException, InterruptedException {
+    this(provider, kafkaSender, host, stateDirectory, false, ResyncThrottle.noop());
+  }
+
+  /**
+   * @param normalizeTaskNodes Whether to write task statuses and history events that only refer to
+   *                           their job by id. See {@link TaskNodes}.
+   * @param resyncThrottle     Throttles the resync of the task statuses after reconnecting.
+   */
+  public ZooKeeperAgentModel(final ZooKeeperClientProvider provider,
+                             final KafkaSender kafkaSender, final String host,
+                             final Path stateDirectory, final boolean normalizeTaskNodes,
+                             final ResyncThrottle resyncThrottle)
+      throws IOException, InterruptedException {
     // TODO(drewc): we're constructing too many heavyweight things in the ctor, these kinds of
     // things should be passed in/provider'd/etc.
     final ZooKeeperClient client = provider.get("ZooKeeperAgentModel_ctor");
     this.agent = checkNotNull(host);
+    this.normalizeTaskNodes = normalizeTaskNodes;
     final Path taskConfigFile = stateDirectory.resolve(TASK_CONFIG_FILENAME);
 
-    this.tasks = client.pathChildrenCache(Paths.configHostJobs(host), taskConfigFile,
-                                          Json.type(Task.class));
+    // Normalized tasks are resolved as they are fetched, so that the snapshot holds whole jobs and
+    // the agent keeps working while zookeeper is unavailable
+    final JobDefinitionCache jobs = new JobDefinitionCache(provider);
+    this.tasks = client.pathChildrenCache(
+        Paths.configHostJobs(host), taskConfigFile, Json.type(Task.class),
+        new PersistentPathChildrenCache.Decoder<Task>() {
+          @Override
+          public Task decode(final byte[] data) throws IOException {
+            return TaskNodes.parseTask(data, jobs);
+          }
+        });
     tasks.addListener(new JobsListener());
     final Path taskStatusFile = stateDirectory.resolve(TASK_STATUS_FILENAME);
 
     this.taskStatuses = ZooKeeperUpdatingPersistentDirectory.create("agent-model-task-statuses",
                                                                     provider,
                                                                     taskStatusFile,
-                                                                    Paths.statusHostJobs(host));
+                                                                    Paths.statusHostJobs(host),
+                                                                    resyncThrottle);
     this.historyWriter = new TaskHistoryWriter(
-        host, client, stateDirectory.resolve(TASK_HISTORY_FILENAME));
+        host, client, stateDirectory.resolve(TASK_HISTORY_FILENAME), normalizeTaskNodes);
 
-    this.kafkaSender = new KafkaSender(
-        kafkaProvider.getProducer(new StringSerializer(), new ByteArraySerializer()));
+    this.kafkaSender = checkNotNull(kafkaSender);
   }
 
   @Override
@@ -104,6 +141,7 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
     tasks.startAsync().awaitRunning();
     taskStatuses.startAsync().awaitRunning();
     historyWriter.startAsync().awaitRunning();
+    kafkaSender.startAsync().awaitRunning();
   }
 
   @Override
@@ -111,6 +149,7 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
     tasks.stopAsync().awaitTerminated();
     taskStatuses.stopAsync().awaitTerminated();
     historyWriter.stopAsync().awaitTerminated();
+    kafkaSender.stopAsync().awaitTerminated();
   }
 
   private JobId jobIdFromTaskPath(final String path) {
@@ -140,7 +179,7 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
     for (Map.Entry<String, byte[]> entry : this.taskStatuses.entrySet()) {
       try {
         final JobId id = JobId.fromString(entry.getKey());
-        final TaskStatus status = Json.read(entry.getValue(), TaskStatus.class);
+        final TaskStatus status = TaskNodes.parseTaskStatus(entry.getValue(), assignedJobs);
         statuses.put(id, status);
       } catch (IOException e) {
         throw Throwables.propagate(e);
@@ -156,7 +195,7 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
   public void setTaskStatus(final JobId jobId, final TaskStatus status)
       throws InterruptedException {
     log.debug("setting task status: {}", status);
-    taskStatuses.put(jobId.toString(), status.toJsonBytes());
+    taskStatuses.put(jobId.toString(), TaskNodes.toJsonBytes(status, normalizeTaskNodes));
     try {
       historyWriter.saveHistoryItem(jobId, status);
     } catch (Exception e) {
@@ -179,7 +218,7 @@ public class ZooKeeperAgentModel extends AbstractIdleService implements AgentMod
       return null;
     }
     try {
-      return parse(data, TaskStatus.class);
+      return TaskNodes.parseTaskStatus(data, assignedJobs);
     } catch (IOException e) {
       throw Throwables.propagate(e);
     }
@@ -22,32 +22,50 @@
 package com.spotify.helios.master;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
-import com.spotify.helios.agent.InterruptingScheduledService;
 import com.spotify.helios.agent.Clock;
 import com.spotify.helios.agent.SystemClock;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
+import com.spotify.helios.servicescommon.coordination.JobDefinitionCache;
 
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.List;
-import java.util.Map.Entry;
+import java.util.Map;
+import java.util.PriorityQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.DAYS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
- * The ExpiredJobReaper periodically checks if any jobs in the cluster have expired.
- * For any job that is at or past its expiration date, it undeploys the job from
- * any deployed hosts, and then removes the job entirely from the cluster.
+ * The ExpiredJobReaper removes jobs from the cluster once they have expired. For any job that is at
+ * or past its expiration date, it undeploys the job from any deployed hosts, and then removes the
+ * job entirely from the cluster.
+ *
+ * Rather than scanning all jobs periodically, the reaper keeps the expiration dates of the jobs in
+ * a heap that follows the jobs being created and deleted, and wakes up when the next job expires.
+ * Every master keeps the heap, but if a {@link LeaderLatch} is given only the master holding it
+ * reaps jobs.
  */
-public class ExpiredJobReaper extends InterruptingScheduledService {
+public class ExpiredJobReaper extends AbstractIdleService {
 
   private static final Logger log = LoggerFactory.getLogger(ExpiredJobReaper.class);
 
@@ -55,59 +73,247 @@ public class ExpiredJobReaper extends InterruptingScheduledService {
   public static final TimeUnit DEFAUL_TIMEUNIT = SECONDS;
 
   private final MasterModel masterModel;
-  private final int interval;
-  private final TimeUnit timeUnit;
+  private final JobDefinitionCache jobDefinitions;
+  private final LeaderLatch leaderLatch;
+  private final long retryMillis;
   private final Clock clock;
 
+  private final ScheduledExecutorService executor;
+  private final ExpiryIndex index = new ExpiryIndex();
+
+  // The jobs with an expiration date that have not been removed yet, and when they are due. Jobs
+  // are not taken out of the heap when they are removed, so it may hold jobs that are not in the
+  // map anymore. Guarded by this.
+  private final Map<JobId, Job> expiringJobs = Maps.newHashMap();
+  private final PriorityQueue<Expiration> expirations = new PriorityQueue<>();
+
+  // Guarded by this
+  private ScheduledFuture<?> wakeup;
+  private long wakeupTime;
+
+  private final Runnable reaper = new Runnable() {
+    @Override
+    public void run() {
+      try {
+        reap();
+      } catch (Exception e) {
+        log.warn("reaping expired jobs failed", e);
+      }
+    }
+  };
+
   private ExpiredJobReaper(final Builder builder) {
-    this.masterModel = builder.masterModel;
-    this.interval = builder.interval;
-    this.timeUnit = checkNotNull(builder.timeUnit);
+    this.masterModel = checkNotNull(builder.masterModel);
+    this.jobDefinitions = checkNotNull(builder.jobDefinitions);
+    this.leaderLatch = builder.leaderLatch;
+    this.retryMillis = checkNotNull(builder.timeUnit).toMillis(builder.interval);
     this.clock = checkNotNull(builder.clock);
+
+    final ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(
+        1, new ThreadFactoryBuilder().setNameFormat("expired-job-reaper-%d").build());
+    // Wakeups are cancelled whenever a job expires before the next one
+    executor.setRemoveOnCancelPolicy(true);
+    this.executor = MoreExecutors.getExitingScheduledExecutorService(executor, 0, SECONDS);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (leaderLatch != null) {
+      leaderLatch.addListener(new LeaderLatchListener() {
+        @Override
+        public void isLeader() {
+          log.info("elected leader, reaping expired jobs");
+          reaper.run();
+        }
+
+        @Override
+        public void notLeader() {
+          log.info("no longer leader, not reaping expired jobs");
+        }
+      }, executor);
+      leaderLatch.start();
+    }
+    jobDefinitions.addListener(index);
   }
 
   @Override
-  protected void runOneIteration() {
-    for (Entry<JobId, Job> entry : masterModel.getJobs().entrySet()) {
-      final JobId jobId = entry.getKey();
-      final Job job = entry.getValue();
+  protected void shutDown() throws Exception {
+    jobDefinitions.removeListener(index);
+    // Closing the latch tells the listener we are no longer leader, which runs on the executor
+    if (leaderLatch != null) {
+      leaderLatch.close();
+    }
+    executor.shutdownNow();
+    executor.awaitTermination(1, DAYS);
+  }
 
-      if (job.getExpires() == null) {
-        continue;
-      } else if (job.getExpires().getTime() <= clock.now().getMillis()) {
-        final JobStatus status = masterModel.getJobStatus(jobId);
-        final List<String> hosts = ImmutableList.copyOf(status.getDeployments().keySet());
-
-        for (String host : hosts) {
-          try {
-            masterModel.undeployJob(host, jobId, job.getToken());
-          } catch (HostNotFoundException e) {
-            log.error("couldn't undeploy job {} from host {} when it hit deadline", jobId, host, e);
-          } catch (JobNotDeployedException e) {
-            log.debug("job {} was already undeployed when it hit deadline", jobId, e);
-          } catch (TokenVerificationException e) {
-            log.error("couldn't undeploy job {} from host {} because token verification failed",
-                      jobId, host, e);
+  private boolean isLeader() {
+    return leaderLatch == null || leaderLatch.hasLeadership();
+  }
+
+  private void reap() {
+    if (!isLeader()) {
+      // Whoever is the leader reaps the expired jobs, and we catch up when elected
+      synchronized (this) {
+        cancelWakeup();
+      }
+      return;
+    }
+
+    for (final Job job : takeExpired()) {
+      boolean reaped;
+      try {
+        reaped = reap(job);
+      } catch (RuntimeException e) {
+        log.warn("couldn't reap expired job {}", job.getId(), e);
+        reaped = false;
+      }
+      synchronized (this) {
+        if (reaped) {
+          expiringJobs.remove(job.getId());
+        } else if (expiringJobs.containsKey(job.getId())) {
+          expirations.add(new Expiration(clock.now().getMillis() + retryMillis, job.getId()));
+        }
+      }
+    }
+
+    synchronized (this) {
+      scheduleWakeup();
+    }
+  }
+
+  /**
+   * Undeploys an expired job from all hosts and removes it.
+   *
+   * @return false if the job should be reaped again later.
+   */
+  private boolean reap(final Job job) {
+    final JobId jobId = job.getId();
+    log.info("reaping expired job {}", jobId);
+
+    final JobStatus status = masterModel.getJobStatus(jobId, StatusView.SUMMARY);
+    if (status == null) {
+      log.debug("job {} was already removed when it hit deadline", jobId);
+      return true;
+    }
+
+    try {
+      final List<String> hosts = ImmutableList.copyOf(status.getDeployments().keySet());
+      if (!hosts.isEmpty()) {
+        final Map<String, JobUndeployResponse.Status> results =
+            masterModel.undeployJob(jobId, hosts, job.getToken());
+        for (final Map.Entry<String, JobUndeployResponse.Status> entry : results.entrySet()) {
+          if (entry.getValue() == JobUndeployResponse.Status.HOST_NOT_FOUND) {
+            log.error("couldn't undeploy job {} from host {} when it hit deadline: {}",
+                      jobId, entry.getKey(), entry.getValue());
+          } else if (entry.getValue() == JobUndeployResponse.Status.JOB_NOT_FOUND) {
+            log.debug("job {} was already undeployed from host {} when it hit deadline",
+                      jobId, entry.getKey());
           }
         }
+      }
+      masterModel.removeJob(jobId, job.getToken());
+      return true;
+    } catch (JobDoesNotExistException e) {
+      log.debug("job {} was already removed when it hit deadline", jobId, e);
+      return true;
+    } catch (JobStillDeployedException e) {
+      log.debug("job {} still deployed on some host(s) after expiry reap", jobId, e);
+      return false;
+    } catch (TokenVerificationException e) {
+      log.error("couldn't reap job {} because token verification failed", jobId, e);
+      return false;
+    }
+  }
+
+  /**
+   * Takes the jobs that are due out of the heap.
+   */
+  private synchronized List<Job> takeExpired() {
+    // Whatever is due is handled now, and the next wakeup is scheduled afterwards
+    cancelWakeup();
+
+    final long now = clock.now().getMillis();
+    final List<Job> expired = Lists.newArrayList();
+    while (!expirations.isEmpty() && expirations.peek().time <= now) {
+      final Job job = expiringJobs.get(expirations.poll().jobId);
+      if (job != null) {
+        expired.add(job);
+      }
+    }
+    return expired;
+  }
+
+  /**
+   * Makes sure that the reaper wakes up when the next job is due. Must hold the lock.
+   */
+  private void scheduleWakeup() {
+    // Drop removed jobs from the top of the heap so that they don't cause needless wakeups
+    while (!expirations.isEmpty() && !expiringJobs.containsKey(expirations.peek().jobId)) {
+      expirations.poll();
+    }
+
+    final Expiration next = expirations.peek();
+    if (next == null) {
+      return;
+    }
+    if (wakeup != null && wakeupTime <= next.time) {
+      return;
+    }
+
+    cancelWakeup();
+    wakeupTime = next.time;
+    final long delay = Math.max(0, next.time - clock.now().getMillis());
+    wakeup = executor.schedule(reaper, delay, MILLISECONDS);
+  }
+
+  /**
+   * Must hold the lock.
+   */
+  private void cancelWakeup() {
+    if (wakeup != null) {
+      wakeup.cancel(false);
+      wakeup = null;
+    }
+  }
+
+  private class ExpiryIndex implements JobDefinitionCache.Listener {
 
-        try {
-          masterModel.removeJob(jobId, job.getToken());
-        } catch (JobDoesNotExistException e) {
-          log.debug("job {} was already removed when it hit deadline", jobId, e);
-        } catch (JobStillDeployedException e) {
-          log.debug("job {} still deployed on some host(s) after expiry reap", jobId, e);
-        } catch (TokenVerificationException e) {
-          log.error("couldn't remove job {} because token verification failed", jobId, e);
+    @Override
+    public void jobAdded(final Job job) {
+      if (job.getExpires() == null) {
+        return;
+      }
+      synchronized (ExpiredJobReaper.this) {
+        if (expiringJobs.put(job.getId(), job) == null) {
+          expirations.add(new Expiration(job.getExpires().getTime(), job.getId()));
+          scheduleWakeup();
         }
       }
     }
+
+    @Override
+    public void jobRemoved(final JobId id) {
+      synchronized (ExpiredJobReaper.this) {
+        expiringJobs.remove(id);
+      }
+    }
   }
 
-  @Override
-  protected ScheduledFuture<?> schedule(final Runnable runnable,
-                                        final ScheduledExecutorService executorService) {
-    return executorService.scheduleWithFixedDelay(runnable, 0, interval, timeUnit);
+  private static class Expiration implements Comparable<Expiration> {
+
+    private final long time;
+    private final JobId jobId;
+
+    private Expiration(final long time, final JobId jobId) {
+      this.time = time;
+      this.jobId = jobId;
+    }
+
+    @Override
+    public int compareTo(final Expiration other) {
+      return Long.compare(time, other.time);
+    }
   }
 
   public static Builder newBuilder() {
@@ -120,6 +326,8 @@ public class ExpiredJobReaper extends InterruptingScheduledService {
     }
 
     private MasterModel masterModel;
+    private JobDefinitionCache jobDefinitions;
+    private LeaderLatch leaderLatch;
     private int interval = DEFAULT_INTERVAL;
     private TimeUnit timeUnit = DEFAUL_TIMEUNIT;
     private Clock clock = new SystemClock();
@@ -134,6 +342,25 @@ public class ExpiredJobReaper extends InterruptingScheduledService {
       return this;
     }
 
+    /**
+     * Sets the cache whose jobs are reaped. It must be watching the jobs in zookeeper.
+     */
+    public Builder setJobDefinitions(final JobDefinitionCache jobDefinitions) {
+      this.jobDefinitions = jobDefinitions;
+      return this;
+    }
+
+    /**
+     * Only reap jobs while holding this latch. The reaper starts and closes the latch.
+     */
+    public Builder setLeaderLatch(final LeaderLatch leaderLatch) {
+      this.leaderLatch = leaderLatch;
+      return this;
+    }
+
+    /**
+     * Sets how long to wait before trying again to reap a job that could not be reaped.
+     */
     public Builder setInterval(final int interval) {
       this.interval = interval;
       return this;
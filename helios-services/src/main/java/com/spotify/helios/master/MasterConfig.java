@@ -52,6 +52,8 @@ public class MasterConfig extends Configuration {
   private InetSocketAddress httpEndpoint;
   private List<String> kafkaBrokers;
   private Path stateDirectory;
+  private boolean zooKeeperStateMirror;
+  private boolean normalizeTaskNodes;
 
   public String getDomain() {
     return domain;
@@ -207,6 +209,24 @@ public class MasterConfig extends Configuration {
     return this;
   }
 
+  public boolean getZooKeeperStateMirror() {
+    return zooKeeperStateMirror;
+  }
+
+  public MasterConfig setZooKeeperStateMirror(final boolean zooKeeperStateMirror) {
+    this.zooKeeperStateMirror = zooKeeperStateMirror;
+    return this;
+  }
+
+  public boolean getNormalizeTaskNodes() {
+    return normalizeTaskNodes;
+  }
+
+  public MasterConfig setNormalizeTaskNodes(final boolean normalizeTaskNodes) {
+    this.normalizeTaskNodes = normalizeTaskNodes;
+    return this;
+  }
+
   public int getAdminPort() {
     return adminPort;
   }
@@ -28,8 +28,12 @@ import com.spotify.helios.common.descriptors.HostStatus;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.descriptors.PrePullState;
 import com.spotify.helios.common.descriptors.RolloutOptions;
 import com.spotify.helios.common.descriptors.TaskStatusEvent;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
 
 import java.util.List;
 import java.util.Map;
@@ -48,14 +52,37 @@ public interface MasterModel {
 
   HostStatus getHostStatus(String host);
 
+  /**
+   * Returns the status of a host, reading only what {@code view} includes.
+   */
+  HostStatus getHostStatus(String host, StatusView view);
+
+  /**
+   * Returns the progress of the pulls of the image of {@code jobId} that {@code hosts} were asked
+   * to do ahead of a rolling update, by host. Hosts without such a pull are left out.
+   */
+  Map<String, PrePullState> getPrePullStates(List<String> hosts, JobId jobId);
+
   void addJob(Job job) throws JobExistsException;
 
   Job getJob(JobId jobId);
 
   Map<JobId, Job> getJobs();
 
+  /**
+   * Returns the ids of all jobs without reading their definitions.
+   */
+  List<JobId> getJobIds();
+
   JobStatus getJobStatus(JobId jobId);
 
+  /**
+   * Returns the status of a job, with task statuses stripped down to what {@code view} includes.
+   *
+   * @throws IllegalArgumentException If the view is {@link StatusView#LABELS}.
+   */
+  JobStatus getJobStatus(JobId jobId, StatusView view);
+
   Job removeJob(JobId jobId)
       throws JobDoesNotExistException,
              JobStillDeployedException;
@@ -78,6 +105,17 @@ public interface MasterModel {
              JobPortAllocationConflictException,
              TokenVerificationException;
 
+  /**
+   * Deploys a job to several hosts, committing the deployments in as few transactions as possible.
+   *
+   * @return The outcome for each host: {@code OK}, {@code HOST_NOT_FOUND},
+   *     {@code JOB_ALREADY_DEPLOYED} or {@code PORT_CONFLICT}.
+   */
+  Map<String, JobDeployResponse.Status> deployJob(List<String> hosts, Deployment deployment,
+                                                  String token)
+      throws JobDoesNotExistException,
+             TokenVerificationException;
+
   Deployment getDeployment(String host, JobId jobId);
 
   Deployment undeployJob(String host, JobId jobId)
@@ -89,6 +127,17 @@ public interface MasterModel {
              JobNotDeployedException,
              TokenVerificationException;
 
+  /**
+   * Undeploys a job from several hosts, committing the undeploys in as few transactions as
+   * possible.
+   *
+   * @return The outcome for each host: {@code OK}, {@code HOST_NOT_FOUND}, or {@code JOB_NOT_FOUND}
+   *     if the job was not deployed on the host.
+   */
+  Map<String, JobUndeployResponse.Status> undeployJob(JobId jobId, List<String> hosts, String token)
+      throws JobDoesNotExistException,
+             TokenVerificationException;
+
   void updateDeployment(String host, Deployment deployment)
       throws HostNotFoundException,
              JobNotDeployedException;
@@ -30,6 +30,8 @@ import net.sourceforge.argparse4j.inf.Namespace;
 
 import java.net.InetSocketAddress;
 
+import static net.sourceforge.argparse4j.impl.Arguments.storeTrue;
+
 /**
  * Parses command-line arguments to produce the {@link MasterConfig}.
  */
@@ -39,6 +41,7 @@ public class MasterParser extends ServiceParser {
 
   private Argument httpArg;
   private Argument adminArg;
+  private Argument zkStateMirrorArg;
 
   public MasterParser(final String... args) throws ArgumentParserException {
     super("helios-master", "Spotify Helios Master", args);
@@ -64,7 +67,9 @@ public class MasterParser extends ServiceParser {
         .setAdminPort(options.getInt(adminArg.getDest()))
         .setHttpEndpoint(httpAddress)
         .setKafkaBrokers(getKafkaBrokers())
-        .setStateDirectory(getStateDirectory());
+        .setStateDirectory(getStateDirectory())
+        .setZooKeeperStateMirror(options.getBoolean(zkStateMirrorArg.getDest()))
+        .setNormalizeTaskNodes(getNormalizeTaskNodes());
 
     this.masterConfig = config;
   }
@@ -79,6 +84,12 @@ public class MasterParser extends ServiceParser {
         .type(Integer.class)
         .setDefault(5802)
         .help("admin http port");
+
+    zkStateMirrorArg = parser.addArgument("--zk-state-mirror")
+        .action(storeTrue())
+        .setDefault(false)
+        .help("Serve host and job status reads from an in-memory mirror of zookeeper that is kept "
+              + "up to date using watches.");
   }
 
   public MasterConfig getMasterConfig() {
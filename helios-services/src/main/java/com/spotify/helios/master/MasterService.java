@@ -37,6 +37,7 @@ import com.spotify.helios.master.resources.HostsResource;
 import com.spotify.helios.master.resources.JobsResource;
 import com.spotify.helios.master.resources.MastersResource;
 import com.spotify.helios.master.resources.VersionResource;
+import com.spotify.helios.rollingupdate.HostLabelIndex;
 import com.spotify.helios.rollingupdate.RollingUpdateService;
 import com.spotify.helios.serviceregistration.ServiceRegistrar;
 import com.spotify.helios.serviceregistration.ServiceRegistration;
@@ -50,17 +51,22 @@ import com.spotify.helios.servicescommon.ServiceUtil;
 import com.spotify.helios.servicescommon.ZooKeeperRegistrar;
 import com.spotify.helios.servicescommon.coordination.CuratorClientFactory;
 import com.spotify.helios.servicescommon.coordination.DefaultZooKeeperClient;
+import com.spotify.helios.servicescommon.coordination.JobDefinitionCache;
 import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperHealthChecker;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperModelReporter;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperStateMirror;
 import com.spotify.helios.servicescommon.statistics.Metrics;
 import com.spotify.helios.servicescommon.statistics.MetricsImpl;
 import com.spotify.helios.servicescommon.statistics.NoopMetrics;
+import com.spotify.helios.servicescommon.statistics.NoopZooKeeperMetrics;
 
 import org.apache.curator.RetryPolicy;
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
 import org.apache.curator.retry.ExponentialBackoffRetry;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.apache.kafka.common.serialization.StringSerializer;
@@ -105,7 +111,11 @@ public class MasterService extends AbstractIdleService {
   private final ZooKeeperClient zooKeeperClient;
   private final ExpiredJobReaper expiredJobReaper;
   private final CuratorClientFactory curatorClientFactory;
+  private final HostLabelIndex hostLabelIndex;
   private final RollingUpdateService rollingUpdateService;
+  private final ZooKeeperStateMirror zooKeeperStateMirror;
+  private final JobDefinitionCache jobDefinitionCache;
+  private final KafkaSender kafkaSender;
 
   private ZooKeeperRegistrar zkRegistrar;
 
@@ -145,8 +155,15 @@ public class MasterService extends AbstractIdleService {
     this.zooKeeperClient = setupZookeeperClient(config);
     final ZooKeeperModelReporter modelReporter = new ZooKeeperModelReporter(
         riemannFacade, metrics.getZooKeeperMetrics());
+    if (config.getZooKeeperStateMirror()) {
+      this.zooKeeperStateMirror = new ZooKeeperStateMirror(
+          zooKeeperClient.getCuratorFramework(),
+          Paths.configHosts(), Paths.configJobs(), Paths.statusHosts());
+    } else {
+      this.zooKeeperStateMirror = null;
+    }
     final ZooKeeperClientProvider zkClientProvider = new ZooKeeperClientProvider(
-        zooKeeperClient, modelReporter);
+        zooKeeperClient, modelReporter, zooKeeperStateMirror);
     final KafkaClientProvider kafkaClientProvider = new KafkaClientProvider(
         config.getKafkaBrokers());
 
@@ -163,11 +180,16 @@ public class MasterService extends AbstractIdleService {
 
     // Make a KafkaProducer for events that can be serialized to an array of bytes,
     // and wrap it in our KafkaSender.
-    final KafkaSender kafkaSender = new KafkaSender(
-        kafkaClientProvider.getProducer(new StringSerializer(), new ByteArraySerializer()));
+    this.kafkaSender = new KafkaSender(
+        kafkaClientProvider.getProducer(new StringSerializer(), new ByteArraySerializer()),
+        metrics.getKafkaMetrics());
 
+    // Jobs never change, so all of them are kept in memory once read
+    this.jobDefinitionCache = new JobDefinitionCache(zkClientProvider,
+                                                     zooKeeperClient.getCuratorFramework());
     final ZooKeeperMasterModel model =
-        new ZooKeeperMasterModel(zkClientProvider, config.getName(), kafkaSender);
+        new ZooKeeperMasterModel(zkClientProvider, config.getName(), kafkaSender,
+                                 config.getNormalizeTaskNodes(), jobDefinitionCache);
 
     final ZooKeeperHealthChecker zooKeeperHealthChecker = new ZooKeeperHealthChecker(
         zooKeeperClient, Paths.statusMasters(), riemannFacade, TimeUnit.MINUTES, 2);
@@ -181,14 +203,18 @@ public class MasterService extends AbstractIdleService {
                                             config.getServiceRegistryAddress(),
                                             config.getDomain());
 
-    // Set up reaping of expired jobs
+    // Set up reaping of expired jobs, which only the elected leader among the masters does
     this.expiredJobReaper = ExpiredJobReaper.newBuilder()
         .setMasterModel(model)
+        .setJobDefinitions(jobDefinitionCache)
+        .setLeaderLatch(new LeaderLatch(zooKeeperClient.getCuratorFramework(),
+                                        Paths.statusMasterLeader(), config.getName()))
         .build();
 
     // Set up rolling update service
+    this.hostLabelIndex = new HostLabelIndex(zooKeeperClient.getCuratorFramework());
     final ReactorFactory reactorFactory = new ReactorFactory();
-    this.rollingUpdateService = new RollingUpdateService(model, reactorFactory);
+    this.rollingUpdateService = new RollingUpdateService(model, hostLabelIndex, reactorFactory);
 
     // Set up http server
     environment.servlets()
@@ -259,7 +285,13 @@ public class MasterService extends AbstractIdleService {
     if (!config.getNoZooKeeperMasterRegistration()) {
       zkRegistrar.startAsync().awaitRunning();
     }
+    if (zooKeeperStateMirror != null) {
+      zooKeeperStateMirror.startAsync().awaitRunning();
+    }
+    jobDefinitionCache.startAsync().awaitRunning();
+    kafkaSender.startAsync().awaitRunning();
     expiredJobReaper.startAsync().awaitRunning();
+    hostLabelIndex.startAsync().awaitRunning();
     rollingUpdateService.startAsync().awaitRunning();
     try {
       server.start();
@@ -281,7 +313,13 @@ public class MasterService extends AbstractIdleService {
     server.join();
     registrar.close();
     rollingUpdateService.stopAsync().awaitTerminated();
+    hostLabelIndex.stopAsync().awaitTerminated();
     expiredJobReaper.stopAsync().awaitTerminated();
+    kafkaSender.stopAsync().awaitTerminated();
+    jobDefinitionCache.stopAsync().awaitTerminated();
+    if (zooKeeperStateMirror != null) {
+      zooKeeperStateMirror.stopAsync().awaitTerminated();
+    }
     zkRegistrar.stopAsync().awaitTerminated();
     zooKeeperClient.close();
   }
@@ -308,8 +346,12 @@ public class MasterService extends AbstractIdleService {
         config.getZooKeeperConnectionTimeoutMillis(),
         zooKeeperRetryPolicy,
         config.getZooKeeperNamespace());
+    // The master keeps no path children caches or persistent directories, so it has no resyncs
+    // after reconnecting to spread out
     final ZooKeeperClient client = new DefaultZooKeeperClient(curator,
-                                                              config.getZooKeeperClusterId());
+                                                              config.getZooKeeperClusterId(),
+                                                              new NoopZooKeeperMetrics(),
+                                                              ResyncThrottle.noop());
     client.start();
     zkRegistrar = new ZooKeeperRegistrar(client, new MasterZooKeeperRegistrar(config.getName()));
 
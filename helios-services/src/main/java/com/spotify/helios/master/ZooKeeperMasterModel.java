@@ -24,11 +24,21 @@ package com.spotify.helios.master;
 import com.google.common.base.Function;
 import com.google.common.base.Optional;
 import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AsyncFunction;
+import com.google.common.util.concurrent.FutureFallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.Uninterruptibles;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JsonMappingException;
@@ -46,11 +56,15 @@ import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
 import com.spotify.helios.common.descriptors.PortMapping;
+import com.spotify.helios.common.descriptors.PrePullState;
 import com.spotify.helios.common.descriptors.RolloutOptions;
 import com.spotify.helios.common.descriptors.RolloutTask;
 import com.spotify.helios.common.descriptors.Task;
 import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.common.descriptors.TaskStatusEvent;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
 import com.spotify.helios.rollingupdate.DefaultRolloutPlanner;
 import com.spotify.helios.rollingupdate.DeploymentGroupEventFactory;
 import com.spotify.helios.rollingupdate.DeploymentGroupEventFactory.RollingUpdateReason;
@@ -62,12 +76,15 @@ import com.spotify.helios.servicescommon.KafkaRecord;
 import com.spotify.helios.servicescommon.KafkaSender;
 import com.spotify.helios.servicescommon.VersionedValue;
 import com.spotify.helios.servicescommon.ZooKeeperRegistrarUtil;
+import com.spotify.helios.servicescommon.coordination.JobDefinitionCache;
 import com.spotify.helios.servicescommon.coordination.Node;
 import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.TaskNodes;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperOperation;
 
+import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.KeeperException.NoNodeException;
 import org.apache.zookeeper.KeeperException.NodeExistsException;
@@ -78,15 +95,19 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
 
 import static com.google.common.base.Objects.firstNonNull;
 import static com.google.common.base.Optional.fromNullable;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.google.common.collect.Lists.newArrayList;
@@ -97,6 +118,7 @@ import static com.spotify.helios.common.descriptors.HostStatus.Status.DOWN;
 import static com.spotify.helios.common.descriptors.HostStatus.Status.UP;
 import static com.spotify.helios.rollingupdate.DeploymentGroupEventFactory.RollingUpdateReason.HOSTS_CHANGED;
 import static com.spotify.helios.rollingupdate.DeploymentGroupEventFactory.RollingUpdateReason.MANUAL;
+import static com.spotify.helios.servicescommon.coordination.ReadConsistency.CACHED;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.check;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.create;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.delete;
@@ -108,6 +130,10 @@ import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * The Helios Master's view into ZooKeeper.
+ *
+ * Reads that only serve API callers are made with {@code CACHED} and may be
+ * answered from the master's in-memory mirror of ZooKeeper, if one is configured. Reads that feed
+ * into writes, such as deploying jobs and executing rolling updates, always go to ZooKeeper.
  */
 public class ZooKeeperMasterModel implements MasterModel {
   private static final Comparator<TaskStatusEvent> EVENT_COMPARATOR =
@@ -139,14 +165,36 @@ public class ZooKeeperMasterModel implements MasterModel {
   public static final TypeReference<List<String>>
       STRING_LIST_TYPE =
       new TypeReference<List<String>>() {};
+  private static final TypeReference<List<RolloutTask>>
+      ROLLOUT_TASKS_TYPE =
+      new TypeReference<List<RolloutTask>>() {};
 
   private static final String DEPLOYMENT_GROUP_EVENTS_KAFKA_TOPIC = "HeliosDeploymentGroupEvents";
   private static final DeploymentGroupEventFactory DEPLOYMENT_GROUP_EVENT_FACTORY =
       new DeploymentGroupEventFactory();
 
+  // Upper bound on the rollout tasks processed, and committed in one transaction, per step
+  private static final int MAX_ROLLOUT_TASKS_PER_STEP = 100;
+
+  // Upper bounds on the hosts a job is deployed to or undeployed from in one transaction, and on
+  // the task data written by one, as the size of a transaction is limited by jute.maxbuffer
+  private static final int MAX_HOSTS_PER_TRANSACTION = 100;
+  private static final int MAX_TRANSACTION_BYTES = 512 * 1024;
+
+  // Rollout plans are stored in chunks of this many tasks to stay well clear of jute.maxbuffer
+  private static final int ROLLOUT_PLAN_CHUNK_SIZE = 500;
+  private static final int ROLLOUT_PLAN_CACHE_SIZE = 100;
+
   private final ZooKeeperClientProvider provider;
   private final String name;
   private final KafkaSender kafkaSender;
+  private final boolean normalizeTaskNodes;
+  private final JobDefinitionCache jobDefinitions;
+
+  // Rollout plans are immutable once written, so they only need to be read once
+  private final Cache<String, List<RolloutTask>> rolloutPlans = CacheBuilder.newBuilder()
+      .maximumSize(ROLLOUT_PLAN_CACHE_SIZE)
+      .build();
 
   public  ZooKeeperMasterModel(final ZooKeeperClientProvider provider)
       throws IOException, InterruptedException {
@@ -167,9 +215,30 @@ public class ZooKeeperMasterModel implements MasterModel {
       final ZooKeeperClientProvider provider,
       @Nullable final String name,
       @Nullable final KafkaSender kafkaSender) {
+    this(provider, name, kafkaSender, false, new JobDefinitionCache(provider));
+  }
+
+  /**
+   * Constructor
+   * @param provider           {@link ZooKeeperClientProvider}
+   * @param name               The hostname of the machine running the {@link MasterModel}
+   * @param kafkaSender        {@link KafkaSender}
+   * @param normalizeTaskNodes Whether to write tasks that only refer to their job by id. See
+   *                           {@link TaskNodes}.
+   * @param jobDefinitions     The {@link JobDefinitionCache} to read jobs from. Jobs are only
+   *                           listed from memory if it is watching all jobs.
+   */
+  public ZooKeeperMasterModel(
+      final ZooKeeperClientProvider provider,
+      @Nullable final String name,
+      @Nullable final KafkaSender kafkaSender,
+      final boolean normalizeTaskNodes,
+      final JobDefinitionCache jobDefinitions) {
     this.provider = provider;
     this.name = name;
     this.kafkaSender = kafkaSender;
+    this.normalizeTaskNodes = normalizeTaskNodes;
+    this.jobDefinitions = jobDefinitions;
   }
 
   /**
@@ -195,7 +264,7 @@ public class ZooKeeperMasterModel implements MasterModel {
   public List<String> listHosts() {
     try {
       // TODO (dano): only return hosts whose agents completed registration (i.e. has id nodes)
-      return provider.get("listHosts").getChildren(Paths.configHosts());
+      return provider.get("listHosts", CACHED).getChildren(Paths.configHosts());
     } catch (KeeperException.NoNodeException e) {
       return emptyList();
     } catch (KeeperException e) {
@@ -255,11 +324,10 @@ public class ZooKeeperMasterModel implements MasterModel {
                            // change down the tree. Effectively, make it that version == cVersion.
                            set(Paths.configJobs(), UUID.randomUUID().toString().getBytes()));
       } catch (final NodeExistsException e) {
-        if (client.exists(creationPath) != null) {
-          // The job was created, we're done here
-          return;
+        if (client.exists(creationPath) == null) {
+          throw new JobExistsException(id.toString());
         }
-        throw new JobExistsException(id.toString());
+        // The job was created, we're done here
       }
     } catch (NoNodeException e) {
       throw new HeliosRuntimeException("adding job " + job + " failed due to missing ZK path: " +
@@ -267,6 +335,9 @@ public class ZooKeeperMasterModel implements MasterModel {
     } catch (final KeeperException e) {
       throw new HeliosRuntimeException("adding job " + job + " failed", e);
     }
+
+    // Don't wait for the watch on the job node, the job should be readable as soon as we return
+    jobDefinitions.put(job);
   }
 
   /**
@@ -300,26 +371,32 @@ public class ZooKeeperMasterModel implements MasterModel {
       throw Throwables.propagate(e);
     }
 
+    // Read the events of all hosts in parallel
+    final Map<String, ListenableFuture<Map<String, byte[]>>> hostEvents = Maps.newHashMap();
+    for (final String h : hosts) {
+      hostEvents.put(h, getChildrenData(client, Paths.historyJobHostEvents(jobId, h)));
+    }
+
     final List<TaskStatusEvent> jsEvents = Lists.newArrayList();
 
-    for (String h : hosts) {
-      final List<String> events;
+    for (final Map.Entry<String, ListenableFuture<Map<String, byte[]>>> entry :
+        hostEvents.entrySet()) {
+      final String h = entry.getKey();
+      final Map<String, byte[]> events;
       try {
-        events = client.getChildren(Paths.historyJobHostEvents(jobId, h));
-      } catch (NoNodeException e) {
-        continue;
+        events = await(entry.getValue());
       } catch (KeeperException e) {
         throw Throwables.propagate(e);
       }
+      if (events == null) {
+        continue;
+      }
 
-      for (String event : events) {
+      for (final Map.Entry<String, byte[]> event : events.entrySet()) {
         try {
-          byte[] data = client.getData(Paths.historyJobHostEventsTimestamp(
-              jobId, h, Long.valueOf(event)));
-          final TaskStatus status = Json.read(data, TaskStatus.class);
-          jsEvents.add(new TaskStatusEvent(status, Long.valueOf(event), h));
-        } catch (NoNodeException e) { // ignore, it went away before we read it
-        } catch (KeeperException | IOException e) {
+          final TaskStatus status = TaskNodes.parseTaskStatus(event.getValue(), jobDefinitions);
+          jsEvents.add(new TaskStatusEvent(status, Long.valueOf(event.getKey()), h));
+        } catch (IOException e) {
           throw Throwables.propagate(e);
         }
       }
@@ -377,13 +454,20 @@ public class ZooKeeperMasterModel implements MasterModel {
     final ZooKeeperClient client = provider.get("removeDeploymentGroup");
     try {
       client.ensurePath(Paths.configDeploymentGroups());
-      client.delete(Paths.configDeploymentGroup(name));
+      final List<ZooKeeperOperation> operations = Lists.newArrayList();
+      operations.add(delete(Paths.configDeploymentGroup(name)));
       if (client.exists(Paths.statusDeploymentGroupHosts(name)) != null) {
-        client.delete(Paths.statusDeploymentGroupHosts(name));
+        operations.add(delete(Paths.statusDeploymentGroupHosts(name)));
       }
       if (client.exists(Paths.statusDeploymentGroup(name)) != null) {
-        client.delete(Paths.statusDeploymentGroup(name));
+        operations.add(delete(Paths.statusDeploymentGroup(name)));
+      }
+      // Don't leave the rollout plans behind for a group created later on with the same name
+      operations.addAll(deleteRolloutPlanChunks(client, name, null));
+      if (client.exists(Paths.statusDeploymentGroupPlans(name)) != null) {
+        operations.add(delete(Paths.statusDeploymentGroupPlans(name)));
       }
+      client.transaction(operations);
     } catch (final NoNodeException e) {
       throw new DeploymentGroupDoesNotExistException(name);
     } catch (final KeeperException e) {
@@ -428,6 +512,12 @@ public class ZooKeeperMasterModel implements MasterModel {
         }
 
         client.transaction(ops);
+        removeStaleRolloutPlans(client, name);
+
+        // Hosts that left the group will not have the job deployed by its rollout
+        final Set<String> removed = Sets.difference(
+            ImmutableSet.copyOf(curHosts), ImmutableSet.copyOf(hosts));
+        removePrePullRequests(client, deploymentGroup, removed);
 
         if (kafkaSender != null) {
           for (final Map<String, Object> event : events) {
@@ -472,6 +562,14 @@ public class ZooKeeperMasterModel implements MasterModel {
       client.ensurePath(Paths.statusDeploymentGroup(updated.getName()));
       client.ensurePath(Paths.statusDeploymentGroupTasks(updated.getName()));
       client.transaction(operations);
+      removeStaleRolloutPlans(client, updated.getName());
+
+      // Requests made by an earlier rollout of another job are not going to be deployed anymore
+      if (isPrePulling(deploymentGroup) &&
+          (!jobId.equals(deploymentGroup.getJobId()) || !isPrePulling(updated))) {
+        removePrePullRequests(client, deploymentGroup,
+                              getDeploymentGroupHosts(deploymentGroup.getName()));
+      }
 
       if (kafkaSender != null) {
         for (final Map<String, Object> event : op.events()) {
@@ -497,24 +595,141 @@ public class ZooKeeperMasterModel implements MasterModel {
   private RollingUpdateOp getInitRollingUpdateOps(final DeploymentGroup deploymentGroup,
                                                   final List<String> hosts,
                                                   final RollingUpdateReason reason) {
+    final ZooKeeperClient client = provider.get("getInitRollingUpdateOps");
     final Map<String, HostStatus> hostsAndStatuses = Maps.newLinkedHashMap();
     for (final String host : hosts) {
-      hostsAndStatuses.put(host, getHostStatus(host));
+      hostsAndStatuses.put(host, getHostStatus(client, host));
     }
 
     final RolloutPlanner rolloutPlanner = DefaultRolloutPlanner.of(deploymentGroup);
     final List<RolloutTask> rolloutTasks = rolloutPlanner.plan(hostsAndStatuses);
-    final DeploymentGroupTasks tasks = DeploymentGroupTasks.newBuilder()
-        .setRolloutTasks(rolloutTasks)
-        .setTaskIndex(0)
-        .setDeploymentGroup(deploymentGroup)
-        .build();
+    final DeploymentGroupTasks tasks = writeRolloutPlan(client, deploymentGroup, rolloutTasks);
 
     final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
         tasks, DEPLOYMENT_GROUP_EVENT_FACTORY);
     return opFactory.start(deploymentGroup, reason);
   }
 
+  /**
+   * Stores the rollout tasks in an immutable plan, split into chunks of at most
+   * {@link #ROLLOUT_PLAN_CHUNK_SIZE} tasks. The plan is written ahead of the transaction starting
+   * the rollout, so that the transaction, and each following step, only has to write a small
+   * cursor pointing into the plan.
+   */
+  private DeploymentGroupTasks writeRolloutPlan(final ZooKeeperClient client,
+                                                final DeploymentGroup deploymentGroup,
+                                                final List<RolloutTask> rolloutTasks) {
+    final DeploymentGroupTasks.Builder tasks = DeploymentGroupTasks.newBuilder()
+        .setRolloutTasks(rolloutTasks)
+        .setTaskIndex(0)
+        .setDeploymentGroup(deploymentGroup);
+    if (rolloutTasks.isEmpty()) {
+      return tasks.build();
+    }
+
+    final String name = deploymentGroup.getName();
+    final String planId = UUID.randomUUID().toString();
+    final List<List<RolloutTask>> chunks = Lists.partition(rolloutTasks, ROLLOUT_PLAN_CHUNK_SIZE);
+    try {
+      client.ensurePath(Paths.statusDeploymentGroupPlans(name));
+      for (int i = 0; i < chunks.size(); i++) {
+        client.createAndSetData(Paths.statusDeploymentGroupPlanChunk(name, planId, i),
+                                Json.asBytes(chunks.get(i)));
+      }
+    } catch (KeeperException | IOException e) {
+      throw new HeliosRuntimeException("writing rollout plan for deployment-group " + name +
+                                       " failed", e);
+    }
+    rolloutPlans.put(planId, ImmutableList.copyOf(rolloutTasks));
+    return tasks.setPlan(planId, chunks.size()).build();
+  }
+
+  /**
+   * Reads the rollout tasks of the plan {@code tasks} points into.
+   */
+  private List<RolloutTask> getRolloutPlan(final ZooKeeperClient client, final String name,
+                                           final DeploymentGroupTasks tasks)
+      throws KeeperException, IOException {
+    final String planId = tasks.getPlanId();
+    final List<RolloutTask> cached = rolloutPlans.getIfPresent(planId);
+    if (cached != null) {
+      return cached;
+    }
+
+    // Issue all reads up front so that they are pipelined over the zookeeper session
+    final List<ListenableFuture<byte[]>> futures = Lists.newArrayList();
+    for (int i = 0; i < tasks.getPlanChunks(); i++) {
+      futures.add(client.getDataAsync(Paths.statusDeploymentGroupPlanChunk(name, planId, i)));
+    }
+    final ImmutableList.Builder<RolloutTask> plan = ImmutableList.builder();
+    for (final ListenableFuture<byte[]> future : futures) {
+      final byte[] data = await(future);
+      if (data == null) {
+        throw new NoNodeException(Paths.statusDeploymentGroupPlans(name));
+      }
+      plan.addAll(Json.<List<RolloutTask>>read(data, ROLLOUT_TASKS_TYPE));
+    }
+    final List<RolloutTask> rolloutTasks = plan.build();
+    rolloutPlans.put(planId, rolloutTasks);
+    return rolloutTasks;
+  }
+
+  /**
+   * Removes the rollout plans of a deployment group that are not referenced by its tasks. This
+   * is guarded by the version of the tasks so that a plan being started concurrently is only
+   * removed before it is referenced, in which case starting it fails.
+   */
+  private void removeStaleRolloutPlans(final ZooKeeperClient client, final String name) {
+    final String tasksPath = Paths.statusDeploymentGroupTasks(name);
+    try {
+      final List<ZooKeeperOperation> ops = Lists.newArrayList();
+      String planId = null;
+      try {
+        final Node node = client.getNode(tasksPath);
+        if (node.getBytes().length > 0) {
+          planId = parse(node.getBytes(), DeploymentGroupTasks.class).getPlanId();
+        }
+        ops.add(check(node));
+      } catch (NoNodeException e) {
+        // Emulate a check that the node doesn't exist
+        ops.add(create(tasksPath));
+        ops.add(delete(tasksPath));
+      }
+
+      final List<ZooKeeperOperation> deletions = deleteRolloutPlanChunks(client, name, planId);
+      if (!deletions.isEmpty()) {
+        ops.addAll(deletions);
+        client.transaction(ops);
+      }
+    } catch (KeeperException | IOException e) {
+      // Some other master changed the tasks, the plans will be removed eventually
+      log.debug("failed to remove stale rollout plans of deployment-group {}: {}", name, e);
+    }
+  }
+
+  /**
+   * Returns the operations deleting the rollout plan chunks of a deployment group, except for
+   * those of the plan {@code keepPlanId}.
+   */
+  private static List<ZooKeeperOperation> deleteRolloutPlanChunks(
+      final ZooKeeperClient client, final String name, @Nullable final String keepPlanId)
+      throws KeeperException {
+    final String plansPath = Paths.statusDeploymentGroupPlans(name);
+    final List<String> chunks;
+    try {
+      chunks = client.getChildren(plansPath);
+    } catch (NoNodeException e) {
+      return emptyList();
+    }
+    final List<ZooKeeperOperation> ops = Lists.newArrayList();
+    for (final String chunk : chunks) {
+      if (keepPlanId == null || !chunk.startsWith(keepPlanId + "-")) {
+        ops.add(delete(ZKPaths.makePath(plansPath, chunk)));
+      }
+    }
+    return ops;
+  }
+
   private Map<String, VersionedValue<DeploymentGroupTasks>> getDeploymentGroupTasks(
       final ZooKeeperClient client) {
     final String folder = Paths.statusDeploymentGroupTasks();
@@ -537,7 +752,12 @@ public class ZooKeeperMasterModel implements MasterModel {
             // This can happen because of ensurePath creates an empty node
             log.debug("Ignoring empty deployment group tasks {}", name);
           } else {
-            final DeploymentGroupTasks val = parse(data, DeploymentGroupTasks.class);
+            DeploymentGroupTasks val = parse(data, DeploymentGroupTasks.class);
+            if (val.getPlanId() != null) {
+              val = val.toBuilder()
+                  .setRolloutTasks(getRolloutPlan(client, name, val))
+                  .build();
+            }
             ret.put(name, VersionedValue.of(val, version));
           }
         } catch (NoNodeException e) {
@@ -559,6 +779,9 @@ public class ZooKeeperMasterModel implements MasterModel {
     final String host = task.getTarget();
 
     switch (action) {
+      case PRE_PULL_IMAGE:
+        // ask the host to pull the image of the new job ahead of it being deployed
+        return rollingUpdatePrePull(client, opFactory, deploymentGroup, host);
       case UNDEPLOY_OLD_JOBS:
         // add undeploy ops for jobs previously deployed by this deployment group
         return rollingUpdateUndeploy(client, opFactory, deploymentGroup, host);
@@ -589,11 +812,16 @@ public class ZooKeeperMasterModel implements MasterModel {
       log.debug("rolling-update step on deployment-group: name={}", deploymentGroupName);
 
       try {
-        final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        // Keep processing tasks until one has to yield or depends on the outcome of an earlier
+        // one, and commit them all in one transaction.
+        RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
             tasks, DEPLOYMENT_GROUP_EVENT_FACTORY);
-        final RolloutTask task = tasks.getRolloutTasks().get(tasks.getTaskIndex());
-        final RollingUpdateOp op = processRollingUpdateTask(
-            client, opFactory, task, tasks.getDeploymentGroup());
+        RollingUpdateOp op = null;
+        for (int i = 0; i < MAX_ROLLOUT_TASKS_PER_STEP && opFactory != null; i++) {
+          op = processRollingUpdateTask(
+              client, opFactory, opFactory.currentTask(), tasks.getDeploymentGroup());
+          opFactory = op.next();
+        }
 
         if (!op.operations().isEmpty()) {
           final List<ZooKeeperOperation> ops = Lists.newArrayList();
@@ -602,6 +830,9 @@ public class ZooKeeperMasterModel implements MasterModel {
           ops.addAll(op.operations());
           try {
             client.transaction(ops);
+            if (op.failed()) {
+              removePrePullRequests(client, tasks.getDeploymentGroup(), getPrePullTargets(tasks));
+            }
 
             // Emit events
             if (kafkaSender != null) {
@@ -637,7 +868,7 @@ public class ZooKeeperMasterModel implements MasterModel {
 
       // If job is not listed under /config/hosts node, it may have been deployed successfully and
       // then manually undeployed. The job will not get redeployed, so treat this as a failure.
-      final Deployment deployment = getDeployment(host, jobId);
+      final Deployment deployment = getDeployment(client, host, jobId);
       if (deployment == null) {
         return opFactory.error(
             "Job unexpectedly undeployed. Perhaps it was manually undeployed?", host,
@@ -671,7 +902,7 @@ public class ZooKeeperMasterModel implements MasterModel {
       // the job is running on the host. last thing we have to ensure is that it was
       // deployed by this deployment group. otherwise some weird conflict has occurred and we
       // won't be able to undeploy the job on the next update.
-      final Deployment deployment = getDeployment(host, deploymentGroup.getJobId());
+      final Deployment deployment = getDeployment(client, host, deploymentGroup.getJobId());
       if (deployment == null) {
         return opFactory.error(
             "deployment for this job not found in zookeeper. " +
@@ -714,7 +945,10 @@ public class ZooKeeperMasterModel implements MasterModel {
     try {
       final String token =
           firstNonNull(deploymentGroup.getRolloutOptions().getToken(), Job.EMPTY_TOKEN);
-      return opFactory.nextTask(getDeployOperations(client, host, deployment, token));
+      final List<ZooKeeperOperation> operations = Lists.newArrayList(
+          getDeployOperations(client, host, deployment, token));
+      operations.addAll(getPrePullCleanupOperations(client, deploymentGroup, host));
+      return opFactory.nextTask(operations);
     } catch (JobDoesNotExistException e) {
       return opFactory.error(e, host, RollingUpdateError.JOB_NOT_FOUND);
     } catch (TokenVerificationException e) {
@@ -725,8 +959,128 @@ public class ZooKeeperMasterModel implements MasterModel {
       return opFactory.error(e, host, RollingUpdateError.PORT_CONFLICT);
     } catch (JobAlreadyDeployedException e) {
       // Nothing to do
-      return opFactory.nextTask();
+      return opFactory.nextTask(getPrePullCleanupOperations(client, deploymentGroup, host));
+    }
+  }
+
+  private RollingUpdateOp rollingUpdatePrePull(final ZooKeeperClient client,
+                                               final RollingUpdateOpFactory opFactory,
+                                               final DeploymentGroup deploymentGroup,
+                                               final String host) {
+    final JobId jobId = deploymentGroup.getJobId();
+    final Job job = getJob(client, jobId);
+    if (job == null) {
+      return opFactory.error(new JobDoesNotExistException(jobId), host,
+                             RollingUpdateError.JOB_NOT_FOUND);
+    }
+
+    try {
+      if (client.exists(Paths.configHostId(host)) == null) {
+        // Pulling ahead of time is only an optimization, let the deploy deal with missing hosts
+        return opFactory.nextTask();
+      }
+
+      final List<ZooKeeperOperation> operations = Lists.newArrayList();
+      final String parent = Paths.configHostPrePulls(host);
+      List<String> requested;
+      try {
+        requested = client.getChildren(parent);
+      } catch (NoNodeException e) {
+        requested = emptyList();
+        operations.add(create(parent));
+      }
+      if (requested.contains(jobId.toString())) {
+        return opFactory.nextTask();
+      }
+
+      // The new version of the job supersedes requests for earlier ones that were never deployed
+      for (final String child : requested) {
+        if (JobId.fromString(child).getName().equals(jobId.getName())) {
+          operations.add(delete(ZKPaths.makePath(parent, child)));
+        }
+      }
+      operations.add(create(Paths.configHostPrePull(host, jobId),
+                            Json.asBytesUnchecked(job.getImage())));
+      return opFactory.nextTask(operations);
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("requesting pre-pull of job " + jobId + " on host " +
+                                       host + " failed", e);
+    }
+  }
+
+  /**
+   * Returns the operations removing the request for {@code host} to pull the image of the job of
+   * {@code deploymentGroup} ahead of time, if there is one. The request is no longer needed once
+   * the job is deployed to the host.
+   */
+  private List<ZooKeeperOperation> getPrePullCleanupOperations(
+      final ZooKeeperClient client, final DeploymentGroup deploymentGroup, final String host) {
+    try {
+      return getPrePullCleanupOperations(client, deploymentGroup, singletonList(host));
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("checking pre-pull of job " + deploymentGroup.getJobId() +
+                                       " on host " + host + " failed", e);
+    }
+  }
+
+  private List<ZooKeeperOperation> getPrePullCleanupOperations(
+      final ZooKeeperClient client, final DeploymentGroup deploymentGroup,
+      final Collection<String> hosts) throws KeeperException {
+    // Requests are only made by rollouts that pull ahead of time
+    if (!isPrePulling(deploymentGroup) || hosts.isEmpty()) {
+      return emptyList();
+    }
+
+    // Issue all reads up front so that they are pipelined over the zookeeper session
+    final Map<String, ListenableFuture<Stat>> futures = Maps.newLinkedHashMap();
+    for (final String host : hosts) {
+      final String path = Paths.configHostPrePull(host, deploymentGroup.getJobId());
+      futures.put(path, client.existsAsync(path));
+    }
+    final List<ZooKeeperOperation> operations = Lists.newArrayList();
+    for (final Map.Entry<String, ListenableFuture<Stat>> entry : futures.entrySet()) {
+      if (await(entry.getValue()) != null) {
+        operations.add(delete(entry.getKey()));
+      }
+    }
+    return operations;
+  }
+
+  /**
+   * Removes the requests for {@code hosts} to pull the image of the job of
+   * {@code deploymentGroup} ahead of time, for when the job is not going to be deployed to them
+   * after all. Otherwise the hosts would keep reporting the state of the pull.
+   */
+  private void removePrePullRequests(final ZooKeeperClient client,
+                                     final DeploymentGroup deploymentGroup,
+                                     final Collection<String> hosts) {
+    try {
+      final List<ZooKeeperOperation> operations =
+          getPrePullCleanupOperations(client, deploymentGroup, hosts);
+      if (!operations.isEmpty()) {
+        client.transaction(operations);
+      }
+    } catch (KeeperException e) {
+      // Best effort, e.g. a request was removed concurrently
+      log.warn("failed to remove pre-pull requests of deployment-group {}: {}",
+               deploymentGroup.getName(), e);
+    }
+  }
+
+  private static boolean isPrePulling(final DeploymentGroup deploymentGroup) {
+    return deploymentGroup.getJobId() != null &&
+           deploymentGroup.getRolloutOptions() != null &&
+           deploymentGroup.getRolloutOptions().getPrePull();
+  }
+
+  private static Set<String> getPrePullTargets(final DeploymentGroupTasks tasks) {
+    final Set<String> hosts = Sets.newLinkedHashSet();
+    for (final RolloutTask task : tasks.getRolloutTasks()) {
+      if (task.getAction() == RolloutTask.Action.PRE_PULL_IMAGE) {
+        hosts.add(task.getTarget());
+      }
     }
+    return hosts;
   }
 
   private RollingUpdateOp rollingUpdateUndeploy(final ZooKeeperClient client,
@@ -804,6 +1158,11 @@ public class ZooKeeperMasterModel implements MasterModel {
                            create(tasksPath),
                            delete(tasksPath));
       }
+      removeStaleRolloutPlans(client, deploymentGroupName);
+      if (isPrePulling(deploymentGroup)) {
+        removePrePullRequests(client, deploymentGroup,
+                              getDeploymentGroupHosts(deploymentGroupName));
+      }
     } catch (final NoNodeException e) {
       throw new DeploymentGroupDoesNotExistException(deploymentGroupName);
     } catch (final KeeperException e) {
@@ -906,12 +1265,19 @@ public class ZooKeeperMasterModel implements MasterModel {
   @Override
   public Job getJob(final JobId id) {
     log.debug("getting job: {}", id);
-    final ZooKeeperClient client = provider.get("getJobId");
-    return getJob(client, id);
+    return jobDefinitions.getJob(id);
   }
 
-
+  /**
+   * Returns a job for an operation that changes zookeeper state. Jobs never change, so a cached job
+   * can be used as is. A job that is not cached is read using {@code client}, as it might only just
+   * have been created.
+   */
   private Job getJob(final ZooKeeperClient client, final JobId id) {
+    final Job cached = jobDefinitions.getIfPresent(id);
+    if (cached != null) {
+      return cached;
+    }
     final String path = Paths.configJob(id);
     try {
       final byte[] data = client.getData(path);
@@ -924,14 +1290,41 @@ public class ZooKeeperMasterModel implements MasterModel {
     }
   }
 
+  @Override
+  public List<JobId> getJobIds() {
+    log.debug("getting job ids");
+    final Map<JobId, Job> cached = jobDefinitions.getJobs();
+    if (cached != null) {
+      return ImmutableList.copyOf(cached.keySet());
+    }
+    final ZooKeeperClient client = provider.get("getJobIds", CACHED);
+    final List<String> ids;
+    try {
+      ids = client.getChildren(Paths.configJobs());
+    } catch (NoNodeException e) {
+      return Collections.emptyList();
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("getting job ids failed", e);
+    }
+    final List<JobId> jobIds = Lists.newArrayListWithCapacity(ids.size());
+    for (final String id : ids) {
+      jobIds.add(JobId.fromString(id));
+    }
+    return jobIds;
+  }
+
   /**
    * Returns a {@link Map} of {@link JobId} to {@link Job} objects for all of the jobs known.
    */
   @Override
   public Map<JobId, Job> getJobs() {
     log.debug("getting jobs");
+    final Map<JobId, Job> cached = jobDefinitions.getJobs();
+    if (cached != null) {
+      return cached;
+    }
     final String folder = Paths.configJobs();
-    final ZooKeeperClient client = provider.get("getJobs");
+    final ZooKeeperClient client = provider.get("getJobs", CACHED);
     try {
       final List<String> ids;
       try {
@@ -963,28 +1356,49 @@ public class ZooKeeperMasterModel implements MasterModel {
    */
   @Override
   public JobStatus getJobStatus(final JobId jobId) {
-    final ZooKeeperClient client = provider.get("getJobStatus");
+    return getJobStatus(jobId, StatusView.FULL);
+  }
 
-    final Job job = getJob(client, jobId);
+  @Override
+  public JobStatus getJobStatus(final JobId jobId, final StatusView view) {
+    checkArgument(view != StatusView.LABELS, "job statuses have no labels view");
+    final ZooKeeperClient client = provider.get("getJobStatus", CACHED);
+
+    // List the hosts while reading the job
+    final ListenableFuture<List<String>> hostsFuture =
+        client.getChildrenAsync(Paths.configJobHosts(jobId));
+
+    final Job job = jobDefinitions.getJob(jobId);
     if (job == null) {
       return null;
     }
 
     final List<String> hosts;
     try {
-      hosts = listJobHosts(client, jobId);
-    } catch (JobDoesNotExistException e) {
+      hosts = await(hostsFuture);
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("failed to list hosts for job: " + jobId, e);
+    }
+    if (hosts == null) {
       return null;
     }
 
+    // Read the task status and deployment on all hosts in parallel
+    final Map<String, ListenableFuture<byte[]>> taskStatusFutures = Maps.newHashMap();
+    final Map<String, ListenableFuture<byte[]>> deploymentFutures = Maps.newHashMap();
+    for (final String host : hosts) {
+      taskStatusFutures.put(host, client.getDataAsync(Paths.statusHostJob(host, jobId)));
+      deploymentFutures.put(host, client.getDataAsync(Paths.configHostJob(host, jobId)));
+    }
+
     final ImmutableMap.Builder<String, Deployment> deployments = ImmutableMap.builder();
     final ImmutableMap.Builder<String, TaskStatus> taskStatuses = ImmutableMap.builder();
     for (final String host : hosts) {
-      final TaskStatus taskStatus = getTaskStatus(client, host, jobId);
+      final TaskStatus taskStatus = getTaskStatus(host, jobId, taskStatusFutures.get(host));
       if (taskStatus != null) {
-        taskStatuses.put(host, taskStatus);
+        taskStatuses.put(host, project(taskStatus, view));
       }
-      final Deployment deployment = getDeployment(host, jobId);
+      final Deployment deployment = getDeployment(jobId, deploymentFutures.get(host));
       if (deployment != null) {
         deployments.put(host, deployment);
       }
@@ -1049,6 +1463,7 @@ public class ZooKeeperMasterModel implements MasterModel {
                      set(Paths.configJobs(), UUID.randomUUID().toString().getBytes()));
       client.transaction(operations.build());
     } catch (final NoNodeException e) {
+      jobDefinitions.invalidate(id);
       throw new JobDoesNotExistException(id);
     } catch (final NotEmptyException e) {
       throw new JobStillDeployedException(id, listJobHosts(client, id));
@@ -1056,6 +1471,7 @@ public class ZooKeeperMasterModel implements MasterModel {
       throw new HeliosRuntimeException("removing job " + id + " failed", e);
     }
 
+    jobDefinitions.invalidate(id);
     return job;
   }
 
@@ -1105,7 +1521,7 @@ public class ZooKeeperMasterModel implements MasterModel {
     log.info("deploying {}: {} (retry={})", deployment, host, count);
 
     final JobId id = deployment.getJobId();
-    final Job job = getJob(id);
+    final Job job = getJob(client, id);
 
     if (job == null) {
       throw new JobDoesNotExistException(id);
@@ -1145,7 +1561,7 @@ public class ZooKeeperMasterModel implements MasterModel {
       // if we get here the node exists already
       throw new JobAlreadyDeployedException(host, id);
     } catch (NoNodeException e) {
-      operations.add(create(taskPath, task));
+      operations.add(create(taskPath, TaskNodes.toJsonBytes(task, normalizeTaskNodes)));
       operations.add(create(taskCreationPath));
     } catch (KeeperException e) {
       throw new HeliosRuntimeException("reading existing task description failed", e);
@@ -1193,6 +1609,138 @@ public class ZooKeeperMasterModel implements MasterModel {
     }
   }
 
+  /**
+   * Deploys the job of {@code deployment} to {@code hosts}. Whether the job can be deployed to the
+   * hosts is read for all of them at once, and the deployments are then committed in batches, each
+   * in one transaction. If a batch fails because a host changed after it was read, its hosts are
+   * deployed one by one.
+   */
+  @Override
+  public Map<String, JobDeployResponse.Status> deployJob(final List<String> hosts,
+                                                         final Deployment deployment,
+                                                         final String token)
+      throws JobDoesNotExistException, TokenVerificationException {
+    log.info("deploying {}: {} hosts", deployment, hosts.size());
+    final ZooKeeperClient client = provider.get("deployJobToHosts");
+
+    final JobId id = deployment.getJobId();
+    final Job job = getJob(client, id);
+    if (job == null) {
+      throw new JobDoesNotExistException(id);
+    }
+    verifyToken(token, job);
+
+    final List<Integer> staticPorts = staticPorts(job);
+    final Map<String, JobDeployResponse.Status> results = Maps.newHashMap();
+    final Map<String, ListenableFuture<Stat>> hostFutures = Maps.newLinkedHashMap();
+    final Map<String, ListenableFuture<Stat>> taskFutures = Maps.newHashMap();
+    final Map<String, ListenableFuture<Stat>> portFutures = Maps.newHashMap();
+    for (final String host : ImmutableSet.copyOf(hosts)) {
+      if (!isHostName(host, id)) {
+        results.put(host, JobDeployResponse.Status.HOST_NOT_FOUND);
+        continue;
+      }
+      hostFutures.put(host, client.existsAsync(Paths.configHost(host)));
+      taskFutures.put(host, client.existsAsync(Paths.configHostJob(host, id)));
+      for (final int port : staticPorts) {
+        final String path = Paths.configHostPort(host, port);
+        portFutures.put(path, client.existsAsync(path));
+      }
+    }
+
+    final Task task = new Task(job, deployment.getGoal(), deployment.getDeployerUser(),
+                               deployment.getDeployerMaster(), deployment.getDeploymentGroupName());
+    final byte[] taskJson = TaskNodes.toJsonBytes(task, normalizeTaskNodes);
+    final byte[] idJson = id.toJsonBytes();
+    final Map<String, List<ZooKeeperOperation>> deploys = Maps.newLinkedHashMap();
+    try {
+      for (final String host : hostFutures.keySet()) {
+        if (await(hostFutures.get(host)) == null) {
+          results.put(host, JobDeployResponse.Status.HOST_NOT_FOUND);
+          continue;
+        }
+        // Like when deploying to a single host, a job that is already deployed is not reported as
+        // a port conflict with itself
+        if (await(taskFutures.get(host)) != null) {
+          results.put(host, JobDeployResponse.Status.JOB_ALREADY_DEPLOYED);
+          continue;
+        }
+
+        final Map<String, byte[]> portNodes = Maps.newHashMap();
+        for (final int port : staticPorts) {
+          final String path = Paths.configHostPort(host, port);
+          if (await(portFutures.get(path)) != null) {
+            results.put(host, JobDeployResponse.Status.PORT_CONFLICT);
+            break;
+          }
+          portNodes.put(path, idJson);
+        }
+        if (results.containsKey(host)) {
+          continue;
+        }
+
+        deploys.put(host, ImmutableList.of(
+            create(portNodes),
+            create(Paths.configJobHost(id, host)),
+            create(Paths.configHostJob(host, id), taskJson),
+            create(Paths.configHostJobCreation(host, id, UUID.randomUUID()))));
+      }
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("reading hosts to deploy " + id + " to failed", e);
+    }
+
+    final int batchSize =
+        Math.max(1, Math.min(MAX_HOSTS_PER_TRANSACTION, MAX_TRANSACTION_BYTES / taskJson.length));
+    for (final List<String> batch : Iterables.partition(deploys.keySet(), batchSize)) {
+      final List<ZooKeeperOperation> operations = Lists.newArrayList(check(Paths.configJob(id)));
+      for (final String host : batch) {
+        operations.addAll(deploys.get(host));
+      }
+      try {
+        client.transaction(operations);
+        for (final String host : batch) {
+          results.put(host, JobDeployResponse.Status.OK);
+        }
+      } catch (NoNodeException | NodeExistsException e) {
+        log.debug("deploying {} to {} hosts at once failed, retrying one by one",
+                  id, batch.size(), e);
+        for (final String host : batch) {
+          try {
+            deployJobRetry(client, host, deployment, 0, token);
+            results.put(host, JobDeployResponse.Status.OK);
+          } catch (HostNotFoundException e1) {
+            results.put(host, JobDeployResponse.Status.HOST_NOT_FOUND);
+          } catch (JobAlreadyDeployedException e1) {
+            results.put(host, JobDeployResponse.Status.JOB_ALREADY_DEPLOYED);
+          } catch (JobPortAllocationConflictException e1) {
+            results.put(host, JobDeployResponse.Status.PORT_CONFLICT);
+          } catch (JobDoesNotExistException e1) {
+            // The job was removed after earlier batches were committed, so report it per host
+            results.put(host, JobDeployResponse.Status.JOB_NOT_FOUND);
+          }
+        }
+      } catch (KeeperException e) {
+        throw new HeliosRuntimeException("deploying job failed", e);
+      }
+    }
+    return results;
+  }
+
+  /**
+   * Returns false if {@code host} cannot name a host, and so cannot be part of a path.
+   */
+  private static boolean isHostName(final String host, final JobId id) {
+    if (isNullOrEmpty(host) || host.contains("/")) {
+      return false;
+    }
+    try {
+      Paths.configHostJob(host, id);
+      return true;
+    } catch (IllegalArgumentException e) {
+      return false;
+    }
+  }
+
   private void assertJobExists(final ZooKeeperClient client, final JobId id)
       throws JobDoesNotExistException {
     try {
@@ -1237,7 +1785,7 @@ public class ZooKeeperMasterModel implements MasterModel {
 
     final JobId jobId = deployment.getJobId();
     final Job job = getJob(client, jobId);
-    final Deployment existingDeployment = getDeployment(host, jobId);
+    final Deployment existingDeployment = getDeployment(client, host, jobId);
 
     if (job == null) {
       throw new JobNotDeployedException(host, jobId);
@@ -1253,7 +1801,7 @@ public class ZooKeeperMasterModel implements MasterModel {
                                existingDeployment.getDeployerMaster(),
                                existingDeployment.getDeploymentGroupName());
     try {
-      client.setData(path, task.toJsonBytes());
+      client.setData(path, TaskNodes.toJsonBytes(task, normalizeTaskNodes));
     } catch (Exception e) {
       throw new HeliosRuntimeException("updating deployment " + deployment +
                                        " on host " + host + " failed", e);
@@ -1287,30 +1835,98 @@ public class ZooKeeperMasterModel implements MasterModel {
    */
   @Override
   public Deployment getDeployment(final String host, final JobId jobId) {
-    final String path = Paths.configHostJob(host, jobId);
-    final ZooKeeperClient client = provider.get("getDeployment");
+    final ZooKeeperClient client = provider.get("getDeployment", CACHED);
+    return getDeployment(client, host, jobId);
+  }
+
+  private Deployment getDeployment(final ZooKeeperClient client, final String host,
+                                   final JobId jobId) {
+    return getDeployment(jobId, client.getDataAsync(Paths.configHostJob(host, jobId)));
+  }
+
+  private Deployment getDeployment(final JobId jobId, final ListenableFuture<byte[]> future) {
     try {
-      final byte[] data = client.getData(path);
-      final Task task = parse(data, Task.class);
+      final byte[] data = await(future);
+      if (data == null) {
+        return null;
+      }
+      final Task task = TaskNodes.parseTask(data, TaskNodes.ID_ONLY);
       return Deployment.of(jobId, task.getGoal(), task.getDeployerUser(), task.getDeployerMaster(),
                            task.getDeploymentGroupName());
-    } catch (KeeperException.NoNodeException e) {
-      return null;
     } catch (KeeperException | IOException e) {
       throw new HeliosRuntimeException("getting deployment failed", e);
     }
   }
 
+  @Override
+  public Map<String, PrePullState> getPrePullStates(final List<String> hosts, final JobId jobId) {
+    final ZooKeeperClient client = provider.get("getPrePullStates", CACHED);
+    // Issue all reads up front so that they are pipelined over the zookeeper session
+    final Map<String, ListenableFuture<byte[]>> futures = Maps.newLinkedHashMap();
+    for (final String host : hosts) {
+      futures.put(host, client.getDataAsync(Paths.statusHostPrePull(host, jobId)));
+    }
+    try {
+      final Map<String, PrePullState> states = Maps.newHashMap();
+      for (final Map.Entry<String, ListenableFuture<byte[]>> entry : futures.entrySet()) {
+        final byte[] data = await(entry.getValue());
+        if (data != null) {
+          states.put(entry.getKey(), Json.read(data, PrePullState.class));
+        }
+      }
+      return states;
+    } catch (KeeperException | IOException e) {
+      throw new HeliosRuntimeException("getting pre-pull states of job " + jobId + " failed", e);
+    }
+  }
+
   /**
    * Returns the current status of the host named by {@code host}.
    */
   @Override
   public HostStatus getHostStatus(final String host) {
-    final Stat stat;
-    final ZooKeeperClient client = provider.get("getHostStatus");
+    return getHostStatus(host, StatusView.FULL);
+  }
+
+  @Override
+  public HostStatus getHostStatus(final String host, final StatusView view) {
+    final ZooKeeperClient client = provider.get("getHostStatus", CACHED);
+    return getHostStatus(client, host, view);
+  }
+
+  private HostStatus getHostStatus(final ZooKeeperClient client, final String host) {
+    return getHostStatus(client, host, StatusView.FULL);
+  }
+
+  private HostStatus getHostStatus(final ZooKeeperClient client, final String host,
+                                   final StatusView view) {
+    final boolean labelsOnly = view == StatusView.LABELS;
+
+    // Issue all reads up front so that they are pipelined over the zookeeper session, skipping
+    // those the view does not need
+    final ListenableFuture<Stat> hostIdFuture = client.existsAsync(Paths.configHostId(host));
+    final ListenableFuture<Stat> upFuture = client.existsAsync(Paths.statusHostUp(host));
+    final ListenableFuture<byte[]> labelsFuture =
+        client.getDataAsync(Paths.statusHostLabels(host));
+    final ListenableFuture<byte[]> hostInfoFuture = labelsOnly
+        ? Futures.<byte[]>immediateFuture(null)
+        : client.getDataAsync(Paths.statusHostInfo(host));
+    final ListenableFuture<byte[]> agentInfoFuture = labelsOnly
+        ? Futures.<byte[]>immediateFuture(null)
+        : client.getDataAsync(Paths.statusHostAgentInfo(host));
+    final ListenableFuture<byte[]> environmentFuture = view != StatusView.FULL
+        ? Futures.<byte[]>immediateFuture(null)
+        : client.getDataAsync(Paths.statusHostEnvVars(host));
+    final ListenableFuture<Map<String, byte[]>> tasksFuture = labelsOnly
+        ? Futures.immediateFuture(Collections.<String, byte[]>emptyMap())
+        : getChildrenData(client, Paths.configHostJobs(host));
+    final ListenableFuture<Map<String, byte[]>> statusesFuture = labelsOnly
+        ? Futures.immediateFuture(Collections.<String, byte[]>emptyMap())
+        : getChildrenData(client, Paths.statusHostJobs(host));
 
+    final Stat stat;
     try {
-      stat = client.exists(Paths.configHostId(host));
+      stat = await(hostIdFuture);
     } catch (KeeperException e) {
       throw new HeliosRuntimeException("Failed to check host status", e);
     }
@@ -1319,13 +1935,20 @@ public class ZooKeeperMasterModel implements MasterModel {
       return null;
     }
 
-    final boolean up = checkHostUp(client, host);
-    final HostInfo hostInfo = getHostInfo(client, host);
-    final AgentInfo agentInfo = getAgentInfo(client, host);
-    final Map<JobId, Deployment> tasks = getTasks(client, host);
-    final Map<JobId, TaskStatus> statuses = getTaskStatuses(client, host);
-    final Map<String, String> environment = getEnvironment(client, host);
-    final Map<String, String> labels = getLabels(client, host);
+    final boolean up;
+    try {
+      up = await(upFuture) != null;
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("getting host " + host + " up status failed", e);
+    }
+
+    final HostInfo hostInfo = tryGetEntity(hostInfoFuture, HOST_INFO_TYPE, "host info");
+    final AgentInfo agentInfo = tryGetEntity(agentInfoFuture, AGENT_INFO_TYPE, "agent info");
+    final Map<JobId, Deployment> tasks = getTasks(tasksFuture);
+    final Map<JobId, TaskStatus> statuses = getTaskStatuses(host, statusesFuture, view);
+    final Map<String, String> environment =
+        tryGetEntity(environmentFuture, STRING_MAP_TYPE, "environment");
+    final Map<String, String> labels = tryGetEntity(labelsFuture, STRING_MAP_TYPE, "labels");
 
     return HostStatus.newBuilder()
         .setJobs(tasks)
@@ -1338,92 +1961,72 @@ public class ZooKeeperMasterModel implements MasterModel {
         .build();
   }
 
-  private <T> T tryGetEntity(final ZooKeeperClient client, String path, TypeReference<T> type,
-                             String name) {
+  private <T> T tryGetEntity(final ListenableFuture<byte[]> future, final TypeReference<T> type,
+                             final String name) {
     try {
-      final byte[] data = client.getData(path);
-      return Json.read(data, type);
-    } catch (NoNodeException e) {
-      return null;
+      final byte[] data = await(future);
+      return data == null ? null : Json.<T>read(data, type);
     } catch (KeeperException | IOException e) {
       throw new HeliosRuntimeException("reading " + name + " info failed", e);
     }
   }
 
-  private Map<String, String> getEnvironment(final ZooKeeperClient client, final String host) {
-    return tryGetEntity(client, Paths.statusHostEnvVars(host), STRING_MAP_TYPE, "environment");
-  }
-
-  private Map<String, String> getLabels(final ZooKeeperClient client, final String host) {
-    return tryGetEntity(client, Paths.statusHostLabels(host), STRING_MAP_TYPE, "labels");
-  }
-
-  private AgentInfo getAgentInfo(final ZooKeeperClient client, final String host) {
-    return tryGetEntity(client, Paths.statusHostAgentInfo(host), AGENT_INFO_TYPE, "agent info");
-  }
-
-  private HostInfo getHostInfo(final ZooKeeperClient client, final String host) {
-    return tryGetEntity(client, Paths.statusHostInfo(host), HOST_INFO_TYPE, "host info");
-  }
-
-  private boolean checkHostUp(final ZooKeeperClient client, final String host) {
+  private Map<JobId, TaskStatus> getTaskStatuses(
+      final String host, final ListenableFuture<Map<String, byte[]>> future,
+      final StatusView view) {
+    final Map<String, byte[]> nodes;
     try {
-      final Stat stat = client.exists(Paths.statusHostUp(host));
-      return stat != null;
+      nodes = await(future);
     } catch (KeeperException e) {
-      throw new HeliosRuntimeException("getting host " + host + " up status failed", e);
+      throw new HeliosRuntimeException("List tasks for host failed: " + host, e);
+    }
+    if (nodes == null) {
+      return null;
     }
-  }
 
-  private Map<JobId, TaskStatus> getTaskStatuses(final ZooKeeperClient client, final String host) {
+    // Only the full view includes more of the job than its id
+    final TaskNodes.JobResolver resolver = view == StatusView.FULL
+                                             ? jobDefinitions : TaskNodes.ID_ONLY;
     final Map<JobId, TaskStatus> statuses = Maps.newHashMap();
-    final List<JobId> jobIds = listHostJobs(client, host);
-    for (final JobId jobId : jobIds) {
-      TaskStatus status;
+    for (final Map.Entry<String, byte[]> entry : nodes.entrySet()) {
+      final JobId jobId = JobId.fromString(entry.getKey());
       try {
-        status = getTaskStatus(client, host, jobId);
-      } catch (HeliosRuntimeException e) {
+        statuses.put(jobId, project(TaskNodes.parseTaskStatus(entry.getValue(), resolver), view));
+      } catch (IOException e) {
         // Skip this task status so we can return other available information instead of failing the
         // entire thing.
-        status = null;
-      }
-
-      if (status != null) {
-        statuses.put(jobId, status);
-      } else {
-        log.debug("Task {} status missing for host {}", jobId, host);
+        log.debug("Task {} status unreadable for host {}", jobId, host, e);
       }
     }
 
     return statuses;
   }
 
-  private List<JobId> listHostJobs(final ZooKeeperClient client, final String host) {
-    final List<String> jobIdStrings;
-    final String folder = Paths.statusHostJobs(host);
-    try {
-      jobIdStrings = client.getChildren(folder);
-    } catch (KeeperException.NoNodeException e) {
-      return null;
-    } catch (KeeperException e) {
-      throw new HeliosRuntimeException("List tasks for host failed: " + host, e);
-    }
-    final ImmutableList.Builder<JobId> jobIds = ImmutableList.builder();
-    for (String jobIdString : jobIdStrings) {
-      jobIds.add(JobId.fromString(jobIdString));
+  /**
+   * Strips a task status down to what the view includes.
+   */
+  private static TaskStatus project(final TaskStatus status, final StatusView view) {
+    if (view == StatusView.FULL) {
+      return status;
     }
-    return jobIds.build();
+    return status.asBuilder()
+        .setJob(TaskNodes.jobIdOnly(status.getJob().getId()))
+        .setEnv(Collections.<String, String>emptyMap())
+        .build();
   }
 
   @Nullable
   private TaskStatus getTaskStatus(final ZooKeeperClient client, final String host,
                                    final JobId jobId) {
-    final String containerPath = Paths.statusHostJob(host, jobId);
+    return getTaskStatus(host, jobId, client.getDataAsync(Paths.statusHostJob(host, jobId)));
+  }
+
+  @Nullable
+  private TaskStatus getTaskStatus(final String host, final JobId jobId,
+                                   final ListenableFuture<byte[]> future) {
     try {
-      final byte[] data = client.getData(containerPath);
-      return parse(data, TaskStatus.class);
-    } catch (NoNodeException ignored) {
-      return null;
+      final byte[] data = await(future);
+      return data == null ? null : TaskNodes.parseTaskStatus(data, jobDefinitions);
     } catch (KeeperException | IOException e) {
       throw new HeliosRuntimeException("Getting task " + jobId + " status " +
                                        "for host " + host + " failed", e);
@@ -1431,27 +2034,22 @@ public class ZooKeeperMasterModel implements MasterModel {
   }
 
   private Map<JobId, Deployment> getTasks(final ZooKeeperClient client, final String host) {
+    return getTasks(getChildrenData(client, Paths.configHostJobs(host)));
+  }
+
+  private Map<JobId, Deployment> getTasks(final ListenableFuture<Map<String, byte[]>> future) {
     final Map<JobId, Deployment> jobs = Maps.newHashMap();
     try {
-      final String folder = Paths.configHostJobs(host);
-      final List<String> jobIds;
-      try {
-        jobIds = client.getChildren(folder);
-      } catch (KeeperException.NoNodeException e) {
+      final Map<String, byte[]> nodes = await(future);
+      if (nodes == null) {
         return null;
       }
 
-      for (final String jobIdString : jobIds) {
-        final JobId jobId = JobId.fromString(jobIdString);
-        final String containerPath = Paths.configHostJob(host, jobId);
-        try {
-          final byte[] data = client.getData(containerPath);
-          final Task task = parse(data, Task.class);
-          jobs.put(jobId, Deployment.of(jobId, task.getGoal(), task.getDeployerUser(),
-                                        task.getDeployerMaster(), task.getDeploymentGroupName()));
-        } catch (KeeperException.NoNodeException ignored) {
-          log.debug("deployment config node disappeared: {}", jobIdString);
-        }
+      for (final Map.Entry<String, byte[]> entry : nodes.entrySet()) {
+        final JobId jobId = JobId.fromString(entry.getKey());
+        final Task task = TaskNodes.parseTask(entry.getValue(), TaskNodes.ID_ONLY);
+        jobs.put(jobId, Deployment.of(jobId, task.getGoal(), task.getDeployerUser(),
+                                      task.getDeployerMaster(), task.getDeploymentGroupName()));
       }
     } catch (KeeperException | IOException e) {
       throw new HeliosRuntimeException("getting deployment config failed", e);
@@ -1460,6 +2058,69 @@ public class ZooKeeperMasterModel implements MasterModel {
     return jobs;
   }
 
+  /**
+   * Reads the children of {@code parent} and then the data of all of them in parallel. Children
+   * that are deleted before their data could be read are left out of the result. The returned
+   * future fails with a {@link NoNodeException} if {@code parent} does not exist.
+   */
+  private static ListenableFuture<Map<String, byte[]>> getChildrenData(
+      final ZooKeeperClient client, final String parent) {
+    return Futures.transform(
+        client.getChildrenAsync(parent),
+        new AsyncFunction<List<String>, Map<String, byte[]>>() {
+          @Override
+          public ListenableFuture<Map<String, byte[]>> apply(final List<String> children) {
+            final List<ListenableFuture<byte[]>> futures = Lists.newArrayList();
+            for (final String child : children) {
+              futures.add(nullIfNoNode(client.getDataAsync(ZKPaths.makePath(parent, child))));
+            }
+            return Futures.transform(
+                Futures.allAsList(futures),
+                new Function<List<byte[]>, Map<String, byte[]>>() {
+                  @Override
+                  public Map<String, byte[]> apply(final List<byte[]> data) {
+                    final ImmutableMap.Builder<String, byte[]> nodes = ImmutableMap.builder();
+                    for (int i = 0; i < children.size(); i++) {
+                      if (data.get(i) != null) {
+                        nodes.put(children.get(i), data.get(i));
+                      }
+                    }
+                    return nodes.build();
+                  }
+                });
+          }
+        });
+  }
+
+  private static <T> ListenableFuture<T> nullIfNoNode(final ListenableFuture<T> future) {
+    return Futures.withFallback(future, new FutureFallback<T>() {
+      @Override
+      public ListenableFuture<T> create(final Throwable t) throws Exception {
+        if (t instanceof NoNodeException) {
+          return Futures.immediateFuture(null);
+        }
+        return Futures.immediateFailedFuture(t);
+      }
+    });
+  }
+
+  /**
+   * Waits for the result of an asynchronous read. Returns null if the node does not exist.
+   */
+  @Nullable
+  private static <T> T await(final ListenableFuture<T> future) throws KeeperException {
+    try {
+      return Uninterruptibles.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof NoNodeException) {
+        return null;
+      }
+      Throwables.propagateIfInstanceOf(cause, KeeperException.class);
+      throw Throwables.propagate(cause);
+    }
+  }
+
   @Override
   public Deployment undeployJob(String host, JobId jobId)
       throws HostNotFoundException, JobNotDeployedException {
@@ -1481,7 +2142,7 @@ public class ZooKeeperMasterModel implements MasterModel {
 
     assertHostExists(client, host);
 
-    final Deployment deployment = getDeployment(host, jobId);
+    final Deployment deployment = getDeployment(client, host, jobId);
     if (deployment == null) {
       throw new JobNotDeployedException(host, jobId);
     }
@@ -1513,6 +2174,99 @@ public class ZooKeeperMasterModel implements MasterModel {
     return deployment;
   }
 
+  /**
+   * Undeploys the job specified by {@code jobId} from {@code hosts}. What is deployed on the hosts
+   * is read for all of them at once, and the hosts the job is deployed on are then undeployed in
+   * batches, each in one transaction. If a batch fails because a deployment changed after it was
+   * read, its hosts are undeployed one by one.
+   */
+  @Override
+  public Map<String, JobUndeployResponse.Status> undeployJob(final JobId jobId,
+                                                             final List<String> hosts,
+                                                             final String token)
+      throws JobDoesNotExistException, TokenVerificationException {
+    log.info("undeploying {}: {} hosts", jobId, hosts.size());
+    final ZooKeeperClient client = provider.get("undeployJobFromHosts");
+
+    final Job job = getJob(client, jobId);
+    if (job == null) {
+      throw new JobDoesNotExistException(jobId);
+    }
+    verifyToken(token, job);
+
+    final Map<String, JobUndeployResponse.Status> results = Maps.newHashMap();
+    final Map<String, ListenableFuture<Stat>> hostFutures = Maps.newLinkedHashMap();
+    final Map<String, ListenableFuture<List<String>>> creationFutures = Maps.newHashMap();
+    for (final String host : ImmutableSet.copyOf(hosts)) {
+      if (!isHostName(host, jobId)) {
+        results.put(host, JobUndeployResponse.Status.HOST_NOT_FOUND);
+        continue;
+      }
+      hostFutures.put(host, client.existsAsync(Paths.configHost(host)));
+      creationFutures.put(host, client.getChildrenAsync(Paths.configHostJob(host, jobId)));
+    }
+
+    final List<Integer> staticPorts = staticPorts(job);
+    final Map<String, List<ZooKeeperOperation>> undeploys = Maps.newLinkedHashMap();
+    try {
+      for (final String host : hostFutures.keySet()) {
+        if (await(hostFutures.get(host)) == null) {
+          results.put(host, JobUndeployResponse.Status.HOST_NOT_FOUND);
+          continue;
+        }
+        final List<String> creations = await(creationFutures.get(host));
+        if (creations == null) {
+          results.put(host, JobUndeployResponse.Status.JOB_NOT_FOUND);
+          continue;
+        }
+
+        final String taskPath = Paths.configHostJob(host, jobId);
+        final List<String> nodes = Lists.newArrayList();
+        for (final String creation : creations) {
+          nodes.add(ZKPaths.makePath(taskPath, creation));
+        }
+        nodes.add(taskPath);
+        nodes.add(Paths.configJobHost(jobId, host));
+        for (final int port : staticPorts) {
+          nodes.add(Paths.configHostPort(host, port));
+        }
+        undeploys.put(host, ImmutableList.of(delete(nodes)));
+      }
+    } catch (KeeperException e) {
+      throw new HeliosRuntimeException("reading deployments of " + jobId + " failed", e);
+    }
+
+    for (final List<String> batch : Iterables.partition(undeploys.keySet(),
+                                                         MAX_HOSTS_PER_TRANSACTION)) {
+      final List<ZooKeeperOperation> operations = Lists.newArrayList();
+      for (final String host : batch) {
+        operations.addAll(undeploys.get(host));
+      }
+      try {
+        client.transaction(operations);
+        for (final String host : batch) {
+          results.put(host, JobUndeployResponse.Status.OK);
+        }
+      } catch (NoNodeException | NotEmptyException e) {
+        log.debug("undeploying {} from {} hosts at once failed, retrying one by one",
+                  jobId, batch.size(), e);
+        for (final String host : batch) {
+          try {
+            undeployJob(host, jobId, token);
+            results.put(host, JobUndeployResponse.Status.OK);
+          } catch (HostNotFoundException e1) {
+            results.put(host, JobUndeployResponse.Status.HOST_NOT_FOUND);
+          } catch (JobNotDeployedException e1) {
+            results.put(host, JobUndeployResponse.Status.JOB_NOT_FOUND);
+          }
+        }
+      } catch (KeeperException e) {
+        throw new HeliosRuntimeException("Removing deployments failed", e);
+      }
+    }
+    return results;
+  }
+
   private List<ZooKeeperOperation> getUndeployOperations(final ZooKeeperClient client,
                                                          final String host,
                                                          final JobId jobId,
@@ -1520,7 +2274,7 @@ public class ZooKeeperMasterModel implements MasterModel {
       throws HostNotFoundException, JobNotDeployedException, TokenVerificationException {
     assertHostExists(client, host);
 
-    final Deployment deployment = getDeployment(host, jobId);
+    final Deployment deployment = getDeployment(client, host, jobId);
     if (deployment == null) {
       throw new JobNotDeployedException(host, jobId);
     }
@@ -1559,7 +2313,7 @@ public class ZooKeeperMasterModel implements MasterModel {
              HostNotFoundException, JobPortAllocationConflictException {
     assertHostExists(client, host);
     final JobId id = deployment.getJobId();
-    final Job job = getJob(id);
+    final Job job = getJob(client, id);
 
     if (job == null) {
       throw new JobDoesNotExistException(id);
@@ -1598,7 +2352,7 @@ public class ZooKeeperMasterModel implements MasterModel {
       for (final int port : staticPorts) {
         checkForPortConflicts(client, host, port, id);
       }
-      operations.add(create(taskPath, task));
+      operations.add(create(taskPath, TaskNodes.toJsonBytes(task, normalizeTaskNodes)));
       operations.add(create(taskCreationPath));
     } catch (KeeperException e) {
       throw new HeliosRuntimeException("reading existing task description failed", e);
@@ -0,0 +1,62 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.master.http;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.spotify.helios.common.Json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * A response entity that writes a json object field by field while the response is being sent,
+ * instead of building the whole object in memory first. Subclasses read each value just before
+ * writing it with {@link #writeField(JsonGenerator, Object, Object)}.
+ *
+ * Anything that has to exist for the response to make sense should be resolved before returning
+ * the entity, so that failing to read it is reported like for any other resource. A read that
+ * fails while the fields are written is thrown on without ending the object. If the response has
+ * already been committed by then, the container drops the connection and the client sees an
+ * incomplete response rather than a truncated but well-formed object.
+ */
+public abstract class StreamingJsonObject implements StreamingOutput {
+
+  @Override
+  public void write(final OutputStream output) throws IOException {
+    final JsonGenerator generator = Json.newGenerator(output);
+    // Closing the generator would end the object, so only do that once all fields are written
+    generator.writeStartObject();
+    writeFields(generator);
+    generator.writeEndObject();
+    generator.close();
+  }
+
+  protected abstract void writeFields(final JsonGenerator generator) throws IOException;
+
+  protected static void writeField(final JsonGenerator generator, final Object key,
+                                   final Object value) throws IOException {
+    generator.writeFieldName(key.toString());
+    generator.writeObject(value);
+  }
+}
@@ -25,12 +25,16 @@ import com.google.common.collect.Maps;
 
 import com.spotify.helios.servicescommon.statistics.MasterMetrics;
 import com.sun.jersey.api.core.HttpContext;
+import com.sun.jersey.api.core.HttpResponseContext;
 import com.sun.jersey.api.model.AbstractResourceMethod;
 import com.sun.jersey.spi.dispatch.RequestDispatcher;
 
+import java.io.IOException;
+import java.io.OutputStream;
 import java.util.concurrent.ConcurrentMap;
 
 import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
 
 public class ReportingResourceMethodDispatcher implements RequestDispatcher {
 
@@ -50,7 +54,13 @@ public class ReportingResourceMethodDispatcher implements RequestDispatcher {
     final String key = getKey(resourceMethod);
     try {
       dispatcher.dispatch(resource, context);
-      metrics.success(key);
+      final HttpResponseContext response = context.getResponse();
+      if (response.getEntity() instanceof StreamingOutput) {
+        // Streamed responses can still fail while they are written
+        response.setEntity(reporting((StreamingOutput) response.getEntity(), key));
+      } else {
+        metrics.success(key);
+      }
     } catch (WebApplicationException e) {
       final int status = e.getResponse().getStatus();
       if (status == 404) {
@@ -67,6 +77,21 @@ public class ReportingResourceMethodDispatcher implements RequestDispatcher {
     }
   }
 
+  private StreamingOutput reporting(final StreamingOutput output, final String key) {
+    return new StreamingOutput() {
+      @Override
+      public void write(final OutputStream stream) throws IOException {
+        try {
+          output.write(stream);
+          metrics.success(key);
+        } catch (IOException | RuntimeException e) {
+          metrics.failure(key);
+          throw e;
+        }
+      }
+    };
+  }
+
   private String getKey(final AbstractResourceMethod resourceMethod) {
     final String key = keys.get(resourceMethod);
     if (key == null) {
@@ -30,12 +30,14 @@ import com.spotify.helios.common.descriptors.DeploymentGroup;
 import com.spotify.helios.common.descriptors.DeploymentGroupStatus;
 import com.spotify.helios.common.descriptors.HostStatus;
 import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.PrePullState;
 import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.common.protocol.CreateDeploymentGroupResponse;
 import com.spotify.helios.common.protocol.DeploymentGroupStatusResponse;
 import com.spotify.helios.common.protocol.RemoveDeploymentGroupResponse;
 import com.spotify.helios.common.protocol.RollingUpdateRequest;
 import com.spotify.helios.common.protocol.RollingUpdateResponse;
+import com.spotify.helios.common.protocol.StatusView;
 import com.spotify.helios.master.DeploymentGroupDoesNotExistException;
 import com.spotify.helios.master.DeploymentGroupExistsException;
 import com.spotify.helios.master.JobDoesNotExistException;
@@ -186,9 +188,15 @@ public class DeploymentGroupResource {
       final List<String> hosts = model.getDeploymentGroupHosts(name);
 
       final List<DeploymentGroupStatusResponse.HostStatus> result = Lists.newArrayList();
+      final boolean prePull = deploymentGroup.getJobId() != null &&
+                              deploymentGroup.getRolloutOptions() != null &&
+                              deploymentGroup.getRolloutOptions().getPrePull();
+      final Map<String, PrePullState> prePullStates = prePull
+          ? model.getPrePullStates(hosts, deploymentGroup.getJobId())
+          : Collections.<String, PrePullState>emptyMap();
 
       for (final String host : hosts) {
-        final HostStatus hostStatus = model.getHostStatus(host);
+        final HostStatus hostStatus = model.getHostStatus(host, StatusView.SUMMARY);
         JobId deployedJobId = null;
         TaskStatus.State state = null;
 
@@ -204,7 +212,8 @@ public class DeploymentGroupResource {
             }
           }
 
-          result.add(new DeploymentGroupStatusResponse.HostStatus(host, deployedJobId, state));
+          result.add(new DeploymentGroupStatusResponse.HostStatus(
+              host, deployedJobId, state, prePullStates.get(host)));
         }
       }
 
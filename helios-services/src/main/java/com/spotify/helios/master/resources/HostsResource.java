@@ -22,10 +22,10 @@
 package com.spotify.helios.master.resources;
 
 import com.google.common.base.Optional;
-import com.google.common.collect.Maps;
 
 import com.codahale.metrics.annotation.ExceptionMetered;
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.spotify.helios.common.descriptors.Deployment;
 import com.spotify.helios.common.descriptors.HostStatus;
 import com.spotify.helios.common.descriptors.JobId;
@@ -34,6 +34,7 @@ import com.spotify.helios.common.protocol.HostRegisterResponse;
 import com.spotify.helios.common.protocol.JobDeployResponse;
 import com.spotify.helios.common.protocol.JobUndeployResponse;
 import com.spotify.helios.common.protocol.SetGoalResponse;
+import com.spotify.helios.common.protocol.StatusView;
 import com.spotify.helios.master.HostNotFoundException;
 import com.spotify.helios.master.HostStillInUseException;
 import com.spotify.helios.master.JobAlreadyDeployedException;
@@ -43,12 +44,13 @@ import com.spotify.helios.master.JobPortAllocationConflictException;
 import com.spotify.helios.master.MasterModel;
 import com.spotify.helios.master.TokenVerificationException;
 import com.spotify.helios.master.http.PATCH;
+import com.spotify.helios.master.http.StreamingJsonObject;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.List;
-import java.util.Map;
 
 import javax.validation.Valid;
 import javax.ws.rs.DELETE;
@@ -61,6 +63,7 @@ import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.spotify.helios.common.descriptors.Job.EMPTY_TOKEN;
@@ -148,6 +151,7 @@ public class HostsResource {
    * Returns various status information about the host.
    * @param host The host id.
    * @param statusFilter An optional status filter.
+   * @param view How much of the status to return, see {@link StatusView}.
    * @return The host status.
    */
   @GET
@@ -157,8 +161,9 @@ public class HostsResource {
   @ExceptionMetered
   public Optional<HostStatus> hostStatus(
       @PathParam("id") final String host,
-      @QueryParam("status") @DefaultValue("") final String statusFilter) {
-    final HostStatus status = model.getHostStatus(host);
+      @QueryParam("status") @DefaultValue("") final String statusFilter,
+      @QueryParam(StatusView.PARAM) @DefaultValue("full") final String view) {
+    final HostStatus status = model.getHostStatus(host, view(view));
     if (status != null &&
         (isNullOrEmpty(statusFilter) || statusFilter.equals(status.getStatus().toString()))) {
       return Optional.of(status);
@@ -171,6 +176,7 @@ public class HostsResource {
    * Returns various status information about the hosts.
    * @param hosts The hosts.
    * @param statusFilter An optional status filter.
+   * @param view How much of the statuses to return, see {@link StatusView}.
    * @return The response.
    */
   @POST
@@ -178,19 +184,25 @@ public class HostsResource {
   @Produces(APPLICATION_JSON)
   @Timed
   @ExceptionMetered
-  public Map<String, HostStatus> hostStatuses(
+  public StreamingOutput hostStatuses(
       final List<String> hosts,
-      @QueryParam("status") @DefaultValue("") final String statusFilter) {
-    final Map<String, HostStatus> statuses = Maps.newHashMap();
-    for (final String current : hosts) {
-      final HostStatus status = model.getHostStatus(current);
-      if (status != null) {
-        if (isNullOrEmpty(statusFilter) || statusFilter.equals(status.getStatus().toString())) {
-          statuses.put(current, status);
+      @QueryParam("status") @DefaultValue("") final String statusFilter,
+      @QueryParam(StatusView.PARAM) @DefaultValue("full") final String view) {
+    final StatusView statusView = view(view);
+    return new StreamingJsonObject() {
+      @Override
+      protected void writeFields(final JsonGenerator generator) throws IOException {
+        for (final String current : hosts) {
+          final HostStatus status = model.getHostStatus(current, statusView);
+          if (status != null) {
+            if (isNullOrEmpty(statusFilter) ||
+                statusFilter.equals(status.getStatus().toString())) {
+              writeField(generator, current, status);
+            }
+          }
         }
       }
-    }
-    return statuses;
+    };
   }
 
   /**
@@ -319,4 +331,12 @@ public class HostsResource {
     }
     return Optional.fromNullable(model.getDeployment(host, jobId));
   }
+
+  private static StatusView view(final String view) {
+    try {
+      return StatusView.fromParam(view);
+    } catch (IllegalArgumentException e) {
+      throw badRequest("Invalid view " + view);
+    }
+  }
 }
@@ -23,30 +23,41 @@ package com.spotify.helios.master.resources;
 
 import com.google.common.base.Optional;
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Maps;
+import com.google.common.collect.Lists;
 
 import com.codahale.metrics.annotation.ExceptionMetered;
 import com.codahale.metrics.annotation.Timed;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.spotify.helios.common.JobValidator;
+import com.spotify.helios.common.descriptors.Deployment;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.BulkDeployRequest;
+import com.spotify.helios.common.protocol.BulkDeployResponse;
+import com.spotify.helios.common.protocol.BulkUndeployRequest;
+import com.spotify.helios.common.protocol.BulkUndeployResponse;
 import com.spotify.helios.common.protocol.CreateJobResponse;
 import com.spotify.helios.common.protocol.JobDeleteResponse;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
 import com.spotify.helios.master.JobDoesNotExistException;
 import com.spotify.helios.master.JobExistsException;
 import com.spotify.helios.master.JobStillDeployedException;
 import com.spotify.helios.master.MasterModel;
 import com.spotify.helios.master.TokenVerificationException;
+import com.spotify.helios.master.http.StreamingJsonObject;
 import com.spotify.helios.servicescommon.statistics.MasterMetrics;
 import com.sun.jersey.api.core.InjectParam;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 
 import javax.validation.Valid;
@@ -58,6 +69,7 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.StreamingOutput;
 
 import static com.spotify.helios.common.protocol.CreateJobResponse.Status.INVALID_JOB_DEFINITION;
 import static com.spotify.helios.common.protocol.CreateJobResponse.Status.JOB_ALREADY_EXISTS;
@@ -82,8 +94,10 @@ public class JobsResource {
   }
 
   /**
-   * Returns a {@link Map} of job id to job definition for all jobs known.  If the query
+   * Returns a map of job id to job definition for all jobs known.  If the query
    * parameter {@code q} is specified it will only return jobs whose job id contains the string.
+   * The matching job ids are resolved up front, and the jobs are then read and written one at a
+   * time while the response is streamed. Jobs removed in the meantime are left out.
    *
    * @param q The query string.
    * @return A map of Job IDs to Jobs.
@@ -92,28 +106,30 @@ public class JobsResource {
   @Produces(APPLICATION_JSON)
   @Timed
   @ExceptionMetered
-  public Map<JobId, Job> list(@QueryParam("q") @DefaultValue("") final String q) {
-    final Map<JobId, Job> allJobs = model.getJobs();
-
-    // Return all jobs if the query string is empty
-    if (q.isEmpty()) {
-      metrics.jobsInJobList(allJobs.size());
-      return allJobs;
-    }
-
-    // Filter jobs
-    final Map<JobId, Job> filteredJobs = Maps.newHashMap();
-    for (Entry<JobId, Job> entry : allJobs.entrySet()) {
-      if (entry.getKey().toString().contains(q)) {
-        filteredJobs.put(entry.getKey(), entry.getValue());
+  public StreamingOutput list(@QueryParam("q") @DefaultValue("") final String q) {
+    final List<JobId> ids = Lists.newArrayList();
+    for (final JobId id : model.getJobIds()) {
+      // Return all jobs if the query string is empty
+      if (q.isEmpty() || id.toString().contains(q)) {
+        ids.add(id);
       }
     }
-
-    metrics.jobsInJobList(filteredJobs.size());
-    return filteredJobs;
+    return new StreamingJsonObject() {
+      @Override
+      protected void writeFields(final JsonGenerator generator) throws IOException {
+        int count = 0;
+        for (final JobId id : ids) {
+          final Job job = model.getJob(id);
+          if (job != null) {
+            writeField(generator, job.getId(), job);
+            count++;
+          }
+        }
+        metrics.jobsInJobList(count);
+      }
+    };
   }
 
-
   /**
    * Returns the {@link Job} with the given id.
    *
@@ -196,11 +212,81 @@ public class JobsResource {
     }
   }
 
+  /**
+   * Deploys the job specified by the given id to several hosts at once.
+   *
+   * @param id The id of the job to deploy.
+   * @param request The hosts to deploy to, and the deployment. Its job id must match {@code id}.
+   * @param username The user deploying.
+   * @param token The optional authorization token.
+   * @return The response, with the outcome for each host.
+   */
+  @Path("{id}/deployments")
+  @POST
+  @Produces(APPLICATION_JSON)
+  @Timed
+  @ExceptionMetered
+  public BulkDeployResponse deploymentsPost(
+      @PathParam("id") @Valid final JobId id,
+      @Valid final BulkDeployRequest request,
+      @RequestUser final String username,
+      @QueryParam("token") @DefaultValue("") final String token) {
+    if (!id.isFullyQualified()) {
+      throw badRequest(new BulkDeployResponse(JobDeployResponse.Status.INVALID_ID, id, null));
+    }
+    if (!id.equals(request.getDeployment().getJobId())) {
+      throw badRequest(new BulkDeployResponse(JobDeployResponse.Status.ID_MISMATCH, id, null));
+    }
+    try {
+      final Deployment deployment =
+          request.getDeployment().toBuilder().setDeployerUser(username).build();
+      final Map<String, JobDeployResponse.Status> hosts =
+          model.deployJob(request.getHosts(), deployment, token);
+      return new BulkDeployResponse(JobDeployResponse.Status.OK, id, hosts);
+    } catch (JobDoesNotExistException e) {
+      throw badRequest(new BulkDeployResponse(JobDeployResponse.Status.JOB_NOT_FOUND, id, null));
+    } catch (TokenVerificationException e) {
+      throw forbidden(new BulkDeployResponse(JobDeployResponse.Status.FORBIDDEN, id, null));
+    }
+  }
+
+  /**
+   * Undeploys the job specified by the given id from several hosts at once.
+   *
+   * @param id The id of the job to undeploy.
+   * @param request The hosts to undeploy from.
+   * @param token The optional authorization token.
+   * @return The response, with the outcome for each host.
+   */
+  @Path("{id}/undeployments")
+  @POST
+  @Produces(APPLICATION_JSON)
+  @Timed
+  @ExceptionMetered
+  public BulkUndeployResponse undeploymentsPost(
+      @PathParam("id") @Valid final JobId id,
+      @Valid final BulkUndeployRequest request,
+      @QueryParam("token") @DefaultValue("") final String token) {
+    if (!id.isFullyQualified()) {
+      throw badRequest(new BulkUndeployResponse(JobUndeployResponse.Status.INVALID_ID, id, null));
+    }
+    try {
+      final Map<String, JobUndeployResponse.Status> hosts =
+          model.undeployJob(id, request.getHosts(), token);
+      return new BulkUndeployResponse(JobUndeployResponse.Status.OK, id, hosts);
+    } catch (JobDoesNotExistException e) {
+      throw notFound(new BulkUndeployResponse(JobUndeployResponse.Status.JOB_NOT_FOUND, id, null));
+    } catch (TokenVerificationException e) {
+      throw forbidden(new BulkUndeployResponse(JobUndeployResponse.Status.FORBIDDEN, id, null));
+    }
+  }
+
   /**
    * Returns the job status for the given job id.  The job status includes things like where it's
    * deployed, and the status of the jobs where it's deployed, etc.
    *
    * @param id The job ID.
+   * @param view How much of the status to return, see {@link StatusView}.
    * @return The job status.
    */
   @Path("{id}/status")
@@ -208,11 +294,13 @@ public class JobsResource {
   @Produces(APPLICATION_JSON)
   @Timed
   @ExceptionMetered
-  public Optional<JobStatus> statusGet(@PathParam("id") @Valid final JobId id) {
+  public Optional<JobStatus> statusGet(
+      @PathParam("id") @Valid final JobId id,
+      @QueryParam(StatusView.PARAM) @DefaultValue("full") final String view) {
     if (!id.isFullyQualified()) {
       throw badRequest("Invalid id");
     }
-    return Optional.fromNullable(model.getJobStatus(id));
+    return Optional.fromNullable(model.getJobStatus(id, view(view)));
   }
   
   @Path("/statuses")
@@ -220,19 +308,38 @@ public class JobsResource {
   @Produces(APPLICATION_JSON)
   @Timed
   @ExceptionMetered
-  public Map<JobId, JobStatus> jobStatuses(@Valid final Set<JobId> ids) {
+  public StreamingOutput jobStatuses(
+      @Valid final Set<JobId> ids,
+      @QueryParam(StatusView.PARAM) @DefaultValue("full") final String view) {
     for (final JobId id : ids) {
       if (!id.isFullyQualified()) {
         throw badRequest("Invalid id " + id);
       }
     }
-    final Map<JobId, JobStatus> results = Maps.newHashMap();
-    for (final JobId id : ids) {
-      final JobStatus status = model.getJobStatus(id);
-      if (status != null) {
-        results.put(id, status);
+    final StatusView statusView = view(view);
+    return new StreamingJsonObject() {
+      @Override
+      protected void writeFields(final JsonGenerator generator) throws IOException {
+        for (final JobId id : ids) {
+          final JobStatus status = model.getJobStatus(id, statusView);
+          if (status != null) {
+            writeField(generator, id, status);
+          }
+        }
       }
+    };
+  }
+
+  private static StatusView view(final String view) {
+    final StatusView statusView;
+    try {
+      statusView = StatusView.fromParam(view);
+    } catch (IllegalArgumentException e) {
+      throw badRequest("Invalid view " + view);
+    }
+    if (statusView == StatusView.LABELS) {
+      throw badRequest("Job statuses have no labels view");
     }
-    return results;
+    return statusView;
   }
 }
@@ -61,14 +61,30 @@ public class DefaultRolloutPlanner implements RolloutPlanner {
                             deploymentGroup.getRolloutOptions().getParallelism() : 1;
     final boolean overlap = deploymentGroup.getRolloutOptions() != null &&
                             deploymentGroup.getRolloutOptions().getOverlap();
-
-    for (final List<String> partition : Lists.partition(hosts, parallelism)) {
+    final boolean prePull = deploymentGroup.getRolloutOptions() != null &&
+                            deploymentGroup.getRolloutOptions().getPrePull();
+
+    final List<List<String>> partitions = Lists.partition(hosts, parallelism);
+    for (int i = 0; i < partitions.size(); i++) {
+      final List<String> partition = partitions.get(i);
+      if (prePull && i + 1 < partitions.size()) {
+        // have the hosts of the next batch pull the image while this one is being rolled out
+        rolloutTasks.addAll(prePullTasks(partitions.get(i + 1)));
+      }
       rolloutTasks.addAll(overlap ? rolloutTasksWithOverlap(partition) : rolloutTasks(partition));
     }
 
     return ImmutableList.copyOf(rolloutTasks);
   }
 
+  private List<RolloutTask> prePullTasks(final List<String> hosts) {
+    final ImmutableList.Builder<RolloutTask> result = ImmutableList.builder();
+    for (final String host : hosts) {
+      result.add(RolloutTask.of(RolloutTask.Action.PRE_PULL_IMAGE, host));
+    }
+    return result.build();
+  }
+
   private List<RolloutTask> rolloutTasks(final List<String> hosts) {
     final ImmutableList.Builder<RolloutTask> result = ImmutableList.builder();
     for (final String host : hosts) {
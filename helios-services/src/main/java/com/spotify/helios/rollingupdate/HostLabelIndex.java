@@ -0,0 +1,276 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.rollingupdate;
+
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Maps;
+import com.google.common.collect.SetMultimap;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractIdleService;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.servicescommon.coordination.Paths;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.Collections.emptyMap;
+
+/**
+ * A watch-driven index of the labels of all registered hosts, along with an inverted index from
+ * label keys to the hosts carrying them. Hosts are considered registered once their id node
+ * exists, same as {@link com.spotify.helios.master.MasterModel#getHostStatus(String)}.
+ *
+ * Every change to the registration or labels of a host is recorded so that consumers can restrict
+ * their work to the hosts that actually changed, see {@link #drainChangedHosts()}.
+ */
+public class HostLabelIndex extends AbstractIdleService {
+
+  private static final Logger log = LoggerFactory.getLogger(HostLabelIndex.class);
+
+  private static final TypeReference<Map<String, String>> STRING_MAP_TYPE =
+      new TypeReference<Map<String, String>>() {};
+
+  // Only watch /{config,status}/hosts/<host>/<node>, not the jobs below them
+  private static final int MAX_DEPTH = 2;
+
+  private final String configRoot = Paths.configHosts();
+  private final String statusRoot = Paths.statusHosts();
+
+  private final TreeCache configCache;
+  private final TreeCache statusCache;
+  private final CountDownLatch initialized = new CountDownLatch(2);
+  private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+
+  private final Object lock = new Object();
+  private final Map<String, Map<String, String>> hostLabels = Maps.newHashMap();
+  private final SetMultimap<String, String> hostsByLabel = HashMultimap.create();
+  private final Set<String> changedHosts = Sets.newHashSet();
+
+  public HostLabelIndex(final CuratorFramework curator) {
+    this.configCache = TreeCache.newBuilder(curator, configRoot)
+        .setMaxDepth(MAX_DEPTH)
+        .setCacheData(false)
+        .build();
+    this.statusCache = TreeCache.newBuilder(curator, statusRoot)
+        .setMaxDepth(MAX_DEPTH)
+        .build();
+    configCache.getListenable().addListener(new IndexListener(configRoot));
+    statusCache.getListenable().addListener(new IndexListener(statusRoot));
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    configCache.start();
+    statusCache.start();
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    configCache.close();
+    statusCache.close();
+  }
+
+  /**
+   * Register a listener to be called whenever the registration or labels of a host change.
+   */
+  public void addListener(final Runnable listener) {
+    listeners.add(listener);
+  }
+
+  /**
+   * Returns true once the hosts and their labels have been loaded from zookeeper. Until then the
+   * index only holds a subset of the registered hosts.
+   */
+  public boolean isInitialized() {
+    return initialized.getCount() == 0;
+  }
+
+  /**
+   * Returns the names of all registered hosts.
+   */
+  public Set<String> getHosts() {
+    synchronized (lock) {
+      return ImmutableSet.copyOf(hostLabels.keySet());
+    }
+  }
+
+  /**
+   * Returns the labels of {@code host}, or null if the host is not registered.
+   */
+  public Map<String, String> getLabels(final String host) {
+    synchronized (lock) {
+      return hostLabels.get(host);
+    }
+  }
+
+  /**
+   * Returns the labels of all registered hosts that have a label with the key {@code label}.
+   */
+  public Map<String, Map<String, String>> getHostsWithLabel(final String label) {
+    synchronized (lock) {
+      final ImmutableMap.Builder<String, Map<String, String>> hosts = ImmutableMap.builder();
+      for (final String host : hostsByLabel.get(label)) {
+        hosts.put(host, hostLabels.get(host));
+      }
+      return hosts.build();
+    }
+  }
+
+  /**
+   * Returns the number of registered hosts that have a label with the key {@code label}.
+   */
+  public int countHostsWithLabel(final String label) {
+    synchronized (lock) {
+      return hostsByLabel.get(label).size();
+    }
+  }
+
+  /**
+   * Returns the hosts that were registered, deregistered or had their labels changed since the
+   * last call, and resets the set of changed hosts.
+   */
+  public Set<String> drainChangedHosts() {
+    synchronized (lock) {
+      final Set<String> changed = ImmutableSet.copyOf(changedHosts);
+      changedHosts.clear();
+      return changed;
+    }
+  }
+
+  private void refresh(final String host) {
+    final Map<String, String> labels = registered(host) ? readLabels(host) : null;
+
+    synchronized (lock) {
+      final Map<String, String> previous = hostLabels.get(host);
+      if (labels == null ? previous == null : labels.equals(previous)) {
+        return;
+      }
+      if (previous != null) {
+        for (final String key : previous.keySet()) {
+          hostsByLabel.remove(key, host);
+        }
+      }
+      if (labels == null) {
+        hostLabels.remove(host);
+      } else {
+        hostLabels.put(host, labels);
+        for (final String key : labels.keySet()) {
+          hostsByLabel.put(key, host);
+        }
+      }
+      changedHosts.add(host);
+    }
+
+    log.debug("host labels changed: {} -> {}", host, labels);
+    for (final Runnable listener : listeners) {
+      listener.run();
+    }
+  }
+
+  private boolean registered(final String host) {
+    return configCache.getCurrentData(Paths.configHostId(host)) != null;
+  }
+
+  private Map<String, String> readLabels(final String host) {
+    final ChildData data = statusCache.getCurrentData(Paths.statusHostLabels(host));
+    if (data == null || data.getData() == null) {
+      return emptyMap();
+    }
+    try {
+      final Map<String, String> labels = Json.read(data.getData(), STRING_MAP_TYPE);
+      return labels == null ? Collections.<String, String>emptyMap() : ImmutableMap.copyOf(labels);
+    } catch (IOException e) {
+      log.warn("failed to parse labels of host {}", host, e);
+      return emptyMap();
+    }
+  }
+
+  private class IndexListener implements TreeCacheListener {
+
+    private final String root;
+
+    private IndexListener(final String root) {
+      this.root = root;
+    }
+
+    @Override
+    public void childEvent(final CuratorFramework client, final TreeCacheEvent event)
+        throws Exception {
+      switch (event.getType()) {
+        case INITIALIZED:
+          initialized.countDown();
+          if (isInitialized()) {
+            log.info("host label index initialized with {} hosts", getHosts().size());
+            // Hosts may have been refreshed from a partially loaded cache
+            refreshAll(configCache.getCurrentChildren(configRoot));
+          }
+          break;
+        case NODE_ADDED:
+        case NODE_UPDATED:
+        case NODE_REMOVED:
+          final String host = host(event.getData().getPath());
+          if (host != null) {
+            refresh(host);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void refreshAll(final Map<String, ChildData> children) {
+      final Set<String> hosts = Sets.newHashSet(getHosts());
+      if (children != null) {
+        hosts.addAll(children.keySet());
+      }
+      for (final String host : hosts) {
+        refresh(host);
+      }
+    }
+
+    private String host(final String path) {
+      if (!path.startsWith(root + "/")) {
+        return null;
+      }
+      final String relative = path.substring(root.length() + 1);
+      final int slash = relative.indexOf('/');
+      return slash == -1 ? relative : relative.substring(0, slash);
+    }
+  }
+}
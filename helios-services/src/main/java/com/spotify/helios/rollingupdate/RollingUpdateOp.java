@@ -25,17 +25,36 @@ import com.google.common.collect.ImmutableList;
 
 import com.spotify.helios.servicescommon.coordination.ZooKeeperOperation;
 
+import javax.annotation.Nullable;
+
 import java.util.Map;
 
 public class RollingUpdateOp {
 
   private final ImmutableList<ZooKeeperOperation> operations;
   private final ImmutableList<Map<String, Object>> events;
+  private final RollingUpdateOpFactory next;
+  private final boolean failed;
 
   public RollingUpdateOp(final ImmutableList<ZooKeeperOperation> operations,
                          final ImmutableList<Map<String, Object>> events) {
+    this(operations, events, null);
+  }
+
+  public RollingUpdateOp(final ImmutableList<ZooKeeperOperation> operations,
+                         final ImmutableList<Map<String, Object>> events,
+                         @Nullable final RollingUpdateOpFactory next) {
+    this(operations, events, next, false);
+  }
+
+  public RollingUpdateOp(final ImmutableList<ZooKeeperOperation> operations,
+                         final ImmutableList<Map<String, Object>> events,
+                         @Nullable final RollingUpdateOpFactory next,
+                         final boolean failed) {
     this.operations = operations;
     this.events = events;
+    this.next = next;
+    this.failed = failed;
   }
 
   public ImmutableList<ZooKeeperOperation> operations() {
@@ -45,4 +64,20 @@ public class RollingUpdateOp {
   public ImmutableList<Map<String, Object>> events() {
     return events;
   }
+
+  /**
+   * Returns a factory for processing the next task in the same step, or null if this op should be
+   * committed before moving on. Ops created by the returned factory supersede this op.
+   */
+  @Nullable
+  public RollingUpdateOpFactory next() {
+    return next;
+  }
+
+  /**
+   * Returns true if this op ends the rolling update with a failure.
+   */
+  public boolean failed() {
+    return failed;
+  }
 }
@@ -23,6 +23,7 @@ package com.spotify.helios.rollingupdate;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
 
 import com.spotify.helios.common.descriptors.DeploymentGroup;
 import com.spotify.helios.common.descriptors.DeploymentGroupStatus;
@@ -35,11 +36,13 @@ import com.spotify.helios.servicescommon.coordination.ZooKeeperOperation;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static com.spotify.helios.common.descriptors.DeploymentGroupStatus.State.DONE;
 import static com.spotify.helios.common.descriptors.DeploymentGroupStatus.State.FAILED;
 import static com.spotify.helios.common.descriptors.DeploymentGroupStatus.State.ROLLING_OUT;
+import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.check;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.delete;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.set;
 
@@ -48,12 +51,37 @@ public class RollingUpdateOpFactory {
   private final DeploymentGroupTasks tasks;
   private final DeploymentGroup deploymentGroup;
   private final DeploymentGroupEventFactory eventFactory;
+  private final List<ZooKeeperOperation> pendingOperations;
+  private final List<Map<String, Object>> pendingEvents;
+  private final Set<String> pendingHosts;
+  private final boolean continued;
 
   public RollingUpdateOpFactory(final DeploymentGroupTasks tasks,
                                 final DeploymentGroupEventFactory eventFactory) {
+    this(tasks, eventFactory, Collections.<ZooKeeperOperation>emptyList(),
+         Collections.<Map<String, Object>>emptyList(), Collections.<String>emptySet(), false);
+  }
+
+  private RollingUpdateOpFactory(final DeploymentGroupTasks tasks,
+                                 final DeploymentGroupEventFactory eventFactory,
+                                 final List<ZooKeeperOperation> pendingOperations,
+                                 final List<Map<String, Object>> pendingEvents,
+                                 final Set<String> pendingHosts,
+                                 final boolean continued) {
     this.tasks = tasks;
     this.deploymentGroup = tasks.getDeploymentGroup();
     this.eventFactory = eventFactory;
+    this.pendingOperations = pendingOperations;
+    this.pendingEvents = pendingEvents;
+    this.pendingHosts = pendingHosts;
+    this.continued = continued;
+  }
+
+  /**
+   * Returns the task this factory creates ops for.
+   */
+  public RolloutTask currentTask() {
+    return tasks.getRolloutTasks().get(tasks.getTaskIndex());
   }
 
   public RollingUpdateOp start(final DeploymentGroup deploymentGroup,
@@ -69,18 +97,22 @@ public class RollingUpdateOpFactory {
       status = DeploymentGroupStatus.newBuilder()
           .setState(DONE)
           .build();
-      ops.add(delete(Paths.statusDeploymentGroupTasks(deploymentGroup.getName())));
+      ops.addAll(deleteTasks(deploymentGroup));
       events.add(eventFactory.rollingUpdateDone(deploymentGroup));
     } else {
-      final DeploymentGroupTasks tasks = DeploymentGroupTasks.newBuilder()
-          .setRolloutTasks(rolloutTasks)
+      final DeploymentGroupTasks tasks = this.tasks.toBuilder()
           .setTaskIndex(0)
           .setDeploymentGroup(deploymentGroup)
           .build();
       status = DeploymentGroupStatus.newBuilder()
           .setState(ROLLING_OUT)
           .build();
-      ops.add(set(Paths.statusDeploymentGroupTasks(deploymentGroup.getName()), tasks));
+      ops.add(setCursor(tasks));
+      // The plan is written ahead of this op, make sure it hasn't been garbage collected since
+      for (int i = 0; i < tasks.getPlanChunks(); i++) {
+        ops.add(check(Paths.statusDeploymentGroupPlanChunk(
+            deploymentGroup.getName(), tasks.getPlanId(), i)));
+      }
     }
 
     ops.add(set(Paths.statusDeploymentGroup(deploymentGroup.getName()), status));
@@ -92,11 +124,21 @@ public class RollingUpdateOpFactory {
     return nextTask(Collections.<ZooKeeperOperation>emptyList());
   }
 
+  /**
+   * Advance to the next task, or finish the rollout if this is the last one.
+   *
+   * <p>When the next task can safely be processed before this op is committed, the returned op
+   * carries a factory for it (see {@link RollingUpdateOp#next()}). Ops created by that factory
+   * include the operations and events of this one, so a rolling update step can process several
+   * consecutive tasks and commit them in a single transaction. A task can not be processed while
+   * its target host has uncommitted operations, as it would be validated against stale state.
+   */
   public RollingUpdateOp nextTask(final List<ZooKeeperOperation> operations) {
-    final List<ZooKeeperOperation> ops = Lists.newArrayList(operations);
-    final List<Map<String, Object>> events = Lists.newArrayList();
+    final List<ZooKeeperOperation> ops = Lists.newArrayList(pendingOperations);
+    ops.addAll(operations);
+    final List<Map<String, Object>> events = Lists.newArrayList(pendingEvents);
 
-    final RolloutTask task = tasks.getRolloutTasks().get(tasks.getTaskIndex());
+    final RolloutTask task = currentTask();
 
     // Update the task index, delete tasks if done
     if (tasks.getTaskIndex() + 1 == tasks.getRolloutTasks().size()) {
@@ -105,26 +147,38 @@ public class RollingUpdateOpFactory {
           .build();
 
       // We are done -> delete tasks & update status
-      ops.add(delete(Paths.statusDeploymentGroupTasks(deploymentGroup.getName())));
+      ops.addAll(deleteTasks(deploymentGroup));
       ops.add(set(Paths.statusDeploymentGroup(deploymentGroup.getName()),
                   status));
 
       // Emit an event signalling that we're DONE!
       events.add(eventFactory.rollingUpdateDone(deploymentGroup));
-    } else {
-      ops.add(
-          set(Paths.statusDeploymentGroupTasks(deploymentGroup.getName()), tasks.toBuilder()
-              .setTaskIndex(tasks.getTaskIndex() + 1)
-              .build()));
-
-      // Only emit an event if the task resulted in taking in action. If there are no ZK operations
-      // the task was effectively a no-op.
-      if (!operations.isEmpty()) {
-        events.add(eventFactory.rollingUpdateTaskSucceeded(deploymentGroup, task));
-      }
+      return new RollingUpdateOp(ImmutableList.copyOf(ops), ImmutableList.copyOf(events));
     }
 
-    return new RollingUpdateOp(ImmutableList.copyOf(ops), ImmutableList.copyOf(events));
+    // Only emit an event if the task resulted in taking in action. If there are no ZK operations
+    // the task was effectively a no-op.
+    if (!operations.isEmpty()) {
+      events.add(eventFactory.rollingUpdateTaskSucceeded(deploymentGroup, task));
+    }
+
+    final DeploymentGroupTasks nextTasks = tasks.toBuilder()
+        .setTaskIndex(tasks.getTaskIndex() + 1)
+        .build();
+
+    final Set<String> hosts = Sets.newHashSet(pendingHosts);
+    if (!operations.isEmpty()) {
+      hosts.add(task.getTarget());
+    }
+    final RolloutTask nextTask = nextTasks.getRolloutTasks().get(nextTasks.getTaskIndex());
+    final RollingUpdateOpFactory next = hosts.contains(nextTask.getTarget())
+        ? null
+        : new RollingUpdateOpFactory(nextTasks, eventFactory, ImmutableList.copyOf(ops),
+                                     ImmutableList.copyOf(events), hosts, true);
+
+    ops.add(setCursor(nextTasks));
+
+    return new RollingUpdateOp(ImmutableList.copyOf(ops), ImmutableList.copyOf(events), next);
   }
 
   /**
@@ -132,15 +186,22 @@ public class RollingUpdateOpFactory {
    * next iteration.
    */
   public RollingUpdateOp yield() {
-    // Do nothing
-    return new RollingUpdateOp(ImmutableList.<ZooKeeperOperation>of(),
-                               ImmutableList.<Map<String, Object>>of());
+    if (!continued) {
+      // Do nothing
+      return new RollingUpdateOp(ImmutableList.<ZooKeeperOperation>of(),
+                                 ImmutableList.<Map<String, Object>>of());
+    }
+
+    // Commit the tasks processed earlier in this step, stopping at the current one
+    final List<ZooKeeperOperation> ops = Lists.newArrayList(pendingOperations);
+    ops.add(setCursor(tasks));
+    return new RollingUpdateOp(ImmutableList.copyOf(ops), ImmutableList.copyOf(pendingEvents));
   }
 
   public RollingUpdateOp error(final String msg, final String host,
                                final RollingUpdateError errorCode,
                                final Map<String, Object> metadata) {
-    final List<ZooKeeperOperation> operations = Lists.newArrayList();
+    final List<ZooKeeperOperation> operations = Lists.newArrayList(pendingOperations);
     final String errMsg = isNullOrEmpty(host) ? msg : host + ": " + msg;
 
     final DeploymentGroupStatus status = DeploymentGroupStatus.newBuilder()
@@ -149,20 +210,43 @@ public class RollingUpdateOpFactory {
         .build();
 
     // Delete tasks, set state to FAILED
-    operations.add(delete(Paths.statusDeploymentGroupTasks(deploymentGroup.getName())));
+    operations.addAll(deleteTasks(deploymentGroup));
     operations.add(set(Paths.statusDeploymentGroup(deploymentGroup.getName()), status));
 
-    final RolloutTask task = tasks.getRolloutTasks().get(tasks.getTaskIndex());
+    final RolloutTask task = currentTask();
 
     // Emit a FAILED event and a failed task event
-    final List<Map<String, Object>> events = Lists.newArrayList();
+    final List<Map<String, Object>> events = Lists.newArrayList(pendingEvents);
     final Map<String, Object> taskEv = eventFactory.rollingUpdateTaskFailed(
         deploymentGroup, task, errMsg, errorCode, metadata);
     events.add(taskEv);
     events.add(eventFactory.rollingUpdateFailed(deploymentGroup, taskEv));
 
     return new RollingUpdateOp(ImmutableList.copyOf(operations),
-                               ImmutableList.copyOf(events));
+                               ImmutableList.copyOf(events), null, true);
+  }
+
+  /**
+   * Write the task index. If the rollout tasks are stored in a plan, only the cursor (the task
+   * index and deployment group) is written, otherwise the tasks are rewritten along with it.
+   */
+  private ZooKeeperOperation setCursor(final DeploymentGroupTasks tasks) {
+    final DeploymentGroupTasks cursor = tasks.getPlanId() == null
+        ? tasks
+        : tasks.toBuilder().setRolloutTasks(Collections.<RolloutTask>emptyList()).build();
+    return set(Paths.statusDeploymentGroupTasks(tasks.getDeploymentGroup().getName()), cursor);
+  }
+
+  private List<ZooKeeperOperation> deleteTasks(final DeploymentGroup deploymentGroup) {
+    final String name = deploymentGroup.getName();
+    final List<ZooKeeperOperation> ops = Lists.newArrayList();
+    ops.add(delete(Paths.statusDeploymentGroupTasks(name)));
+    if (tasks.getPlanId() != null) {
+      for (int i = 0; i < tasks.getPlanChunks(); i++) {
+        ops.add(delete(Paths.statusDeploymentGroupPlanChunk(name, tasks.getPlanId(), i)));
+      }
+    }
+    return ops;
   }
 
   public RollingUpdateOp error(final String msg, final String host,
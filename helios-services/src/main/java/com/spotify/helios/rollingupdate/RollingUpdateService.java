@@ -29,7 +29,6 @@ import com.google.common.util.concurrent.AbstractIdleService;
 
 import com.spotify.helios.common.descriptors.DeploymentGroup;
 import com.spotify.helios.common.descriptors.HostSelector;
-import com.spotify.helios.common.descriptors.HostStatus;
 import com.spotify.helios.master.MasterModel;
 import com.spotify.helios.servicescommon.Reactor;
 import com.spotify.helios.servicescommon.ReactorFactory;
@@ -41,10 +40,13 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.spotify.helios.servicescommon.Reactor.Callback;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 
 /**
@@ -56,19 +58,24 @@ public class RollingUpdateService extends AbstractIdleService {
 
   private static final long UPDATE_INTERVAL = SECONDS.toMillis(1);
   private static final long HOST_UPDATE_INTERVAL = SECONDS.toMillis(1);
+  private static final long RECONCILE_INTERVAL_NANOS = MINUTES.toNanos(1);
 
   private final MasterModel masterModel;
+  private final HostLabelIndex hostLabelIndex;
   private final Reactor hostUpdateReactor;
   private final Reactor rollingUpdateReactor;
 
   /**
    * Create a new RollingUpdateService.
    *
+   * @param hostLabelIndex    The index of host labels to match deployment groups against.
    * @param reactorFactory    The factory to use for creating reactors.
    */
   public RollingUpdateService(final MasterModel masterModel,
+                              final HostLabelIndex hostLabelIndex,
                               final ReactorFactory reactorFactory) {
     this.masterModel = checkNotNull(masterModel, "masterModel");
+    this.hostLabelIndex = checkNotNull(hostLabelIndex, "hostLabelIndex");
     checkNotNull(reactorFactory, "reactorFactory");
 
     this.hostUpdateReactor = reactorFactory.create("hostUpdate",
@@ -76,6 +83,13 @@ public class RollingUpdateService extends AbstractIdleService {
                                                    HOST_UPDATE_INTERVAL);
     this.rollingUpdateReactor = reactorFactory.create("rollingUpdate", new RollingUpdate(),
                                                       UPDATE_INTERVAL);
+
+    hostLabelIndex.addListener(new Runnable() {
+      @Override
+      public void run() {
+        hostUpdateReactor.signal();
+      }
+    });
   }
 
   @Override
@@ -95,33 +109,95 @@ public class RollingUpdateService extends AbstractIdleService {
 
   /**
    * Updates the list of hosts associated with a deployment group. Called by the hostUpdateReactor.
+   *
+   * Host labels are read from the {@link HostLabelIndex}. The hosts of a deployment group are only
+   * recomputed if the group itself changed, or if one of the hosts it matched or might now match
+   * was registered, deregistered or relabeled. All groups are reconciled periodically regardless.
    */
   private class UpdateDeploymentGroupHosts implements Callback {
 
+    private final Map<String, DeploymentGroup> groups = Maps.newHashMap();
+    private final Map<String, List<String>> groupHosts = Maps.newHashMap();
+    private long lastReconcile = System.nanoTime();
+
     @Override
     public void run(final boolean timeout) throws InterruptedException {
-      final List<String> allHosts = masterModel.listHosts();
-      final Map<String, Map<String, String>> hostsToLabels = Maps.newHashMap();
-
-      // determine all hosts and their labels
-      for (final String host : allHosts) {
-        final HostStatus hostStatus = masterModel.getHostStatus(host);
-        if (hostStatus != null) {
-          hostsToLabels.put(host, hostStatus.getLabels());
+      if (!hostLabelIndex.isInitialized()) {
+        return;
+      }
+
+      final Set<String> changedHosts = hostLabelIndex.drainChangedHosts();
+      final long now = System.nanoTime();
+      final boolean reconcile = now - lastReconcile >= RECONCILE_INTERVAL_NANOS;
+      if (reconcile) {
+        lastReconcile = now;
+      }
+
+      final Map<String, Map<String, String>> changedHostLabels = Maps.newHashMap();
+      for (final String host : changedHosts) {
+        final Map<String, String> labels = hostLabelIndex.getLabels(host);
+        if (labels != null) {
+          changedHostLabels.put(host, labels);
         }
       }
+      final HostMatcher changedHostMatcher = new HostMatcher(changedHostLabels);
 
-      final HostMatcher hostMatcher = new HostMatcher(hostsToLabels);
+      final Map<String, DeploymentGroup> deploymentGroups = masterModel.getDeploymentGroups();
+      groups.keySet().retainAll(deploymentGroups.keySet());
+      groupHosts.keySet().retainAll(deploymentGroups.keySet());
+
+      for (final DeploymentGroup dg : deploymentGroups.values()) {
+        final String name = dg.getName();
+        if (!reconcile && dg.equals(groups.get(name)) &&
+            !affected(dg, groupHosts.get(name), changedHosts, changedHostMatcher)) {
+          continue;
+        }
 
-      for (final DeploymentGroup dg : masterModel.getDeploymentGroups().values()) {
-        final List<String> matchingHosts = hostMatcher.getMatchingHosts(dg);
+        final List<String> matchingHosts = new HostMatcher(candidates(dg)).getMatchingHosts(dg);
 
         try {
-          masterModel.updateDeploymentGroupHosts(dg.getName(), matchingHosts);
+          masterModel.updateDeploymentGroupHosts(name, matchingHosts);
+          groups.put(name, dg);
+          groupHosts.put(name, matchingHosts);
         } catch (Exception e) {
-          log.warn("error processing hosts update for deployment group: {} - {}", dg.getName(), e);
+          // Forget the group so that it is retried on the next run
+          groups.remove(name);
+          groupHosts.remove(name);
+          log.warn("error processing hosts update for deployment group: {} - {}", name, e);
+        }
+      }
+    }
+
+    private boolean affected(final DeploymentGroup dg, final List<String> hosts,
+                             final Set<String> changedHosts, final HostMatcher changedHostMatcher) {
+      if (changedHosts.isEmpty()) {
+        return false;
+      }
+      if (hosts != null && !Collections.disjoint(hosts, changedHosts)) {
+        return true;
+      }
+      return !changedHostMatcher.getMatchingHosts(dg).isEmpty();
+    }
+
+    /**
+     * Every host selector requires its label to be present, so only hosts carrying the least
+     * common of the selected labels can match.
+     */
+    private Map<String, Map<String, String>> candidates(final DeploymentGroup dg) {
+      final List<HostSelector> selectors = dg.getHostSelectors();
+      if (selectors == null || selectors.isEmpty()) {
+        return emptyMap();
+      }
+      String label = null;
+      int count = Integer.MAX_VALUE;
+      for (final HostSelector selector : selectors) {
+        final int n = hostLabelIndex.countHostsWithLabel(selector.getLabel());
+        if (n < count) {
+          label = selector.getLabel();
+          count = n;
         }
       }
+      return hostLabelIndex.getHostsWithLabel(label);
     }
   }
 
@@ -0,0 +1,531 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An immutable map backed by a hash array mapped trie. Adding or removing a single key with
+ * {@link #plus(Object, Object)} and {@link #minus(Object)} is O(log n) and returns a new map that
+ * shares all unchanged parts of the trie with the original, instead of copying every entry.
+ *
+ * Modifications that do not change anything return the map itself, so that comparing a map with
+ * a derived map is cheap when nothing changed. Null keys and values are not permitted.
+ *
+ * @param <K> The key type.
+ * @param <V> The value type.
+ */
+public final class HashTrieMap<K, V> extends AbstractMap<K, V> {
+
+  private static final int BITS = 5;
+  private static final int MASK = (1 << BITS) - 1;
+
+  /**
+   * Deep enough for seven levels of bitmap nodes and a collision node.
+   */
+  private static final int MAX_DEPTH = 9;
+
+  private static final HashTrieMap<Object, Object> EMPTY = new HashTrieMap<>(null, 0);
+
+  private final Node<K, V> root;
+  private final int size;
+
+  private int hashCode;
+  private Set<Entry<K, V>> entrySet;
+
+  private HashTrieMap(final Node<K, V> root, final int size) {
+    this.root = root;
+    this.size = size;
+  }
+
+  @SuppressWarnings("unchecked")
+  public static <K, V> HashTrieMap<K, V> of() {
+    return (HashTrieMap<K, V>) EMPTY;
+  }
+
+  /**
+   * Returns a map with the entries of {@code map}. Returns {@code map} itself if it already is a
+   * {@link HashTrieMap}.
+   */
+  @SuppressWarnings("unchecked")
+  public static <K, V> HashTrieMap<K, V> copyOf(final Map<? extends K, ? extends V> map) {
+    if (map instanceof HashTrieMap) {
+      return (HashTrieMap<K, V>) map;
+    }
+    return HashTrieMap.<K, V>of().plusAll(map);
+  }
+
+  /**
+   * Returns a map with {@code key} mapped to {@code value}, or this map if {@code key} is already
+   * mapped to that very value.
+   */
+  public HashTrieMap<K, V> plus(final K key, final V value) {
+    checkNotNull(key, "key");
+    checkNotNull(value, "value");
+    final Leaf<K, V> leaf = new Leaf<>(hash(key), key, value);
+    if (root == null) {
+      return new HashTrieMap<>(BitmapNode.<K, V>empty().plus(leaf, 0, new boolean[1]), 1);
+    }
+    final boolean[] added = new boolean[1];
+    final Node<K, V> newRoot = root.plus(leaf, 0, added);
+    if (newRoot == root) {
+      return this;
+    }
+    return new HashTrieMap<>(newRoot, added[0] ? size + 1 : size);
+  }
+
+  /**
+   * Returns a map with all entries of this map and {@code map}, with the values of {@code map}
+   * taking precedence.
+   */
+  public HashTrieMap<K, V> plusAll(final Map<? extends K, ? extends V> map) {
+    HashTrieMap<K, V> result = this;
+    for (final Entry<? extends K, ? extends V> entry : map.entrySet()) {
+      result = result.plus(entry.getKey(), entry.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Returns a map without {@code key}, or this map if it does not contain {@code key}.
+   */
+  public HashTrieMap<K, V> minus(final Object key) {
+    if (root == null || key == null) {
+      return this;
+    }
+    final Node<K, V> newRoot = root.minus(hash(key), key, 0);
+    if (newRoot == root) {
+      return this;
+    }
+    return newRoot == null ? HashTrieMap.<K, V>of() : new HashTrieMap<>(newRoot, size - 1);
+  }
+
+  /**
+   * Returns a map without the keys in {@code keys}.
+   */
+  public HashTrieMap<K, V> minusAll(final Iterable<?> keys) {
+    HashTrieMap<K, V> result = this;
+    for (final Object key : keys) {
+      result = result.minus(key);
+    }
+    return result;
+  }
+
+  @Override
+  public V get(final Object key) {
+    final Leaf<K, V> leaf = find(key);
+    return leaf == null ? null : leaf.getValue();
+  }
+
+  @Override
+  public boolean containsKey(final Object key) {
+    return find(key) != null;
+  }
+
+  private Leaf<K, V> find(final Object key) {
+    if (root == null || key == null) {
+      return null;
+    }
+    return root.find(hash(key), key, 0);
+  }
+
+  @Override
+  public int size() {
+    return size;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return size == 0;
+  }
+
+  @Override
+  public Set<Entry<K, V>> entrySet() {
+    if (entrySet == null) {
+      entrySet = new AbstractSet<Entry<K, V>>() {
+        @Override
+        public Iterator<Entry<K, V>> iterator() {
+          return new EntryIterator<>(root);
+        }
+
+        @Override
+        public int size() {
+          return size;
+        }
+      };
+    }
+    return entrySet;
+  }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (o == this) {
+      return true;
+    }
+    if (o instanceof HashTrieMap) {
+      final HashTrieMap<?, ?> that = (HashTrieMap<?, ?>) o;
+      if (that.root == root) {
+        return true;
+      }
+      if (that.size != size) {
+        return false;
+      }
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    // Racy but idempotent, like String.hashCode()
+    int h = hashCode;
+    if (h == 0 && size > 0) {
+      h = super.hashCode();
+      hashCode = h;
+    }
+    return h;
+  }
+
+  private static int hash(final Object key) {
+    final int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private static final class Leaf<K, V> extends SimpleImmutableEntry<K, V> {
+
+    private final int hash;
+
+    Leaf(final int hash, final K key, final V value) {
+      super(key, value);
+      this.hash = hash;
+    }
+
+    boolean matches(final int hash, final Object key) {
+      return this.hash == hash && getKey().equals(key);
+    }
+  }
+
+  private abstract static class Node<K, V> {
+
+    abstract Leaf<K, V> find(int hash, Object key, int shift);
+
+    /**
+     * @return A node with the leaf added, or this node if it already contains the leaf's value.
+     */
+    abstract Node<K, V> plus(Leaf<K, V> leaf, int shift, boolean[] added);
+
+    /**
+     * @return A node without the key, this node if it does not contain the key, or null if the
+     *         node became empty.
+     */
+    abstract Node<K, V> minus(int hash, Object key, int shift);
+
+    /**
+     * @return The leaves and child nodes of this node.
+     */
+    abstract Object[] slots();
+
+    /**
+     * @return The only leaf of this node if it has exactly one slot which is a leaf, else null.
+     */
+    Leaf<K, V> singleLeaf() {
+      final Object[] slots = slots();
+      return slots.length == 1 && slots[0] instanceof Leaf
+             ? HashTrieMap.<K, V>cast(slots[0]) : null;
+    }
+
+    static <K, V> Node<K, V> merge(final Leaf<K, V> a, final Leaf<K, V> b, final int shift) {
+      if (shift >= Integer.SIZE) {
+        // All bits of the hashes have been used up, so the hashes are equal
+        return new CollisionNode<>(a.hash, new Object[]{a, b});
+      }
+      final int indexA = (a.hash >>> shift) & MASK;
+      final int indexB = (b.hash >>> shift) & MASK;
+      if (indexA == indexB) {
+        return new BitmapNode<>(1 << indexA, new Object[]{merge(a, b, shift + BITS)});
+      }
+      return new BitmapNode<>((1 << indexA) | (1 << indexB), indexA < indexB
+                                                             ? new Object[]{a, b}
+                                                             : new Object[]{b, a});
+    }
+  }
+
+  private static final class BitmapNode<K, V> extends Node<K, V> {
+
+    private static final BitmapNode<Object, Object> EMPTY = new BitmapNode<>(0, new Object[0]);
+
+    private final int bitmap;
+    private final Object[] slots;
+
+    BitmapNode(final int bitmap, final Object[] slots) {
+      this.bitmap = bitmap;
+      this.slots = slots;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <K, V> BitmapNode<K, V> empty() {
+      return (BitmapNode<K, V>) EMPTY;
+    }
+
+    @Override
+    Leaf<K, V> find(final int hash, final Object key, final int shift) {
+      final int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return null;
+      }
+      final Object slot = slots[index(bit)];
+      if (slot instanceof Leaf) {
+        final Leaf<K, V> leaf = cast(slot);
+        return leaf.matches(hash, key) ? leaf : null;
+      }
+      return BitmapNode.<K, V>node(slot).find(hash, key, shift + BITS);
+    }
+
+    @Override
+    Node<K, V> plus(final Leaf<K, V> leaf, final int shift, final boolean[] added) {
+      final int bit = bit(leaf.hash, shift);
+      final int index = index(bit);
+      if ((bitmap & bit) == 0) {
+        added[0] = true;
+        final Object[] newSlots = new Object[slots.length + 1];
+        System.arraycopy(slots, 0, newSlots, 0, index);
+        newSlots[index] = leaf;
+        System.arraycopy(slots, index, newSlots, index + 1, slots.length - index);
+        return new BitmapNode<>(bitmap | bit, newSlots);
+      }
+      final Object slot = slots[index];
+      final Object newSlot;
+      if (slot instanceof Leaf) {
+        final Leaf<K, V> existing = cast(slot);
+        if (existing.matches(leaf.hash, leaf.getKey())) {
+          if (existing.getValue() == leaf.getValue()) {
+            return this;
+          }
+          newSlot = leaf;
+        } else {
+          added[0] = true;
+          newSlot = merge(existing, leaf, shift + BITS);
+        }
+      } else {
+        final Node<K, V> child = node(slot);
+        final Node<K, V> newChild = child.plus(leaf, shift + BITS, added);
+        if (newChild == child) {
+          return this;
+        }
+        newSlot = newChild;
+      }
+      return new BitmapNode<>(bitmap, replace(slots, index, newSlot));
+    }
+
+    @Override
+    Node<K, V> minus(final int hash, final Object key, final int shift) {
+      final int bit = bit(hash, shift);
+      if ((bitmap & bit) == 0) {
+        return this;
+      }
+      final int index = index(bit);
+      final Object slot = slots[index];
+      if (slot instanceof Leaf) {
+        final Leaf<K, V> leaf = cast(slot);
+        return leaf.matches(hash, key) ? remove(bit, index) : this;
+      }
+      final Node<K, V> child = node(slot);
+      final Node<K, V> newChild = child.minus(hash, key, shift + BITS);
+      if (newChild == child) {
+        return this;
+      }
+      if (newChild == null) {
+        return remove(bit, index);
+      }
+      // Pull a lone leaf up so that the trie does not keep chains of single-slot nodes
+      final Leaf<K, V> single = newChild.singleLeaf();
+      return new BitmapNode<>(bitmap, replace(slots, index, single != null ? single : newChild));
+    }
+
+    private Node<K, V> remove(final int bit, final int index) {
+      if (slots.length == 1) {
+        return null;
+      }
+      final Object[] newSlots = new Object[slots.length - 1];
+      System.arraycopy(slots, 0, newSlots, 0, index);
+      System.arraycopy(slots, index + 1, newSlots, index, slots.length - index - 1);
+      return new BitmapNode<>(bitmap & ~bit, newSlots);
+    }
+
+    @Override
+    Object[] slots() {
+      return slots;
+    }
+
+    private int index(final int bit) {
+      return Integer.bitCount(bitmap & (bit - 1));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <K, V> Node<K, V> node(final Object slot) {
+      return (Node<K, V>) slot;
+    }
+  }
+
+  private static final class CollisionNode<K, V> extends Node<K, V> {
+
+    private final int hash;
+    private final Object[] leaves;
+
+    CollisionNode(final int hash, final Object[] leaves) {
+      this.hash = hash;
+      this.leaves = leaves;
+    }
+
+    @Override
+    Leaf<K, V> find(final int hash, final Object key, final int shift) {
+      final int index = indexOf(hash, key);
+      return index < 0 ? null : HashTrieMap.<K, V>cast(leaves[index]);
+    }
+
+    @Override
+    Node<K, V> plus(final Leaf<K, V> leaf, final int shift, final boolean[] added) {
+      final int index = indexOf(leaf.hash, leaf.getKey());
+      if (index < 0) {
+        added[0] = true;
+        final Object[] newLeaves = new Object[leaves.length + 1];
+        System.arraycopy(leaves, 0, newLeaves, 0, leaves.length);
+        newLeaves[leaves.length] = leaf;
+        return new CollisionNode<>(hash, newLeaves);
+      }
+      if (HashTrieMap.<K, V>cast(leaves[index]).getValue() == leaf.getValue()) {
+        return this;
+      }
+      return new CollisionNode<>(hash, replace(leaves, index, leaf));
+    }
+
+    @Override
+    Node<K, V> minus(final int hash, final Object key, final int shift) {
+      final int index = indexOf(hash, key);
+      if (index < 0) {
+        return this;
+      }
+      if (leaves.length == 1) {
+        return null;
+      }
+      final Object[] newLeaves = new Object[leaves.length - 1];
+      System.arraycopy(leaves, 0, newLeaves, 0, index);
+      System.arraycopy(leaves, index + 1, newLeaves, index, leaves.length - index - 1);
+      return new CollisionNode<>(this.hash, newLeaves);
+    }
+
+    @Override
+    Object[] slots() {
+      return leaves;
+    }
+
+    private int indexOf(final int hash, final Object key) {
+      for (int i = 0; i < leaves.length; i++) {
+        if (HashTrieMap.<K, V>cast(leaves[i]).matches(hash, key)) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+
+  private static final class EntryIterator<K, V> implements Iterator<Entry<K, V>> {
+
+    private final Object[][] stack = new Object[MAX_DEPTH][];
+    private final int[] indices = new int[MAX_DEPTH];
+    private int depth;
+    private Leaf<K, V> next;
+
+    EntryIterator(final Node<K, V> root) {
+      if (root != null) {
+        push(root.slots());
+      }
+      advance();
+    }
+
+    private void push(final Object[] slots) {
+      stack[depth] = slots;
+      indices[depth] = 0;
+      depth++;
+    }
+
+    private void advance() {
+      next = null;
+      while (depth > 0) {
+        final Object[] slots = stack[depth - 1];
+        final int index = indices[depth - 1];
+        if (index == slots.length) {
+          stack[--depth] = null;
+          continue;
+        }
+        indices[depth - 1] = index + 1;
+        final Object slot = slots[index];
+        if (slot instanceof Leaf) {
+          next = cast(slot);
+          return;
+        }
+        push(((Node<?, ?>) slot).slots());
+      }
+    }
+
+    @Override
+    public boolean hasNext() {
+      return next != null;
+    }
+
+    @Override
+    public Entry<K, V> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      final Leaf<K, V> leaf = next;
+      advance();
+      return leaf;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static int bit(final int hash, final int shift) {
+    return 1 << ((hash >>> shift) & MASK);
+  }
+
+  private static Object[] replace(final Object[] array, final int index, final Object value) {
+    final Object[] copy = array.clone();
+    copy[index] = value;
+    return copy;
+  }
+
+  @SuppressWarnings("unchecked")
+  private static <K, V> Leaf<K, V> cast(final Object slot) {
+    return (Leaf<K, V>) slot;
+  }
+}
@@ -21,46 +21,147 @@
 
 package com.spotify.helios.servicescommon;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Optional;
+import com.google.common.collect.Lists;
 
+import com.spotify.helios.servicescommon.statistics.KafkaMetrics;
+import com.spotify.helios.servicescommon.statistics.NoopKafkaMetrics;
+
+import org.apache.kafka.clients.producer.Callback;
 import org.apache.kafka.clients.producer.KafkaProducer;
 import org.apache.kafka.clients.producer.ProducerRecord;
 import org.apache.kafka.clients.producer.RecordMetadata;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import static com.google.common.base.Preconditions.checkNotNull;
 
 /**
  * A class that wraps {@link org.apache.kafka.clients.producer.KafkaProducer}.
+ *
+ * <p>{@link #send(KafkaRecord)} never blocks the caller: records are put on a bounded in-memory
+ * queue and handed to the producer by a background thread, which lets the producer batch them
+ * according to its {@code batch.size} and {@code linger.ms} settings. When the queue is full the
+ * oldest queued record is dropped to make room, so a slow or unreachable Kafka cluster can only
+ * ever cost us events, never agent or master throughput.
  */
-public class KafkaSender {
+public class KafkaSender extends InterruptingExecutionThreadService {
 
   private static final Logger log = LoggerFactory.getLogger(KafkaSender.class);
 
-  private static final int KAFKA_SEND_TIMEOUT = 5;
+  private static final int DEFAULT_QUEUE_CAPACITY = 1000;
+  private static final int MAX_DRAIN_SIZE = 100;
 
   private final Optional<KafkaProducer<String, byte[]>> kafkaProducer;
+  private final KafkaMetrics metrics;
+  private final BlockingQueue<QueuedRecord> queue;
 
   public KafkaSender(final Optional<KafkaProducer<String, byte[]>> kafkaProducer) {
-    this.kafkaProducer = kafkaProducer;
+    this(kafkaProducer, new NoopKafkaMetrics());
+  }
+
+  public KafkaSender(final Optional<KafkaProducer<String, byte[]>> kafkaProducer,
+                     final KafkaMetrics metrics) {
+    this(kafkaProducer, metrics, DEFAULT_QUEUE_CAPACITY);
+  }
+
+  @VisibleForTesting
+  KafkaSender(final Optional<KafkaProducer<String, byte[]>> kafkaProducer,
+              final KafkaMetrics metrics, final int queueCapacity) {
+    super("kafka-sender");
+    this.kafkaProducer = checkNotNull(kafkaProducer);
+    this.metrics = checkNotNull(metrics);
+    this.queue = new ArrayBlockingQueue<>(queueCapacity);
   }
 
+  /**
+   * Queue a record for sending. Returns immediately; if the queue is full the oldest queued record
+   * is dropped.
+   */
   public void send(final KafkaRecord record) {
+    if (!kafkaProducer.isPresent()) {
+      log.debug("KafkaProducer isn't set. Not sending anything.");
+      return;
+    }
+
+    final QueuedRecord queued = new QueuedRecord(record, System.nanoTime());
+    while (!queue.offer(queued)) {
+      if (queue.poll() != null) {
+        log.debug("Kafka send queue is full, dropping oldest event");
+        metrics.kafkaRecordDropped();
+      }
+    }
+    metrics.kafkaRecordQueued();
+  }
+
+  @VisibleForTesting
+  int queueSize() {
+    return queue.size();
+  }
+
+  @Override
+  protected void run() throws Exception {
+    final List<QueuedRecord> batch = Lists.newArrayListWithCapacity(MAX_DRAIN_SIZE);
+    while (isRunning()) {
+      try {
+        batch.add(queue.take());
+      } catch (InterruptedException e) {
+        continue;
+      }
+      queue.drainTo(batch, MAX_DRAIN_SIZE - 1);
+      sendAll(batch);
+      batch.clear();
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
     if (kafkaProducer.isPresent()) {
+      final List<QueuedRecord> remaining = Lists.newArrayList();
+      queue.drainTo(remaining);
+      sendAll(remaining);
+      kafkaProducer.get().close();
+    }
+  }
+
+  private void sendAll(final List<QueuedRecord> records) {
+    for (final QueuedRecord queued : records) {
+      final KafkaRecord record = queued.record;
       try {
-        final Future<RecordMetadata> future = kafkaProducer.get().send(
-            new ProducerRecord<String, byte[]>(record.getKafkaTopic(), record.getKafkaData()));
-        final RecordMetadata metadata = future.get(KAFKA_SEND_TIMEOUT, TimeUnit.SECONDS);
-        log.debug("Sent an event to Kafka, meta: {}", metadata);
-      } catch (ExecutionException | InterruptedException | TimeoutException e) {
+        kafkaProducer.get().send(
+            new ProducerRecord<String, byte[]>(record.getKafkaTopic(), record.getKafkaData()),
+            new Callback() {
+              @Override
+              public void onCompletion(final RecordMetadata metadata, final Exception e) {
+                if (e == null) {
+                  log.debug("Sent an event to Kafka, meta: {}", metadata);
+                  metrics.kafkaRecordSent(System.nanoTime() - queued.enqueuedNanos);
+                } else {
+                  log.warn("Unable to send an event to Kafka", e);
+                  metrics.kafkaRecordDropped();
+                }
+              }
+            });
+      } catch (Exception e) {
         log.warn("Unable to send an event to Kafka", e);
+        metrics.kafkaRecordDropped();
       }
-    } else {
-      log.debug("KafkaProducer isn't set. Not sending anything.");
+    }
+  }
+
+  private static class QueuedRecord {
+
+    private final KafkaRecord record;
+    private final long enqueuedNanos;
+
+    private QueuedRecord(final KafkaRecord record, final long enqueuedNanos) {
+      this.record = record;
+      this.enqueuedNanos = enqueuedNanos;
     }
   }
 }
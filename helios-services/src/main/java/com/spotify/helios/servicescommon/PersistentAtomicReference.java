@@ -24,9 +24,12 @@ package com.spotify.helios.servicescommon;
 import com.google.common.base.Objects;
 import com.google.common.base.Supplier;
 import com.google.common.base.Throwables;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.spotify.helios.common.Json;
 
 import org.slf4j.Logger;
@@ -34,14 +37,24 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.nio.channels.Channels;
 import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
-import static com.google.common.base.Charsets.UTF_8;
 import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
 import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
 /**
  * A class that is similar to {@code AtomicReference} but is backed by a file, so can be
@@ -49,21 +62,42 @@ import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
  *
  * Strangely, this is not actually atomic in the {@code AtomicReference} way; i.e. not threadsafe,
  * nor does it do CAS.
+ *
+ * By default every {@link #set(Object)} writes the file before returning. With a write delay, the
+ * file is written behind on a background thread at most that long after a value was set, and all
+ * values set in the meantime are written at once. Use {@link #flush()} to wait for the latest
+ * value to be written.
  */
 public class PersistentAtomicReference<T> {
 
   private static final Logger log = LoggerFactory.getLogger(PersistentAtomicReference.class);
 
+  private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("persistent-reference-writer-%d")
+          .setDaemon(true).build());
+
   private final Path filename;
   private final Path tempfilename;
+  private final long writeDelayMillis;
+  private final boolean fsync;
   private final Object sync = new Object();
+  private final AtomicLong version = new AtomicLong();
+  private final AtomicBoolean writeScheduled = new AtomicBoolean();
+  private final Runnable writeBehind = new WriteBehind();
 
   private volatile T value;
 
+  // Guarded by sync
+  private long writtenVersion;
+
   private PersistentAtomicReference(final Path filename,
                                     final JavaType javaType,
-                                    final Supplier<? extends T> initialValue)
+                                    final Supplier<? extends T> initialValue,
+                                    final long writeDelayMillis,
+                                    final boolean fsync)
       throws IOException, InterruptedException {
+    this.writeDelayMillis = writeDelayMillis;
+    this.fsync = fsync;
     try {
       this.filename = filename.toAbsolutePath();
       this.tempfilename = filename.getFileSystem().getPath(this.filename.toString() + ".tmp");
@@ -83,29 +117,77 @@ public class PersistentAtomicReference<T> {
   }
 
   /**
-   * Set the reference to {@code newValue}.
+   * Set the reference to {@code newValue}. Unless this reference writes behind, the file has been
+   * written when this method returns.
    *
    * @param newValue The value to set.
    * @throws IOException If an error occurs working with the file on disk.
    * @throws InterruptedException If the thread is interrupted.
    */
   public void set(T newValue) throws IOException, InterruptedException {
+    log.debug("set: ({}) {}", filename, newValue);
+    if (writeDelayMillis > 0) {
+      this.value = newValue;
+      version.incrementAndGet();
+      if (writeScheduled.compareAndSet(false, true)) {
+        WRITER.schedule(writeBehind, writeDelayMillis, MILLISECONDS);
+      }
+      return;
+    }
     try {
-      set0(newValue);
+      synchronized (sync) {
+        write(newValue);
+        this.value = newValue;
+        writtenVersion = version.incrementAndGet();
+      }
     } catch (InterruptedIOException | ClosedByInterruptException e) {
       throw new InterruptedException(e.getMessage());
     }
   }
 
-  private void set0(final T newValue) throws IOException {
-    log.debug("set: ({}) {}", filename, newValue);
-    synchronized (sync) {
-      final String json = Json.asPrettyStringUnchecked(newValue);
-      log.debug("write: ({}) {}", tempfilename, json);
-      Files.write(tempfilename, json.getBytes(UTF_8));
-      log.debug("move: {} -> {}", tempfilename, filename);
-      Files.move(tempfilename, filename, ATOMIC_MOVE, REPLACE_EXISTING);
-      this.value = newValue;
+  /**
+   * Write the current value to disk if it has not been written yet.
+   *
+   * @throws IOException If an error occurs working with the file on disk.
+   * @throws InterruptedException If the thread is interrupted.
+   */
+  public void flush() throws IOException, InterruptedException {
+    try {
+      synchronized (sync) {
+        // Read the version before the value, the value is at least as new as the version then
+        final long current = version.get();
+        if (current == writtenVersion) {
+          return;
+        }
+        write(value);
+        writtenVersion = current;
+      }
+    } catch (InterruptedIOException | ClosedByInterruptException e) {
+      throw new InterruptedException(e.getMessage());
+    }
+  }
+
+  private void write(final T newValue) throws IOException {
+    log.debug("write: {}", tempfilename);
+    try (final FileChannel channel = FileChannel.open(tempfilename,
+                                                      CREATE, WRITE, TRUNCATE_EXISTING)) {
+      // Write through a generator that does not close the channel, so that it can still be forced
+      final ObjectWriter writer = Json.writer();
+      final JsonGenerator generator = writer.getFactory().createGenerator(
+          Channels.newOutputStream(channel));
+      writer.writeValue(generator, newValue);
+      generator.flush();
+      if (fsync) {
+        channel.force(true);
+      }
+    }
+    log.debug("move: {} -> {}", tempfilename, filename);
+    Files.move(tempfilename, filename, ATOMIC_MOVE, REPLACE_EXISTING);
+    if (fsync) {
+      // Make the rename itself durable
+      try (final FileChannel directory = FileChannel.open(filename.getParent(), READ)) {
+        directory.force(true);
+      }
     }
   }
 
@@ -138,7 +220,22 @@ public class PersistentAtomicReference<T> {
                                                         final Supplier<? extends T> initialValue)
       throws IOException, InterruptedException {
 
-    return new PersistentAtomicReference<>(filename, Json.type(typeReference), initialValue);
+    return create(filename, Json.type(typeReference), initialValue);
+  }
+
+  /**
+   * Create a reference that is written to disk at most {@code writeDelayMillis} after it was set,
+   * or on every set if the delay is zero.
+   *
+   * @param fsync Whether to force the file and its directory to disk on each write.
+   */
+  public static <T> PersistentAtomicReference<T> create(final Path filename,
+                                                        final TypeReference<T> typeReference,
+                                                        final Supplier<? extends T> initialValue,
+                                                        final long writeDelayMillis,
+                                                        final boolean fsync)
+      throws IOException, InterruptedException {
+    return create(filename, Json.type(typeReference), initialValue, writeDelayMillis, fsync);
   }
 
 
@@ -153,7 +250,17 @@ public class PersistentAtomicReference<T> {
                                                         final JavaType javaType,
                                                         final Supplier<? extends T> initialValue)
       throws IOException, InterruptedException {
-    return new PersistentAtomicReference<>(filename, javaType, initialValue);
+    return create(filename, javaType, initialValue, 0, false);
+  }
+
+  public static <T> PersistentAtomicReference<T> create(final Path filename,
+                                                        final JavaType javaType,
+                                                        final Supplier<? extends T> initialValue,
+                                                        final long writeDelayMillis,
+                                                        final boolean fsync)
+      throws IOException, InterruptedException {
+    return new PersistentAtomicReference<>(filename, javaType, initialValue, writeDelayMillis,
+                                           fsync);
   }
 
 
@@ -164,6 +271,23 @@ public class PersistentAtomicReference<T> {
     return create(FileSystems.getDefault().getPath(filename), javaType, initialValue);
   }
 
+  private class WriteBehind implements Runnable {
+
+    @Override
+    public void run() {
+      // Clear the flag first so that values set during the write schedule another one
+      writeScheduled.set(false);
+      try {
+        flush();
+      } catch (Exception e) {
+        log.error("Failed to write {}, retrying", filename, e);
+        if (writeScheduled.compareAndSet(false, true)) {
+          WRITER.schedule(this, writeDelayMillis, MILLISECONDS);
+        }
+      }
+    }
+  }
+
   @Override
   public String toString() {
     return Objects.toStringHelper(this)
@@ -79,6 +79,7 @@ public class ServiceParser {
   private final Argument noLogSetupArg;
   private final Argument kafkaArg;
   private final Argument stateDirArg;
+  private final Argument normalizeTaskNodesArg;
 
   public ServiceParser(final String programName, final String description, final String... args)
       throws ArgumentParserException {
@@ -174,6 +175,13 @@ public class ServiceParser {
         .setDefault(".")
         .help("Directory for persisting state locally.");
 
+    normalizeTaskNodesArg = parser.addArgument("--normalize-task-nodes")
+        .action(storeTrue())
+        .setDefault(false)
+        .help("Only store the job id, instead of the whole job, in the task config, task status "
+              + "and task history nodes written to zookeeper. Enable once all masters and agents "
+              + "of the cluster understand such nodes.");
+
     addArgs(parser);
 
     try {
@@ -264,6 +272,10 @@ public class ServiceParser {
     return Paths.get(options.getString(stateDirArg.getDest()));
   }
 
+  public boolean getNormalizeTaskNodes() {
+    return options.getBoolean(normalizeTaskNodesArg.getDest());
+  }
+
   private static String getHostName() {
     return exec("uname -n").trim();
   }
@@ -0,0 +1,224 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import com.google.common.util.concurrent.AbstractService;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.InterruptedIOException;
+import java.nio.channels.ClosedByInterruptException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * A reactor that collapses event updates and calls a provided callback, like {@link
+ * DefaultReactor}, but without a thread of its own. The callback is run on a shared executor and
+ * timeouts are scheduled on a shared scheduler, so an idle reactor costs no thread at all.
+ *
+ * <p>The callback is never run concurrently with itself: signals arriving while it runs are
+ * collapsed into a single follow-up run. Stopping the reactor interrupts a running callback and
+ * the reactor terminates once it has returned.
+ */
+public class SharedReactor extends AbstractService implements Reactor {
+
+  private static final Logger log = LoggerFactory.getLogger(SharedReactor.class);
+
+  private final Object lock = new Object();
+
+  private final String name;
+  private final Callback callback;
+  private final long timeoutMillis;
+  private final Executor executor;
+  private final ScheduledExecutorService scheduler;
+
+  private boolean running;
+  private boolean signalled;
+  private boolean scheduled;
+  private Thread thread;
+  private ScheduledFuture<?> timeout;
+
+  /**
+   * Create a reactor that calls the provided callback with the specified timeout interval.
+   *
+   * @param name          The reactor name.
+   * @param callback      The callback to call.
+   * @param timeoutMillis The timeout in millis after which the callback should be called even if
+   *                      there has been no updates.
+   * @param executor      The executor to run the callback on.
+   * @param scheduler     The scheduler to schedule timeouts on.
+   */
+  public SharedReactor(final String name, final Callback callback, final long timeoutMillis,
+                       final Executor executor, final ScheduledExecutorService scheduler) {
+    this.name = checkNotNull(name, "name");
+    this.callback = checkNotNull(callback, "callback");
+    this.timeoutMillis = timeoutMillis;
+    this.executor = checkNotNull(executor, "executor");
+    this.scheduler = checkNotNull(scheduler, "scheduler");
+  }
+
+  @Override
+  public void signal() {
+    synchronized (lock) {
+      signalled = true;
+      scheduleLocked();
+    }
+  }
+
+  @Override
+  public Runnable signalRunnable() {
+    return new Runnable() {
+      @Override
+      public void run() {
+        signal();
+      }
+    };
+  }
+
+  @Override
+  protected void doStart() {
+    synchronized (lock) {
+      running = true;
+      if (signalled) {
+        scheduleLocked();
+      } else {
+        armTimeoutLocked();
+      }
+    }
+    notifyStarted();
+  }
+
+  @Override
+  protected void doStop() {
+    final boolean idle;
+    synchronized (lock) {
+      running = false;
+      cancelTimeoutLocked();
+      if (thread != null) {
+        thread.interrupt();
+      }
+      idle = !scheduled;
+    }
+    if (idle) {
+      notifyStopped();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "SharedReactor(" + name + ")";
+  }
+
+  private void scheduleLocked() {
+    if (scheduled || !running) {
+      return;
+    }
+    scheduled = true;
+    cancelTimeoutLocked();
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        update();
+      }
+    });
+  }
+
+  private void armTimeoutLocked() {
+    if (timeoutMillis == 0 || !running) {
+      return;
+    }
+    timeout = scheduler.schedule(new Runnable() {
+      @Override
+      public void run() {
+        synchronized (lock) {
+          scheduleLocked();
+        }
+      }
+    }, timeoutMillis, MILLISECONDS);
+  }
+
+  private void cancelTimeoutLocked() {
+    if (timeout != null) {
+      timeout.cancel(false);
+      timeout = null;
+    }
+  }
+
+  private void update() {
+    final boolean stopped;
+    final boolean timedOut;
+    synchronized (lock) {
+      if (!running) {
+        // Stopped before we got to run
+        scheduled = false;
+        timedOut = false;
+      } else {
+        timedOut = !signalled;
+        signalled = false;
+        thread = Thread.currentThread();
+      }
+      stopped = !running;
+    }
+    if (stopped) {
+      notifyStopped();
+      return;
+    }
+
+    try {
+      callback.run(timedOut);
+    } catch (InterruptedException e) {
+      log.debug("reactor interrupted: {}", name);
+    } catch (Exception e) {
+      if (e.getCause() instanceof ClosedByInterruptException ||
+          e.getCause() instanceof InterruptedIOException ||
+          e.getCause() instanceof InterruptedException) {
+        log.debug("reactor interrupted: {}", name);
+      } else {
+        log.error("reactor runner threw exception: {}", name, e);
+      }
+    }
+
+    final boolean stopping;
+    synchronized (lock) {
+      thread = null;
+      scheduled = false;
+      // Do not leak an interrupt aimed at this reactor to the next user of the pooled thread
+      Thread.interrupted();
+      stopping = !running;
+      if (!stopping) {
+        if (signalled) {
+          scheduleLocked();
+        } else {
+          armTimeoutLocked();
+        }
+      }
+    }
+    if (stopping) {
+      notifyStopped();
+    }
+  }
+}
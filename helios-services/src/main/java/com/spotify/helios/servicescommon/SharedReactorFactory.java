@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.io.Closeable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.spotify.helios.servicescommon.Reactor.Callback;
+
+/**
+ * A {@link ReactorFactory} creating {@link SharedReactor}s that all run on the same pool of
+ * threads. Pool threads only exist while callbacks are actually running, so the number of threads
+ * follows the number of busy reactors rather than the number of reactors.
+ */
+public class SharedReactorFactory extends ReactorFactory implements Closeable {
+
+  private final ExecutorService executor;
+  private final ScheduledExecutorService scheduler;
+
+  public SharedReactorFactory(final String name) {
+    this.executor = Executors.newCachedThreadPool(
+        new ThreadFactoryBuilder().setNameFormat(name + "-%d").setDaemon(true).build());
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setNameFormat(name + "-scheduler-%d").setDaemon(true).build());
+  }
+
+  @Override
+  public Reactor create(final String name, final Callback callback, final long timeout) {
+    return new SharedReactor(name, callback, timeout, executor, scheduler);
+  }
+
+  /**
+   * Returns the scheduler used for reactor timeouts, for sharing with other short timer tasks.
+   */
+  public ScheduledExecutorService scheduler() {
+    return scheduler;
+  }
+
+  @Override
+  public void close() {
+    executor.shutdownNow();
+    scheduler.shutdownNow();
+  }
+}
@@ -38,6 +38,7 @@ import com.spotify.helios.common.descriptors.TaskStatus;
 import com.spotify.helios.master.HostNotFoundException;
 import com.spotify.helios.master.HostStillInUseException;
 import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.TaskNodes;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperOperation;
 
@@ -57,7 +58,6 @@ import java.util.Map;
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.base.Optional.fromNullable;
 import static com.google.common.collect.Lists.reverse;
-import static com.spotify.helios.common.descriptors.Descriptor.parse;
 import static com.spotify.helios.common.descriptors.HostStatus.Status.UP;
 import static com.spotify.helios.common.descriptors.HostStatus.Status.DOWN;
 import static com.spotify.helios.servicescommon.coordination.ZooKeeperOperations.delete;
@@ -84,8 +84,10 @@ public class ZooKeeperRegistrarUtil {
     client.ensurePath(Paths.configHost(hostname));
     client.ensurePath(Paths.configHostJobs(hostname));
     client.ensurePath(Paths.configHostPorts(hostname));
+    client.ensurePath(Paths.configHostPrePulls(hostname));
     client.ensurePath(Paths.statusHost(hostname));
     client.ensurePath(Paths.statusHostJobs(hostname));
+    client.ensurePath(Paths.statusHostPrePulls(hostname));
 
     // Finish registration by creating the id node last
     client.createAndSetData(idPath, hostId.getBytes(UTF_8));
@@ -141,6 +143,12 @@ public class ZooKeeperRegistrarUtil {
       }
       operations.add(delete(Paths.configHostPorts(host)));
 
+      // Remove requests to pull images ahead of rolling updates
+      final List<String> prePulls = safeListRecursive(client, Paths.configHostPrePulls(host));
+      for (final String node : reverse(prePulls)) {
+        operations.add(delete(node));
+      }
+
       // Remove host id
       final String idPath = Paths.configHostId(host);
       if (client.exists(idPath) != null) {
@@ -276,7 +284,7 @@ public class ZooKeeperRegistrarUtil {
     final String containerPath = Paths.statusHostJob(host, jobId);
     try {
       final byte[] data = client.getData(containerPath);
-      return parse(data, TaskStatus.class);
+      return TaskNodes.parseTaskStatus(data, TaskNodes.ID_ONLY);
     } catch (NoNodeException ignored) {
       return null;
     } catch (KeeperException | IOException e) {
@@ -313,7 +321,7 @@ public class ZooKeeperRegistrarUtil {
         final String containerPath = Paths.configHostJob(host, jobId);
         try {
           final byte[] data = client.getData(containerPath);
-          final Task task = parse(data, Task.class);
+          final Task task = TaskNodes.parseTask(data, TaskNodes.ID_ONLY);
           jobs.put(jobId, Deployment.of(jobId, task.getGoal()));
         } catch (KeeperException.NoNodeException ignored) {
           log.debug("deployment config node disappeared: {}", jobIdString);
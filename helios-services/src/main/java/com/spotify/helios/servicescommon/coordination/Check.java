@@ -42,4 +42,27 @@ public class Check implements ZooKeeperOperation {
            "path='" + path + '\'' +
            '}';
   }
+
+  @Override
+  public boolean equals(final Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    final Check check = (Check) o;
+
+    if (path != null ? !path.equals(check.path) : check.path != null) {
+      return false;
+    }
+
+    return true;
+  }
+
+  @Override
+  public int hashCode() {
+    return path != null ? path.hashCode() : 0;
+  }
 }
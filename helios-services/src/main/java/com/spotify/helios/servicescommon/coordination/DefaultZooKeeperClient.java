@@ -22,10 +22,16 @@
 package com.spotify.helios.servicescommon.coordination;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 
 import com.fasterxml.jackson.databind.JavaType;
+import com.spotify.helios.servicescommon.statistics.NoopZooKeeperMetrics;
+import com.spotify.helios.servicescommon.statistics.ZooKeeperMetrics;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.transaction.CuratorTransactionFinal;
 import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
 import org.apache.curator.framework.listen.Listenable;
@@ -64,6 +70,8 @@ public class DefaultZooKeeperClient implements ZooKeeperClient {
 
   private final CuratorFramework client;
   private final String clusterId;
+  private final ZooKeeperMetrics metrics;
+  private final ResyncThrottle resyncThrottle;
   private final AtomicBoolean clusterIdExists;
   private final Watcher watcher;
   private final ConnectionStateListener connectionStateListener;
@@ -73,8 +81,24 @@ public class DefaultZooKeeperClient implements ZooKeeperClient {
   }
 
   public DefaultZooKeeperClient(final CuratorFramework client, final String clusterId) {
+    this(client, clusterId, new NoopZooKeeperMetrics());
+  }
+
+  public DefaultZooKeeperClient(final CuratorFramework client, final String clusterId,
+                                final ZooKeeperMetrics metrics) {
+    this(client, clusterId, metrics, ResyncThrottle.noop());
+  }
+
+  /**
+   * @param resyncThrottle Throttles the resyncs of the path children caches created by the client.
+   */
+  public DefaultZooKeeperClient(final CuratorFramework client, final String clusterId,
+                                final ZooKeeperMetrics metrics,
+                                final ResyncThrottle resyncThrottle) {
     this.client = client;
     this.clusterId = clusterId;
+    this.metrics = metrics;
+    this.resyncThrottle = resyncThrottle;
 
     if (clusterId == null) {
       this.clusterIdExists = null;
@@ -219,6 +243,98 @@ public class DefaultZooKeeperClient implements ZooKeeperClient {
     }
   }
 
+  @Override
+  public ListenableFuture<byte[]> getDataAsync(final String path) {
+    assertClusterIdFlagTrue();
+    final SettableFuture<byte[]> future = SettableFuture.create();
+    try {
+      client.getData().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(final CuratorFramework client, final CuratorEvent event) {
+          if (succeeded(event, path, future)) {
+            future.set(event.getData());
+          }
+        }
+      }).forPath(path);
+    } catch (Exception e) {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  @Override
+  public ListenableFuture<List<String>> getChildrenAsync(final String path) {
+    assertClusterIdFlagTrue();
+    final SettableFuture<List<String>> future = SettableFuture.create();
+    try {
+      client.getChildren().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(final CuratorFramework client, final CuratorEvent event) {
+          if (succeeded(event, path, future)) {
+            future.set(event.getChildren());
+          }
+        }
+      }).forPath(path);
+    } catch (Exception e) {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  @Override
+  public ListenableFuture<Node> getNodeAsync(final String path) {
+    assertClusterIdFlagTrue();
+    final SettableFuture<Node> future = SettableFuture.create();
+    try {
+      client.getData().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(final CuratorFramework client, final CuratorEvent event) {
+          if (succeeded(event, path, future)) {
+            future.set(new Node(path, event.getData(), event.getStat()));
+          }
+        }
+      }).forPath(path);
+    } catch (Exception e) {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  @Override
+  public ListenableFuture<Stat> existsAsync(final String path) {
+    assertClusterIdFlagTrue();
+    final SettableFuture<Stat> future = SettableFuture.create();
+    try {
+      client.checkExists().inBackground(new BackgroundCallback() {
+        @Override
+        public void processResult(final CuratorFramework client, final CuratorEvent event) {
+          if (event.getResultCode() == KeeperException.Code.NONODE.intValue()) {
+            future.set(null);
+          } else if (succeeded(event, path, future)) {
+            future.set(event.getStat());
+          }
+        }
+      }).forPath(path);
+    } catch (Exception e) {
+      future.setException(e);
+    }
+    return future;
+  }
+
+  /**
+   * Fails {@code future} with the matching {@link KeeperException} if the background operation
+   * described by {@code event} did not succeed.
+   */
+  private static boolean succeeded(final CuratorEvent event, final String path,
+                                   final SettableFuture<?> future) {
+    final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+    if (code == KeeperException.Code.OK) {
+      return true;
+    }
+    future.setException(KeeperException.create(code, path));
+    return false;
+  }
+
   @Override
   public void deleteRecursive(final String path) throws KeeperException {
     assertClusterIdFlagTrue();
@@ -345,6 +461,18 @@ public class DefaultZooKeeperClient implements ZooKeeperClient {
     }
   }
 
+  @Override
+  public Stat setData(final String path, final byte[] data, final int version)
+      throws KeeperException {
+    assertClusterIdFlagTrue();
+    try {
+      return client.setData().withVersion(version).forPath(path, data);
+    } catch (Exception e) {
+      propagateIfInstanceOf(e, KeeperException.class);
+      throw propagate(e);
+    }
+  }
+
   @Override
   public Stat stat(final String path) throws KeeperException {
     assertClusterIdFlagTrue();
@@ -361,7 +489,17 @@ public class DefaultZooKeeperClient implements ZooKeeperClient {
                                                               final Path snapshotFile,
                                                               final JavaType valueType)
       throws IOException, InterruptedException {
-    return new PersistentPathChildrenCache<T>(client, path, clusterId, snapshotFile, valueType);
+    return new PersistentPathChildrenCache<T>(client, path, clusterId, snapshotFile, valueType,
+                                              metrics, resyncThrottle);
+  }
+
+  @Override
+  public <T> PersistentPathChildrenCache<T> pathChildrenCache(
+      final String path, final Path snapshotFile, final JavaType valueType,
+      final PersistentPathChildrenCache.Decoder<T> decoder)
+      throws IOException, InterruptedException {
+    return new PersistentPathChildrenCache<T>(client, path, clusterId, snapshotFile, valueType,
+                                              decoder, metrics, resyncThrottle);
   }
 
   @Override
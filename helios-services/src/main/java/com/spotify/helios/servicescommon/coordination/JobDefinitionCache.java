@@ -0,0 +1,422 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import com.spotify.helios.common.HeliosRuntimeException;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.apache.curator.utils.ZKPaths;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Caches the job definitions stored under {@link Paths#configJob}. The id of a job includes a hash
+ * of its definition, so a job that has been read once never has to be read again.
+ *
+ * By default jobs are read from zookeeper the first time they are asked for. A cache that is given
+ * a {@link CuratorFramework} instead loads all jobs when started, and watches the children of
+ * {@link Paths#configJobs} to pick up created jobs and drop deleted ones. While such a cache is in
+ * sync with zookeeper it also answers lookups of jobs that do not exist, and lists all jobs,
+ * without going to zookeeper.
+ */
+public class JobDefinitionCache extends AbstractIdleService implements TaskNodes.JobResolver {
+
+  private static final Logger log = LoggerFactory.getLogger(JobDefinitionCache.class);
+
+  private static final long DEFAULT_MAXIMUM_SIZE = 10000;
+
+  // Only watch /config/jobs/<id>, not the hosts below them
+  private static final int MAX_DEPTH = 1;
+
+  private final String root = Paths.configJobs();
+
+  private final ZooKeeperClientProvider provider;
+  private final Cache<JobId, Job> jobs;
+  // Null unless watching
+  private final CuratorFramework curator;
+  // Starts reloads after a reconnect, which must not block the tree cache event thread. Null
+  // unless watching.
+  private final ExecutorService reloader;
+  private final CountDownLatch initialized = new CountDownLatch(1);
+  private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile boolean synced;
+
+  // The tree cache whose events are followed, and the one reloading all jobs after a reconnect
+  private TreeCache tree;
+  private TreeCache pending;
+  // The jobs seen by the pending tree cache so far
+  private Set<JobId> reloaded;
+  private boolean closed;
+
+  /**
+   * Is told about jobs being created and deleted, as seen by a watching cache.
+   */
+  public interface Listener {
+
+    /**
+     * Called for every job when it is first loaded, and for jobs created later on. Might be called
+     * more than once for the same job.
+     */
+    void jobAdded(Job job);
+
+    void jobRemoved(JobId id);
+  }
+
+  public JobDefinitionCache(final ZooKeeperClientProvider provider) {
+    this(provider, DEFAULT_MAXIMUM_SIZE);
+  }
+
+  public JobDefinitionCache(final ZooKeeperClientProvider provider, final long maximumSize) {
+    this.provider = provider;
+    this.jobs = CacheBuilder.newBuilder()
+        .maximumSize(maximumSize)
+        .build();
+    this.curator = null;
+    this.reloader = null;
+  }
+
+  /**
+   * Creates a cache of all jobs, which is kept up to date using watches once started.
+   */
+  public JobDefinitionCache(final ZooKeeperClientProvider provider,
+                            final CuratorFramework curator) {
+    this.provider = provider;
+    this.jobs = CacheBuilder.newBuilder().build();
+    this.curator = curator;
+    this.reloader = Executors.newSingleThreadExecutor(
+        new ThreadFactoryBuilder().setNameFormat("job-definition-cache-%d").setDaemon(true)
+            .build());
+    this.tree = newTree();
+  }
+
+  private TreeCache newTree() {
+    final TreeCache cache = TreeCache.newBuilder(curator, root)
+        .setMaxDepth(MAX_DEPTH)
+        .build();
+    cache.getListenable().addListener(new JobsListener(cache));
+    return cache;
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    if (curator != null) {
+      synchronized (this) {
+        tree.start();
+      }
+    }
+  }
+
+  @Override
+  protected synchronized void shutDown() throws Exception {
+    if (curator != null) {
+      closed = true;
+      if (pending != null) {
+        pending.close();
+        pending = null;
+      }
+      tree.close();
+      reloader.shutdownNow();
+    }
+  }
+
+  /**
+   * Adds a listener, and tells it about all jobs that are already cached. Only a watching cache
+   * tells its listeners about jobs being created or deleted.
+   */
+  public void addListener(final Listener listener) {
+    listeners.add(listener);
+    for (final Job job : jobs.asMap().values()) {
+      listener.jobAdded(job);
+    }
+  }
+
+  public void removeListener(final Listener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Wait for all jobs to have been loaded from zookeeper once.
+   */
+  public void awaitInitialized() throws InterruptedException {
+    initialized.await();
+  }
+
+  /**
+   * Returns true if this cache holds all jobs and is following changes to them.
+   */
+  public boolean isSynced() {
+    return synced && isRunning();
+  }
+
+  /**
+   * Returns the job with the given id, or null if it does not exist. Jobs that are not cached are
+   * read from zookeeper, unless the cache is synced and so knows that they do not exist.
+   */
+  @Override
+  @Nullable
+  public Job getJob(final JobId id) {
+    final Job cached = jobs.getIfPresent(id);
+    if (cached != null || isSynced()) {
+      return cached;
+    }
+
+    final Job job = read(id);
+    // The watches decide what a watching cache holds, so a job read in the meantime might have
+    // been deleted by the time it would be added
+    if (job != null && curator == null) {
+      jobs.put(id, job);
+    }
+    return job;
+  }
+
+  /**
+   * Adds a job that has just been created, so that it can be read back right away rather than
+   * only once a watching cache has seen its node.
+   */
+  public synchronized void put(final Job job) {
+    if (reloaded != null) {
+      reloaded.add(job.getId());
+    }
+    add(job);
+  }
+
+  /**
+   * Drops a job that has just been deleted.
+   */
+  public synchronized void invalidate(final JobId id) {
+    if (reloaded != null) {
+      reloaded.remove(id);
+    }
+    if (jobs.asMap().remove(id) != null) {
+      log.debug("job removed: {}", id);
+      for (final Listener listener : listeners) {
+        listener.jobRemoved(id);
+      }
+    }
+  }
+
+  private void add(final Job job) {
+    if (jobs.asMap().putIfAbsent(job.getId(), job) == null) {
+      for (final Listener listener : listeners) {
+        listener.jobAdded(job);
+      }
+    }
+  }
+
+  /**
+   * Returns the job with the given id if it is cached. Jobs are immutable, so a cached job can be
+   * used as is even by operations that must not act on stale state, while a job that is not cached
+   * might just have been created.
+   */
+  @Nullable
+  public Job getIfPresent(final JobId id) {
+    return jobs.getIfPresent(id);
+  }
+
+  /**
+   * Returns all jobs, or null if this cache is not synced.
+   */
+  @Nullable
+  public Map<JobId, Job> getJobs() {
+    if (!isSynced()) {
+      return null;
+    }
+    return ImmutableMap.copyOf(jobs.asMap());
+  }
+
+  @Nullable
+  private Job read(final JobId id) {
+    final ZooKeeperClient client = provider.get("getJobDefinition");
+    try {
+      return Json.read(client.getData(Paths.configJob(id)), Job.class);
+    } catch (NoNodeException e) {
+      return null;
+    } catch (KeeperException | IOException e) {
+      throw new HeliosRuntimeException("getting job " + id + " failed", e);
+    }
+  }
+
+  /**
+   * Returns the id of the job whose node {@code data} belongs to, or null if it is not a job node.
+   */
+  @Nullable
+  private JobId jobId(final ChildData data) {
+    if (data == null) {
+      return null;
+    }
+    final ZKPaths.PathAndNode pathAndNode = ZKPaths.getPathAndNode(data.getPath());
+    if (!pathAndNode.getPath().equals(root)) {
+      return null;
+    }
+    return JobId.fromString(pathAndNode.getNode());
+  }
+
+  /**
+   * Start loading a fresh tree cache on the reloader thread. A tree cache only loads right away
+   * when started on a connected client, and curator tells listeners about the reconnect before the
+   * client is marked as connected.
+   */
+  private void reload(final TreeCache cache) {
+    reloader.execute(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+          synchronized (JobDefinitionCache.this) {
+            // Superseded by a later reconnect or shut down while waiting for the connection
+            if (closed || cache != pending) {
+              return;
+            }
+            cache.start();
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+        } catch (Exception e) {
+          log.error("failed to reload job definition cache", e);
+        }
+      }
+    });
+  }
+
+  private class JobsListener implements TreeCacheListener {
+
+    private final TreeCache cache;
+
+    private JobsListener(final TreeCache cache) {
+      this.cache = cache;
+    }
+
+    @Override
+    public void childEvent(final CuratorFramework client, final TreeCacheEvent event)
+        throws Exception {
+      synchronized (JobDefinitionCache.this) {
+        if (!closed && (cache == tree || cache == pending)) {
+          handle(event);
+        }
+      }
+    }
+
+    private void handle(final TreeCacheEvent event) throws Exception {
+      final JobId id = jobId(event.getData());
+      switch (event.getType()) {
+        case NODE_ADDED:
+        case NODE_UPDATED:
+          if (id != null) {
+            if (cache == pending) {
+              reloaded.add(id);
+            }
+            added(id, event.getData().getData());
+          }
+          break;
+        case NODE_REMOVED:
+          if (id != null) {
+            invalidate(id);
+          }
+          break;
+        case INITIALIZED:
+          if (cache == tree) {
+            log.info("job definition cache initialized with {} jobs", jobs.size());
+            synced = true;
+            initialized.countDown();
+          } else {
+            // Drop the jobs deleted while disconnected, and only then resync
+            final Set<JobId> deleted = Sets.difference(jobs.asMap().keySet(), reloaded);
+            for (final JobId job : ImmutableSet.copyOf(deleted)) {
+              invalidate(job);
+            }
+            log.info("job definition cache reloaded with {} jobs", jobs.size());
+            final TreeCache stale = tree;
+            tree = pending;
+            pending = null;
+            reloaded = null;
+            stale.close();
+            synced = true;
+          }
+          break;
+        case CONNECTION_RECONNECTED:
+          // The jobs might have changed while disconnected, so only resync once all of them have
+          // been read again by a fresh tree cache. Restart the reload if the connection dropped
+          // while it was in progress.
+          if (cache == tree && initialized.getCount() == 0) {
+            if (pending != null) {
+              pending.close();
+            }
+            reloaded = Sets.newHashSet();
+            pending = newTree();
+            reload(pending);
+          }
+          break;
+        case CONNECTION_SUSPENDED:
+        case CONNECTION_LOST:
+          if (cache == tree) {
+            log.info("job definition cache unsynced: {}", event.getType());
+            synced = false;
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    private void added(final JobId id, final byte[] data) {
+      if (jobs.getIfPresent(id) != null) {
+        return;
+      }
+      final Job job;
+      try {
+        job = Json.read(data, Job.class);
+      } catch (IOException e) {
+        log.warn("failed to parse job: {}", id, e);
+        return;
+      }
+      add(job);
+    }
+  }
+}
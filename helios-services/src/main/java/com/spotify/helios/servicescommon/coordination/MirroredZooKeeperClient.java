@@ -0,0 +1,282 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import com.fasterxml.jackson.databind.JavaType;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
+import org.apache.curator.framework.listen.Listenable;
+import org.apache.curator.framework.recipes.nodes.PersistentEphemeralNode;
+import org.apache.curator.framework.state.ConnectionStateListener;
+import org.apache.zookeeper.CreateMode;
+import org.apache.zookeeper.KeeperException;
+import org.apache.zookeeper.ZooKeeper;
+import org.apache.zookeeper.data.Stat;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A {@link ZooKeeperClient} that serves reads of mirrored paths from a {@link ZooKeeperStateMirror}
+ * and passes everything else through to zookeeper.
+ *
+ * Nodes missing from the mirror are read from zookeeper, so that nodes that were just created are
+ * visible even if the watch that adds them to the mirror has not fired yet. The same goes for
+ * existence checks: only nodes present in the mirror are answered from it, so checking for a node
+ * that does not exist still costs a round-trip to zookeeper.
+ */
+public class MirroredZooKeeperClient implements ZooKeeperClient {
+
+  private final ZooKeeperClient client;
+  private final ZooKeeperStateMirror mirror;
+
+  public MirroredZooKeeperClient(final ZooKeeperClient client,
+                                 final ZooKeeperStateMirror mirror) {
+    this.client = client;
+    this.mirror = mirror;
+  }
+
+  private boolean mirrored(final String path) {
+    return mirror.covers(path) && mirror.isSynced();
+  }
+
+  @Override
+  public byte[] getData(final String path) throws KeeperException {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return node.getBytes();
+      }
+    }
+    return client.getData(path);
+  }
+
+  @Override
+  public Node getNode(final String path) throws KeeperException {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return node;
+      }
+    }
+    return client.getNode(path);
+  }
+
+  @Override
+  public List<String> getChildren(final String path) throws KeeperException {
+    if (mirrored(path)) {
+      final List<String> children = mirror.getChildren(path);
+      if (children != null) {
+        return children;
+      }
+    }
+    return client.getChildren(path);
+  }
+
+  @Override
+  public ListenableFuture<byte[]> getDataAsync(final String path) {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return Futures.immediateFuture(node.getBytes());
+      }
+    }
+    return client.getDataAsync(path);
+  }
+
+  @Override
+  public ListenableFuture<Node> getNodeAsync(final String path) {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return Futures.immediateFuture(node);
+      }
+    }
+    return client.getNodeAsync(path);
+  }
+
+  @Override
+  public ListenableFuture<List<String>> getChildrenAsync(final String path) {
+    if (mirrored(path)) {
+      final List<String> children = mirror.getChildren(path);
+      if (children != null) {
+        return Futures.immediateFuture(children);
+      }
+    }
+    return client.getChildrenAsync(path);
+  }
+
+  @Override
+  public ListenableFuture<Stat> existsAsync(final String path) {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return Futures.immediateFuture(node.getStat());
+      }
+    }
+    return client.existsAsync(path);
+  }
+
+  @Override
+  public Stat exists(final String path) throws KeeperException {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return node.getStat();
+      }
+    }
+    return client.exists(path);
+  }
+
+  @Override
+  public Stat stat(final String path) throws KeeperException {
+    if (mirrored(path)) {
+      final Node node = mirror.getNode(path);
+      if (node != null) {
+        return node.getStat();
+      }
+    }
+    return client.stat(path);
+  }
+
+  @Override
+  public void ensurePath(final String path) throws KeeperException {
+    client.ensurePath(path);
+  }
+
+  @Override
+  public void ensurePath(final String path, final boolean excludingLast) throws KeeperException {
+    client.ensurePath(path, excludingLast);
+  }
+
+  @Override
+  public void delete(final String path) throws KeeperException {
+    client.delete(path);
+  }
+
+  @Override
+  public void setData(final String path, final byte[] bytes) throws KeeperException {
+    client.setData(path, bytes);
+  }
+
+  @Override
+  public Stat setData(final String path, final byte[] bytes, final int version)
+      throws KeeperException {
+    return client.setData(path, bytes, version);
+  }
+
+  @Override
+  public void createAndSetData(final String path, final byte[] data) throws KeeperException {
+    client.createAndSetData(path, data);
+  }
+
+  @Override
+  public void createWithMode(final String path, final CreateMode mode) throws KeeperException {
+    client.createWithMode(path, mode);
+  }
+
+  @Override
+  public void deleteRecursive(final String path) throws KeeperException {
+    client.deleteRecursive(path);
+  }
+
+  @Override
+  public List<String> listRecursive(final String path) throws KeeperException {
+    return client.listRecursive(path);
+  }
+
+  @Override
+  public void create(final String path) throws KeeperException {
+    client.create(path);
+  }
+
+  @Override
+  public <T> PersistentPathChildrenCache<T> pathChildrenCache(final String path,
+                                                              final Path snapshotFile,
+                                                              final JavaType valueType)
+      throws IOException, InterruptedException {
+    return client.pathChildrenCache(path, snapshotFile, valueType);
+  }
+
+  @Override
+  public <T> PersistentPathChildrenCache<T> pathChildrenCache(
+      final String path, final Path snapshotFile, final JavaType valueType,
+      final PersistentPathChildrenCache.Decoder<T> decoder)
+      throws IOException, InterruptedException {
+    return client.pathChildrenCache(path, snapshotFile, valueType, decoder);
+  }
+
+  @Override
+  public Collection<CuratorTransactionResult> transaction(final List<ZooKeeperOperation> operations)
+      throws KeeperException {
+    return client.transaction(operations);
+  }
+
+  @Override
+  public Collection<CuratorTransactionResult> transaction(final ZooKeeperOperation... operations)
+      throws KeeperException {
+    return client.transaction(operations);
+  }
+
+  @Override
+  public void delete(final String path, final int version) throws KeeperException {
+    client.delete(path, version);
+  }
+
+  @Override
+  public Listenable<ConnectionStateListener> getConnectionStateListenable() {
+    return client.getConnectionStateListenable();
+  }
+
+  @Override
+  public ZooKeeper.States getState() throws KeeperException {
+    return client.getState();
+  }
+
+  @Override
+  public void start() {
+    client.start();
+  }
+
+  @Override
+  public void close() {
+    client.close();
+  }
+
+  @Override
+  public PersistentEphemeralNode persistentEphemeralNode(final String path,
+                                                         final PersistentEphemeralNode.Mode mode,
+                                                         final byte[] data) {
+    return client.persistentEphemeralNode(path, mode, data);
+  }
+
+  @Override
+  public CuratorFramework getCuratorFramework() {
+    return client.getCuratorFramework();
+  }
+}
@@ -41,9 +41,12 @@ public class Paths {
   private static final String PORTS = "ports";
   private static final String ENVIRONMENT = "environment";
   private static final String LABELS = "labels";
+  private static final String PREPULL = "prepull";
   private static final String ID = "id";
   private static final String DEPLOYMENT_GROUPS = "deployment-groups";
   private static final String DEPLOYMENT_GROUP_TASKS = "deployment-group-tasks";
+  private static final String DEPLOYMENT_GROUP_PLANS = "deployment-group-plans";
+  private static final String MASTER_LEADER = "master-leader";
 
   private static final PathFactory CONFIG_ID = new PathFactory("/", CONFIG, ID);
   private static final PathFactory CONFIG_JOBS = new PathFactory("/", CONFIG, JOBS);
@@ -54,10 +57,14 @@ public class Paths {
 
   private static final PathFactory STATUS_HOSTS = new PathFactory("/", STATUS, HOSTS);
   private static final PathFactory STATUS_MASTERS = new PathFactory("/", STATUS, MASTERS);
+  private static final PathFactory STATUS_MASTER_LEADER = new PathFactory("/", STATUS,
+                                                                         MASTER_LEADER);
   private static final PathFactory STATUS_DEPLOYMENT_GROUPS = new PathFactory(
       "/", STATUS, DEPLOYMENT_GROUPS);
   private static final PathFactory STATUS_DEPLOYMENT_GROUP_TASKS = new PathFactory(
       "/", STATUS, DEPLOYMENT_GROUP_TASKS);
+  private static final PathFactory STATUS_DEPLOYMENT_GROUP_PLANS = new PathFactory(
+      "/", STATUS, DEPLOYMENT_GROUP_PLANS);
 
   private static final PathFactory HISTORY_JOBS = new PathFactory("/", HISTORY, JOBS);
   private static final String CREATION_PREFIX = "creation-";
@@ -136,6 +143,14 @@ public class Paths {
     return CONFIG_HOSTS.path(host, JOBS, id.toString(), CREATION_PREFIX + operationId);
   }
 
+  public static String configHostPrePulls(final String host) {
+    return CONFIG_HOSTS.path(host, PREPULL);
+  }
+
+  public static String configHostPrePull(final String host, final JobId jobId) {
+    return CONFIG_HOSTS.path(host, PREPULL, jobId.toString());
+  }
+
   public static String configHostPorts(final String host) {
     return CONFIG_HOSTS.path(host, PORTS);
   }
@@ -164,6 +179,14 @@ public class Paths {
     return STATUS_HOSTS.path(host, JOBS, jobId.toString());
   }
 
+  public static String statusHostPrePulls(final String host) {
+    return STATUS_HOSTS.path(host, PREPULL);
+  }
+
+  public static String statusHostPrePull(final String host, final JobId jobId) {
+    return STATUS_HOSTS.path(host, PREPULL, jobId.toString());
+  }
+
   public static String statusHostUp(final String host) {
     return STATUS_HOSTS.path(host, UP);
   }
@@ -180,6 +203,10 @@ public class Paths {
     return STATUS_MASTERS.path();
   }
 
+  public static String statusMasterLeader() {
+    return STATUS_MASTER_LEADER.path();
+  }
+
   public static String statusHostInfo(final String host) {
     return STATUS_HOSTS.path(host, HOSTINFO);
   }
@@ -216,6 +243,15 @@ public class Paths {
     return STATUS_DEPLOYMENT_GROUP_TASKS.path(deploymentGroupName);
   }
 
+  public static String statusDeploymentGroupPlans(final String deploymentGroupName) {
+    return STATUS_DEPLOYMENT_GROUP_PLANS.path(deploymentGroupName);
+  }
+
+  public static String statusDeploymentGroupPlanChunk(final String deploymentGroupName,
+                                                      final String planId, final int chunk) {
+    return STATUS_DEPLOYMENT_GROUP_PLANS.path(deploymentGroupName, planId + "-" + chunk);
+  }
+
   public static String historyJobHostEventsTimestamp(final JobId jobId,
                                                      final String host,
                                                      final long timestamp) {
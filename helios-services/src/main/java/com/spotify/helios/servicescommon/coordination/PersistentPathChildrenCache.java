@@ -24,9 +24,11 @@ package com.spotify.helios.servicescommon.coordination;
 import com.google.common.base.Supplier;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.SettableFuture;
 
 import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.type.MapType;
@@ -35,10 +37,15 @@ import com.spotify.helios.agent.RetryIntervalPolicy;
 import com.spotify.helios.agent.RetryScheduler;
 import com.spotify.helios.common.Json;
 import com.spotify.helios.servicescommon.DefaultReactor;
+import com.spotify.helios.servicescommon.HashTrieMap;
 import com.spotify.helios.servicescommon.PersistentAtomicReference;
 import com.spotify.helios.servicescommon.Reactor;
+import com.spotify.helios.servicescommon.statistics.NoopZooKeeperMetrics;
+import com.spotify.helios.servicescommon.statistics.ZooKeeperMetrics;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.BackgroundCallback;
+import org.apache.curator.framework.api.CuratorEvent;
 import org.apache.curator.framework.api.CuratorWatcher;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
@@ -58,11 +65,13 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.util.concurrent.Service.State.STOPPING;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.zookeeper.Watcher.Event.EventType.NodeDataChanged;
+import static org.apache.zookeeper.Watcher.Event.EventType.NodeDeleted;
 
 /**
  * A view of the children of a zookeeper node, kept up to date with zookeeper using watches and
@@ -77,12 +86,15 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
   private static final Logger log = LoggerFactory.getLogger(PersistentPathChildrenCache.class);
 
   private static final long REFRESH_INTERVAL_MILLIS = 30000;
+  private static final long SNAPSHOT_WRITE_DELAY_MILLIS = 1000;
 
   private final PersistentAtomicReference<Map<String, T>> snapshot;
   private final CuratorFramework curator;
   private final String path;
   private final String clusterId;
-  private final JavaType valueType;
+  private final Decoder<T> decoder;
+  private final ZooKeeperMetrics metrics;
+  private final ResyncThrottle resyncThrottle;
 
   private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
   private final CuratorWatcher childrenWatcher = new ChildrenWatcher();
@@ -91,21 +103,59 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
   private final Reactor reactor;
 
   private volatile boolean synced;
+  private volatile boolean childrenChanged;
+  private volatile boolean reconnected;
+
+  private long syncedSessionId;
+  private int childrenVersion = -1;
 
   public PersistentPathChildrenCache(final CuratorFramework curator, final String path,
                                      final String clusterId, final Path snapshotFile,
                                      final JavaType valueType)
       throws IOException, InterruptedException {
+    this(curator, path, clusterId, snapshotFile, valueType, new NoopZooKeeperMetrics());
+  }
+
+  public PersistentPathChildrenCache(final CuratorFramework curator, final String path,
+                                     final String clusterId, final Path snapshotFile,
+                                     final JavaType valueType, final ZooKeeperMetrics metrics)
+      throws IOException, InterruptedException {
+    this(curator, path, clusterId, snapshotFile, valueType, metrics, ResyncThrottle.noop());
+  }
+
+  public PersistentPathChildrenCache(final CuratorFramework curator, final String path,
+                                     final String clusterId, final Path snapshotFile,
+                                     final JavaType valueType, final ZooKeeperMetrics metrics,
+                                     final ResyncThrottle resyncThrottle)
+      throws IOException, InterruptedException {
+    this(curator, path, clusterId, snapshotFile, valueType,
+         PersistentPathChildrenCache.<T>json(valueType), metrics, resyncThrottle);
+  }
+
+  /**
+   * @param valueType The type of the values, used for the snapshot.
+   * @param decoder   Turns the data of the nodes into values.
+   */
+  public PersistentPathChildrenCache(final CuratorFramework curator, final String path,
+                                     final String clusterId, final Path snapshotFile,
+                                     final JavaType valueType, final Decoder<T> decoder,
+                                     final ZooKeeperMetrics metrics,
+                                     final ResyncThrottle resyncThrottle)
+      throws IOException, InterruptedException {
     this.curator = curator;
     this.path = path;
     this.clusterId = clusterId;
-    this.valueType = valueType;
+    this.decoder = decoder;
+    this.metrics = metrics;
+    this.resyncThrottle = resyncThrottle;
 
     final MapType mapType = Json.typeFactory().constructMapType(HashMap.class,
                                                                 Json.type(String.class), valueType);
     final Supplier<Map<String, T>> empty = Suppliers.ofInstance(Collections.<String, T>emptyMap());
 
-    this.snapshot = PersistentAtomicReference.create(snapshotFile, mapType, empty);
+    // The snapshot is only a cache of zookeeper, so losing the latest changes on a crash is fine
+    this.snapshot = PersistentAtomicReference.create(snapshotFile, mapType, empty,
+                                                     SNAPSHOT_WRITE_DELAY_MILLIS, false);
     this.reactor = new DefaultReactor("zk-ppcc:" + path, new Update(), REFRESH_INTERVAL_MILLIS);
     curator.getConnectionStateListenable().addListener(new ConnectionListener());
   }
@@ -128,6 +178,7 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
   @Override
   protected void shutDown() throws Exception {
     reactor.stopAsync().awaitTerminated();
+    snapshot.flush();
   }
 
   public Map<String, T> getNodes() {
@@ -155,6 +206,27 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
     void connectionStateChanged(ConnectionState state);
   }
 
+  /**
+   * Turns the data of a node into a value. Nodes whose data can not be decoded are treated as
+   * absent.
+   */
+  public interface Decoder<T> {
+
+    T decode(byte[] data) throws IOException;
+  }
+
+  /**
+   * Returns a {@link Decoder} that parses the data of nodes as JSON.
+   */
+  public static <T> Decoder<T> json(final JavaType valueType) {
+    return new Decoder<T>() {
+      @Override
+      public T decode(final byte[] data) throws IOException {
+        return Json.read(data, valueType);
+      }
+    };
+  }
+
   private class Update implements Reactor.Callback {
 
     final RetryIntervalPolicy retryIntervalPolicy = BoundedRandomExponentialBackoff.newBuilder()
@@ -183,14 +255,42 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
   private void update() throws KeeperException, InterruptedException {
     log.debug("updating: {}", path);
 
-    final Map<String, T> newSnapshot;
-    final Map<String, T> currentSnapshot = snapshot.get();
+    final HashTrieMap<String, T> currentSnapshot = HashTrieMap.copyOf(snapshot.get());
+    HashTrieMap<String, T> newSnapshot = currentSnapshot;
+    final Set<String> fetch = Sets.newHashSet();
+
+    final boolean reconnect = reconnected;
+    reconnected = false;
+    if (reconnect && synced && sessionId() != syncedSessionId) {
+      // Watchers are gone along with the old session
+      log.debug("session changed while disconnected: {}", path);
+      synced = false;
+    }
 
     if (!synced) {
+      // Fetch all children and register watchers
       synced = true;
-      newSnapshot = sync();
-    } else {
-      newSnapshot = Maps.newHashMap(currentSnapshot);
+      childrenChanged = false;
+      syncedSessionId = sessionId();
+      log.debug("syncing: {}", path);
+      newSnapshot = HashTrieMap.of();
+      resyncThrottle.acquire(1);
+      fetch.addAll(getChildNodes());
+      resyncThrottle.acquire(fetch.size());
+    } else if (childrenChanged || (reconnect && childrenVersionChanged())) {
+      // Only fetch added children and drop removed ones, watchers of the rest are still in place
+      childrenChanged = false;
+      final Set<String> children = Sets.newHashSet(getChildNodes());
+      for (final String node : children) {
+        if (!currentSnapshot.containsKey(node)) {
+          fetch.add(node);
+        }
+      }
+      for (final String node : currentSnapshot.keySet()) {
+        if (!children.contains(node)) {
+          newSnapshot = newSnapshot.minus(node);
+        }
+      }
     }
 
     // Fetch new data and register watchers for updated children
@@ -200,20 +300,13 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
       iterator.remove();
       final String node = ZKPaths.makePath(path, child);
       log.debug("fetching change: {}", node);
-      final T value;
-      try {
-        final byte[] bytes = curator.getData()
-            .usingWatcher(dataWatcher)
-            .forPath(node);
-        value = Json.read(bytes, valueType);
-      } catch (KeeperException e) {
-        throw e;
-      } catch (Exception e) {
-        throw Throwables.propagate(e);
-      }
-      newSnapshot.put(node, value);
+      fetch.add(node);
     }
 
+    // Changed children that are gone by now are dropped
+    newSnapshot = newSnapshot.minusAll(fetch).plusAll(fetch(fetch));
+    metrics.pathChildrenCacheNodesFetched(fetch.size());
+
     if (!currentSnapshot.equals(newSnapshot)) {
       snapshot.setUnchecked(newSnapshot);
       fireNodesChanged();
@@ -231,41 +324,109 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
   }
 
   /**
-   * Fetch new snapshot and register watchers
+   * Fetch the data of a set of nodes in parallel and register watchers. Nodes that do not exist or
+   * can not be parsed are left out.
    */
-  private Map<String, T> sync() throws KeeperException {
-    log.debug("syncing: {}", path);
-
-    final Map<String, T> newSnapshot = Maps.newHashMap();
-
-    // Fetch new snapshot and register watchers
-    try {
-      final List<String> children = getChildren();
-      log.debug("children: {}", children);
-      for (final String child : children) {
-        final String node = ZKPaths.makePath(path, child);
-        final byte[] bytes = curator.getData()
+  private Map<String, T> fetch(final Set<String> nodes)
+      throws KeeperException, InterruptedException {
+    final Map<String, SettableFuture<byte[]>> futures = Maps.newHashMap();
+    for (final String node : nodes) {
+      final SettableFuture<byte[]> future = SettableFuture.create();
+      futures.put(node, future);
+      try {
+        curator.getData()
             .usingWatcher(dataWatcher)
+            .inBackground(new BackgroundCallback() {
+              @Override
+              public void processResult(final CuratorFramework client, final CuratorEvent event) {
+                final KeeperException.Code code = KeeperException.Code.get(event.getResultCode());
+                if (code == KeeperException.Code.OK) {
+                  future.set(event.getData());
+                } else if (code == KeeperException.Code.NONODE) {
+                  future.set(null);
+                } else {
+                  future.setException(KeeperException.create(code, node));
+                }
+              }
+            })
             .forPath(node);
-        final String json = new String(bytes, UTF_8);
-        log.debug("child: {}={}", node, json);
-        final T value;
-        try {
-          value = Json.read(bytes, valueType);
-        } catch (IOException e) {
-          log.warn("failed to parse node: {}: {}", node, json, e);
-          // Treat parse failure as absence
-          continue;
-        }
-        newSnapshot.put(node, value);
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
       }
+    }
+
+    final Map<String, T> values = Maps.newHashMap();
+    for (final Map.Entry<String, SettableFuture<byte[]>> entry : futures.entrySet()) {
+      final String node = entry.getKey();
+      final byte[] bytes;
+      try {
+        bytes = entry.getValue().get();
+      } catch (ExecutionException e) {
+        Throwables.propagateIfInstanceOf(e.getCause(), KeeperException.class);
+        throw Throwables.propagate(e.getCause());
+      }
+      if (bytes == null) {
+        log.debug("child removed: {}", node);
+        continue;
+      }
+      final String json = new String(bytes, UTF_8);
+      log.debug("child: {}={}", node, json);
+      final T value;
+      try {
+        value = decoder.decode(bytes);
+      } catch (IOException e) {
+        log.warn("failed to parse node: {}: {}", node, json, e);
+        // Treat parse failure as absence
+        continue;
+      }
+      values.put(node, value);
+    }
+    return values;
+  }
+
+  /**
+   * Check whether children were added or removed since they were last listed, without listing
+   * them. Data changes are picked up by the watchers, which survive a reconnect within the same
+   * session.
+   */
+  private boolean childrenVersionChanged() throws KeeperException {
+    resyncThrottle.acquire(1);
+    final Stat stat;
+    try {
+      stat = curator.checkExists().forPath(path);
     } catch (KeeperException e) {
       throw e;
     } catch (Exception e) {
       throw Throwables.propagate(e);
     }
+    final boolean changed = stat == null || stat.getCversion() != childrenVersion;
+    log.debug("children {}changed while disconnected: {}", changed ? "" : "not ", path);
+    return changed;
+  }
+
+  private long sessionId() {
+    try {
+      return curator.getZookeeperClient().getZooKeeper().getSessionId();
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+  }
 
-    return newSnapshot;
+  private List<String> getChildNodes() throws KeeperException {
+    final List<String> children;
+    try {
+      children = getChildren();
+    } catch (KeeperException e) {
+      throw e;
+    } catch (Exception e) {
+      throw Throwables.propagate(e);
+    }
+    log.debug("children: {}", children);
+    final List<String> nodes = Lists.newArrayList();
+    for (final String child : children) {
+      nodes.add(ZKPaths.makePath(path, child));
+    }
+    return nodes;
   }
 
   private List<String> getChildren() throws Exception {
@@ -279,6 +440,7 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
 
       if (clusterId == null) {
         // Do not do any checks if the clusterId is not specified on the command line.
+        childrenVersion = childrenStat.getCversion();
         return possibleChildren;
       }
 
@@ -292,6 +454,7 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
         continue;
       }
 
+      childrenVersion = childrenStat.getCversion();
       return possibleChildren;
     }
   }
@@ -301,7 +464,7 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
     @Override
     public void process(final WatchedEvent event) throws Exception {
       log.debug("children event: {}", event);
-      synced = false;
+      childrenChanged = true;
       reactor.signal();
     }
   }
@@ -311,7 +474,7 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
     @Override
     public void process(final WatchedEvent event) throws Exception {
       log.debug("data event: {}", event);
-      if (event.getType() == NodeDataChanged) {
+      if (event.getType() == NodeDataChanged || event.getType() == NodeDeleted) {
         final String child = ZKPaths.getNodeFromPath(event.getPath());
         changes.add(child);
         reactor.signal();
@@ -325,8 +488,13 @@ public class PersistentPathChildrenCache<T> extends AbstractIdleService {
     public void stateChanged(final CuratorFramework client, final ConnectionState newState) {
       log.debug("connection state change: {}", newState);
       if (newState == ConnectionState.RECONNECTED) {
-        synced = false;
-        reactor.signal();
+        resyncThrottle.schedule(new Runnable() {
+          @Override
+          public void run() {
+            reconnected = true;
+            reactor.signal();
+          }
+        });
       }
       fireConnectionStateChanged(newState);
     }
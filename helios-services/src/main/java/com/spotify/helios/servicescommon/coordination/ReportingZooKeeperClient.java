@@ -21,6 +21,10 @@
 
 package com.spotify.helios.servicescommon.coordination;
 
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.fasterxml.jackson.databind.JavaType;
 
 import org.apache.curator.framework.CuratorFramework;
@@ -92,6 +96,42 @@ public class ReportingZooKeeperClient implements ZooKeeperClient {
     }
   }
 
+  @Override
+  public ListenableFuture<byte[]> getDataAsync(String path) {
+    return report(client.getDataAsync(path), "getData");
+  }
+
+  @Override
+  public ListenableFuture<List<String>> getChildrenAsync(String path) {
+    return report(client.getChildrenAsync(path), "getChildren");
+  }
+
+  @Override
+  public ListenableFuture<Node> getNodeAsync(String path) {
+    return report(client.getNodeAsync(path), "getNode");
+  }
+
+  @Override
+  public ListenableFuture<Stat> existsAsync(String path) {
+    return report(client.existsAsync(path), "exists");
+  }
+
+  private <T> ListenableFuture<T> report(final ListenableFuture<T> future, final String name) {
+    Futures.addCallback(future, new FutureCallback<T>() {
+      @Override
+      public void onSuccess(final T result) {
+      }
+
+      @Override
+      public void onFailure(final Throwable t) {
+        if (t instanceof KeeperException) {
+          reporter.checkException((KeeperException) t, tag, name);
+        }
+      }
+    });
+    return future;
+  }
+
   @Override
   public void delete(String path) throws KeeperException {
     try {
@@ -112,6 +152,16 @@ public class ReportingZooKeeperClient implements ZooKeeperClient {
     }
   }
 
+  @Override
+  public Stat setData(String path, byte[] bytes, int version) throws KeeperException {
+    try {
+      return client.setData(path, bytes, version);
+    } catch (KeeperException e) {
+      reporter.checkException(e, tag, "setData");
+      throw e;
+    }
+  }
+
   @Override
   public void createAndSetData(String path, byte[] data) throws KeeperException {
     try {
@@ -179,6 +229,14 @@ public class ReportingZooKeeperClient implements ZooKeeperClient {
     return client.pathChildrenCache(path, snapshotFile, valueType);
   }
 
+  @Override
+  public <T> PersistentPathChildrenCache<T> pathChildrenCache(
+      final String path, final Path snapshotFile, final JavaType valueType,
+      final PersistentPathChildrenCache.Decoder<T> decoder)
+      throws IOException, InterruptedException {
+    return client.pathChildrenCache(path, snapshotFile, valueType, decoder);
+  }
+
   @Override
   public Collection<CuratorTransactionResult> transaction(List<ZooKeeperOperation> operations)
       throws KeeperException {
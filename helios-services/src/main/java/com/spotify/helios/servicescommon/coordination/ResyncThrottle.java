@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * Spreads out the resyncs of ZooKeeper caches and directories after reconnecting to ZooKeeper.
+ *
+ * After a ZooKeeper leader election every client reconnects at about the same time. To avoid all
+ * of them resyncing at once, resyncs are started after a random delay and the reads and writes
+ * they do are limited by a token bucket. A service builds a single throttle and hands it to all of
+ * its caches and directories, so that the bucket is shared by the whole process.
+ */
+public class ResyncThrottle {
+
+  public static final long DEFAULT_MAX_DELAY_MILLIS = SECONDS.toMillis(10);
+  public static final double DEFAULT_OPERATIONS_PER_SECOND = 200;
+
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setNameFormat("zk-resync-%d").setDaemon(true).build());
+  private final Random random = new Random();
+  private final RateLimiter rateLimiter;
+
+  private final long maxDelayMillis;
+
+  public ResyncThrottle(final long maxDelayMillis, final double operationsPerSecond) {
+    checkArgument(maxDelayMillis >= 0, "maxDelayMillis must not be negative");
+    this.maxDelayMillis = maxDelayMillis;
+    this.rateLimiter = RateLimiter.create(operationsPerSecond);
+  }
+
+  /**
+   * @return A throttle that neither delays nor limits resyncs.
+   */
+  public static ResyncThrottle noop() {
+    return new ResyncThrottle(0, Double.MAX_VALUE);
+  }
+
+  /**
+   * Run a resync after a random delay of up to the configured maximum.
+   *
+   * @param resync Starts the resync. Should be quick, e.g. signal a reactor.
+   */
+  public void schedule(final Runnable resync) {
+    if (maxDelayMillis == 0) {
+      resync.run();
+      return;
+    }
+    final long delay = (long) (random.nextDouble() * maxDelayMillis);
+    executor.schedule(resync, delay, MILLISECONDS);
+  }
+
+  /**
+   * Wait until a number of ZooKeeper operations may be performed by a resync.
+   *
+   * @param operations The number of reads or writes about to be performed.
+   */
+  public void acquire(final int operations) {
+    if (operations > 0) {
+      rateLimiter.acquire(operations);
+    }
+  }
+}
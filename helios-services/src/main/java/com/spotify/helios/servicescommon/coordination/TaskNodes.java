@@ -0,0 +1,164 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.Task;
+import com.spotify.helios.common.descriptors.TaskStatus;
+
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+
+/**
+ * Reads and writes the data of task config nodes ({@link Paths#configHostJob}), task status nodes
+ * ({@link Paths#statusHostJob}) and task history events.
+ *
+ * Jobs are immutable and stored once under {@link Paths#configJob}, so these nodes can refer to
+ * their job by id instead of each carrying a copy of it. Such normalized nodes replace the
+ * {@code job} field with a {@code jobId} field. They are always understood when read, but only
+ * written when asked to, as older masters and agents fail to read them. Enable writing them once
+ * all masters and agents in a cluster have been upgraded.
+ */
+public final class TaskNodes {
+
+  private static final String JOB = "job";
+  private static final String JOB_ID = "jobId";
+  private static final String ID = "id";
+
+  /**
+   * Looks up the job that a normalized node refers to.
+   */
+  public interface JobResolver {
+
+    /**
+     * Returns the job with the given id, or null if it does not exist.
+     */
+    @Nullable
+    Job getJob(JobId id);
+  }
+
+  /**
+   * Resolves every job to an empty job with only its id set, for readers that do not look at the
+   * job of a task or task status.
+   */
+  public static final JobResolver ID_ONLY = new JobResolver() {
+    @Override
+    public Job getJob(final JobId id) {
+      return jobIdOnly(id);
+    }
+  };
+
+  private TaskNodes() {
+  }
+
+  public static byte[] toJsonBytes(final Task task, final boolean normalize) {
+    return normalize ? normalize(task.toJsonBytes()) : task.toJsonBytes();
+  }
+
+  public static byte[] toJsonBytes(final TaskStatus status, final boolean normalize) {
+    return normalize ? normalize(status.toJsonBytes()) : status.toJsonBytes();
+  }
+
+  /**
+   * Parses a task. Tasks can not exist without their job, so an {@link IOException} is thrown if
+   * the job of a normalized task can not be resolved.
+   */
+  public static Task parseTask(final byte[] data, final JobResolver jobs) throws IOException {
+    final ObjectNode node = readObject(data);
+    final JobId jobId = denormalize(node);
+    final Task task = Json.reader().treeToValue(node, Task.class);
+    if (jobId == null) {
+      return task;
+    }
+    final Job job = jobs.getJob(jobId);
+    if (job == null) {
+      throw new IOException("job of task not found: " + jobId);
+    }
+    return new Task(job, task.getGoal(), task.getDeployerUser(), task.getDeployerMaster(),
+                    task.getDeploymentGroupName());
+  }
+
+  /**
+   * Parses a task status. Statuses can outlive their job, so the job of a normalized status is
+   * left empty apart from its id if it can not be resolved.
+   */
+  public static TaskStatus parseTaskStatus(final byte[] data, final JobResolver jobs)
+      throws IOException {
+    final ObjectNode node = readObject(data);
+    final JobId jobId = denormalize(node);
+    final TaskStatus status = Json.reader().treeToValue(node, TaskStatus.class);
+    if (jobId == null) {
+      return status;
+    }
+    final Job job = jobs.getJob(jobId);
+    return status.asBuilder()
+        .setJob(job == null ? jobIdOnly(jobId) : job)
+        .build();
+  }
+
+  /**
+   * Returns an empty job with only its id set. The id must include its hash, as stored job ids do,
+   * or the builder would derive a different one.
+   */
+  public static Job jobIdOnly(final JobId id) {
+    return Job.newBuilder()
+        .setName(id.getName())
+        .setVersion(id.getVersion())
+        .setHash(id.getHash())
+        .build();
+  }
+
+  private static byte[] normalize(final byte[] json) {
+    final ObjectNode node = (ObjectNode) Json.readTreeUnchecked(json);
+    final JsonNode job = node.remove(JOB);
+    node.set(JOB_ID, job.get(ID));
+    return Json.asBytesUnchecked(node);
+  }
+
+  /**
+   * Replaces the {@code jobId} field of a normalized node with a job that only has its id set, so
+   * that it can be parsed, and returns the id. Returns null if the node is not normalized.
+   */
+  @Nullable
+  private static JobId denormalize(final ObjectNode node) {
+    final JsonNode jobId = node.remove(JOB_ID);
+    if (jobId == null || node.hasNonNull(JOB)) {
+      return null;
+    }
+    node.putObject(JOB).set(ID, jobId);
+    return JobId.fromString(jobId.asText());
+  }
+
+  private static ObjectNode readObject(final byte[] data) throws IOException {
+    final JsonNode node = Json.readTree(data);
+    if (!node.isObject()) {
+      throw new IOException("expected an object: " + node);
+    }
+    return (ObjectNode) node;
+  }
+}
@@ -21,6 +21,8 @@
 
 package com.spotify.helios.servicescommon.coordination;
 
+import com.google.common.util.concurrent.ListenableFuture;
+
 import com.fasterxml.jackson.databind.JavaType;
 
 import org.apache.curator.framework.CuratorFramework;
@@ -52,10 +54,40 @@ public interface ZooKeeperClient {
 
   List<String> getChildren(String path) throws KeeperException;
 
+  /**
+   * Reads the data of a node without blocking, so that independent reads can be pipelined over the
+   * session. The returned future fails with a {@link KeeperException} if the read fails, e.g. a
+   * {@link KeeperException.NoNodeException} if the node does not exist.
+   */
+  ListenableFuture<byte[]> getDataAsync(String path);
+
+  /**
+   * Lists the children of a node without blocking. Fails like {@link #getDataAsync(String)}.
+   */
+  ListenableFuture<List<String>> getChildrenAsync(String path);
+
+  /**
+   * Reads the data and stat of a node without blocking. Fails like {@link #getDataAsync(String)}.
+   */
+  ListenableFuture<Node> getNodeAsync(String path);
+
+  /**
+   * Checks if a node exists without blocking. The returned future holds null if it does not.
+   */
+  ListenableFuture<Stat> existsAsync(String path);
+
   void delete(String path) throws KeeperException;
 
   void setData(String path, byte[] bytes) throws KeeperException;
 
+  /**
+   * Sets the data of a node if its version matches, or regardless of its version if the version
+   * is -1. Fails with a {@link KeeperException.BadVersionException} if the version does not match.
+   *
+   * @return The stat of the node after the update.
+   */
+  Stat setData(String path, byte[] bytes, int version) throws KeeperException;
+
   void createAndSetData(String path, byte[] data) throws KeeperException;
 
   void createWithMode(String path, CreateMode mode) throws KeeperException;
@@ -72,6 +104,11 @@ public interface ZooKeeperClient {
                                                        final JavaType valueType)
       throws IOException, InterruptedException;
 
+  <T> PersistentPathChildrenCache<T> pathChildrenCache(
+      String path, Path snapshotFile, JavaType valueType,
+      PersistentPathChildrenCache.Decoder<T> decoder)
+      throws IOException, InterruptedException;
+
   Collection<CuratorTransactionResult> transaction(List<ZooKeeperOperation> operations)
       throws KeeperException;
 
@@ -21,16 +21,39 @@
 
 package com.spotify.helios.servicescommon.coordination;
 
+import org.jetbrains.annotations.Nullable;
+
 public class ZooKeeperClientProvider {
   private final ZooKeeperClient client;
   private final ZooKeeperModelReporter reporter;
+  private final ZooKeeperStateMirror mirror;
 
   public ZooKeeperClientProvider(ZooKeeperClient client, ZooKeeperModelReporter reporter) {
+    this(client, reporter, null);
+  }
+
+  public ZooKeeperClientProvider(final ZooKeeperClient client,
+                                 final ZooKeeperModelReporter reporter,
+                                 @Nullable final ZooKeeperStateMirror mirror) {
     this.client = client;
     this.reporter = reporter;
+    this.mirror = mirror;
   }
 
   public ZooKeeperClient get(String tag) {
     return new ReportingZooKeeperClient(client, reporter, tag);
   }
+
+  /**
+   * Returns a client whose reads honor the given {@link ReadConsistency}. {@link
+   * ReadConsistency#CACHED} reads are only served from memory if this provider has a
+   * {@link ZooKeeperStateMirror}.
+   */
+  public ZooKeeperClient get(final String tag, final ReadConsistency consistency) {
+    final ZooKeeperClient reporting = get(tag);
+    if (consistency == ReadConsistency.CACHED && mirror != null) {
+      return new MirroredZooKeeperClient(reporting, mirror);
+    }
+    return reporting;
+  }
 }
@@ -21,38 +21,98 @@
 
 package com.spotify.helios.servicescommon.coordination;
 
+import com.google.common.hash.HashCode;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import com.spotify.helios.agent.Clock;
+import com.spotify.helios.agent.SystemClock;
+
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
 /**
  * A best-effort ZooKeeper node updater.
+ *
+ * Only writes to ZooKeeper when the data has changed since the last successful update, or when
+ * the keep-alive interval has passed, so that a node that was removed behind our back is
+ * eventually restored. Once the version of the node is known, an update is a single versioned
+ * setData. The existence of the node and its parent is only checked if that fails.
  */
 public class ZooKeeperNodeUpdater implements NodeUpdater {
 
   private static final Logger log = LoggerFactory.getLogger(ZooKeeperNodeUpdater.class);
 
+  public static final long DEFAULT_KEEP_ALIVE_MILLIS = MINUTES.toMillis(10);
+
+  private static final HashFunction HASH_FUNCTION = Hashing.murmur3_128();
+
   private final ZooKeeperClient zooKeeperClient;
   private final String path;
+  private final Clock clock;
+  private final long keepAliveMillis;
+
+  private HashCode writtenHash;
+  private long writtenMillis;
+  private Integer version;
 
   public ZooKeeperNodeUpdater(final String path, final ZooKeeperClient zooKeeperClient) {
-    this.zooKeeperClient = zooKeeperClient;
-    this.path = path;
+    this(path, zooKeeperClient, new SystemClock(), DEFAULT_KEEP_ALIVE_MILLIS);
+  }
+
+  public ZooKeeperNodeUpdater(final String path, final ZooKeeperClient zooKeeperClient,
+                              final Clock clock, final long keepAliveMillis) {
+    this.zooKeeperClient = checkNotNull(zooKeeperClient, "zooKeeperClient");
+    this.path = checkNotNull(path, "path");
+    this.clock = checkNotNull(clock, "clock");
+    this.keepAliveMillis = keepAliveMillis;
   }
 
   @Override
   public boolean update(final byte[] bytes) {
-    final String parent = ZKPaths.getPathAndNode(path).getPath();
+    return update(bytes, bytes);
+  }
+
+  /**
+   * Write {@code bytes} if {@code key} changed since the last successful update, or the keep-alive
+   * interval has passed. Lets callers leave out parts of the data that change all the time but are
+   * not worth a write on their own, such as load averages.
+   */
+  public synchronized boolean update(final byte[] bytes, final byte[] key) {
+    final HashCode hash = HASH_FUNCTION.hashBytes(key);
+    final long now = clock.now().getMillis();
+    if (hash.equals(writtenHash) && now - writtenMillis < keepAliveMillis) {
+      return true;
+    }
+
     try {
+      if (version != null) {
+        try {
+          version = zooKeeperClient.setData(path, bytes, version).getVersion();
+          written(hash, now);
+          return true;
+        } catch (KeeperException.BadVersionException | KeeperException.NoNodeException e) {
+          log.debug("node changed or removed since last update, rewriting: {}", path);
+          version = null;
+        }
+      }
+
+      final String parent = ZKPaths.getPathAndNode(path).getPath();
       if (zooKeeperClient.stat(parent) == null) {
         return false;
       }
       if (zooKeeperClient.stat(path) == null) {
         zooKeeperClient.createAndSetData(path, bytes);
+        version = 0;
       } else {
-        zooKeeperClient.setData(path, bytes);
+        version = zooKeeperClient.setData(path, bytes, -1).getVersion();
       }
+      written(hash, now);
       return true;
     } catch (KeeperException.NodeExistsException ignore) {
       // Conflict due to curator retry or losing a race. We're done here.
@@ -65,4 +125,9 @@ public class ZooKeeperNodeUpdater implements NodeUpdater {
       return false;
     }
   }
+
+  private void written(final HashCode hash, final long now) {
+    writtenHash = hash;
+    writtenMillis = now;
+  }
 }
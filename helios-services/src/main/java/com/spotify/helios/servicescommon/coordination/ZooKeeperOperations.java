@@ -35,6 +35,10 @@ public class ZooKeeperOperations {
     return new SetData(path, bytes);
   }
 
+  public static ZooKeeperOperation set(final String path, final byte[] bytes, final int version) {
+    return new SetDataWithVersion(path, bytes, version);
+  }
+
   public static ZooKeeperOperation check(final String path, final int version) {
     return new CheckWithVersion(path, version);
   }
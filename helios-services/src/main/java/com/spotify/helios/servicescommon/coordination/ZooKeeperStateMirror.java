@@ -0,0 +1,294 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.recipes.cache.ChildData;
+import org.apache.curator.framework.recipes.cache.TreeCache;
+import org.apache.curator.framework.recipes.cache.TreeCacheEvent;
+import org.apache.curator.framework.recipes.cache.TreeCacheListener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An in-memory mirror of one or more zookeeper subtrees, kept up to date with zookeeper using
+ * watches. Used to serve reads that would otherwise require a chain of round-trips to zookeeper.
+ *
+ * The mirror only reports itself as synced once every subtree has been fully loaded and the
+ * zookeeper connection is up. Readers are expected to fall back to reading from zookeeper directly
+ * whenever the mirror is not synced.
+ */
+public class ZooKeeperStateMirror extends AbstractIdleService {
+
+  private static final Logger log = LoggerFactory.getLogger(ZooKeeperStateMirror.class);
+
+  private final List<String> roots;
+  private final List<RootMirror> mirrors;
+  private final AtomicInteger unsynced;
+  private final CountDownLatch initialized;
+
+  /**
+   * Starts reloads of the mirrored subtrees, which must wait for the connection to be marked as up
+   * again. Tree cache listeners run on the cache's event thread, so they must not do that wait.
+   */
+  private final ExecutorService reloader = Executors.newSingleThreadExecutor(
+      new ThreadFactoryBuilder().setNameFormat("zookeeper-state-mirror-%d").setDaemon(true)
+          .build());
+
+  public ZooKeeperStateMirror(final CuratorFramework curator, final String... roots) {
+    this.roots = ImmutableList.copyOf(roots);
+    this.unsynced = new AtomicInteger(roots.length);
+    this.initialized = new CountDownLatch(roots.length);
+
+    final List<RootMirror> mirrors = Lists.newArrayList();
+    for (final String root : roots) {
+      mirrors.add(new RootMirror(curator, root));
+    }
+    this.mirrors = ImmutableList.copyOf(mirrors);
+  }
+
+  @Override
+  protected void startUp() throws Exception {
+    log.info("starting zookeeper state mirror of {}", roots);
+    for (final RootMirror mirror : mirrors) {
+      mirror.start();
+    }
+  }
+
+  @Override
+  protected void shutDown() throws Exception {
+    for (final RootMirror mirror : mirrors) {
+      mirror.close();
+    }
+    reloader.shutdownNow();
+  }
+
+  /**
+   * Wait for all mirrored subtrees to have been loaded from zookeeper once.
+   */
+  public void awaitInitialized() throws InterruptedException {
+    initialized.await();
+  }
+
+  /**
+   * Returns true if all mirrored subtrees are loaded and the zookeeper connection is up.
+   */
+  public boolean isSynced() {
+    return isRunning() && unsynced.get() == 0;
+  }
+
+  /**
+   * Returns true if the node at {@code path} is within one of the mirrored subtrees.
+   */
+  public boolean covers(final String path) {
+    for (final String root : roots) {
+      if (path.equals(root) || path.startsWith(root + "/")) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the mirrored node at {@code path}, or null if it is not present in the mirror.
+   */
+  public Node getNode(final String path) {
+    final TreeCache cache = cacheFor(path);
+    if (cache == null) {
+      return null;
+    }
+    final ChildData data = cache.getCurrentData(path);
+    if (data == null || data.getData() == null) {
+      return null;
+    }
+    return new Node(path, data.getData(), data.getStat());
+  }
+
+  /**
+   * Returns the names of the mirrored children of the node at {@code path}, or null if the node is
+   * not present in the mirror.
+   */
+  public List<String> getChildren(final String path) {
+    final TreeCache cache = cacheFor(path);
+    if (cache == null) {
+      return null;
+    }
+    final Map<String, ChildData> children = cache.getCurrentChildren(path);
+    if (children == null) {
+      return null;
+    }
+    return ImmutableList.copyOf(children.keySet());
+  }
+
+  private TreeCache cacheFor(final String path) {
+    for (int i = 0; i < roots.size(); i++) {
+      final String root = roots.get(i);
+      if (path.equals(root) || path.startsWith(root + "/")) {
+        return mirrors.get(i).current;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Mirrors a single subtree. The tree cache re-reads the subtree on reconnect but gives no signal
+   * when that re-read is done, so on reconnect a fresh cache is loaded next to the current one and
+   * swapped in once it is initialized. The subtree is reported as unsynced until then.
+   */
+  private class RootMirror {
+
+    private final CuratorFramework curator;
+    private final String root;
+
+    private volatile TreeCache current;
+    private TreeCache pending;
+    private boolean closed;
+    private boolean loaded;
+    private boolean synced;
+
+    private RootMirror(final CuratorFramework curator, final String root) {
+      this.curator = curator;
+      this.root = root;
+      this.current = newCache();
+    }
+
+    private TreeCache newCache() {
+      final TreeCache cache = new TreeCache(curator, root);
+      cache.getListenable().addListener(new TreeCacheListener() {
+        @Override
+        public void childEvent(final CuratorFramework client, final TreeCacheEvent event)
+            throws Exception {
+          handle(cache, event);
+        }
+      });
+      return cache;
+    }
+
+    private void start() throws Exception {
+      current.start();
+    }
+
+    private synchronized void close() {
+      closed = true;
+      if (pending != null) {
+        pending.close();
+        pending = null;
+      }
+      current.close();
+    }
+
+    private synchronized void handle(final TreeCache cache, final TreeCacheEvent event)
+        throws Exception {
+      if (closed) {
+        return;
+      }
+      switch (event.getType()) {
+        case INITIALIZED:
+          if (cache == current) {
+            log.info("zookeeper state mirror of {} initialized", root);
+            loaded = true;
+            setSynced(true);
+            initialized.countDown();
+          } else if (cache == pending) {
+            log.info("zookeeper state mirror of {} reloaded", root);
+            final TreeCache stale = current;
+            current = pending;
+            pending = null;
+            stale.close();
+            setSynced(true);
+          }
+          break;
+        case CONNECTION_RECONNECTED:
+          // Only resync once the whole subtree has been read again, i.e. when a fresh cache is
+          // initialized. Restart the reload if the connection dropped while it was in progress.
+          if (cache == current && loaded) {
+            if (pending != null) {
+              pending.close();
+            }
+            pending = newCache();
+            reload(pending);
+          }
+          break;
+        case CONNECTION_SUSPENDED:
+        case CONNECTION_LOST:
+          if (cache == current) {
+            log.info("zookeeper state mirror of {} unsynced: {}", root, event.getType());
+            setSynced(false);
+          }
+          break;
+        default:
+          break;
+      }
+    }
+
+    /**
+     * Start loading a fresh cache on the reloader thread. A tree cache only loads right away when
+     * started on a connected client, and curator tells listeners about the reconnect before the
+     * client is marked as connected.
+     */
+    private void reload(final TreeCache cache) {
+      reloader.execute(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            curator.getZookeeperClient().blockUntilConnectedOrTimedOut();
+            synchronized (RootMirror.this) {
+              // Superseded by a later reconnect or closed while waiting for the connection
+              if (closed || cache != pending) {
+                return;
+              }
+              cache.start();
+            }
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          } catch (Exception e) {
+            log.error("failed to reload zookeeper state mirror of {}", root, e);
+          }
+        }
+      });
+    }
+
+    private synchronized void setSynced(final boolean synced) {
+      if (this.synced == synced) {
+        return;
+      }
+      this.synced = synced;
+      if (synced) {
+        unsynced.decrementAndGet();
+      } else {
+        unsynced.incrementAndGet();
+      }
+    }
+  }
+}
@@ -25,25 +25,29 @@ import com.google.common.base.Equivalence;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Suppliers;
 import com.google.common.base.Throwables;
-import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
 import com.google.common.collect.MapDifference;
 import com.google.common.collect.Maps;
 import com.google.common.util.concurrent.AbstractIdleService;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.spotify.helios.agent.BoundedRandomExponentialBackoff;
 import com.spotify.helios.agent.RetryScheduler;
 import com.spotify.helios.servicescommon.DefaultReactor;
+import com.spotify.helios.servicescommon.HashTrieMap;
 import com.spotify.helios.servicescommon.PersistentAtomicReference;
 import com.spotify.helios.servicescommon.Reactor;
 
 import org.apache.curator.framework.CuratorFramework;
+import org.apache.curator.framework.api.transaction.CuratorTransactionResult;
 import org.apache.curator.framework.state.ConnectionState;
 import org.apache.curator.framework.state.ConnectionStateListener;
 import org.apache.curator.utils.ZKPaths;
 import org.apache.zookeeper.KeeperException;
 import org.apache.zookeeper.common.PathUtils;
+import org.apache.zookeeper.data.Stat;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -54,10 +58,12 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import static com.google.common.collect.MapDifference.ValueDifference;
 import static com.google.common.util.concurrent.Service.State.STOPPING;
 import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.apache.zookeeper.KeeperException.BadVersionException;
 import static org.apache.zookeeper.KeeperException.ConnectionLossException;
 import static org.apache.zookeeper.KeeperException.NoNodeException;
 import static org.apache.zookeeper.KeeperException.NodeExistsException;
@@ -74,6 +80,14 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
       LoggerFactory.getLogger(ZooKeeperUpdatingPersistentDirectory.class);
 
   private static final long RETRY_INTERVAL_MILLIS = 5000;
+  private static final long ENTRIES_WRITE_DELAY_MILLIS = 1000;
+
+  /**
+   * Bounds on the size of each multi transaction, keeping requests well below the default
+   * ZooKeeper jute.maxbuffer of 1 MB.
+   */
+  private static final int MAX_TRANSACTION_OPERATIONS = 100;
+  private static final int MAX_TRANSACTION_BYTES = 512 * 1024;
 
   private static final Map<String, byte[]> EMPTY_ENTRIES = Collections.emptyMap();
   private static final TypeReference<Map<String, byte[]>> ENTRIES_TYPE =
@@ -96,11 +110,17 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
   private final String path;
   private final Reactor reactor;
   private final PersistentAtomicReference<Map<String, byte[]>> entries;
+  private final ResyncThrottle resyncThrottle;
 
   private final Object lock = new Object() {};
 
   private Map<String, byte[]> remote = Maps.newHashMap();
+  private Map<String, Integer> remoteVersions = Maps.newHashMap();
   private volatile boolean initialized;
+  private volatile boolean reconnected;
+
+  private long syncedSessionId;
+  private int childrenVersion = -1;
 
   private final ConnectionStateListener connectionStateListener = new ConnectionStateListener() {
     @Override
@@ -111,8 +131,13 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
         case SUSPENDED:
           break;
         case RECONNECTED:
-          initialized = false;
-          reactor.signal();
+          resyncThrottle.schedule(new Runnable() {
+            @Override
+            public void run() {
+              reconnected = true;
+              reactor.signal();
+            }
+          });
           break;
         case LOST:
           break;
@@ -125,12 +150,15 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
   private ZooKeeperUpdatingPersistentDirectory(final String name,
                                                final ZooKeeperClientProvider provider,
                                                final Path stateFile,
-                                               final String path)
+                                               final String path,
+                                               final ResyncThrottle resyncThrottle)
       throws IOException, InterruptedException {
     this.provider = provider;
+    this.resyncThrottle = resyncThrottle;
     this.path = path;
     this.entries = PersistentAtomicReference.create(stateFile, ENTRIES_TYPE,
-                                                    Suppliers.ofInstance(EMPTY_ENTRIES));
+                                                    Suppliers.ofInstance(EMPTY_ENTRIES),
+                                                    ENTRIES_WRITE_DELAY_MILLIS, false);
     this.reactor = new DefaultReactor(name, new Update(), RETRY_INTERVAL_MILLIS);
   }
 
@@ -139,13 +167,9 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
     PathUtils.validatePath(ZKPaths.makePath(path, key));
     final byte[] prev;
     synchronized (lock) {
-      final Map<String, byte[]> mutable = Maps.newHashMap(entries.get());
-      prev = mutable.put(key, value);
-      try {
-        entries.set(ImmutableMap.copyOf(mutable));
-      } catch (IOException e) {
-        throw Throwables.propagate(e);
-      }
+      final HashTrieMap<String, byte[]> current = HashTrieMap.copyOf(entries.get());
+      prev = current.get(key);
+      setEntries(current.plus(key, value));
     }
     reactor.signal();
     return prev;
@@ -163,18 +187,25 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
     PathUtils.validatePath(ZKPaths.makePath(path, key));
     final byte[] value;
     synchronized (lock) {
-      final Map<String, byte[]> mutable = Maps.newHashMap(entries.get());
-      value = mutable.remove(key);
-      try {
-        entries.set(ImmutableMap.copyOf(mutable));
-      } catch (IOException e) {
-        throw Throwables.propagate(e);
-      }
+      final HashTrieMap<String, byte[]> current = HashTrieMap.copyOf(entries.get());
+      value = current.get(key);
+      setEntries(current.minus(key));
     }
     reactor.signal();
     return value;
   }
 
+  private void setEntries(final Map<String, byte[]> newEntries) throws InterruptedException {
+    if (newEntries == entries.get()) {
+      return;
+    }
+    try {
+      entries.set(newEntries);
+    } catch (IOException e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
   public byte[] get(final Object key) {
     return entries.get().get(key);
   }
@@ -197,14 +228,17 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
   @Override
   protected void shutDown() throws Exception {
     reactor.stopAsync().awaitTerminated();
+    entries.flush();
   }
 
   public static ZooKeeperUpdatingPersistentDirectory create(final String name,
                                                             final ZooKeeperClientProvider client,
                                                             final Path stateFile,
-                                                            final String path)
+                                                            final String path,
+                                                            final ResyncThrottle resyncThrottle)
       throws IOException, InterruptedException {
-    return new ZooKeeperUpdatingPersistentDirectory(name, client, stateFile, path);
+    return new ZooKeeperUpdatingPersistentDirectory(name, client, stateFile, path,
+                                                    resyncThrottle);
   }
 
 
@@ -220,22 +254,30 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
 
       while (isAlive()) {
         try {
-          if (!parentExists()) {
+          final Stat parent = client("parentExists").exists(path);
+          if (parent == null) {
             log.warn("parent does not exist: {}", path);
             return;
           }
-          if (!initialized) {
-            syncChecked();
+          final boolean reconnect = reconnected;
+          reconnected = false;
+          if (reconnect && initialized && remoteChanged(parent)) {
+            initialized = false;
+          }
+          final boolean resync = !initialized;
+          if (resync) {
+            syncChecked(parent);
             initialized = true;
           }
-          incrementalUpdate();
+          incrementalUpdate(resync);
           return;
         } catch (KeeperException e) {
           final long backoff = retryScheduler.nextMillis();
           initialized = false;
           if (e instanceof ConnectionLossException) {
             log.warn("Connection lost. Resyncing in {}ms", backoff);
-          } else if (e instanceof NodeExistsException || e instanceof NoNodeException) {
+          } else if (e instanceof NodeExistsException || e instanceof NoNodeException ||
+                     e instanceof BadVersionException) {
             log.warn("Conflict: {} {}. Resyncing in {}ms", e.getPath(), e.code(), backoff);
           } else {
             log.error("Error: Resyncing in {}ms", e.getPath(), e.code(), backoff, e);
@@ -249,15 +291,35 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
       return state().ordinal() < STOPPING.ordinal();
     }
 
-    private void incrementalUpdate() throws KeeperException {
+    /**
+     * Check whether the remote state may have changed while disconnected. Nodes are only added
+     * and removed by us, so an unchanged children version within the same session means that the
+     * remote state is as we left it. Data changed by others is detected by the versioned writes.
+     */
+    private boolean remoteChanged(final Stat parent) {
+      final long sessionId = sessionId();
+      final boolean changed = sessionId != syncedSessionId ||
+                              parent.getCversion() != childrenVersion;
+      log.debug("remote {}changed while disconnected: {}", changed ? "" : "not ", path);
+      return changed;
+    }
+
+    private long sessionId() {
+      try {
+        return client("sessionId").getCuratorFramework().getZookeeperClient().getZooKeeper()
+            .getSessionId();
+      } catch (Exception e) {
+        throw Throwables.propagate(e);
+      }
+    }
+
+    private void incrementalUpdate(final boolean resync) throws KeeperException {
       final MapDifference<String, byte[]> difference = Maps.difference(entries.get(), remote,
                                                                        BYTE_ARRAY_EQUIVALENCE);
       if (difference.areEqual()) {
         return;
       }
 
-      final Map<String, byte[]> newRemote = Maps.newHashMap(remote);
-
       final Map<String, byte[]> create = difference.entriesOnlyOnLeft();
       final Map<String, ValueDifference<byte[]>> update = difference.entriesDiffering();
       final Map<String, byte[]> delete = difference.entriesOnlyOnRight();
@@ -266,89 +328,146 @@ public class ZooKeeperUpdatingPersistentDirectory extends AbstractIdleService {
       log.debug("update: {}", update.keySet());
       log.debug("delete: {}", delete.keySet());
 
+      final List<Change> changes = Lists.newArrayList();
       for (final Map.Entry<String, byte[]> entry : create.entrySet()) {
-        write(entry.getKey(), entry.getValue());
-        newRemote.put(entry.getKey(), entry.getValue());
+        changes.add(Change.create(path, entry.getKey(), entry.getValue()));
       }
-
       for (final Map.Entry<String, ValueDifference<byte[]>> entry : update.entrySet()) {
-        write(entry.getKey(), entry.getValue().leftValue());
-        newRemote.put(entry.getKey(), entry.getValue().leftValue());
+        final String node = entry.getKey();
+        changes.add(Change.update(path, node, entry.getValue().leftValue(),
+                                  remoteVersions.get(node)));
       }
-
-      for (final Map.Entry<String, byte[]> entry : delete.entrySet()) {
-        delete(entry.getKey());
-        newRemote.remove(entry.getKey());
+      for (final String node : delete.keySet()) {
+        changes.add(Change.delete(path, node));
       }
 
-      remote = newRemote;
+      commit(changes, resync);
     }
 
-    private boolean parentExists() throws KeeperException {
-      return client("parentExists").exists(path) != null;
-      }
-
-    private void delete(final String node) throws KeeperException {
-      final ZooKeeperClient client = client("delete");
-      final String nodePath = ZKPaths.makePath(path, node);
-        if (client.stat(nodePath) != null) {
-          log.debug("deleting node: {}", nodePath);
-          client.delete(nodePath);
+    /**
+     * Commit changes in size-bounded multi transactions, applying each committed transaction to
+     * the known remote state so that a later failure does not redo it.
+     */
+    private void commit(final List<Change> changes, final boolean resync)
+        throws KeeperException {
+      final ZooKeeperClient client = client("write");
+      int i = 0;
+      while (i < changes.size()) {
+        final List<Change> batch = Lists.newArrayList();
+        int bytes = 0;
+        while (i < changes.size() && batch.size() < MAX_TRANSACTION_OPERATIONS) {
+          final Change change = changes.get(i);
+          if (!batch.isEmpty() && bytes + change.size() > MAX_TRANSACTION_BYTES) {
+            break;
+          }
+          batch.add(change);
+          bytes += change.size();
+          i++;
         }
-    }
 
-    private void write(final String node, final byte[] data) throws KeeperException {
-      final ZooKeeperClient client = client("write");
-      final String nodePath = ZKPaths.makePath(path, node);
-        if (client.stat(nodePath) != null) {
-          log.debug("setting node: {}", nodePath);
-          client.setData(nodePath, data);
-        } else {
-          log.debug("creating node: {}", nodePath);
-          client.createAndSetData(nodePath, data);
+        final List<ZooKeeperOperation> operations = Lists.newArrayList();
+        for (final Change change : batch) {
+          operations.add(change.operation);
         }
+        if (resync) {
+          resyncThrottle.acquire(operations.size());
+        }
+        final List<CuratorTransactionResult> results =
+            ImmutableList.copyOf(client.transaction(operations));
+
+        for (int j = 0; j < batch.size(); j++) {
+          final Change change = batch.get(j);
+          if (change.data == null) {
+            remote.remove(change.node);
+            remoteVersions.remove(change.node);
+            childrenVersion++;
+          } else {
+            if (!remote.containsKey(change.node)) {
+              childrenVersion++;
+            }
+            final Stat stat = results.get(j).getResultStat();
+            remote.put(change.node, change.data);
+            remoteVersions.put(change.node, stat == null ? 0 : stat.getVersion());
+          }
+        }
+      }
     }
 
-    private void syncChecked() throws KeeperException {
+    /**
+     * Read the remote state, reading all nodes in parallel. Changes needed to bring the remote
+     * state in line with the local state are then written by {@link #incrementalUpdate(boolean)}.
+     */
+    private void syncChecked(final Stat parent) throws KeeperException, InterruptedException {
       final ZooKeeperClient client = client("sync");
+      syncedSessionId = sessionId();
+      childrenVersion = parent.getCversion();
+      resyncThrottle.acquire(1);
       final List<String> nodes = client.getChildren(path);
-      final Map<String, byte[]> snapshot = entries.get();
+      resyncThrottle.acquire(nodes.size());
 
-      // Get new remote state
-      remote = Maps.newHashMap();
-      for (String node : nodes) {
-        final String nodePath = ZKPaths.makePath(path, node);
-        final byte[] data = client.getData(nodePath);
-        remote.put(node, data);
+      final Map<String, ListenableFuture<Node>> futures = Maps.newHashMap();
+      for (final String node : nodes) {
+        futures.put(node, client.getNodeAsync(ZKPaths.makePath(path, node)));
       }
 
-      // Create and update missing and outdated nodes
-      for (final Map.Entry<String, byte[]> entry : snapshot.entrySet()) {
-        final String node = entry.getKey();
-        final byte[] remoteData = remote.get(node);
-        final byte[] localData = entry.getValue();
-        final String nodePath = ZKPaths.makePath(path, node);
-        if (remoteData == null) {
-          log.debug("sync: creating node {}", nodePath);
-          client.createAndSetData(nodePath, localData);
-          remote.put(node, localData);
-        } else if (!Arrays.equals(remoteData, localData)) {
-          log.debug("sync: updating node {}", nodePath);
-          client.setData(nodePath, localData);
-          remote.put(node, localData);
+      // Get new remote state
+      remote = Maps.newHashMap();
+      remoteVersions = Maps.newHashMap();
+      for (final Map.Entry<String, ListenableFuture<Node>> entry : futures.entrySet()) {
+        final Node node;
+        try {
+          node = entry.getValue().get();
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof NoNodeException) {
+            // Removed after listing it, nothing to sync
+            continue;
+          }
+          Throwables.propagateIfInstanceOf(e.getCause(), KeeperException.class);
+          throw Throwables.propagate(e.getCause());
         }
+        remote.put(entry.getKey(), node.getBytes());
+        remoteVersions.put(entry.getKey(), node.getStat().getVersion());
       }
+    }
+  }
 
-      // Remove undesired nodes
-      final ImmutableSet<String> keySet = ImmutableSet.copyOf(remote.keySet());
-      for (final String node : keySet) {
-        if (!snapshot.containsKey(node)) {
-          final String nodePath = ZKPaths.makePath(path, node);
-          log.debug("sync: deleting node {}", nodePath);
-          client.delete(nodePath);
-          remote.remove(node);
-        }
-      }
+  /**
+   * A change to a single node, along with the operation that performs it.
+   */
+  private static class Change {
+
+    private final String node;
+    private final byte[] data;
+    private final ZooKeeperOperation operation;
+
+    private Change(final String node, final byte[] data, final ZooKeeperOperation operation) {
+      this.node = node;
+      this.data = data;
+      this.operation = operation;
+    }
+
+    static Change create(final String parent, final String node, final byte[] data) {
+      return new Change(node, data, ZooKeeperOperations.create(ZKPaths.makePath(parent, node),
+                                                               data));
+    }
+
+    static Change update(final String parent, final String node, final byte[] data,
+                         final Integer version) {
+      final String nodePath = ZKPaths.makePath(parent, node);
+      return new Change(node, data, version == null
+                                    ? ZooKeeperOperations.set(nodePath, data)
+                                    : ZooKeeperOperations.set(nodePath, data, version));
+    }
+
+    static Change delete(final String parent, final String node) {
+      return new Change(node, null, ZooKeeperOperations.delete(ZKPaths.makePath(parent, node)));
+    }
+
+    /**
+     * Approximate size of the change in a transaction request.
+     */
+    int size() {
+      return node.length() + (data == null ? 0 : data.length);
     }
   }
 }
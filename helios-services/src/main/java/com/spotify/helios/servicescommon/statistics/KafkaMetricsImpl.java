@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.statistics;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+public class KafkaMetricsImpl implements KafkaMetrics {
+  private static final String TYPE = "kafka";
+
+  private final Meter queuedMeter;
+  private final Meter sentMeter;
+  private final Meter droppedMeter;
+  private final Timer sendLatencyTimer;
+
+  public KafkaMetricsImpl(String group, MetricRegistry registry) {
+    final String prefix = MetricRegistry.name(group, TYPE) + ".";
+    queuedMeter = registry.meter(prefix + "records_queued_meter");
+    sentMeter = registry.meter(prefix + "records_sent_meter");
+    droppedMeter = registry.meter(prefix + "records_dropped_meter");
+    sendLatencyTimer = registry.timer(prefix + "send_latency_timer");
+  }
+
+  @Override
+  public void kafkaRecordQueued() {
+    queuedMeter.mark();
+  }
+
+  @Override
+  public void kafkaRecordSent(long latencyNanos) {
+    sentMeter.mark();
+    sendLatencyTimer.update(latencyNanos, NANOSECONDS);
+  }
+
+  @Override
+  public void kafkaRecordDropped() {
+    droppedMeter.mark();
+  }
+}
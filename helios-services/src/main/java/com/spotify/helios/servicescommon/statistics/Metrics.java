@@ -33,4 +33,6 @@ public interface Metrics {
 
   ZooKeeperMetrics getZooKeeperMetrics();
 
+  KafkaMetrics getKafkaMetrics();
+
 }
@@ -31,12 +31,14 @@ public class MetricsImpl implements Metrics {
   private final SupervisorMetrics supervisorMetrics;
   private final MasterMetrics masterMetrics;
   private final ZooKeeperMetrics zooKeeperMetrics;
+  private final KafkaMetrics kafkaMetrics;
   private final JmxReporter jmxReporter;
 
   public MetricsImpl(final MetricRegistry registry) {
     this.masterMetrics = new MasterMetricsImpl(GROUP, registry);
     this.supervisorMetrics = new SupervisorMetricsImpl(GROUP, registry);
     this.zooKeeperMetrics = new ZooKeeperMetricsImpl(GROUP, registry);
+    this.kafkaMetrics = new KafkaMetricsImpl(GROUP, registry);
     this.jmxReporter = JmxReporter.forRegistry(registry).build();
   }
 
@@ -64,4 +66,9 @@ public class MetricsImpl implements Metrics {
   public ZooKeeperMetrics getZooKeeperMetrics() {
     return zooKeeperMetrics;
   }
+
+  @Override
+  public KafkaMetrics getKafkaMetrics() {
+    return kafkaMetrics;
+  }
 }
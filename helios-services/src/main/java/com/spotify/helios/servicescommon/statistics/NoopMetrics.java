@@ -44,4 +44,9 @@ public class NoopMetrics implements Metrics {
     return new NoopZooKeeperMetrics();
   }
 
+  @Override
+  public KafkaMetrics getKafkaMetrics() {
+    return new NoopKafkaMetrics();
+  }
+
 }
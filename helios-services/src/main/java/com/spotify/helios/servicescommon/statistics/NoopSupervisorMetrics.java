@@ -50,6 +50,9 @@ public class NoopSupervisorMetrics implements SupervisorMetrics {
     return new NoopMetricsContext();
   }
 
+  @Override
+  public void imagePullTimes(final long queueWaitNanos, final long pullNanos) {}
+
   @Override
   public void imageCacheHit() {}
 
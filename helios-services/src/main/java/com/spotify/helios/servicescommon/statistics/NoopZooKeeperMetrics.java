@@ -24,4 +24,7 @@ package com.spotify.helios.servicescommon.statistics;
 public class NoopZooKeeperMetrics implements ZooKeeperMetrics {
   @Override
   public void zookeeperTransientError() {}
+
+  @Override
+  public void pathChildrenCacheNodesFetched(int count) {}
 }
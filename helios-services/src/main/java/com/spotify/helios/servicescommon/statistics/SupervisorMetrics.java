@@ -39,6 +39,8 @@ public interface SupervisorMetrics {
 
   MetricsContext containerPull();
 
+  void imagePullTimes(long queueWaitNanos, long pullNanos);
+
   void imageCacheHit();
 
   void imageCacheMiss();
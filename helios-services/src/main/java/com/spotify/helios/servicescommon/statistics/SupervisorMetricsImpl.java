@@ -24,6 +24,9 @@ package com.spotify.helios.servicescommon.statistics;
 import com.codahale.metrics.Counter;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
 
 public class SupervisorMetricsImpl implements SupervisorMetrics {
   private static final String TYPE = "agent_supervisor";
@@ -52,6 +55,9 @@ public class SupervisorMetricsImpl implements SupervisorMetrics {
   private final Meter supervisorStoppedMeter;
   private final Meter supervisorRunMeter;
 
+  private final Timer imagePullQueueWaitTimer;
+  private final Timer imagePullTimer;
+
 
   public SupervisorMetricsImpl(final String group,
                                final MetricRegistry registry) {
@@ -81,6 +87,9 @@ public class SupervisorMetricsImpl implements SupervisorMetrics {
     supervisorRunMeter = registry.meter(prefix + "supervisor_run_meter");
     dockerTimeoutMeter = registry.meter(prefix + "docker_timeout_meter");
 
+    imagePullQueueWaitTimer = registry.timer(prefix + "image_pull_queue_wait_timer");
+    imagePullTimer = registry.timer(prefix + "image_pull_timer");
+
     imagePull = new RequestMetrics(group, TYPE, "image_pull", registry);
   }
 
@@ -131,6 +140,12 @@ public class SupervisorMetricsImpl implements SupervisorMetrics {
     return new MetricsContextImpl(imagePull);
   }
 
+  @Override
+  public void imagePullTimes(final long queueWaitNanos, final long pullNanos) {
+    imagePullQueueWaitTimer.update(queueWaitNanos, NANOSECONDS);
+    imagePullTimer.update(pullNanos, NANOSECONDS);
+  }
+
   @Override
   public void imageCacheHit() {
     imageCacheHitCounter.inc();
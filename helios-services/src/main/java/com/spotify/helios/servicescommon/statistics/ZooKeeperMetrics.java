@@ -25,4 +25,9 @@ public interface ZooKeeperMetrics {
 
   void zookeeperTransientError();
 
+  /**
+   * Called after each update of a path children cache with the number of nodes it had to read.
+   */
+  void pathChildrenCacheNodesFetched(int count);
+
 }
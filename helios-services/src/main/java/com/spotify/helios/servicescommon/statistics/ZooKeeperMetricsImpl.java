@@ -22,6 +22,7 @@
 package com.spotify.helios.servicescommon.statistics;
 
 import com.codahale.metrics.Counter;
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 
@@ -30,11 +31,17 @@ public class ZooKeeperMetricsImpl implements ZooKeeperMetrics {
 
   private final Counter transientErrorCounter;
   private final Meter transientErrorMeter;
+  private final Histogram pathChildrenCacheNodesFetchedHistogram;
+  private final Meter pathChildrenCacheNodesFetchedMeter;
 
   public ZooKeeperMetricsImpl(String group, MetricRegistry registry) {
     final String prefix = MetricRegistry.name(group, TYPE) + ".";
     transientErrorCounter = registry.counter(prefix + "transient_error_count");
     transientErrorMeter = registry.meter(prefix + "transient_error_meter");
+    pathChildrenCacheNodesFetchedHistogram =
+        registry.histogram(prefix + "path_children_cache_nodes_fetched_histogram");
+    pathChildrenCacheNodesFetchedMeter =
+        registry.meter(prefix + "path_children_cache_nodes_fetched_meter");
   }
 
   @Override
@@ -42,4 +49,10 @@ public class ZooKeeperMetricsImpl implements ZooKeeperMetrics {
     transientErrorCounter.inc();
     transientErrorMeter.mark();
   }
+
+  @Override
+  public void pathChildrenCacheNodesFetched(int count) {
+    pathChildrenCacheNodesFetchedHistogram.update(count);
+    pathChildrenCacheNodesFetchedMeter.mark(count);
+  }
 }
@@ -22,14 +22,23 @@
 package com.spotify.helios;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import com.spotify.helios.common.HeliosException;
+import com.spotify.helios.common.Json;
 import com.spotify.helios.common.descriptors.Deployment;
 import com.spotify.helios.common.descriptors.DeploymentGroup;
+import com.spotify.helios.common.descriptors.DeploymentGroupTasks;
 import com.spotify.helios.common.descriptors.Goal;
 import com.spotify.helios.common.descriptors.HostSelector;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.PortMapping;
+import com.spotify.helios.common.descriptors.PrePullState;
+import com.spotify.helios.common.descriptors.RolloutOptions;
+import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
 import com.spotify.helios.master.DeploymentGroupDoesNotExistException;
 import com.spotify.helios.master.DeploymentGroupExistsException;
 import com.spotify.helios.master.HostNotFoundException;
@@ -61,6 +70,7 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.empty;
 import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
@@ -167,6 +177,62 @@ public class ZooKeeperMasterModelIntegrationTest {
     assertNull(model.getJobs().get(JOB_ID));
   }
 
+  @Test
+  public void testDeployToHosts() throws Exception {
+    final Job portJob = JOB.toBuilder()
+        .setPorts(ImmutableMap.of("http", PortMapping.of(80, 4711)))
+        .build();
+    final Job conflictingJob = portJob.toBuilder()
+        .setVersion("CONFLICTING")
+        .build();
+    model.addJob(portJob);
+    model.addJob(conflictingJob);
+    model.registerHost(HOST, "foo");
+    model.registerHost("DEPLOYED_HOST", "bar");
+    model.registerHost("CONFLICTING_HOST", "baz");
+    model.deployJob("DEPLOYED_HOST", Deployment.of(portJob.getId(), Goal.START));
+    model.deployJob("CONFLICTING_HOST", Deployment.of(conflictingJob.getId(), Goal.START));
+
+    final Map<String, JobDeployResponse.Status> results = model.deployJob(
+        ImmutableList.of(HOST, "DEPLOYED_HOST", "CONFLICTING_HOST", "MISSING_HOST"),
+        Deployment.of(portJob.getId(), Goal.START), "");
+    assertEquals(ImmutableMap.of(HOST, JobDeployResponse.Status.OK,
+                                 "DEPLOYED_HOST", JobDeployResponse.Status.JOB_ALREADY_DEPLOYED,
+                                 "CONFLICTING_HOST", JobDeployResponse.Status.PORT_CONFLICT,
+                                 "MISSING_HOST", JobDeployResponse.Status.HOST_NOT_FOUND),
+                 results);
+    assertEquals(Goal.START, model.getDeployment(HOST, portJob.getId()).getGoal());
+    assertNull(model.getDeployment("CONFLICTING_HOST", portJob.getId()));
+
+    // The deployment to the new host can be undone like any other
+    model.undeployJob(HOST, portJob.getId());
+  }
+
+  @Test
+  public void testUndeployFromHosts() throws Exception {
+    final String secondHost = "SECOND_HOST";
+    model.addJob(JOB);
+    model.registerHost(HOST, "foo");
+    model.registerHost(secondHost, "bar");
+    model.registerHost("IDLE_HOST", "baz");
+
+    final Deployment deployment =
+        Deployment.newBuilder().setGoal(Goal.START).setJobId(JOB_ID).build();
+    model.deployJob(HOST, deployment);
+    model.deployJob(secondHost, deployment);
+
+    final Map<String, JobUndeployResponse.Status> results = model.undeployJob(
+        JOB_ID, ImmutableList.of(HOST, secondHost, "IDLE_HOST", "MISSING_HOST"), "");
+    assertEquals(ImmutableMap.of(HOST, JobUndeployResponse.Status.OK,
+                                 secondHost, JobUndeployResponse.Status.OK,
+                                 "IDLE_HOST", JobUndeployResponse.Status.JOB_NOT_FOUND,
+                                 "MISSING_HOST", JobUndeployResponse.Status.HOST_NOT_FOUND),
+                 results);
+    assertNull(model.getDeployment(HOST, JOB_ID));
+    assertNull(model.getDeployment(secondHost, JOB_ID));
+    model.removeJob(JOB_ID); // should succeed
+  }
+
   @Test
   public void testDeploy() throws Exception {
     try {
@@ -299,9 +365,122 @@ public class ZooKeeperMasterModelIntegrationTest {
     model.getDeploymentGroup("my_group");
   }
 
+  @Test
+  public void testRemoveDeploymentGroupRemovesRolloutPlans() throws Exception {
+    model.registerHost(HOST, "foo");
+    client.ensurePath(Paths.statusHostUp(HOST));
+    model.addJob(JOB);
+    final DeploymentGroup dg = new DeploymentGroup(
+        "my_group", ImmutableList.of(HostSelector.parse("role=foo")), null, null);
+    model.addDeploymentGroup(dg);
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST));
+    model.rollingUpdate(dg, JOB_ID, RolloutOptions.newBuilder().build());
+    assertThat(client.getChildren(Paths.statusDeploymentGroupPlans("my_group")), not(empty()));
+
+    model.removeDeploymentGroup("my_group");
+    assertNull(client.exists(Paths.statusDeploymentGroupPlans("my_group")));
+  }
+
   @Test
   public void testRemoveNonExistingDeploymentGroup() throws Exception {
     exception.expect(DeploymentGroupDoesNotExistException.class);
     model.removeDeploymentGroup("my_group");
   }
+
+  @Test
+  public void testRollingUpdateWithPlan() throws Exception {
+    model.registerHost(HOST, "foo");
+    client.ensurePath(Paths.statusHostUp(HOST));
+    model.addJob(JOB);
+    final DeploymentGroup dg = new DeploymentGroup(
+        "my_group", ImmutableList.of(HostSelector.parse("role=foo")), null, null);
+    model.addDeploymentGroup(dg);
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST));
+    model.rollingUpdate(dg, JOB_ID, RolloutOptions.newBuilder().build());
+
+    // The rollout tasks are stored in a plan, the tasks node only holds a cursor into it
+    final DeploymentGroupTasks tasks = Json.read(
+        client.getData(Paths.statusDeploymentGroupTasks("my_group")), DeploymentGroupTasks.class);
+    assertNotNull(tasks.getPlanId());
+    assertThat(tasks.getRolloutTasks(), empty());
+    assertEquals(ImmutableList.of(tasks.getPlanId() + "-0"),
+                 client.getChildren(Paths.statusDeploymentGroupPlans("my_group")));
+
+    // Undeploy and deploy are processed, then the step yields awaiting the job to run
+    model.rollingUpdateStep();
+    assertNotNull(model.getDeployment(HOST, JOB_ID));
+    final DeploymentGroupTasks cursor = Json.read(
+        client.getData(Paths.statusDeploymentGroupTasks("my_group")), DeploymentGroupTasks.class);
+    assertEquals(2, cursor.getTaskIndex());
+    assertEquals(tasks.getPlanId(), cursor.getPlanId());
+
+    model.stopDeploymentGroup("my_group");
+    assertThat(client.getChildren(Paths.statusDeploymentGroupPlans("my_group")), empty());
+  }
+
+  @Test
+  public void testRollingUpdateWithPrePull() throws Exception {
+    final String secondHost = "SECOND";
+    model.registerHost(HOST, "foo");
+    model.registerHost(secondHost, "bar");
+    client.ensurePath(Paths.statusHostUp(HOST));
+    client.ensurePath(Paths.statusHostUp(secondHost));
+    model.addJob(JOB);
+    final DeploymentGroup dg = new DeploymentGroup(
+        "my_group", ImmutableList.of(HostSelector.parse("role=foo")), null, null);
+    model.addDeploymentGroup(dg);
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST, secondHost));
+    model.rollingUpdate(dg, JOB_ID, RolloutOptions.newBuilder().setPrePull(true).build());
+
+    // The second host is asked to pull the image while the job is deployed to the first one
+    model.rollingUpdateStep();
+    assertNotNull(model.getDeployment(HOST, JOB_ID));
+    assertNull(model.getDeployment(secondHost, JOB_ID));
+    assertEquals(JOB.getImage(), Json.read(
+        client.getData(Paths.configHostPrePull(secondHost, JOB_ID)), String.class));
+
+    client.createAndSetData(Paths.statusHostPrePull(secondHost, JOB_ID),
+                            Json.asBytes(PrePullState.PULLED));
+    assertEquals(PrePullState.PULLED,
+                 model.getPrePullStates(ImmutableList.of(secondHost), JOB_ID).get(secondHost));
+
+    // Once the job runs on the first host it is deployed to the second and the request removed
+    client.createAndSetData(Paths.statusHostJob(HOST, JOB_ID), TaskStatus.newBuilder()
+        .setJob(JOB)
+        .setGoal(Goal.START)
+        .setState(TaskStatus.State.RUNNING)
+        .build()
+        .toJsonBytes());
+    model.rollingUpdateStep();
+    assertNotNull(model.getDeployment(secondHost, JOB_ID));
+    assertThat(client.getChildren(Paths.configHostPrePulls(secondHost)), empty());
+  }
+
+  @Test
+  public void testPrePullRequestsRemovedWhenNotDeployed() throws Exception {
+    final String secondHost = "SECOND";
+    model.registerHost(HOST, "foo");
+    model.registerHost(secondHost, "bar");
+    client.ensurePath(Paths.statusHostUp(HOST));
+    client.ensurePath(Paths.statusHostUp(secondHost));
+    model.addJob(JOB);
+    final DeploymentGroup dg = new DeploymentGroup(
+        "my_group", ImmutableList.of(HostSelector.parse("role=foo")), null, null);
+    model.addDeploymentGroup(dg);
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST, secondHost));
+    model.rollingUpdate(dg, JOB_ID, RolloutOptions.newBuilder().setPrePull(true).build());
+
+    // A host leaving the group is not asked to pull the image anymore
+    model.rollingUpdateStep();
+    assertNotNull(client.exists(Paths.configHostPrePull(secondHost, JOB_ID)));
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST));
+    assertThat(client.getChildren(Paths.configHostPrePulls(secondHost)), empty());
+
+    // Neither are hosts of a rollout that was stopped
+    model.updateDeploymentGroupHosts("my_group", ImmutableList.of(HOST, secondHost));
+    model.rollingUpdateStep();
+    assertNotNull(client.exists(Paths.configHostPrePull(secondHost, JOB_ID)));
+    model.stopDeploymentGroup("my_group");
+    assertThat(client.getChildren(Paths.configHostPrePulls(secondHost)), empty());
+  }
 }
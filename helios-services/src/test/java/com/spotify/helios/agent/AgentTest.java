@@ -24,7 +24,9 @@ package com.spotify.helios.agent;
 import com.google.common.base.Suppliers;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Iterables;
 import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
 import com.google.common.util.concurrent.Service;
 
 import com.fasterxml.jackson.core.type.TypeReference;
@@ -51,6 +53,7 @@ import org.mockito.stubbing.Answer;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -60,12 +63,11 @@ import static com.spotify.helios.common.descriptors.Goal.STOP;
 import static com.spotify.helios.common.descriptors.Goal.UNDEPLOY;
 import static com.spotify.helios.common.descriptors.TaskStatus.State.RUNNING;
 import static java.util.Arrays.asList;
-import static java.util.Collections.emptySet;
+import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyMap;
 import static org.mockito.Matchers.anyMapOf;
-import static org.mockito.Matchers.anySet;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.atLeast;
@@ -78,8 +80,6 @@ import static org.mockito.Mockito.when;
 @RunWith(MockitoJUnitRunner.class)
 public class AgentTest {
 
-  private static final Set<Integer> EMPTY_PORT_SET = emptySet();
-
   @Mock private AgentModel model;
   @Mock private SupervisorFactory supervisorFactory;
   @Mock private ReactorFactory reactorFactory;
@@ -93,6 +93,8 @@ public class AgentTest {
   @Captor private ArgumentCaptor<Reactor.Callback> callbackCaptor;
   @Captor private ArgumentCaptor<AgentModel.Listener> listenerCaptor;
   @Captor private ArgumentCaptor<Long> timeoutCaptor;
+  @Captor private ArgumentCaptor<Iterable<Integer>> reservedCaptor;
+  @Captor private ArgumentCaptor<Iterable<Integer>> releasedCaptor;
 
   private static final Map<String, Integer> EMPTY_PORT_ALLOCATION = Collections.emptyMap();
 
@@ -139,10 +141,21 @@ public class AgentTest {
     executions = PersistentAtomicReference.create(executionsFile,
                                                   new TypeReference<Map<JobId, Execution>>() {},
                                                   Suppliers.ofInstance(EMPTY_EXECUTIONS));
-    when(portAllocator.allocate(eq(FOO_JOB.getPorts()), anySet()))
-        .thenReturn(FOO_PORT_ALLOCATION);
-    when(portAllocator.allocate(eq(BAR_JOB.getPorts()), anySet()))
-        .thenReturn(BAR_PORT_ALLOCATION);
+    when(portAllocator.allocate(anyMap())).then(new Answer<Object>() {
+      @Override
+      public Object answer(final InvocationOnMock invocationOnMock) throws Throwable {
+        final Map<JobId, ?> requests = (Map<JobId, ?>) invocationOnMock.getArguments()[0];
+        final ImmutableMap.Builder<JobId, Map<String, Integer>> allocations =
+            ImmutableMap.builder();
+        if (requests.containsKey(FOO_JOB.getId())) {
+          allocations.put(FOO_JOB.getId(), FOO_PORT_ALLOCATION);
+        }
+        if (requests.containsKey(BAR_JOB.getId())) {
+          allocations.put(BAR_JOB.getId(), BAR_PORT_ALLOCATION);
+        }
+        return allocations.build();
+      }
+    });
     when(supervisorFactory.create(eq(FOO_JOB), anyString(),
                                   anyMapOf(String.class, Integer.class),
                                   any(Supervisor.Listener.class)))
@@ -180,6 +193,24 @@ public class AgentTest {
     verify(reactor).signal();
   }
 
+  private Set<Integer> reservedPorts() {
+    verify(portAllocator, atLeastOnce()).reserve(reservedCaptor.capture());
+    return ports(reservedCaptor.getAllValues());
+  }
+
+  private Set<Integer> releasedPorts() {
+    verify(portAllocator, atLeastOnce()).release(releasedCaptor.capture());
+    return ports(releasedCaptor.getAllValues());
+  }
+
+  private static Set<Integer> ports(final List<Iterable<Integer>> values) {
+    final Set<Integer> ports = Sets.newHashSet();
+    for (final Iterable<Integer> value : values) {
+      Iterables.addAll(ports, value);
+    }
+    return ports;
+  }
+
   private void configure(final Job job, final Goal goal) {
     final Task task = new Task(job, goal, Task.EMPTY_DEPLOYER_USER, Task.EMPTY_DEPLOYER_MASTER,
                                Task.EMPTY_DEPOYMENT_GROUP_NAME);
@@ -242,7 +273,7 @@ public class AgentTest {
 
     startAgent();
 
-    verify(portAllocator, never()).allocate(anyMap(), anySet());
+    verify(portAllocator, never()).allocate(anyMap());
 
     verify(supervisorFactory).create(eq(BAR_JOB), eq(barContainerId),
                                      eq(EMPTY_PORT_ALLOCATION),
@@ -287,7 +318,7 @@ public class AgentTest {
     startAgent();
 
     // Verify that the undesired supervisor was created
-    verify(portAllocator, never()).allocate(anyMap(), anySet());
+    verify(portAllocator, never()).allocate(anyMap());
     verify(supervisorFactory).create(eq(FOO_JOB), anyString(),
                                      eq(EMPTY_PORT_ALLOCATION), any(Supervisor.Listener.class));
 
@@ -309,7 +340,8 @@ public class AgentTest {
     startAgent();
 
     start(FOO_JOB);
-    verify(portAllocator).allocate(FOO_JOB.getPorts(), EMPTY_PORT_SET);
+    verify(portAllocator).allocate(ImmutableMap.of(FOO_JOB.getId(), FOO_JOB.getPorts()));
+    assertEquals(FOO_PORT_SET, reservedPorts());
     verify(supervisorFactory).create(eq(FOO_JOB), anyString(),
                                      eq(FOO_PORT_ALLOCATION),
                                      any(Supervisor.Listener.class));
@@ -318,7 +350,7 @@ public class AgentTest {
     when(fooSupervisor.isStarting()).thenReturn(true);
 
     start(BAR_JOB);
-    verify(portAllocator).allocate(BAR_JOB.getPorts(), FOO_PORT_SET);
+    verify(portAllocator).allocate(ImmutableMap.of(BAR_JOB.getId(), BAR_JOB.getPorts()));
     verify(supervisorFactory).create(eq(BAR_JOB), anyString(),
                                      eq(EMPTY_PORT_ALLOCATION),
                                      any(Supervisor.Listener.class));
@@ -337,7 +369,7 @@ public class AgentTest {
 
     // Verify that supervisor is started
     start(FOO_JOB);
-    verify(portAllocator).allocate(FOO_JOB.getPorts(), EMPTY_PORT_SET);
+    verify(portAllocator).allocate(ImmutableMap.of(FOO_JOB.getId(), FOO_JOB.getPorts()));
     verify(fooSupervisor).setGoal(START);
     when(fooSupervisor.isDone()).thenReturn(true);
     when(fooSupervisor.isStopping()).thenReturn(false);
@@ -355,10 +387,12 @@ public class AgentTest {
     when(fooSupervisor.isStopping()).thenReturn(true);
     when(fooSupervisor.isStarting()).thenReturn(false);
     callback.run(false);
+    assertEquals(FOO_PORT_SET, releasedPorts());
 
     // Verify that a new supervisor is created after the previous one is discarded
     start(FOO_JOB);
-    verify(portAllocator, times(2)).allocate(FOO_JOB.getPorts(), EMPTY_PORT_SET);
+    verify(portAllocator, times(2)).allocate(
+        ImmutableMap.of(FOO_JOB.getId(), FOO_JOB.getPorts()));
     verify(supervisorFactory, times(2)).create(eq(FOO_JOB), anyString(),
                                                eq(FOO_PORT_ALLOCATION),
                                                any(Supervisor.Listener.class));
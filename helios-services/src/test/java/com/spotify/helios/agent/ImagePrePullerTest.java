@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.ImagePullFailedException;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.PrePullState;
+import com.spotify.helios.servicescommon.coordination.DefaultZooKeeperClient;
+import com.spotify.helios.servicescommon.coordination.Paths;
+import com.spotify.helios.servicescommon.coordination.ResyncThrottle;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperClient;
+import com.spotify.helios.servicescommon.coordination.ZooKeeperClientProvider;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Callable;
+
+import static com.spotify.helios.Polling.await;
+import static com.spotify.helios.servicescommon.coordination.ZooKeeperModelReporter.noop;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class ImagePrePullerTest {
+
+  private static final String HOST = "agent";
+  private static final String IMAGE = "spotify:17";
+  private static final Job JOB = Job.newBuilder()
+      .setName("foo")
+      .setVersion("17")
+      .setImage(IMAGE)
+      .build();
+
+  private final ZooKeeperTestingServerManager zk = new ZooKeeperTestingServerManager();
+  private final DockerClient docker = mock(DockerClient.class);
+
+  private ZooKeeperClient client;
+  private Path stateDirectory;
+  private ImagePrePuller sut;
+
+  @Before
+  public void setUp() throws Exception {
+    stateDirectory = Files.createTempDirectory("helios-image-pre-puller-test-");
+    client = new DefaultZooKeeperClient(zk.curator());
+    client.ensurePath(Paths.configHostPrePulls(HOST));
+    sut = new ImagePrePuller(new ZooKeeperClientProvider(client, noop()), HOST, stateDirectory,
+                             new ImagePullCoordinator(docker, 1), null, ResyncThrottle.noop());
+    sut.startAsync().awaitRunning();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    sut.stopAsync().awaitTerminated();
+    zk.close();
+    FileUtils.deleteQuietly(stateDirectory.toFile());
+  }
+
+  @Test
+  public void testPullsRequestedImage() throws Exception {
+    assertFalse(sut.isPulled(IMAGE));
+    client.createAndSetData(Paths.configHostPrePull(HOST, JOB.getId()),
+                            Json.asBytes(JOB.getImage()));
+
+    assertEquals(PrePullState.PULLED, awaitState(PrePullState.PULLED));
+    verify(docker).pull(IMAGE);
+    assertTrue(sut.isPulled(IMAGE));
+
+    // The status goes away with the request, the pulled image is remembered
+    client.delete(Paths.configHostPrePull(HOST, JOB.getId()));
+    await(30, SECONDS, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return client.exists(Paths.statusHostPrePull(HOST, JOB.getId())) == null ? true : null;
+      }
+    });
+    assertTrue(sut.isPulled(IMAGE));
+  }
+
+  @Test
+  public void testReportsFailedPull() throws Exception {
+    doThrow(new ImagePullFailedException(IMAGE, "denied")).when(docker).pull(IMAGE);
+    client.createAndSetData(Paths.configHostPrePull(HOST, JOB.getId()),
+                            Json.asBytes(JOB.getImage()));
+
+    assertEquals(PrePullState.FAILED, awaitState(PrePullState.FAILED));
+    assertFalse(sut.isPulled(IMAGE));
+  }
+
+  private PrePullState awaitState(final PrePullState expected) throws Exception {
+    return await(30, SECONDS, new Callable<PrePullState>() {
+      @Override
+      public PrePullState call() throws Exception {
+        final String path = Paths.statusHostPrePull(HOST, JOB.getId());
+        if (client.exists(path) == null) {
+          return null;
+        }
+        final PrePullState state = Json.read(client.getData(path), PrePullState.class);
+        return state == expected ? state : null;
+      }
+    });
+  }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.DockerException;
+import com.spotify.docker.client.ImagePullFailedException;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class ImagePullCoordinatorTest {
+
+  private final DockerClient docker = mock(DockerClient.class);
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void testConcurrentPullsOfSameImageAreShared() throws Exception {
+    final CountDownLatch pulling = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        pulling.countDown();
+        release.await();
+        return null;
+      }
+    }).when(docker).pull("busybox");
+    final ImagePullCoordinator coordinator = new ImagePullCoordinator(docker, 2);
+
+    final Future<ImagePullCoordinator.Result> first =
+        executor.submit(pull(coordinator, "busybox"));
+    assertTrue(pulling.await(10, SECONDS));
+    final Future<ImagePullCoordinator.Result> second =
+        executor.submit(pull(coordinator, "busybox"));
+    while (!hasWaiter(coordinator)) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    assertFalse(first.get(10, SECONDS).isShared());
+    assertTrue(second.get(10, SECONDS).isShared());
+    verify(docker, times(1)).pull("busybox");
+    assertEquals(0, coordinator.inFlight());
+  }
+
+  @Test
+  public void testFailedPullIsSharedAndNotCached() throws Exception {
+    final CountDownLatch pulling = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        pulling.countDown();
+        release.await();
+        throw new ImagePullFailedException("busybox", "denied");
+      }
+    }).when(docker).pull("busybox");
+    final ImagePullCoordinator coordinator = new ImagePullCoordinator(docker, 1);
+
+    final Future<ImagePullCoordinator.Result> first =
+        executor.submit(pull(coordinator, "busybox"));
+    assertTrue(pulling.await(10, SECONDS));
+    final Future<ImagePullCoordinator.Result> second =
+        executor.submit(pull(coordinator, "busybox"));
+    while (!hasWaiter(coordinator)) {
+      Thread.sleep(10);
+    }
+    release.countDown();
+
+    assertPullFailed(first);
+    assertPullFailed(second);
+    verify(docker, times(1)).pull("busybox");
+
+    // A later pull tries again
+    try {
+      coordinator.pull("busybox");
+      fail("expected pull to fail");
+    } catch (ImagePullFailedException expected) {
+      // ignored
+    }
+    verify(docker, times(2)).pull("busybox");
+  }
+
+  @Test
+  public void testWaiterTakesOverInterruptedPull() throws Exception {
+    final CountDownLatch pulling = new CountDownLatch(1);
+    final AtomicInteger pulls = new AtomicInteger();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        if (pulls.incrementAndGet() == 1) {
+          pulling.countDown();
+          // Block until interrupted
+          new CountDownLatch(1).await();
+        }
+        return null;
+      }
+    }).when(docker).pull("busybox");
+    final ImagePullCoordinator coordinator = new ImagePullCoordinator(docker, 1);
+
+    final Future<ImagePullCoordinator.Result> first =
+        executor.submit(pull(coordinator, "busybox"));
+    assertTrue(pulling.await(10, SECONDS));
+    final Future<ImagePullCoordinator.Result> second =
+        executor.submit(pull(coordinator, "busybox"));
+    while (!hasWaiter(coordinator)) {
+      Thread.sleep(10);
+    }
+    first.cancel(true);
+
+    assertFalse(second.get(10, SECONDS).isShared());
+    verify(docker, times(2)).pull("busybox");
+    assertEquals(0, coordinator.inFlight());
+  }
+
+  @Test
+  public void testConcurrentPullsAreLimited() throws Exception {
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(final InvocationOnMock invocation) throws Throwable {
+        final int current = running.incrementAndGet();
+        synchronized (maxRunning) {
+          maxRunning.set(Math.max(maxRunning.get(), current));
+        }
+        Thread.sleep(50);
+        running.decrementAndGet();
+        return null;
+      }
+    }).when(docker).pull(anyString());
+    final ImagePullCoordinator coordinator = new ImagePullCoordinator(docker, 2);
+
+    final int images = 6;
+    final Future<?>[] futures = new Future<?>[images];
+    for (int i = 0; i < images; i++) {
+      futures[i] = executor.submit(pull(coordinator, "image-" + i));
+    }
+    long totalWaitNanos = 0;
+    for (final Future<?> future : futures) {
+      totalWaitNanos += ((ImagePullCoordinator.Result) future.get(10, SECONDS)).getQueueWaitNanos();
+    }
+
+    assertEquals(2, maxRunning.get());
+    assertTrue(totalWaitNanos > 0);
+    verify(docker, times(images)).pull(anyString());
+  }
+
+  private static boolean hasWaiter(final ImagePullCoordinator coordinator) {
+    // The second caller has joined once it is parked waiting on the shared pull
+    for (final Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getState() == Thread.State.WAITING) {
+        for (final StackTraceElement element : thread.getStackTrace()) {
+          if (element.getClassName().equals(ImagePullCoordinator.class.getName())
+              && element.getMethodName().equals("await")) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private static void assertPullFailed(final Future<ImagePullCoordinator.Result> future)
+      throws Exception {
+    try {
+      future.get(10, SECONDS);
+      fail("expected pull to fail");
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(DockerException.class));
+    }
+  }
+
+  private static Callable<ImagePullCoordinator.Result> pull(
+      final ImagePullCoordinator coordinator, final String image) {
+    return new Callable<ImagePullCoordinator.Result>() {
+      @Override
+      public ImagePullCoordinator.Result call() throws Exception {
+        return coordinator.pull(image);
+      }
+    };
+  }
+}
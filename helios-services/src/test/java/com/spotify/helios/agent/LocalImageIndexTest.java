@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.ImmutableList;
+
+import com.spotify.docker.client.DockerClient;
+import com.spotify.docker.client.ImageNotFoundException;
+import com.spotify.docker.client.messages.Image;
+import com.spotify.docker.client.messages.ImageInfo;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class LocalImageIndexTest {
+
+  private final DockerClient docker = mock(DockerClient.class);
+
+  @Test
+  public void testNormalize() {
+    assertEquals("busybox:latest", LocalImageIndex.normalize("busybox"));
+    assertEquals("busybox:1", LocalImageIndex.normalize("busybox:1"));
+    assertEquals("registry:5000/foo:latest", LocalImageIndex.normalize("registry:5000/foo"));
+    assertEquals("foo@sha256:abc", LocalImageIndex.normalize("foo@sha256:abc"));
+  }
+
+  @Test
+  public void testListedImagesArePresent() throws Exception {
+    final Image image = image("busybox:latest", "spotify:17");
+    when(docker.listImages()).thenReturn(asList(image));
+    final LocalImageIndex index = new LocalImageIndex(docker);
+
+    assertTrue(index.contains("busybox"));
+    assertTrue(index.contains("spotify:17"));
+    verify(docker, never()).inspectImage("busybox");
+    verify(docker, times(1)).listImages();
+  }
+
+  @Test
+  public void testMissingImagesAreInspected() throws Exception {
+    when(docker.listImages()).thenReturn(Collections.<Image>emptyList());
+    when(docker.inspectImage("foo@sha256:abc")).thenReturn(mock(ImageInfo.class));
+    when(docker.inspectImage("bar:1")).thenThrow(new ImageNotFoundException("bar:1"));
+    final LocalImageIndex index = new LocalImageIndex(docker);
+
+    assertTrue(index.contains("foo@sha256:abc"));
+    assertTrue(index.contains("foo@sha256:abc"));
+    verify(docker, times(1)).inspectImage("foo@sha256:abc");
+    assertFalse(index.contains("bar:1"));
+
+    index.added("bar:1");
+    assertTrue(index.contains("bar:1"));
+    index.removed("bar:1");
+    assertFalse(index.contains("bar:1"));
+  }
+
+  @Test
+  public void testRefreshesWhenStale() throws Exception {
+    when(docker.listImages()).thenReturn(Collections.<Image>emptyList());
+    final LocalImageIndex index = new LocalImageIndex(docker, 0);
+
+    index.contains("busybox");
+    index.contains("busybox");
+    verify(docker, times(2)).listImages();
+  }
+
+  private static Image image(final String... tags) {
+    final Image image = mock(Image.class);
+    when(image.repoTags()).thenReturn(ImmutableList.copyOf(tags));
+    return image;
+  }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.ImmutableList;
+
+import com.spotify.docker.client.DockerException;
+import com.spotify.docker.client.messages.Container;
+import com.spotify.docker.client.messages.ContainerExit;
+import com.spotify.docker.client.messages.ContainerInfo;
+import com.spotify.docker.client.messages.ContainerState;
+
+import org.junit.After;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PollingDockerClientTest {
+
+  private static final String RUNNING_ID = "running";
+  private static final String EXITED_ID = "exited";
+
+  private final ExecutorService executor = Executors.newCachedThreadPool();
+  private final PollingDockerClient docker =
+      spy(new PollingDockerClient("unix:///var/run/docker.sock"));
+
+  @After
+  public void tearDown() throws Exception {
+    executor.shutdownNow();
+    docker.close();
+  }
+
+  @Test
+  public void testOnlyInspectsContainersMissingFromListing() throws Exception {
+    final Container running = mock(Container.class);
+    when(running.id()).thenReturn(RUNNING_ID);
+    doReturn(ImmutableList.of(running)).when(docker).listContainers();
+    doReturn(exited(3)).when(docker).inspectContainer(EXITED_ID);
+
+    final Future<ContainerExit> runningExit = waitContainer(RUNNING_ID);
+    final Future<ContainerExit> exitedExit = waitContainer(EXITED_ID);
+
+    assertEquals(3, (int) exitedExit.get(10, SECONDS).statusCode());
+    verify(docker, never()).inspectContainer(RUNNING_ID);
+
+    doReturn(ImmutableList.of()).when(docker).listContainers();
+    doReturn(exited(0)).when(docker).inspectContainer(RUNNING_ID);
+    assertEquals(0, (int) runningExit.get(10, SECONDS).statusCode());
+  }
+
+  @Test
+  public void testInspectsContainersWhenListingFails() throws Exception {
+    doThrow(new DockerException("boom")).when(docker).listContainers();
+    doReturn(exited(1)).when(docker).inspectContainer(EXITED_ID);
+
+    assertEquals(1, (int) waitContainer(EXITED_ID).get(10, SECONDS).statusCode());
+  }
+
+  @Test
+  public void testStopsMonitoringWhenWaitIsInterrupted() throws Exception {
+    final AtomicInteger inspections = new AtomicInteger();
+    doThrow(new DockerException("boom")).when(docker).listContainers();
+    doAnswer(new Answer<ContainerInfo>() {
+      @Override
+      public ContainerInfo answer(final InvocationOnMock invocation) throws Throwable {
+        inspections.incrementAndGet();
+        return running();
+      }
+    }).when(docker).inspectContainer(RUNNING_ID);
+
+    final Future<ContainerExit> exit = waitContainer(RUNNING_ID);
+    verify(docker, timeout(10000)).inspectContainer(RUNNING_ID);
+    exit.cancel(true);
+
+    Thread.sleep(1500);
+    final int seen = inspections.get();
+    Thread.sleep(2000);
+    assertEquals(seen, inspections.get());
+  }
+
+  private Future<ContainerExit> waitContainer(final String containerId) {
+    return executor.submit(new Callable<ContainerExit>() {
+      @Override
+      public ContainerExit call() throws Exception {
+        return docker.waitContainer(containerId);
+      }
+    });
+  }
+
+  private static ContainerInfo running() {
+    final ContainerState state = mock(ContainerState.class);
+    when(state.running()).thenReturn(true);
+    final ContainerInfo info = mock(ContainerInfo.class);
+    when(info.state()).thenReturn(state);
+    return info;
+  }
+
+  private static ContainerInfo exited(final int exitCode) {
+    final ContainerState state = mock(ContainerState.class);
+    when(state.running()).thenReturn(false);
+    when(state.exitCode()).thenReturn(exitCode);
+    final ContainerInfo info = mock(ContainerInfo.class);
+    when(info.state()).thenReturn(state);
+    return info;
+  }
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+import com.spotify.helios.common.descriptors.PortMapping;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static java.util.Collections.emptySet;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+
+/**
+ * Compares allocating ports for a new container with the bitmap based {@link PortAllocator}
+ * against the linear search it replaced, which rebuilt the set of used ports from all executions
+ * and bound a probe socket for every candidate port.
+ *
+ * Run with {@code mvn test-compile} followed by running {@link #main(String[])} on the test
+ * classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class PortAllocatorBenchmark {
+
+  private static final int START = 20000;
+  private static final int END = 32768;
+  private static final Set<Integer> NO_PORTS = emptySet();
+
+  /**
+   * Number of containers already running on the agent, each holding two ports.
+   */
+  @Param({"10", "100", "1000"})
+  public int containers;
+
+  private final Map<String, PortMapping> mappings = ImmutableMap.of(
+      "http", PortMapping.of(8080),
+      "admin", PortMapping.of(8081));
+
+  private final List<Map<String, Integer>> allocations = newArrayList();
+
+  private LinearPortAllocator linear;
+  private PortAllocator bitmap;
+
+  @Setup
+  public void setup() {
+    linear = new LinearPortAllocator(START, END);
+    bitmap = new PortAllocator(START, END);
+    for (int i = 0; i < containers; i++) {
+      final Map<String, Integer> ports = ImmutableMap.of(
+          "http", START + 2 * i, "admin", START + 2 * i + 1);
+      allocations.add(ports);
+      bitmap.reserve(ports.values());
+    }
+  }
+
+  @Benchmark
+  public Map<String, Integer> linear() {
+    // The agent used to collect the ports of all executions for every allocation
+    final Set<Integer> used = Sets.newHashSet();
+    for (final Map<String, Integer> allocation : allocations) {
+      used.addAll(allocation.values());
+    }
+    return linear.allocate(mappings, used);
+  }
+
+  @Benchmark
+  public Map<String, Integer> bitmap() {
+    return bitmap.allocate(mappings, NO_PORTS);
+  }
+
+  public static void main(final String... args) throws RunnerException {
+    new Runner(new OptionsBuilder()
+                   .include(PortAllocatorBenchmark.class.getSimpleName())
+                   .build())
+        .run();
+  }
+
+  /**
+   * The port allocator as it was before it kept a bitmap of reserved ports.
+   */
+  private static class LinearPortAllocator {
+
+    private final int start;
+    private final int end;
+    private int i;
+
+    private LinearPortAllocator(final int start, final int end) {
+      this.start = start;
+      this.end = end;
+      this.i = start;
+    }
+
+    private Map<String, Integer> allocate(final Map<String, PortMapping> mappings,
+                                          final Set<Integer> usedPorts) {
+      final Set<Integer> used = Sets.newHashSet(usedPorts);
+      final ImmutableMap.Builder<String, Integer> allocation = ImmutableMap.builder();
+
+      // Allocate static ports
+      for (final Map.Entry<String, PortMapping> entry : mappings.entrySet()) {
+        final Integer externalPort = entry.getValue().getExternalPort();
+        if (externalPort == null) {
+          continue;
+        }
+        if (used.contains(externalPort)) {
+          return null;
+        }
+        used.add(externalPort);
+        allocation.put(entry.getKey(), externalPort);
+      }
+
+      // Allocate dynamic ports
+      for (final Map.Entry<String, PortMapping> entry : mappings.entrySet()) {
+        if (entry.getValue().getExternalPort() != null) {
+          continue;
+        }
+        Integer port = null;
+        for (int n = start; n < end; n++) {
+          final int candidate = next();
+          if (!used.contains(candidate) && portAvailable(candidate)) {
+            port = candidate;
+            break;
+          }
+        }
+        if (port == null) {
+          return null;
+        }
+        used.add(port);
+        allocation.put(entry.getKey(), port);
+      }
+
+      return allocation.build();
+    }
+
+    private int next() {
+      if (i == end) {
+        i = start;
+      }
+      return i++;
+    }
+
+    private static boolean portAvailable(final int port) {
+      try (ServerSocket ignored = new ServerSocket(port)) {
+        return true;
+      } catch (IOException e) {
+        return false;
+      }
+    }
+  }
+}
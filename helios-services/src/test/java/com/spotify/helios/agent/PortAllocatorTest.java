@@ -21,6 +21,7 @@
 
 package com.spotify.helios.agent;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 
@@ -28,16 +29,27 @@ import com.spotify.helios.common.descriptors.PortMapping;
 
 import org.junit.Test;
 
+import java.io.IOException;
 import java.net.ServerSocket;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.Collections;
 import java.util.Map;
 import java.util.Set;
 
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 
 public class PortAllocatorTest {
 
+  private static final Set<Integer> EMPTY_PORTS = Collections.emptySet();
+
   @Test
   public void testAllocate() throws Exception {
     final PortAllocator sut = new PortAllocator(20000, 20010);
@@ -92,4 +104,75 @@ public class PortAllocatorTest {
     final Map<String, Integer> allocation = sut.allocate(mapping, used);
     assertEquals(ImmutableMap.of("p1", 20002, "p2", 20001), allocation);
   }
+
+  @Test
+  public void testReservedPortsNotAllocated() throws Exception {
+    final PortAllocator sut = new PortAllocator(20000, 20010, hostPorts());
+    final Map<String, PortMapping> mapping = ImmutableMap.of("p1", PortMapping.of(17));
+    sut.reserve(ImmutableSet.of(20000, 20001));
+    assertEquals(ImmutableMap.of("p1", 20002), sut.allocate(mapping, EMPTY_PORTS));
+    assertNull(sut.allocate(ImmutableMap.of("p1", PortMapping.of(17, 20000)), EMPTY_PORTS));
+
+    sut.release(ImmutableSet.of(20000));
+    assertEquals(ImmutableMap.of("p1", 20000),
+                 sut.allocate(ImmutableMap.of("p1", PortMapping.of(17, 20000)), EMPTY_PORTS));
+  }
+
+  @Test
+  public void testAllocateRound() throws Exception {
+    final PortAllocator sut = new PortAllocator(20000, 20003, hostPorts());
+    final Map<String, PortMapping> mapping = ImmutableMap.of("p1", PortMapping.of(17));
+    final Map<String, Map<String, PortMapping>> requests = ImmutableMap.of(
+        "foo", mapping,
+        "bar", ImmutableMap.of("p1", PortMapping.of(17), "p2", PortMapping.of(18)),
+        "baz", mapping);
+    final Map<String, Map<String, Integer>> allocations = sut.allocate(requests);
+
+    // Ports allocated earlier in the round are not handed out again, leaving none for baz
+    assertEquals(ImmutableMap.of(
+        "foo", ImmutableMap.of("p1", 20000),
+        "bar", ImmutableMap.of("p1", 20001, "p2", 20002)), allocations);
+  }
+
+  @Test
+  public void testAllocateChecksHostPortSnapshot() throws Exception {
+    final Path table = Files.createTempFile("helios-tcp", "");
+    Files.write(table, ImmutableList.of(
+        "  sl  local_address rem_address   st tx_queue rx_queue tr tm->when retrnsmt   uid",
+        "   0: 00000000:4E20 00000000:0000 0A 00000000:00000000 00:00000000 00000000     0",
+        "   1: 0100007F:4E21 0100007F:1F90 01 00000000:00000000 00:00000000 00000000     0",
+        "   2: 0100007F:4E22 0100007F:1F90 06 00000000:00000000 00:00000000 00000000     0"),
+                UTF_8);
+    final PortAllocator sut = new PortAllocator(20000, 20010, hostPorts(table));
+    final Map<String, PortMapping> mapping = ImmutableMap.of("p1", PortMapping.of(17),
+                                                             "p2", PortMapping.of(18));
+
+    // 20000 is listening and 20001 is connected. 20002 is in TIME_WAIT and can be reused.
+    assertEquals(ImmutableMap.of("p1", 20002, "p2", 20003), sut.allocate(mapping, EMPTY_PORTS));
+  }
+
+  @Test
+  public void testHostPortSnapshotOnlyTakenForDynamicPorts() throws Exception {
+    final HostPortUsage hostPortUsage = mock(HostPortUsage.class);
+    final PortAllocator sut = new PortAllocator(20000, 20010, hostPortUsage);
+
+    final Map<String, PortMapping> staticPorts = ImmutableMap.of("p1", PortMapping.of(17, 20000));
+    final Map<String, PortMapping> dynamicPorts = ImmutableMap.of("p1", PortMapping.of(17));
+
+    sut.allocate(staticPorts, EMPTY_PORTS);
+    sut.allocate(ImmutableMap.of("foo", staticPorts));
+    verify(hostPortUsage, never()).snapshot();
+
+    // A round shares a single snapshot
+    sut.allocate(ImmutableMap.of("foo", dynamicPorts, "bar", dynamicPorts));
+    verify(hostPortUsage, times(1)).snapshot();
+  }
+
+  private static HostPortUsage hostPorts(final Path... tables) throws IOException {
+    if (tables.length > 0) {
+      return new HostPortUsage(asList(tables));
+    }
+    final Path empty = Files.createTempFile("helios-tcp", "");
+    return new HostPortUsage(ImmutableList.of(empty));
+  }
 }
@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.agent;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.common.descriptors.TaskStatus.State;
+import com.spotify.helios.common.descriptors.TaskStatusEvent;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static com.spotify.helios.common.descriptors.Goal.START;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TaskHistoryJournalTest {
+
+  private static final Job JOB = Job.newBuilder()
+      .setCommand(ImmutableList.<String>of())
+      .setImage("image")
+      .setName("foo")
+      .setVersion("version")
+      .build();
+  private static final TaskStatus TASK_STATUS = TaskStatus.newBuilder()
+      .setState(State.CREATING)
+      .setJob(JOB)
+      .setGoal(START)
+      .setContainerId("containerId")
+      .build();
+
+  private Path directory;
+
+  @Before
+  public void setUp() throws Exception {
+    directory = Files.createTempDirectory("helios-journal");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    FileUtils.deleteQuietly(directory.toFile());
+  }
+
+  @Test
+  public void testRecovery() throws Exception {
+    final TaskHistoryJournal journal = new TaskHistoryJournal(directory);
+    journal.add(event(1));
+    journal.add(event(2));
+    journal.add(event(3));
+    journal.remove(event(2));
+    journal.close();
+
+    final TaskHistoryJournal recovered = new TaskHistoryJournal(directory);
+    assertEquals(ImmutableList.of(1L, 3L), timestamps(recovered));
+  }
+
+  @Test
+  public void testIncompleteEntryIsIgnored() throws Exception {
+    final TaskHistoryJournal journal = new TaskHistoryJournal(directory);
+    journal.add(event(1));
+    journal.close();
+
+    // Simulate a crash in the middle of writing an entry
+    final File segment = directory.toFile().listFiles()[0];
+    Files.write(segment.toPath(), "{\"type\":\"ADD\",\"jobI".getBytes(UTF_8),
+                StandardOpenOption.APPEND);
+
+    final TaskHistoryJournal recovered = new TaskHistoryJournal(directory);
+    assertEquals(ImmutableList.of(1L), timestamps(recovered));
+    recovered.add(event(2));
+    recovered.close();
+
+    assertEquals(ImmutableList.of(1L, 2L), timestamps(new TaskHistoryJournal(directory)));
+  }
+
+  @Test
+  public void testCompaction() throws Exception {
+    final TaskHistoryJournal journal = new TaskHistoryJournal(directory);
+    for (int i = 0; i < 2000; i++) {
+      journal.add(event(i));
+      if (i % 100 != 0) {
+        journal.remove(event(i));
+      }
+    }
+    journal.compactIfNeeded();
+    journal.add(event(5000));
+    journal.close();
+
+    final File[] segments = directory.toFile().listFiles();
+    assertEquals(1, segments.length);
+    assertTrue(segments[0].length() < 64 * 1024);
+
+    final TaskHistoryJournal recovered = new TaskHistoryJournal(directory);
+    assertEquals(21, recovered.getEvents().size());
+    assertEquals(5000L, Iterables.getLast(timestamps(recovered)).longValue());
+  }
+
+  private static List<Long> timestamps(final TaskHistoryJournal journal) {
+    final List<Long> timestamps = Lists.newArrayList();
+    for (final TaskStatusEvent event : journal.getEvents()) {
+      timestamps.add(event.getTimestamp());
+    }
+    return timestamps;
+  }
+
+  private static TaskStatusEvent event(final long timestamp) {
+    return new TaskStatusEvent(TASK_STATUS, timestamp, "host");
+  }
+}
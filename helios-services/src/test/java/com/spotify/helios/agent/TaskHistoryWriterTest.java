@@ -22,11 +22,13 @@
 package com.spotify.helios.agent;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Iterables;
 
 import com.spotify.helios.Polling;
 import com.spotify.helios.ZooKeeperTestManager;
 import com.spotify.helios.ZooKeeperTestingServerManager;
+import com.spotify.helios.common.Json;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.TaskStatus;
@@ -57,9 +59,9 @@ import static com.spotify.helios.Polling.await;
 import static com.spotify.helios.common.descriptors.Goal.START;
 import static org.apache.zookeeper.KeeperException.ConnectionLossException;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.Mockito.doAnswer;
-import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -159,6 +161,22 @@ public class TaskHistoryWriterTest {
     assertEquals(JOB_ID, historyItem.getStatus().getJob().getId());
   }
 
+  @Test
+  public void testNormalizedEventsAreResolved() throws Exception {
+    writer.stopAsync().awaitTerminated();
+    writer = new TaskHistoryWriter(HOSTNAME, client, agentStateDirs.resolve("task-history.json"),
+                                   true);
+    writer.startUp();
+
+    writer.saveHistoryItem(JOB_ID, TASK_STATUS, TIMESTAMP);
+
+    final TaskStatusEvent historyItem = Iterables.getOnlyElement(awaitHistoryItems());
+    assertEquals(TASK_STATUS, historyItem.getStatus());
+    final byte[] data = client.getData(
+        Paths.historyJobHostEventsTimestamp(JOB_ID, HOSTNAME, TIMESTAMP));
+    assertFalse(Json.readTree(data).has("job"));
+  }
+
   private Iterable<TaskStatusEvent> awaitHistoryItems() throws Exception {
     return await(40L, TimeUnit.SECONDS, new Callable<Iterable<TaskStatusEvent>>() {
       @Override
@@ -190,6 +208,19 @@ public class TaskHistoryWriterTest {
     assertEquals(JOB_ID, historyItem.getStatus().getJob().getId());
   }
 
+  @Test
+  public void testMigratesBackingFile() throws Exception {
+    writer.stopAsync().awaitTerminated();
+    final Path backingFile = agentStateDirs.resolve("task-history.json");
+    final TaskStatusEvent event = new TaskStatusEvent(TASK_STATUS, TIMESTAMP, HOSTNAME);
+    Files.write(backingFile, Json.asBytes(ImmutableMap.of(JOB_ID, ImmutableList.of(event))));
+
+    makeWriter(client);
+    assertFalse(Files.exists(backingFile));
+    final TaskStatusEvent historyItem = Iterables.getOnlyElement(awaitHistoryItems());
+    assertEquals(TIMESTAMP, historyItem.getTimestamp());
+  }
+
   @Test
   public void testKeepsNoMoreThanMaxHistoryItems() throws Exception {
     // And that it keeps the correct items!
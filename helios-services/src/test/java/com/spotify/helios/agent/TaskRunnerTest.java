@@ -43,6 +43,9 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class TaskRunnerTest {
@@ -60,6 +63,9 @@ public class TaskRunnerTest {
   @Mock private StatusUpdater statusUpdater;
   @Mock private Clock clock;
   @Mock private ContainerDecorator containerDecorator;
+  @Mock private LocalImageIndex imageIndex;
+  @Mock private TaskRunner.Listener listener;
+  @Mock private ImagePullCoordinator imagePuller;
 
   @Test
   public void test() throws Throwable {
@@ -116,4 +122,92 @@ public class TaskRunnerTest {
       assertEquals(ImagePullFailedException.class, t.getCause().getClass());
     }
   }
+
+  @Test
+  public void testSkipsPullOfPresentImageOnRestart() throws Throwable {
+    when(imageIndex.contains(IMAGE)).thenReturn(true);
+
+    final TaskRunner tr = taskRunnerBuilder()
+        .imagePullPolicy(ImagePullPolicy.IF_NEEDED)
+        .imageIndex(imageIndex)
+        .imagePulled(true)
+        .build();
+    tr.run();
+
+    verify(mockDocker, never()).pull(IMAGE);
+    verify(listener).imageCacheHit();
+  }
+
+  @Test
+  public void testPullsMutableTagOnFirstStart() throws Throwable {
+    when(imageIndex.contains(IMAGE)).thenReturn(true);
+
+    final TaskRunner tr = taskRunnerBuilder()
+        .imagePullPolicy(ImagePullPolicy.IF_NEEDED)
+        .imageIndex(imageIndex)
+        .imagePulled(false)
+        .build();
+    tr.run();
+
+    verify(mockDocker).pull(IMAGE);
+    verify(imageIndex).added(IMAGE);
+  }
+
+  @Test
+  public void testPullsImageRemovedSinceIndexed() throws Throwable {
+    when(imageIndex.contains(IMAGE)).thenReturn(true);
+    doThrow(new ImageNotFoundException("not found"))
+        .when(mockDocker).inspectImage(IMAGE);
+
+    final TaskRunner tr = taskRunnerBuilder()
+        .imagePullPolicy(ImagePullPolicy.IF_NEEDED)
+        .imageIndex(imageIndex)
+        .imagePulled(true)
+        .build();
+    tr.run();
+
+    verify(imageIndex).removed(IMAGE);
+    verify(mockDocker).pull(IMAGE);
+  }
+
+  @Test
+  public void testNeverPullsWithNeverPolicy() throws Throwable {
+    when(imageIndex.contains(IMAGE)).thenReturn(false);
+
+    final TaskRunner tr = taskRunnerBuilder()
+        .imagePullPolicy(ImagePullPolicy.NEVER)
+        .imageIndex(imageIndex)
+        .build();
+    tr.run();
+
+    verify(mockDocker, never()).pull(IMAGE);
+    verify(listener).imageCacheMiss();
+  }
+
+  @Test
+  public void testPullsThroughCoordinator() throws Throwable {
+    when(imagePuller.pull(IMAGE)).thenReturn(new ImagePullCoordinator.Result(5, 10, true));
+
+    final TaskRunner tr = taskRunnerBuilder()
+        .imagePuller(imagePuller)
+        .build();
+    tr.run();
+
+    verify(mockDocker, never()).pull(IMAGE);
+    verify(listener).pullTimes(5, 10);
+    verify(listener).pulled();
+  }
+
+  private TaskRunner.Builder taskRunnerBuilder() {
+    return TaskRunner.builder()
+        .delayMillis(0)
+        .config(TaskConfig.builder()
+                    .namespace("test")
+                    .host(HOST)
+                    .job(JOB)
+                    .containerDecorators(ImmutableList.of(containerDecorator))
+                    .build())
+        .docker(mockDocker)
+        .listener(listener);
+  }
 }
@@ -8,22 +8,36 @@ import com.spotify.helios.common.descriptors.Goal;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.JobUndeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
+import com.spotify.helios.servicescommon.coordination.JobDefinitionCache;
 
+import org.apache.curator.framework.recipes.leader.LeaderLatch;
+import org.apache.curator.framework.recipes.leader.LeaderLatchListener;
 import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.runners.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import static java.util.Arrays.asList;
+import static java.util.concurrent.TimeUnit.DAYS;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.ignoreStubs;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
@@ -33,8 +47,9 @@ public class ExpiredJobReaperTest {
 
   @Mock private MasterModel masterModel;
   @Mock private Clock mockClock;
+  @Mock private JobDefinitionCache jobDefinitions;
+  @Mock private LeaderLatch leaderLatch;
 
-  private static final JobId NON_EXPIRING_JOB_ID = JobId.fromString("non_expiring");
   private static final Job NON_EXPIRING_JOB = Job.newBuilder()
       .setCommand(asList("foo", "foo"))
       .setImage("foo:4711")
@@ -42,11 +57,9 @@ public class ExpiredJobReaperTest {
       .setVersion("17")
       .build();
 
-  private static final JobId EXPIRING_JOB_ID = JobId.fromString("expiring");
-
   private static final long EXPIRED_TS = 0;
   private static final long CURRENT_TS = 1;
-  private static final long FUTURE_TS = 2;
+  private static final long FUTURE_TS = DAYS.toMillis(1);
 
   private static final Job EXPIRING_JOB = Job.newBuilder()
       .setCommand(asList("foo", "foo"))
@@ -55,8 +68,8 @@ public class ExpiredJobReaperTest {
       .setVersion("17")
       .setExpires(new Date(EXPIRED_TS))
       .build();
+  private static final JobId EXPIRING_JOB_ID = EXPIRING_JOB.getId();
 
-  private static final JobId FAR_FUTURE_EXPIRING_JOB_ID = JobId.fromString("far_future_expiring");
   private static final Job FAR_FUTURE_EXPIRING_JOB = Job.newBuilder()
       .setCommand(asList("foo", "foo"))
       .setImage("foo:4711")
@@ -65,18 +78,15 @@ public class ExpiredJobReaperTest {
       .setExpires(new Date(FUTURE_TS))
       .build();
 
-  private static final Map<JobId, Job> JOBS = ImmutableMap.of(
-      NON_EXPIRING_JOB_ID, NON_EXPIRING_JOB,
-      EXPIRING_JOB_ID, EXPIRING_JOB,
-      FAR_FUTURE_EXPIRING_JOB_ID, FAR_FUTURE_EXPIRING_JOB
-  );
+  private static final List<String> HOSTS = asList("hostA", "hostB");
 
-  @Test
-  public void testExpiredJobReaper() throws Exception {
+  private ExpiredJobReaper reaper;
+
+  @Before
+  public void setUp() throws Exception {
     when(mockClock.now()).thenReturn(new Instant(CURRENT_TS));
-    when(masterModel.getJobs()).thenReturn(JOBS);
 
-    when(masterModel.getJobStatus(any(JobId.class)))
+    when(masterModel.getJobStatus(any(JobId.class), eq(StatusView.SUMMARY)))
       .then(new Answer<JobStatus>() {
         @Override
         public JobStatus answer(final InvocationOnMock invocation) throws Throwable {
@@ -87,24 +97,71 @@ public class ExpiredJobReaperTest {
               "hostB", Deployment.of(jobId, Goal.START));
 
           return JobStatus.newBuilder()
-              .setJob(JOBS.get(jobId))
+              .setJob(EXPIRING_JOB)
               .setDeployments(deployments)
               .build();
         }
       });
+    when(masterModel.undeployJob(any(JobId.class), anyListOf(String.class), eq("")))
+        .thenReturn(ImmutableMap.of("hostA", JobUndeployResponse.Status.OK,
+                                    "hostB", JobUndeployResponse.Status.OK));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (reaper != null) {
+      reaper.stopAsync().awaitTerminated();
+    }
+  }
 
-    ExpiredJobReaper.newBuilder()
+  private JobDefinitionCache.Listener startReaper(final LeaderLatch leaderLatch) {
+    reaper = ExpiredJobReaper.newBuilder()
         .setClock(mockClock)
         .setMasterModel(masterModel)
-        .build()
-        .runOneIteration();
+        .setJobDefinitions(jobDefinitions)
+        .setLeaderLatch(leaderLatch)
+        .build();
+    reaper.startAsync().awaitRunning();
+
+    final ArgumentCaptor<JobDefinitionCache.Listener> listener =
+        ArgumentCaptor.forClass(JobDefinitionCache.Listener.class);
+    verify(jobDefinitions).addListener(listener.capture());
+    return listener.getValue();
+  }
+
+  @Test
+  public void testExpiredJobReaper() throws Exception {
+    final JobDefinitionCache.Listener listener = startReaper(null);
+    listener.jobAdded(NON_EXPIRING_JOB);
+    listener.jobAdded(EXPIRING_JOB);
+    listener.jobAdded(FAR_FUTURE_EXPIRING_JOB);
 
     // Make sure that the expiring job was removed, but that the non-expiring job
     // and the job that expires far in the future were not.
-    verify(masterModel).undeployJob(eq("hostA"), eq(EXPIRING_JOB_ID), eq(""));
-    verify(masterModel).undeployJob(eq("hostB"), eq(EXPIRING_JOB_ID), eq(""));
-    verify(masterModel).removeJob(eq(EXPIRING_JOB_ID), eq(""));
+    verify(masterModel, timeout(5000)).removeJob(eq(EXPIRING_JOB_ID), eq(""));
+    verify(masterModel).undeployJob(eq(EXPIRING_JOB_ID), eq(HOSTS), eq(""));
 
     verifyNoMoreInteractions(ignoreStubs(masterModel));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testOnlyLeaderReaps() throws Exception {
+    when(leaderLatch.hasLeadership()).thenReturn(false);
+    final JobDefinitionCache.Listener listener = startReaper(leaderLatch);
+    verify(leaderLatch).start();
+
+    listener.jobAdded(EXPIRING_JOB);
+    verify(leaderLatch, timeout(5000).atLeastOnce()).hasLeadership();
+    verify(masterModel, never()).removeJob(any(JobId.class), any(String.class));
+
+    // Catch up on the jobs that expired in the meantime once elected
+    final ArgumentCaptor<LeaderLatchListener> leaderListener =
+        ArgumentCaptor.forClass(LeaderLatchListener.class);
+    verify(leaderLatch).addListener(leaderListener.capture(), any(Executor.class));
+    when(leaderLatch.hasLeadership()).thenReturn(true);
+    leaderListener.getValue().isLeader();
+
+    verify(masterModel, timeout(5000)).removeJob(eq(EXPIRING_JOB_ID), eq(""));
+    verify(masterModel).undeployJob(eq(EXPIRING_JOB_ID), eq(HOSTS), eq(""));
+  }
+}
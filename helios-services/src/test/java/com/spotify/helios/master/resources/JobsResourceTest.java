@@ -0,0 +1,186 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.master.resources;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Lists;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Deployment;
+import com.spotify.helios.common.descriptors.Goal;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.BulkDeployRequest;
+import com.spotify.helios.common.protocol.BulkDeployResponse;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+import com.spotify.helios.common.protocol.StatusView;
+import com.spotify.helios.master.MasterModel;
+import com.spotify.helios.servicescommon.statistics.MasterMetrics;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class JobsResourceTest {
+
+  private static final Job FOO = Job.newBuilder()
+      .setName("foo")
+      .setVersion("1")
+      .setImage("busybox")
+      .build();
+  private static final Job BAR = Job.newBuilder()
+      .setName("bar")
+      .setVersion("1")
+      .setImage("busybox")
+      .build();
+
+  @Mock
+  private MasterModel model;
+
+  @Mock
+  private MasterMetrics metrics;
+
+  private JobsResource resource;
+
+  @Before
+  public void before() {
+    resource = new JobsResource(model, metrics);
+    when(model.getJobIds()).thenReturn(Lists.newArrayList(FOO.getId(), BAR.getId()));
+    when(model.getJob(FOO.getId())).thenReturn(FOO);
+    when(model.getJob(BAR.getId())).thenReturn(BAR);
+  }
+
+  @Test
+  public void testList() throws Exception {
+    final Map<JobId, Job> jobs = read(resource.list(""), new TypeReference<Map<JobId, Job>>() {});
+    assertEquals(ImmutableMap.of(FOO.getId(), FOO, BAR.getId(), BAR), jobs);
+    verify(metrics).jobsInJobList(2);
+  }
+
+  @Test
+  public void testListFiltered() throws Exception {
+    final Map<JobId, Job> jobs = read(resource.list("foo"),
+                                      new TypeReference<Map<JobId, Job>>() {});
+    assertEquals(ImmutableMap.of(FOO.getId(), FOO), jobs);
+    verify(metrics).jobsInJobList(1);
+  }
+
+  @Test
+  public void testListSkipsDeletedJobs() throws Exception {
+    when(model.getJob(BAR.getId())).thenReturn(null);
+    final Map<JobId, Job> jobs = read(resource.list(""), new TypeReference<Map<JobId, Job>>() {});
+    assertEquals(ImmutableMap.of(FOO.getId(), FOO), jobs);
+  }
+
+  @Test
+  public void testJobStatuses() throws Exception {
+    final JobStatus status = JobStatus.newBuilder().setJob(FOO).build();
+    when(model.getJobStatus(FOO.getId(), StatusView.SUMMARY)).thenReturn(status);
+
+    final Map<JobId, JobStatus> statuses = read(
+        resource.jobStatuses(ImmutableSet.of(FOO.getId(), BAR.getId()), "summary"),
+        new TypeReference<Map<JobId, JobStatus>>() {});
+    assertEquals(ImmutableMap.of(FOO.getId(), status), statuses);
+  }
+
+  @Test
+  public void testJobStatusesLeavesObjectOpenOnReadFailure() throws Exception {
+    final JobStatus status = JobStatus.newBuilder().setJob(FOO).build();
+    when(model.getJobStatus(FOO.getId(), StatusView.FULL)).thenReturn(status);
+    when(model.getJobStatus(BAR.getId(), StatusView.FULL))
+        .thenThrow(new IllegalStateException("zookeeper error"));
+
+    final StreamingOutput output =
+        resource.jobStatuses(ImmutableSet.of(FOO.getId(), BAR.getId()), "full");
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try {
+      output.write(bytes);
+      fail();
+    } catch (IllegalStateException ignore) {
+    }
+
+    // The failure must not be turned into a complete, but truncated, json object
+    try {
+      Json.readTree(bytes.toByteArray());
+      fail();
+    } catch (IOException ignore) {
+    }
+  }
+
+  @Test(expected = WebApplicationException.class)
+  public void testJobStatusesWithoutLabelsView() throws Exception {
+    resource.jobStatuses(ImmutableSet.of(FOO.getId()), "labels");
+  }
+
+  @Test
+  public void testDeploymentsPost() throws Exception {
+    final List<String> hosts = ImmutableList.of("host1", "host2");
+    final Map<String, JobDeployResponse.Status> results = ImmutableMap.of(
+        "host1", JobDeployResponse.Status.OK,
+        "host2", JobDeployResponse.Status.HOST_NOT_FOUND);
+    final Deployment deployment = Deployment.of(FOO.getId(), Goal.START);
+    when(model.deployJob(hosts, deployment.toBuilder().setDeployerUser("user").build(), ""))
+        .thenReturn(results);
+
+    final BulkDeployResponse response = resource.deploymentsPost(
+        FOO.getId(), new BulkDeployRequest(deployment, hosts), "user", "");
+    assertEquals(JobDeployResponse.Status.OK, response.getStatus());
+    assertEquals(results, response.getHosts());
+    assertEquals(JobDeployResponse.Status.HOST_NOT_FOUND,
+                 response.getResponse("host2").getStatus());
+  }
+
+  @Test(expected = WebApplicationException.class)
+  public void testDeploymentsPostWithMismatchingId() throws Exception {
+    resource.deploymentsPost(
+        FOO.getId(),
+        new BulkDeployRequest(Deployment.of(BAR.getId(), Goal.START), ImmutableList.of("host")),
+        "user", "");
+  }
+
+  private static <T> T read(final StreamingOutput output, final TypeReference<T> type)
+      throws Exception {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    output.write(bytes);
+    return Json.read(bytes.toByteArray(), type);
+  }
+}
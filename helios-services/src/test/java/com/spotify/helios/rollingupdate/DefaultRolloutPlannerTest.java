@@ -78,6 +78,41 @@ public class DefaultRolloutPlannerTest {
     assertEquals(expected, tasks);
   }
 
+  @Test
+  public void testPrePullRollout() {
+    final DeploymentGroup deploymentGroup = DeploymentGroup.newBuilder()
+        .setRolloutOptions(RolloutOptions.newBuilder()
+                               .setParallelism(2)
+                               .setPrePull(true)
+                               .build())
+        .build();
+    final HostStatus statusUp = mock(HostStatus.class);
+    when(statusUp.getStatus()).thenReturn(HostStatus.Status.UP);
+    final Map<String, HostStatus> hostsAndStatuses = ImmutableMap.of(
+        "agent1", statusUp,
+        "agent2", statusUp,
+        "agent3", statusUp
+    );
+
+    final RolloutPlanner rolloutPlanner = DefaultRolloutPlanner.of(deploymentGroup);
+
+    final List<RolloutTask> tasks = rolloutPlanner.plan(hostsAndStatuses);
+
+    final List<RolloutTask> expected = Lists.newArrayList(
+        RolloutTask.of(RolloutTask.Action.PRE_PULL_IMAGE, "agent3"),
+        RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "agent1"),
+        RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "agent1"),
+        RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "agent2"),
+        RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "agent2"),
+        RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "agent1"),
+        RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "agent2"),
+        RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "agent3"),
+        RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "agent3"),
+        RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "agent3"));
+
+    assertEquals(expected, tasks);
+  }
+
   @Test
   public void testParallelRollout() {
     final DeploymentGroup deploymentGroup = DeploymentGroup.newBuilder()
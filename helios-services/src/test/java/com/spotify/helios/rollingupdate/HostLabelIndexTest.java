@@ -0,0 +1,130 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.rollingupdate;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import com.spotify.helios.Polling;
+import com.spotify.helios.ZooKeeperTestManager;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+import com.spotify.helios.common.Json;
+import com.spotify.helios.servicescommon.coordination.Paths;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HostLabelIndexTest {
+
+  private static final Map<String, String> FOO_LABELS = ImmutableMap.of("role", "foo");
+  private static final Map<String, String> BAR_LABELS = ImmutableMap.of("role", "bar",
+                                                                        "pool", "a");
+
+  private ZooKeeperTestManager zk;
+  private CuratorFramework curator;
+  private HostLabelIndex index;
+
+  @Before
+  public void setup() throws Exception {
+    zk = new ZooKeeperTestingServerManager();
+    zk.ensure(Paths.configHosts());
+    zk.ensure(Paths.statusHosts());
+    curator = zk.curator();
+
+    registerHost("foo", FOO_LABELS);
+    registerHost("bar", BAR_LABELS);
+    // Not registered yet, the id node is missing
+    zk.ensure(Paths.configHost("baz"));
+
+    index = new HostLabelIndex(curator);
+    index.startAsync().awaitRunning();
+    awaitInitialized();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    index.stopAsync().awaitTerminated();
+    zk.close();
+  }
+
+  @Test
+  public void verifyInitialLoad() throws Exception {
+    assertEquals(ImmutableSet.of("foo", "bar"), index.getHosts());
+    assertEquals(FOO_LABELS, index.getLabels("foo"));
+    assertNull(index.getLabels("baz"));
+    assertEquals(ImmutableMap.of("bar", BAR_LABELS), index.getHostsWithLabel("pool"));
+    assertEquals(2, index.countHostsWithLabel("role"));
+    assertEquals(ImmutableSet.of("foo", "bar"), index.drainChangedHosts());
+    assertTrue(index.drainChangedHosts().isEmpty());
+  }
+
+  @Test
+  public void verifyIndexFollowsChanges() throws Exception {
+    index.drainChangedHosts();
+
+    final Map<String, String> relabeled = ImmutableMap.of("pool", "b");
+    curator.setData().forPath(Paths.statusHostLabels("foo"), Json.asBytes(relabeled));
+    curator.create().forPath(Paths.configHostId("baz"), "baz".getBytes(UTF_8));
+    curator.delete().forPath(Paths.configHostId("bar"));
+
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return index.getHosts().equals(ImmutableSet.of("foo", "baz")) &&
+               relabeled.equals(index.getLabels("foo")) ? true : null;
+      }
+    });
+
+    assertEquals(ImmutableSet.of("foo"), index.getHostsWithLabel("pool").keySet());
+    assertEquals(0, index.countHostsWithLabel("role"));
+    assertEquals(ImmutableMap.of(), index.getLabels("baz"));
+    assertEquals(ImmutableSet.of("foo", "bar", "baz"), index.drainChangedHosts());
+  }
+
+  private void registerHost(final String host, final Map<String, String> labels)
+      throws Exception {
+    zk.ensure(Paths.configHost(host));
+    curator.create().forPath(Paths.configHostId(host), host.getBytes(UTF_8));
+    zk.ensure(Paths.statusHost(host));
+    curator.create().forPath(Paths.statusHostLabels(host), Json.asBytes(labels));
+  }
+
+  private void awaitInitialized() throws Exception {
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return index.isInitialized() ? true : null;
+      }
+    });
+  }
+}
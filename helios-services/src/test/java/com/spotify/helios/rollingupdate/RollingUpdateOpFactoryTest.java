@@ -21,6 +21,7 @@
 
 package com.spotify.helios.rollingupdate;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -30,6 +31,7 @@ import com.spotify.helios.common.descriptors.DeploymentGroupStatus;
 import com.spotify.helios.common.descriptors.DeploymentGroupTasks;
 import com.spotify.helios.common.descriptors.RolloutOptions;
 import com.spotify.helios.common.descriptors.RolloutTask;
+import com.spotify.helios.servicescommon.coordination.Check;
 import com.spotify.helios.servicescommon.coordination.Delete;
 import com.spotify.helios.servicescommon.coordination.SetData;
 import com.spotify.helios.servicescommon.coordination.ZooKeeperOperation;
@@ -43,6 +45,8 @@ import java.util.Map;
 import static com.spotify.helios.rollingupdate.DeploymentGroupEventFactory.RollingUpdateReason.HOSTS_CHANGED;
 import static com.spotify.helios.rollingupdate.DeploymentGroupEventFactory.RollingUpdateReason.MANUAL;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
@@ -330,4 +334,162 @@ public class RollingUpdateOpFactoryTest {
     assertEquals(0, op.operations().size());
     assertEquals(0, op.events().size());
   }
+
+  @Test
+  public void testNextTaskContinuesWithOtherHosts() {
+    final DeploymentGroupTasks deploymentGroupTasks = DeploymentGroupTasks.newBuilder()
+        .setTaskIndex(0)
+        .setRolloutTasks(Lists.newArrayList(
+            RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "host1"),
+            RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "host2"),
+            RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "host1")))
+        .setDeploymentGroup(DEPLOYMENT_GROUP)
+        .build();
+
+    final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        deploymentGroupTasks, eventFactory);
+    final ZooKeeperOperation mockOp1 = mock(ZooKeeperOperation.class);
+    final RollingUpdateOp op1 = opFactory.nextTask(Lists.newArrayList(mockOp1));
+
+    // The next task is on another host, so it can be processed in the same step
+    final RollingUpdateOpFactory next = op1.next();
+    assertNotNull(next);
+    assertEquals(deploymentGroupTasks.getRolloutTasks().get(1), next.currentTask());
+
+    final ZooKeeperOperation mockOp2 = mock(ZooKeeperOperation.class);
+    final RollingUpdateOp op2 = next.nextTask(Lists.newArrayList(mockOp2));
+
+    // The op for the second task commits both tasks and advances the task index past both
+    assertEquals(
+        ImmutableSet.of(
+            mockOp1,
+            mockOp2,
+            new SetData("/status/deployment-group-tasks/my_group",
+                        deploymentGroupTasks.toBuilder()
+                            .setTaskIndex(2)
+                            .build()
+                            .toJsonBytes())),
+        ImmutableSet.copyOf(op2.operations()));
+    assertEquals(2, op2.events().size());
+
+    // The third task is on a host with uncommitted operations and has to wait for the commit
+    assertNull(op2.next());
+  }
+
+  @Test
+  public void testNextTaskStopsAtHostWithPendingOps() {
+    final DeploymentGroupTasks deploymentGroupTasks = DeploymentGroupTasks.newBuilder()
+        .setTaskIndex(0)
+        .setRolloutTasks(Lists.newArrayList(
+            RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "host1"),
+            RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "host1")))
+        .setDeploymentGroup(DEPLOYMENT_GROUP)
+        .build();
+
+    final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        deploymentGroupTasks, eventFactory);
+
+    assertNull(opFactory.nextTask(Lists.newArrayList(mock(ZooKeeperOperation.class))).next());
+    // A task without operations does not hold back tasks on the same host
+    assertNotNull(opFactory.nextTask().next());
+  }
+
+  @Test
+  public void testYieldAfterContinuing() {
+    final DeploymentGroupTasks deploymentGroupTasks = DeploymentGroupTasks.newBuilder()
+        .setTaskIndex(0)
+        .setRolloutTasks(Lists.newArrayList(
+            RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "host1"),
+            RolloutTask.of(RolloutTask.Action.AWAIT_RUNNING, "host2")))
+        .setDeploymentGroup(DEPLOYMENT_GROUP)
+        .build();
+
+    final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        deploymentGroupTasks, eventFactory);
+    final RollingUpdateOp op = opFactory.nextTask().next().yield();
+
+    // Yielding on the second task still commits the progress made on the first one
+    assertEquals(
+        ImmutableList.of(
+            new SetData("/status/deployment-group-tasks/my_group",
+                        deploymentGroupTasks.toBuilder()
+                            .setTaskIndex(1)
+                            .build()
+                            .toJsonBytes())),
+        op.operations());
+    assertEquals(0, op.events().size());
+    assertNull(op.next());
+  }
+
+  @Test
+  public void testStartWithPlan() {
+    final DeploymentGroupTasks deploymentGroupTasks = DeploymentGroupTasks.newBuilder()
+        .setTaskIndex(0)
+        .setRolloutTasks(Lists.newArrayList(
+            RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "host1"),
+            RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "host1")))
+        .setDeploymentGroup(DEPLOYMENT_GROUP)
+        .setPlan("plan", 2)
+        .build();
+
+    final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        deploymentGroupTasks, eventFactory);
+    final RollingUpdateOp op = opFactory.start(DEPLOYMENT_GROUP, MANUAL);
+
+    // Only the cursor is written, after checking that the plan is still there
+    assertEquals(
+        ImmutableSet.of(
+            new SetData("/status/deployment-group-tasks/my_group", DeploymentGroupTasks.newBuilder()
+                .setTaskIndex(0)
+                .setDeploymentGroup(DEPLOYMENT_GROUP)
+                .setPlan("plan", 2)
+                .build()
+                .toJsonBytes()),
+            new Check("/status/deployment-group-plans/my_group/plan-0"),
+            new Check("/status/deployment-group-plans/my_group/plan-1"),
+            new SetData("/status/deployment-groups/my_group", DeploymentGroupStatus.newBuilder()
+                .setState(DeploymentGroupStatus.State.ROLLING_OUT)
+                .build()
+                .toJsonBytes())),
+        ImmutableSet.copyOf(op.operations()));
+  }
+
+  @Test
+  public void testNextTaskWithPlan() {
+    final DeploymentGroupTasks deploymentGroupTasks = DeploymentGroupTasks.newBuilder()
+        .setTaskIndex(0)
+        .setRolloutTasks(Lists.newArrayList(
+            RolloutTask.of(RolloutTask.Action.UNDEPLOY_OLD_JOBS, "host1"),
+            RolloutTask.of(RolloutTask.Action.DEPLOY_NEW_JOB, "host1")))
+        .setDeploymentGroup(DEPLOYMENT_GROUP)
+        .setPlan("plan", 1)
+        .build();
+
+    final RollingUpdateOpFactory opFactory = new RollingUpdateOpFactory(
+        deploymentGroupTasks, eventFactory);
+    final RollingUpdateOp op = opFactory.nextTask();
+
+    // Advancing only rewrites the cursor, not the rollout tasks
+    assertEquals(
+        ImmutableList.of(
+            new SetData("/status/deployment-group-tasks/my_group", DeploymentGroupTasks.newBuilder()
+                .setTaskIndex(1)
+                .setDeploymentGroup(DEPLOYMENT_GROUP)
+                .setPlan("plan", 1)
+                .build()
+                .toJsonBytes())),
+        op.operations());
+
+    // Finishing the rollout deletes the plan along with the cursor
+    final RollingUpdateOp done = op.next().nextTask();
+    assertEquals(
+        ImmutableSet.of(
+            new Delete("/status/deployment-group-tasks/my_group"),
+            new Delete("/status/deployment-group-plans/my_group/plan-0"),
+            new SetData("/status/deployment-groups/my_group", DeploymentGroupStatus.newBuilder()
+                .setState(DeploymentGroupStatus.State.DONE)
+                .build()
+                .toJsonBytes())),
+        ImmutableSet.copyOf(done.operations()));
+  }
 }
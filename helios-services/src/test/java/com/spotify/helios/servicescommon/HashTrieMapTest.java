@@ -0,0 +1,135 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Maps;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.helios.common.Json;
+
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class HashTrieMapTest {
+
+  /**
+   * A key with a configurable hash code, to force collisions.
+   */
+  private static class Key {
+
+    private final String name;
+    private final int hash;
+
+    Key(final String name, final int hash) {
+      this.name = name;
+      this.hash = hash;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+      return o instanceof Key && ((Key) o).name.equals(name);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+
+  @Test
+  public void testMatchesHashMap() throws Exception {
+    final Random random = new Random(4711);
+    final Map<Integer, Integer> expected = Maps.newHashMap();
+    HashTrieMap<Integer, Integer> map = HashTrieMap.of();
+    for (int i = 0; i < 20000; i++) {
+      final Integer key = random.nextInt(2000) * 65537;
+      if (random.nextInt(3) == 0) {
+        expected.remove(key);
+        map = map.minus(key);
+      } else {
+        final Integer value = random.nextInt();
+        expected.put(key, value);
+        map = map.plus(key, value);
+      }
+      assertEquals(expected.size(), map.size());
+      assertEquals(expected.get(key), map.get(key));
+    }
+    assertEquals(expected, map);
+    assertEquals(map, expected);
+    assertEquals(expected.hashCode(), map.hashCode());
+    assertEquals(expected.entrySet(), map.entrySet());
+  }
+
+  @Test
+  public void testCollisions() throws Exception {
+    final Key foo = new Key("foo", 17);
+    final Key bar = new Key("bar", 17);
+    final Key baz = new Key("baz", 17);
+
+    final HashTrieMap<Key, String> map = HashTrieMap.<Key, String>of()
+        .plus(foo, "foo").plus(bar, "bar").plus(baz, "baz");
+    assertEquals(3, map.size());
+    assertEquals("foo", map.get(foo));
+    assertEquals("bar", map.get(bar));
+    assertEquals("baz", map.get(baz));
+    assertNull(map.get(new Key("quux", 17)));
+
+    final HashTrieMap<Key, String> removed = map.minus(bar);
+    assertEquals(ImmutableMap.of(foo, "foo", baz, "baz"), removed);
+    assertEquals(ImmutableMap.of(baz, "baz"), removed.minus(foo));
+    assertTrue(removed.minus(foo).minus(baz).isEmpty());
+  }
+
+  @Test
+  public void testUnchangedReturnsSameMap() throws Exception {
+    final String value = "bar";
+    final HashTrieMap<String, String> map = HashTrieMap.<String, String>of().plus("foo", value);
+    assertSame(map, map.plus("foo", value));
+    assertSame(map, map.minus("baz"));
+    assertSame(map, HashTrieMap.copyOf(map));
+    assertFalse(map.equals(map.plus("foo", "baz")));
+    assertTrue(map.equals(map.plus("baz", "quux").minus("baz")));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnsupportedMutation() throws Exception {
+    HashTrieMap.<String, String>of().plus("foo", "bar").put("baz", "quux");
+  }
+
+  @Test
+  public void testJson() throws Exception {
+    final HashTrieMap<String, Integer> map = HashTrieMap.<String, Integer>of()
+        .plus("foo", 17).plus("bar", 4711);
+    final Map<String, Integer> parsed = Json.read(Json.asBytes(map),
+                                                  new TypeReference<Map<String, Integer>>() {});
+    assertEquals(map, parsed);
+  }
+}
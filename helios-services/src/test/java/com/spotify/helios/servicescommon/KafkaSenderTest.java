@@ -0,0 +1,111 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import com.google.common.base.Optional;
+
+import com.spotify.helios.servicescommon.statistics.KafkaMetrics;
+
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class KafkaSenderTest {
+
+  private static final String TOPIC = "topic";
+
+  @SuppressWarnings("unchecked")
+  private final KafkaProducer<String, byte[]> producer = mock(KafkaProducer.class);
+  private final KafkaMetrics metrics = mock(KafkaMetrics.class);
+  private final CountDownLatch unblock = new CountDownLatch(1);
+  private final CountDownLatch sending = new CountDownLatch(1);
+
+  private KafkaSender sender;
+
+  @Before
+  @SuppressWarnings("unchecked")
+  public void setUp() throws Exception {
+    // Simulate a producer that is stuck, e.g. fetching metadata from an unreachable cluster
+    when(producer.send(any(ProducerRecord.class), any(Callback.class))).thenAnswer(
+        new Answer<Object>() {
+          @Override
+          public Object answer(final InvocationOnMock invocation) throws Throwable {
+            sending.countDown();
+            unblock.await();
+            ((Callback) invocation.getArguments()[1]).onCompletion(null, null);
+            return null;
+          }
+        });
+    sender = new KafkaSender(Optional.of(producer), metrics, 2);
+    sender.startAsync().awaitRunning();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    unblock.countDown();
+    sender.stopAsync().awaitTerminated();
+  }
+
+  @Test
+  public void testSendDoesNotBlockAndDropsOldest() throws Exception {
+    sender.send(KafkaRecord.of(TOPIC, new byte[]{0}));
+    assertTrue(sending.await(10, TimeUnit.SECONDS));
+
+    // The background thread is now stuck in the producer. Sending must still return immediately
+    // and only keep the newest records once the queue is full.
+    for (int i = 1; i <= 5; i++) {
+      sender.send(KafkaRecord.of(TOPIC, new byte[]{(byte) i}));
+    }
+    assertEquals(2, sender.queueSize());
+    verify(metrics, times(6)).kafkaRecordQueued();
+    verify(metrics, times(3)).kafkaRecordDropped();
+
+    unblock.countDown();
+    @SuppressWarnings("unchecked")
+    final ArgumentCaptor<ProducerRecord<String, byte[]>> captor =
+        ArgumentCaptor.forClass((Class) ProducerRecord.class);
+    verify(producer, timeout(10000).times(3)).send(captor.capture(), any(Callback.class));
+    assertEquals(0, captor.getAllValues().get(0).value()[0]);
+    assertEquals(4, captor.getAllValues().get(1).value()[0]);
+    assertEquals(5, captor.getAllValues().get(2).value()[0]);
+    verify(metrics, timeout(10000).times(3)).kafkaRecordSent(anyLong());
+  }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import com.google.common.base.Suppliers;
+import com.google.common.collect.ImmutableMap;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.spotify.helios.common.Json;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class PersistentAtomicReferenceTest {
+
+  private static final TypeReference<Map<String, Integer>> TYPE =
+      new TypeReference<Map<String, Integer>>() {};
+
+  @Rule
+  public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testSetWritesFile() throws Exception {
+    final Path file = temporaryFolder.getRoot().toPath().resolve("state.json");
+    final PersistentAtomicReference<Map<String, Integer>> ref = create(file, 0, true);
+
+    ref.set(ImmutableMap.of("foo", 17));
+    assertEquals(ImmutableMap.of("foo", 17), read(file));
+    assertEquals(ImmutableMap.of("foo", 17), create(file, 0, false).get());
+  }
+
+  @Test
+  public void testWriteBehind() throws Exception {
+    final Path file = temporaryFolder.getRoot().toPath().resolve("state.json");
+    final PersistentAtomicReference<Map<String, Integer>> ref = create(file, 60000, false);
+
+    for (int i = 0; i < 10; i++) {
+      ref.set(ImmutableMap.of("foo", i));
+    }
+    assertEquals(ImmutableMap.of("foo", 9), ref.get());
+    assertFalse(Files.exists(file));
+
+    ref.flush();
+    assertEquals(ImmutableMap.of("foo", 9), read(file));
+  }
+
+  @Test
+  public void testWriteBehindWritesEventually() throws Exception {
+    final Path file = temporaryFolder.getRoot().toPath().resolve("state.json");
+    final PersistentAtomicReference<Map<String, Integer>> ref = create(file, 10, false);
+
+    ref.set(ImmutableMap.of("foo", 17));
+    while (!Files.exists(file)) {
+      Thread.sleep(10);
+    }
+    assertEquals(ImmutableMap.of("foo", 17), read(file));
+  }
+
+  private static PersistentAtomicReference<Map<String, Integer>> create(
+      final Path file, final long writeDelayMillis, final boolean fsync) throws Exception {
+    return PersistentAtomicReference.create(
+        file, TYPE, Suppliers.ofInstance(Collections.<String, Integer>emptyMap()),
+        writeDelayMillis, fsync);
+  }
+
+  private static Map<String, Integer> read(final Path file) throws Exception {
+    return Json.read(Files.readAllBytes(file), TYPE);
+  }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SharedReactorTest {
+
+  private final SharedReactorFactory factory = new SharedReactorFactory("test-reactor");
+
+  @After
+  public void tearDown() {
+    factory.close();
+  }
+
+  @Test
+  public void testSignalsAreCollapsedAndSerialized() throws Exception {
+    final AtomicInteger concurrent = new AtomicInteger();
+    final AtomicInteger maxConcurrent = new AtomicInteger();
+    final AtomicInteger runs = new AtomicInteger();
+    final CountDownLatch blocked = new CountDownLatch(1);
+    final CountDownLatch unblock = new CountDownLatch(1);
+    final Semaphore done = new Semaphore(0);
+
+    final Reactor reactor = factory.create("test", new Reactor.Callback() {
+      @Override
+      public void run(final boolean timeout) throws InterruptedException {
+        maxConcurrent.set(Math.max(maxConcurrent.get(), concurrent.incrementAndGet()));
+        if (runs.incrementAndGet() == 1) {
+          blocked.countDown();
+          unblock.await();
+        }
+        concurrent.decrementAndGet();
+        done.release();
+      }
+    }, 0);
+    reactor.startAsync().awaitRunning();
+
+    reactor.signal();
+    assertTrue(blocked.await(10, SECONDS));
+    for (int i = 0; i < 10; i++) {
+      reactor.signal();
+    }
+    unblock.countDown();
+
+    // One run for the first signal and a single collapsed run for the rest
+    assertTrue(done.tryAcquire(2, 10, SECONDS));
+    assertFalse(done.tryAcquire(500, MILLISECONDS));
+    assertEquals(2, runs.get());
+    assertEquals(1, maxConcurrent.get());
+
+    reactor.stopAsync().awaitTerminated(10, SECONDS);
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    final Semaphore timeouts = new Semaphore(0);
+    final Reactor reactor = factory.create("test", new Reactor.Callback() {
+      @Override
+      public void run(final boolean timeout) {
+        if (timeout) {
+          timeouts.release();
+        }
+      }
+    }, 10);
+    reactor.startAsync().awaitRunning();
+
+    assertTrue(timeouts.tryAcquire(3, 10, SECONDS));
+
+    reactor.stopAsync().awaitTerminated(10, SECONDS);
+  }
+
+  @Test
+  public void testStopInterruptsCallback() throws Exception {
+    final CountDownLatch running = new CountDownLatch(1);
+    final CountDownLatch interrupted = new CountDownLatch(1);
+    final Reactor reactor = factory.create("test", new Reactor.Callback() {
+      @Override
+      public void run(final boolean timeout) {
+        running.countDown();
+        try {
+          Thread.sleep(SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+          interrupted.countDown();
+        }
+      }
+    }, 0);
+    reactor.startAsync().awaitRunning();
+    reactor.signal();
+    assertTrue(running.await(10, SECONDS));
+
+    reactor.stopAsync().awaitTerminated(10, SECONDS);
+    assertEquals(0, interrupted.getCount());
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import com.spotify.helios.ZooKeeperTestManager;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+
+import org.apache.zookeeper.KeeperException.NoNodeException;
+import org.apache.zookeeper.data.Stat;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
+
+public class DefaultZooKeeperClientTest {
+
+  private ZooKeeperTestManager zk;
+  private ZooKeeperClient client;
+
+  @Before
+  public void setup() throws Exception {
+    zk = new ZooKeeperTestingServerManager();
+    client = new DefaultZooKeeperClient(zk.curator());
+    client.ensurePath("/parent");
+    client.createAndSetData("/parent/foo", "foo".getBytes(UTF_8));
+    client.createAndSetData("/parent/bar", "bar".getBytes(UTF_8));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    zk.close();
+  }
+
+  @Test
+  public void testAsyncReads() throws Exception {
+    final ListenableFuture<byte[]> data = client.getDataAsync("/parent/foo");
+    final ListenableFuture<List<String>> children = client.getChildrenAsync("/parent");
+    final ListenableFuture<Stat> exists = client.existsAsync("/parent");
+    final ListenableFuture<Stat> missing =
+        client.existsAsync("/missing");
+
+    assertArrayEquals("foo".getBytes(UTF_8), data.get());
+    assertThat(children.get(), containsInAnyOrder("foo", "bar"));
+    assertNotNull(exists.get());
+    assertNull(missing.get());
+  }
+
+  @Test
+  public void testAsyncReadOfMissingNodeFails() throws Exception {
+    try {
+      client.getDataAsync("/missing").get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(NoNodeException.class));
+    }
+    try {
+      client.getChildrenAsync("/missing").get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(e.getCause(), instanceOf(NoNodeException.class));
+    }
+  }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.spotify.helios.Polling;
+import com.spotify.helios.ZooKeeperTestManager;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class JobDefinitionCacheTest {
+
+  private static final Job FOO = job("foo");
+  private static final Job BAR = job("bar");
+  private static final Job BAZ = job("baz");
+  private static final JobId MISSING = job("missing").getId();
+
+  private ZooKeeperTestManager zk;
+  private CuratorFramework curator;
+  private ZooKeeperClient client;
+  private ZooKeeperClientProvider provider;
+  private JobDefinitionCache cache;
+
+  @Before
+  public void setup() throws Exception {
+    zk = new ZooKeeperTestingServerManager();
+    zk.ensure(Paths.configJobs());
+    curator = zk.curator();
+    client = spy(new DefaultZooKeeperClient(curator));
+    provider = new ZooKeeperClientProvider(client, ZooKeeperModelReporter.noop());
+    addJob(FOO);
+    addJob(BAR);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    if (cache != null) {
+      cache.stopAsync().awaitTerminated();
+    }
+    zk.close();
+  }
+
+  @Test
+  public void verifyJobsAreOnlyReadOnce() throws Exception {
+    cache = new JobDefinitionCache(provider);
+
+    assertEquals(FOO, cache.getJob(FOO.getId()));
+    assertEquals(FOO, cache.getJob(FOO.getId()));
+    assertEquals(FOO, cache.getIfPresent(FOO.getId()));
+    verify(client, times(1)).getData(Paths.configJob(FOO.getId()));
+
+    // Jobs that do not exist are looked for every time
+    assertNull(cache.getJob(MISSING));
+    assertNull(cache.getIfPresent(MISSING));
+    assertNull(cache.getJobs());
+  }
+
+  @Test
+  public void verifyWatchingCacheServesAllJobsFromMemory() throws Exception {
+    startWatching();
+
+    assertTrue(cache.isSynced());
+    assertEquals(ImmutableMap.of(FOO.getId(), FOO, BAR.getId(), BAR), cache.getJobs());
+    assertEquals(BAR, cache.getJob(BAR.getId()));
+    assertNull(cache.getJob(MISSING));
+    verify(client, never()).getData(anyString());
+  }
+
+  @Test
+  public void verifyWatchingCacheFollowsChanges() throws Exception {
+    startWatching();
+
+    addJob(BAZ);
+    curator.delete().forPath(Paths.configJob(FOO.getId()));
+
+    final Map<JobId, Job> jobs = Polling.await(1, MINUTES, new Callable<Map<JobId, Job>>() {
+      @Override
+      public Map<JobId, Job> call() throws Exception {
+        final Map<JobId, Job> jobs = cache.getJobs();
+        return jobs.size() == 2 && jobs.containsKey(BAZ.getId()) ? jobs : null;
+      }
+    });
+    assertFalse(jobs.containsKey(FOO.getId()));
+    assertNull(cache.getJob(FOO.getId()));
+    assertEquals(BAZ, cache.getJob(BAZ.getId()));
+  }
+
+  @Test
+  public void verifyPutAndInvalidateApplyRightAway() throws Exception {
+    startWatching();
+
+    addJob(BAZ);
+    cache.put(BAZ);
+    assertEquals(BAZ, cache.getJob(BAZ.getId()));
+
+    curator.delete().forPath(Paths.configJob(FOO.getId()));
+    cache.invalidate(FOO.getId());
+    assertNull(cache.getJob(FOO.getId()));
+    assertFalse(cache.getJobs().containsKey(FOO.getId()));
+  }
+
+  @Test
+  public void verifyResyncAfterReconnect() throws Exception {
+    startWatching();
+
+    zk.stop();
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.isSynced() ? null : true;
+      }
+    });
+
+    zk.start();
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.isSynced() ? true : null;
+      }
+    });
+    assertEquals(ImmutableMap.of(FOO.getId(), FOO, BAR.getId(), BAR), cache.getJobs());
+
+    // The reloaded cache keeps following changes
+    addJob(BAZ);
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.getJobs().get(BAZ.getId());
+      }
+    });
+  }
+
+  private void startWatching() throws Exception {
+    cache = new JobDefinitionCache(provider, curator);
+    cache.startAsync().awaitRunning();
+    cache.awaitInitialized();
+  }
+
+  private void addJob(final Job job) throws Exception {
+    curator.create().forPath(Paths.configJob(job.getId()), job.toJsonBytes());
+  }
+
+  private static Job job(final String name) {
+    return Job.newBuilder()
+        .setName(name)
+        .setVersion("1")
+        .setImage("busybox")
+        .build();
+  }
+}
@@ -32,6 +32,7 @@ import com.spotify.helios.Polling;
 import com.spotify.helios.ZooKeeperTestManager;
 import com.spotify.helios.ZooKeeperTestingServerManager;
 import com.spotify.helios.common.Json;
+import com.spotify.helios.servicescommon.statistics.ZooKeeperMetrics;
 
 import org.apache.commons.io.FileUtils;
 import org.apache.curator.framework.state.ConnectionState;
@@ -53,12 +54,15 @@ import java.util.concurrent.Callable;
 
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.apache.zookeeper.KeeperException.NoNodeException;
+import static org.hamcrest.Matchers.greaterThan;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.intThat;
 import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.reset;
 import static org.mockito.Mockito.timeout;
 import static org.mockito.Mockito.verify;
@@ -131,6 +135,7 @@ public class PersistentPathChildrenCacheTest {
 
   private PersistentPathChildrenCache.Listener listener =
       mock(PersistentPathChildrenCache.Listener.class);
+  private ZooKeeperMetrics metrics = mock(ZooKeeperMetrics.class);
 
   @Before
   public void setup() throws Exception {
@@ -182,6 +187,37 @@ public class PersistentPathChildrenCacheTest {
     assertTrue(cache.getNodes().isEmpty());
   }
 
+  @Test
+  public void verifyOnlyAddedNodesAreFetched() throws Exception {
+    stopCache();
+    final Set<String> paths = ImmutableSet.of("/foos/foo1", "/foos/foo2", "/foos/foo3");
+    for (String path : paths) {
+      ensure(path, new DataPojo(path));
+    }
+    startCache();
+
+    Polling.await(5, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.getNodes().keySet().equals(paths) ? true : null;
+      }
+    });
+    reset(metrics);
+
+    final DataPojo created = new DataPojo("foo4");
+    ensure("/foos/foo4", created);
+    Polling.await(5, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return cache.getNodes().size() == 4 ? true : null;
+      }
+    });
+
+    assertEquals(created, cache.getNodes().get("/foos/foo4"));
+    verify(metrics).pathChildrenCacheNodesFetched(1);
+    verify(metrics, never()).pathChildrenCacheNodesFetched(intThat(greaterThan(1)));
+  }
+
   @Test
   public void verifyNodesAreRetainedWhenZKGoesDown() throws Exception {
     // Create two nodes
@@ -271,7 +307,8 @@ public class PersistentPathChildrenCacheTest {
 
   private void startCache() throws IOException, InterruptedException {
     reset(listener);
-    cache = new PersistentPathChildrenCache<>(zk.curator(), PATH, null, stateFile, Json.type(DataPojo.class));
+    cache = new PersistentPathChildrenCache<>(zk.curator(), PATH, null, stateFile,
+                                              Json.type(DataPojo.class), metrics);
     cache.addListener(listener);
     cache.startAsync().awaitRunning();
   }
@@ -0,0 +1,93 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.base.Stopwatch;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ResyncThrottleTest {
+
+  @Test
+  public void testNoDelayRunsImmediately() throws Exception {
+    final ResyncThrottle sut = new ResyncThrottle(0, 1000);
+    final CountDownLatch latch = new CountDownLatch(1);
+    sut.schedule(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+    assertEquals(0, latch.getCount());
+  }
+
+  @Test
+  public void testDelayIsBounded() throws Exception {
+    final ResyncThrottle sut = new ResyncThrottle(200, 1000);
+    final CountDownLatch latch = new CountDownLatch(10);
+    for (int i = 0; i < 10; i++) {
+      sut.schedule(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      });
+    }
+    assertTrue(latch.await(5, SECONDS));
+  }
+
+  @Test
+  public void testOperationsAreRateLimited() throws Exception {
+    final ResyncThrottle sut = new ResyncThrottle(0, 10);
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    sut.acquire(5);
+    sut.acquire(5);
+    sut.acquire(1);
+    // The second and third acquisitions wait for the first ten permits to be paid for
+    assertTrue(stopwatch.elapsed(MILLISECONDS) >= 900);
+  }
+
+  @Test
+  public void testNoopNeitherDelaysNorLimits() throws Exception {
+    final ResyncThrottle sut = ResyncThrottle.noop();
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Stopwatch stopwatch = Stopwatch.createStarted();
+    sut.schedule(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+    for (int i = 0; i < 10; i++) {
+      sut.acquire(1000);
+    }
+    assertEquals(0, latch.getCount());
+    assertTrue(stopwatch.elapsed(MILLISECONDS) < 1000);
+  }
+}
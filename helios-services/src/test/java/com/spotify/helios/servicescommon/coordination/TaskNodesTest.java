@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.spotify.helios.common.Json;
+import com.spotify.helios.common.descriptors.Goal;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.descriptors.Task;
+import com.spotify.helios.common.descriptors.TaskStatus;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TaskNodesTest {
+
+  private static final Job JOB = Job.newBuilder()
+      .setName("foo")
+      .setVersion("1")
+      .setImage("busybox")
+      .setEnv(ImmutableMap.of("FOO", "BAR"))
+      .build();
+
+  private static final Task TASK = new Task(JOB, Goal.START, "user", "master", "group");
+
+  private static final TaskStatus STATUS = TaskStatus.newBuilder()
+      .setJob(JOB)
+      .setGoal(Goal.START)
+      .setState(TaskStatus.State.RUNNING)
+      .setContainerId("container")
+      .build();
+
+  private static final TaskNodes.JobResolver JOBS = new TaskNodes.JobResolver() {
+    @Override
+    public Job getJob(final JobId id) {
+      return id.equals(JOB.getId()) ? JOB : null;
+    }
+  };
+
+  private static final TaskNodes.JobResolver NO_JOBS = new TaskNodes.JobResolver() {
+    @Override
+    public Job getJob(final JobId id) {
+      return null;
+    }
+  };
+
+  @Test
+  public void testNotNormalized() throws Exception {
+    assertArrayEquals(TASK.toJsonBytes(), TaskNodes.toJsonBytes(TASK, false));
+    assertArrayEquals(STATUS.toJsonBytes(), TaskNodes.toJsonBytes(STATUS, false));
+    assertEquals(TASK, TaskNodes.parseTask(TASK.toJsonBytes(), NO_JOBS));
+    assertEquals(STATUS, TaskNodes.parseTaskStatus(STATUS.toJsonBytes(), NO_JOBS));
+  }
+
+  @Test
+  public void testNormalizedTask() throws Exception {
+    final byte[] data = TaskNodes.toJsonBytes(TASK, true);
+    assertFalse(Json.readTree(data).has("job"));
+    assertEquals(JOB.getId().toString(), Json.readTree(data).get("jobId").asText());
+    assertEquals(TASK, TaskNodes.parseTask(data, JOBS));
+  }
+
+  @Test
+  public void testNormalizedTaskWithIdOnly() throws Exception {
+    final Task task = TaskNodes.parseTask(TaskNodes.toJsonBytes(TASK, true), TaskNodes.ID_ONLY);
+    assertEquals(JOB.getId(), task.getJob().getId());
+    assertNull(task.getJob().getImage());
+    assertEquals(TASK.getGoal(), task.getGoal());
+    assertEquals(TASK.getDeployerUser(), task.getDeployerUser());
+    assertEquals(TASK.getDeploymentGroupName(), task.getDeploymentGroupName());
+  }
+
+  @Test(expected = IOException.class)
+  public void testNormalizedTaskWithoutJob() throws Exception {
+    TaskNodes.parseTask(TaskNodes.toJsonBytes(TASK, true), NO_JOBS);
+  }
+
+  @Test
+  public void testNormalizedStatus() throws Exception {
+    final byte[] data = TaskNodes.toJsonBytes(STATUS, true);
+    assertFalse(Json.readTree(data).has("job"));
+    assertTrue(data.length < STATUS.toJsonBytes().length);
+    assertEquals(STATUS, TaskNodes.parseTaskStatus(data, JOBS));
+  }
+
+  @Test
+  public void testNormalizedStatusWithoutJob() throws Exception {
+    final TaskStatus status = TaskNodes.parseTaskStatus(TaskNodes.toJsonBytes(STATUS, true),
+                                                        NO_JOBS);
+    assertEquals(JOB.getId(), status.getJob().getId());
+    assertEquals(TaskNodes.jobIdOnly(JOB.getId()), status.getJob());
+    assertEquals(STATUS.getContainerId(), status.getContainerId());
+    assertEquals(STATUS.getState(), status.getState());
+  }
+}
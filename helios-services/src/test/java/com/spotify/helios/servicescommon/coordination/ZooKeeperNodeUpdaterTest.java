@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.spotify.helios.ZooKeeperTestManager;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+import com.spotify.helios.agent.Clock;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.joda.time.Instant;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ZooKeeperNodeUpdaterTest {
+
+  private static final String PARENT = "/status";
+  private static final String PATH = PARENT + "/node";
+  private static final long KEEP_ALIVE_MILLIS = 10000;
+
+  private final Clock clock = mock(Clock.class);
+
+  private ZooKeeperTestManager zk;
+  private CuratorFramework curator;
+  private ZooKeeperNodeUpdater sut;
+
+  @Before
+  public void setup() throws Exception {
+    zk = new ZooKeeperTestingServerManager();
+    zk.ensure(PARENT);
+    curator = zk.curator();
+    setTime(0);
+    sut = new ZooKeeperNodeUpdater(PATH, new DefaultZooKeeperClient(curator), clock,
+                                   KEEP_ALIVE_MILLIS);
+  }
+
+  @After
+  public void teardown() throws Exception {
+    zk.close();
+  }
+
+  @Test
+  public void testOnlyWritesChanges() throws Exception {
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 0);
+
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 0);
+
+    assertTrue(sut.update(bytes("bar")));
+    assertData("bar", 1);
+  }
+
+  @Test
+  public void testKeepAlive() throws Exception {
+    assertTrue(sut.update(bytes("foo")));
+    setTime(KEEP_ALIVE_MILLIS - 1);
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 0);
+
+    setTime(KEEP_ALIVE_MILLIS);
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 1);
+  }
+
+  @Test
+  public void testOnlyWritesKeyChanges() throws Exception {
+    assertTrue(sut.update(bytes("foo 1"), bytes("foo")));
+    assertTrue(sut.update(bytes("foo 2"), bytes("foo")));
+    assertData("foo 1", 0);
+
+    assertTrue(sut.update(bytes("bar 3"), bytes("bar")));
+    assertData("bar 3", 1);
+
+    setTime(KEEP_ALIVE_MILLIS);
+    assertTrue(sut.update(bytes("bar 4"), bytes("bar")));
+    assertData("bar 4", 2);
+  }
+
+  @Test
+  public void testRewritesNodeChangedByOthers() throws Exception {
+    assertTrue(sut.update(bytes("foo")));
+    curator.setData().forPath(PATH, bytes("baz"));
+    assertTrue(sut.update(bytes("bar")));
+    assertData("bar", 2);
+
+    curator.delete().forPath(PATH);
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 0);
+  }
+
+  @Test
+  public void testMissingParent() throws Exception {
+    curator.delete().forPath(PARENT);
+    assertFalse(sut.update(bytes("foo")));
+
+    // The failed update is retried even though the data is unchanged
+    zk.ensure(PARENT);
+    assertTrue(sut.update(bytes("foo")));
+    assertData("foo", 0);
+  }
+
+  private void setTime(final long millis) {
+    when(clock.now()).thenReturn(new Instant(millis));
+  }
+
+  private void assertData(final String data, final int version) throws Exception {
+    assertArrayEquals(bytes(data), curator.getData().forPath(PATH));
+    assertEquals(version, curator.checkExists().forPath(PATH).getVersion());
+  }
+
+  private static byte[] bytes(final String s) {
+    return s.getBytes(UTF_8);
+  }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.servicescommon.coordination;
+
+import com.spotify.helios.Polling;
+import com.spotify.helios.ZooKeeperTestManager;
+import com.spotify.helios.ZooKeeperTestingServerManager;
+
+import org.apache.curator.framework.CuratorFramework;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ZooKeeperStateMirrorTest {
+
+  private static final String ROOT = "/mirrored";
+
+  private ZooKeeperTestManager zk;
+  private CuratorFramework curator;
+  private ZooKeeperStateMirror mirror;
+
+  @Before
+  public void setup() throws Exception {
+    zk = new ZooKeeperTestingServerManager();
+    zk.ensure(ROOT);
+    curator = zk.curator();
+    curator.create().forPath(ROOT + "/foo", "foo".getBytes(UTF_8));
+    curator.create().forPath(ROOT + "/bar", "bar".getBytes(UTF_8));
+    curator.create().forPath("/unmirrored", "baz".getBytes(UTF_8));
+
+    mirror = new ZooKeeperStateMirror(curator, ROOT);
+    mirror.startAsync().awaitRunning();
+    mirror.awaitInitialized();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    mirror.stopAsync().awaitTerminated();
+    zk.close();
+  }
+
+  @Test
+  public void verifyInitialSync() throws Exception {
+    assertTrue(mirror.isSynced());
+    assertTrue(mirror.covers(ROOT + "/foo"));
+    assertFalse(mirror.covers("/unmirrored"));
+    assertThat(mirror.getChildren(ROOT), containsInAnyOrder("foo", "bar"));
+    assertArrayEquals("foo".getBytes(UTF_8), mirror.getNode(ROOT + "/foo").getBytes());
+    assertNull(mirror.getNode(ROOT + "/missing"));
+  }
+
+  @Test
+  public void verifyMirrorFollowsChanges() throws Exception {
+    curator.setData().forPath(ROOT + "/foo", "updated".getBytes(UTF_8));
+    curator.delete().forPath(ROOT + "/bar");
+    curator.create().forPath(ROOT + "/quux", "quux".getBytes(UTF_8));
+
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        final Node foo = mirror.getNode(ROOT + "/foo");
+        final boolean updated = Arrays.equals("updated".getBytes(UTF_8), foo.getBytes());
+        final boolean removed = mirror.getNode(ROOT + "/bar") == null;
+        final boolean added = mirror.getNode(ROOT + "/quux") != null;
+        return (updated && removed && added) ? true : null;
+      }
+    });
+  }
+
+  @Test
+  public void verifyResyncAfterReconnect() throws Exception {
+    zk.stop();
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return mirror.isSynced() ? null : true;
+      }
+    });
+
+    zk.start();
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return mirror.isSynced() ? true : null;
+      }
+    });
+    assertThat(mirror.getChildren(ROOT), containsInAnyOrder("foo", "bar"));
+    assertArrayEquals("foo".getBytes(UTF_8), mirror.getNode(ROOT + "/foo").getBytes());
+
+    curator.create().forPath(ROOT + "/quux", "quux".getBytes(UTF_8));
+    Polling.await(1, MINUTES, new Callable<Object>() {
+      @Override
+      public Object call() throws Exception {
+        return mirror.getNode(ROOT + "/quux");
+      }
+    });
+  }
+
+  @Test
+  public void verifyClientFallsBackToZooKeeper() throws Exception {
+    final ZooKeeperClient client = new MirroredZooKeeperClient(
+        new DefaultZooKeeperClient(curator), mirror);
+
+    assertArrayEquals("foo".getBytes(UTF_8), client.getData(ROOT + "/foo"));
+    assertArrayEquals("baz".getBytes(UTF_8), client.getData("/unmirrored"));
+
+    // Nodes not (yet) in the mirror are read from zookeeper
+    client.createAndSetData(ROOT + "/new", "new".getBytes(UTF_8));
+    assertArrayEquals("new".getBytes(UTF_8), client.getData(ROOT + "/new"));
+  }
+}
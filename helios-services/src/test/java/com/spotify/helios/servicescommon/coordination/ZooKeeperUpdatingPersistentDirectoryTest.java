@@ -75,7 +75,8 @@ public class ZooKeeperUpdatingPersistentDirectoryTest {
   private void setupDirectory() throws IOException, InterruptedException {
     final DefaultZooKeeperClient client = new DefaultZooKeeperClient(zk.curator());
     final ZooKeeperClientProvider provider = new ZooKeeperClientProvider(client, noop());
-    sut = ZooKeeperUpdatingPersistentDirectory.create("test", provider, stateFile, PARENT_PATH);
+    sut = ZooKeeperUpdatingPersistentDirectory.create("test", provider, stateFile, PARENT_PATH,
+                                                      new ResyncThrottle(0, 1000));
     sut.startAsync();
   }
 
@@ -106,6 +107,35 @@ public class ZooKeeperUpdatingPersistentDirectoryTest {
     awaitNodeWithData(FOO_PATH, BAR1_DATA);
   }
 
+  @Test
+  public void verifyUpdatesNodeChangedByOthers() throws Exception {
+    sut.put(FOO_NODE, BAR1_DATA);
+    awaitNodeWithData(FOO_PATH, BAR1_DATA);
+
+    // The versioned write conflicts and the directory resyncs
+    zk.curator().setData().forPath(FOO_PATH, "other".getBytes());
+    sut.put(FOO_NODE, BAR2_DATA);
+    awaitNodeWithData(FOO_PATH, BAR2_DATA);
+  }
+
+  @Test
+  public void verifyWritesManyNodes() throws Exception {
+    // More nodes than fit in a single transaction
+    final int count = 250;
+    for (int i = 0; i < count; i++) {
+      sut.put("node-" + i, BAR1_DATA);
+    }
+    for (int i = 0; i < count; i++) {
+      awaitNodeWithData(ZKPaths.makePath(PARENT_PATH, "node-" + i), BAR1_DATA);
+    }
+    for (int i = 0; i < count; i++) {
+      sut.remove("node-" + i);
+    }
+    for (int i = 0; i < count; i++) {
+      awaitNoNode(ZKPaths.makePath(PARENT_PATH, "node-" + i));
+    }
+  }
+
   @Test
   public void verifyRemovesUndesiredNode() throws Exception {
     zk.ensure(FOO_PATH);
@@ -39,6 +39,7 @@ import com.spotify.helios.common.descriptors.HostInfo;
 import com.spotify.helios.common.descriptors.HostStatus;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -142,6 +143,11 @@ public class HostListCommand extends ControlCommand {
       }
     }
 
+    if (!json) {
+      // The table only shows counts, host info and labels
+      queryParams.put(StatusView.PARAM, StatusView.SUMMARY.toParam());
+    }
+
     final boolean full = options.getBoolean(fullArg.getDest());
     final boolean quiet = options.getBoolean(quietArg.getDest());
 
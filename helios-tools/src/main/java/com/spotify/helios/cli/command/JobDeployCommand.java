@@ -23,10 +23,13 @@ package com.spotify.helios.cli.command;
 
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import com.spotify.helios.client.HeliosClient;
 import com.spotify.helios.common.descriptors.Deployment;
 import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.protocol.BulkDeployResponse;
 import com.spotify.helios.common.protocol.JobDeployResponse;
 
 import net.sourceforge.argparse4j.inf.Argument;
@@ -36,6 +39,8 @@ import net.sourceforge.argparse4j.inf.Subparser;
 import java.io.BufferedReader;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 
 import static com.spotify.helios.common.descriptors.Goal.START;
@@ -96,22 +101,22 @@ public class JobDeployCommand extends WildcardJobCommand {
 
     final List<String> resolvedHosts = Lists.newArrayList();
     for (final String candidateHost : hosts) {
-      final String host = resolver.resolveName(candidateHost);
-      resolvedHosts.add(host);
-      if (!json) {
-        out.printf("%s: ", host);
-      }
-      final String token = options.getString(tokenArg.getDest());
-      final JobDeployResponse result = client.deploy(job, host, token).get();
+      resolvedHosts.add(resolver.resolveName(candidateHost));
+    }
+
+    final String token = options.getString(tokenArg.getDest());
+    final Map<String, JobDeployResponse> results = deploy(client, job, resolvedHosts, token);
+    for (final String host : resolvedHosts) {
+      final JobDeployResponse result = results.get(host);
       if (result.getStatus() == JobDeployResponse.Status.OK) {
         if (!json) {
-          out.printf("done%n");
+          out.printf("%s: done%n", host);
         } else {
           out.printf(result.toJsonString());
         }
       } else {
         if (!json) {
-          out.printf("failed: %s%n", result);
+          out.printf("%s: failed: %s%n", host, result);
         } else {
           out.printf(result.toJsonString());
         }
@@ -125,4 +130,33 @@ public class JobDeployCommand extends WildcardJobCommand {
     }
     return code;
   }
+
+  /**
+   * Deploys to all hosts in one request, or to one host at a time if the masters can't do that.
+   */
+  private static Map<String, JobDeployResponse> deploy(final HeliosClient client,
+                                                       final Deployment job,
+                                                       final List<String> hosts,
+                                                       final String token)
+      throws ExecutionException, InterruptedException {
+    final Map<String, JobDeployResponse> results = Maps.newHashMap();
+    final BulkDeployResponse response = client.deploy(job, hosts, token).get();
+    if (response != null) {
+      for (final String host : hosts) {
+        results.put(host, response.getResponse(host));
+      }
+      return results;
+    }
+
+    System.err.println("Warning: masters do not support bulk deploys.  Falling back to"
+        + " deploying to one host at a time");
+    final Map<String, ListenableFuture<JobDeployResponse>> futures = Maps.newHashMap();
+    for (final String host : hosts) {
+      futures.put(host, client.deploy(job, host, token));
+    }
+    for (final Entry<String, ListenableFuture<JobDeployResponse>> entry : futures.entrySet()) {
+      results.put(entry.getKey(), entry.getValue().get());
+    }
+    return results;
+  }
 }
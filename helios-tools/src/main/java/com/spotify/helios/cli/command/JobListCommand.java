@@ -34,6 +34,7 @@ import com.spotify.helios.common.Json;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -107,7 +108,7 @@ public class JobListCommand extends ControlCommand {
     }
 
     final Map<JobId, ListenableFuture<JobStatus>> oldFutures =
-        JobStatusFetcher.getJobsStatuses(client, jobs.keySet());
+        JobStatusFetcher.getJobsStatuses(client, jobs.keySet(), StatusView.SUMMARY);
 
     final Map<JobId, ListenableFuture<JobStatus>> futures = Maps.newHashMap();
 
@@ -37,6 +37,7 @@ import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
 import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -117,7 +118,8 @@ public class JobStatusCommand extends ControlCommand {
 
     // TODO (dano): it would sure be nice to be able to report container/task uptime
     final Map<JobId, ListenableFuture<JobStatus>> futures = 
-        JobStatusFetcher.getJobsStatuses(client, jobIds);
+        JobStatusFetcher.getJobsStatuses(client, jobIds,
+                                         json ? StatusView.FULL : StatusView.SUMMARY);
     final Map<JobId, JobStatus> statuses = Maps.newTreeMap();
     statuses.putAll(allAsMap(futures));
 
@@ -28,6 +28,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.spotify.helios.client.HeliosClient;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import java.util.Map;
 import java.util.Set;
@@ -37,10 +38,10 @@ import java.util.concurrent.ExecutionException;
 public class JobStatusFetcher {
 
   public static Map<JobId, ListenableFuture<JobStatus>> getJobsStatuses(HeliosClient client,
-      Set<JobId> jobIds) throws InterruptedException {
+      Set<JobId> jobIds, StatusView view) throws InterruptedException {
     final Map<JobId, ListenableFuture<JobStatus>> futures = Maps.newTreeMap();
     try {
-      final Map<JobId, JobStatus> statuses = client.jobStatuses(jobIds).get();
+      final Map<JobId, JobStatus> statuses = client.jobStatuses(jobIds, view).get();
       for (final Entry<JobId, JobStatus> entry : statuses.entrySet()) {
         futures.put(entry.getKey(), Futures.immediateFuture(entry.getValue()));
       }
@@ -48,7 +49,7 @@ public class JobStatusFetcher {
       System.err.println("Warning: masters failed batch status fetching.  Falling back to"
           + " slower job status method");
       for (final JobId jobId : jobIds) {
-        futures.put(jobId, client.jobStatus(jobId));
+        futures.put(jobId, client.jobStatus(jobId, view));
       }
     }
     return futures;
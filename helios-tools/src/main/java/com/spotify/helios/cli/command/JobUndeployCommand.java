@@ -22,11 +22,15 @@
 package com.spotify.helios.cli.command;
 
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import com.spotify.helios.cli.Utils;
 import com.spotify.helios.client.HeliosClient;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.BulkUndeployResponse;
 import com.spotify.helios.common.protocol.JobUndeployResponse;
 
 import net.sourceforge.argparse4j.inf.Argument;
@@ -40,6 +44,8 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.PrintStream;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.concurrent.ExecutionException;
 
 import static net.sourceforge.argparse4j.impl.Arguments.storeTrue;
@@ -128,24 +134,25 @@ public class JobUndeployCommand extends WildcardJobCommand {
     int code = 0;
     final HostResolver resolver = HostResolver.create(client);
 
+    final List<String> resolvedHosts = Lists.newArrayList();
     for (final String candidateHost : hosts) {
-      final String host = resolver.resolveName(candidateHost);
-
-      if (!json) {
-        out.printf("%s: ", host);
-      }
+      resolvedHosts.add(resolver.resolveName(candidateHost));
+    }
 
-      final String token = options.getString(tokenArg.getDest());
-      final JobUndeployResponse response = client.undeploy(jobId, host, token).get();
+    final String token = options.getString(tokenArg.getDest());
+    final Map<String, JobUndeployResponse> responses =
+        undeploy(client, jobId, resolvedHosts, token);
+    for (final String host : resolvedHosts) {
+      final JobUndeployResponse response = responses.get(host);
       if (response.getStatus() == JobUndeployResponse.Status.OK) {
         if (!json) {
-          out.println("done");
+          out.println(host + ": done");
         } else {
           out.printf(response.toJsonString());
         }
       } else {
         if (!json) {
-          out.println("failed: " + response);
+          out.println(host + ": failed: " + response);
         } else {
           out.printf(response.toJsonString());
         }
@@ -155,4 +162,34 @@ public class JobUndeployCommand extends WildcardJobCommand {
 
     return code;
   }
+
+  /**
+   * Undeploys from all hosts in one request, or from one host at a time if the masters can't do
+   * that.
+   */
+  private static Map<String, JobUndeployResponse> undeploy(final HeliosClient client,
+                                                           final JobId jobId,
+                                                           final List<String> hosts,
+                                                           final String token)
+      throws ExecutionException, InterruptedException {
+    final Map<String, JobUndeployResponse> responses = Maps.newHashMap();
+    final BulkUndeployResponse bulkResponse = client.undeploy(jobId, hosts, token).get();
+    if (bulkResponse != null) {
+      for (final String host : hosts) {
+        responses.put(host, bulkResponse.getResponse(host));
+      }
+      return responses;
+    }
+
+    System.err.println("Warning: masters do not support bulk undeploys.  Falling back to"
+        + " undeploying from one host at a time");
+    final Map<String, ListenableFuture<JobUndeployResponse>> futures = Maps.newHashMap();
+    for (final String host : hosts) {
+      futures.put(host, client.undeploy(jobId, host, token));
+    }
+    for (final Entry<String, ListenableFuture<JobUndeployResponse>> entry : futures.entrySet()) {
+      responses.put(entry.getKey(), entry.getValue().get());
+    }
+    return responses;
+  }
 }
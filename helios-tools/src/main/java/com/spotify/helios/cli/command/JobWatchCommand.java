@@ -34,6 +34,7 @@ import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
 import com.spotify.helios.common.descriptors.TaskStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import net.sourceforge.argparse4j.inf.Argument;
 import net.sourceforge.argparse4j.inf.Namespace;
@@ -207,7 +208,8 @@ public class JobWatchCommand extends MultiTargetControlCommand {
   private static Map<JobId, JobStatus> getStatuses(final HeliosClient client,
                                                    final Set<JobId> jobIds)
       throws ExecutionException, InterruptedException {
-    final Map<JobId, ListenableFuture<JobStatus>> futures = getJobsStatuses(client, jobIds);
+    final Map<JobId, ListenableFuture<JobStatus>> futures = getJobsStatuses(client, jobIds,
+                                                                             StatusView.SUMMARY);
 
     final Map<JobId, JobStatus> statuses = Maps.newTreeMap();
     statuses.putAll(allAsMap(futures));
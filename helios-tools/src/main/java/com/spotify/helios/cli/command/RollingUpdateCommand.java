@@ -65,6 +65,7 @@ public class RollingUpdateCommand extends WildcardJobCommand {
   private final Argument rolloutTimeoutArg;
   private final Argument migrateArg;
   private final Argument overlapArg;
+  private final Argument prePullArg;
   private final Argument tokenArg;
 
   public RollingUpdateCommand(final Subparser parser) {
@@ -130,6 +131,12 @@ public class RollingUpdateCommand extends WildcardJobCommand {
               "version of a job before undeploying the old one. Note that the command will fail " +
               "if the job contains static port assignments.");
 
+    prePullArg = parser.addArgument("--pre-pull")
+        .setDefault(false)
+        .action(storeTrue())
+        .help("When specified a rolling-update will ask the hosts of the next batch to pull the " +
+              "image of the job while the current batch is being deployed to.");
+
     tokenArg = parser.addArgument("--token")
         .nargs("?")
         .setDefault(EMPTY_TOKEN)
@@ -149,6 +156,7 @@ public class RollingUpdateCommand extends WildcardJobCommand {
     final long rolloutTimeout = options.getLong(rolloutTimeoutArg.getDest());
     final boolean migrate = options.getBoolean(migrateArg.getDest());
     final boolean overlap = options.getBoolean(overlapArg.getDest());
+    final boolean prePull = options.getBoolean(prePullArg.getDest());
     final String token = options.getString(tokenArg.getDest());
 
     checkArgument(timeout > 0, "Timeout must be greater than 0");
@@ -162,6 +170,7 @@ public class RollingUpdateCommand extends WildcardJobCommand {
         .setParallelism(parallelism)
         .setMigrate(migrate)
         .setOverlap(overlap)
+        .setPrePull(prePull)
         .setToken(token)
         .build();
     final RollingUpdateResponse response = client.rollingUpdate(name, jobId, rolloutOptions).get();
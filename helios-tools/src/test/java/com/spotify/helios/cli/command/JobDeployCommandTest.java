@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2015 Spotify AB.
+ *
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.spotify.helios.cli.command;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.Futures;
+
+import com.spotify.helios.client.HeliosClient;
+import com.spotify.helios.common.descriptors.Deployment;
+import com.spotify.helios.common.descriptors.Goal;
+import com.spotify.helios.common.descriptors.Job;
+import com.spotify.helios.common.descriptors.JobId;
+import com.spotify.helios.common.protocol.BulkDeployResponse;
+import com.spotify.helios.common.protocol.JobDeployResponse;
+
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+import net.sourceforge.argparse4j.inf.Subparser;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class JobDeployCommandTest {
+
+  private static final Job JOB = Job.newBuilder()
+      .setName("foo")
+      .setVersion("1")
+      .setImage("busybox")
+      .build();
+  private static final JobId JOB_ID = JOB.getId();
+  private static final Deployment DEPLOYMENT = Deployment.of(JOB_ID, Goal.START);
+  private static final List<String> HOSTS = ImmutableList.of("host1", "host2");
+
+  private final Namespace options = mock(Namespace.class);
+  private final HeliosClient client = mock(HeliosClient.class);
+  private final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+  private final PrintStream out = new PrintStream(baos);
+
+  private JobDeployCommand command;
+
+  @Before
+  public void setUp() {
+    // use a real, dummy Subparser impl to avoid having to mock out every single call
+    final ArgumentParser parser = ArgumentParsers.newArgumentParser("test");
+    final Subparser subparser = parser.addSubparsers().addParser("deploy");
+    command = new JobDeployCommand(subparser);
+
+    when(options.getString("job")).thenReturn(JOB_ID.toString());
+    doReturn(HOSTS).when(options).getList("hosts");
+    when(options.getString("token")).thenReturn("");
+    when(options.getBoolean("no_start")).thenReturn(false);
+    when(options.getBoolean("watch")).thenReturn(false);
+    when(client.jobs(JOB_ID.toString())).thenReturn(
+        Futures.<Map<JobId, Job>>immediateFuture(ImmutableMap.of(JOB_ID, JOB)));
+    when(client.listHosts()).thenReturn(Futures.immediateFuture(HOSTS));
+  }
+
+  @Test
+  public void testDeploysToAllHostsInOneRequest() throws Exception {
+    final BulkDeployResponse response = new BulkDeployResponse(
+        JobDeployResponse.Status.OK, JOB_ID,
+        ImmutableMap.of("host1", JobDeployResponse.Status.OK,
+                        "host2", JobDeployResponse.Status.HOST_NOT_FOUND));
+    when(client.deploy(DEPLOYMENT, HOSTS, "")).thenReturn(Futures.immediateFuture(response));
+
+    final int ret = command.run(options, client, out, false, null);
+
+    assertEquals(1, ret);
+    final String output = baos.toString();
+    assertThat(output, containsString("host1: done"));
+    assertThat(output, containsString("host2: failed"));
+  }
+
+  @Test
+  public void testFallsBackToDeployingPerHost() throws Exception {
+    when(client.deploy(DEPLOYMENT, HOSTS, ""))
+        .thenReturn(Futures.<BulkDeployResponse>immediateFuture(null));
+    for (final String host : HOSTS) {
+      when(client.deploy(DEPLOYMENT, host, "")).thenReturn(Futures.immediateFuture(
+          new JobDeployResponse(JobDeployResponse.Status.OK, host, JOB_ID)));
+    }
+
+    final int ret = command.run(options, client, out, false, null);
+
+    assertEquals(0, ret);
+    final String output = baos.toString();
+    assertThat(output, containsString("host1: done"));
+    assertThat(output, containsString("host2: done"));
+  }
+}
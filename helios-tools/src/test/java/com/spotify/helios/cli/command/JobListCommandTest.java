@@ -32,6 +32,7 @@ import com.spotify.helios.common.descriptors.Goal;
 import com.spotify.helios.common.descriptors.Job;
 import com.spotify.helios.common.descriptors.JobId;
 import com.spotify.helios.common.descriptors.JobStatus;
+import com.spotify.helios.common.protocol.StatusView;
 
 import net.sourceforge.argparse4j.ArgumentParsers;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
@@ -86,7 +87,8 @@ public class JobListCommandTest {
       statuses.put(jobId, status);
     }
 
-    when(client.jobStatuses(jobs.keySet())).thenReturn(Futures.immediateFuture(statuses));
+    when(client.jobStatuses(jobs.keySet(), StatusView.SUMMARY))
+        .thenReturn(Futures.immediateFuture(statuses));
   }
 
   @Test
@@ -110,4 +112,4 @@ public class JobListCommandTest {
 
     assertEquals(expectedOrder, TestUtils.readFirstColumnFromOutput(baos.toString(), true));
   }
-}
\ No newline at end of file
+}
@@ -89,6 +89,7 @@ public class RollingUpdateCommandTest {
     when(options.getBoolean("async")).thenReturn(false);
     when(options.getBoolean("migrate")).thenReturn(false);
     when(options.getBoolean("overlap")).thenReturn(false);
+    when(options.getBoolean("pre_pull")).thenReturn(false);
     when(options.getString("token")).thenReturn(TOKEN);
   }
 